@@ -1,5 +1,6 @@
 package com.all.in.one.agent.storage.config;
 
+import com.all.in.one.agent.storage.util.S3ClientRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
@@ -15,10 +16,12 @@ import java.util.concurrent.ConcurrentHashMap;
 public class DynamicConfigManager {
 
     private final StorageConfigProperties configProperties;
+    private final S3ClientRegistry clientRegistry;
     private final Map<String, StorageConfigProperties.Backend> runtimeBackends = new ConcurrentHashMap<>();
 
-    public DynamicConfigManager(StorageConfigProperties configProperties) {
+    public DynamicConfigManager(StorageConfigProperties configProperties, S3ClientRegistry clientRegistry) {
         this.configProperties = configProperties;
+        this.clientRegistry = clientRegistry;
     }
 
     /**
@@ -36,12 +39,24 @@ public class DynamicConfigManager {
         backend.setDefaultBucket(defaultBucket);
         backend.setEnabled(true);
 
+        // 保留配置文件中的传输层设置（连接池、超时等）和分片上传设置
+        StorageConfigProperties.Backend configured = configProperties.getBackends().get("dynamic");
+        if (configured != null && configured.getTransport() != null) {
+            backend.setTransport(configured.getTransport());
+        }
+        if (configured != null && configured.getMultipart() != null) {
+            backend.setMultipart(configured.getMultipart());
+        }
+
         // 更新到运行时配置
         runtimeBackends.put("dynamic", backend);
 
         // 同时更新 configProperties 中的配置
         configProperties.getBackends().put("dynamic", backend);
 
+        // 原子替换共享的S3客户端，旧客户端延迟关闭
+        clientRegistry.refresh("dynamic", backend);
+
         log.info("动态配置已更新: endpoint={}, region={}, bucket={}", endpoint, region, defaultBucket);
     }
 
@@ -71,6 +86,7 @@ public class DynamicConfigManager {
      */
     public void clearDynamicConfig() {
         runtimeBackends.remove("dynamic");
+        clientRegistry.invalidate("dynamic");
         log.info("动态配置已清除");
     }
 }
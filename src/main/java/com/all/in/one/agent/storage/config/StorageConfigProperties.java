@@ -4,7 +4,9 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -46,6 +48,46 @@ public class StorageConfigProperties {
      */
     private Cache cache = new Cache();
 
+    /**
+     * 异步执行配置
+     */
+    private Async async = new Async();
+
+    /**
+     * 列表预读配置
+     */
+    private Prefetch prefetch = new Prefetch();
+
+    /**
+     * 排序/过滤列表配置
+     */
+    private SortedListing sortedListing = new SortedListing();
+
+    /**
+     * 并行遍历配置
+     */
+    private ParallelListing parallelListing = new ParallelListing();
+
+    /**
+     * glob/正则搜索配置
+     */
+    private PatternSearch patternSearch = new PatternSearch();
+
+    /**
+     * 对象元数据索引配置
+     */
+    private MetadataIndex metadataIndex = new MetadataIndex();
+
+    /**
+     * 断点续传会话配置
+     */
+    private UploadSession uploadSession = new UploadSession();
+
+    /**
+     * 批量上传配置
+     */
+    private BatchUpload batchUpload = new BatchUpload();
+
     @Data
     public static class Backend {
         /**
@@ -87,6 +129,103 @@ public class StorageConfigProperties {
          * 是否启用
          */
         private Boolean enabled = true;
+
+        /**
+         * HTTP传输与连接池配置
+         */
+        private Transport transport = new Transport();
+
+        /**
+         * 分片上传配置
+         */
+        private MultipartUpload multipart = new MultipartUpload();
+    }
+
+    @Data
+    public static class MultipartUpload {
+        /**
+         * 是否对大文件使用分片上传
+         */
+        private boolean enabled = true;
+
+        /**
+         * 达到该大小（字节）的文件使用分片上传
+         */
+        private long threshold = 64L * 1024 * 1024;
+
+        /**
+         * 分片大小（字节），不小于5MB；文件过大时自动增大，保证不超过10000个分片
+         */
+        private long partSize = 16L * 1024 * 1024;
+
+        /**
+         * 单个文件同时上传的分片数（每个分片占用一个 partSize 大小的缓冲区）
+         */
+        private int concurrency = 4;
+
+        /**
+         * 单个分片失败后的最大重试次数
+         */
+        private int maxRetries = 3;
+    }
+
+    @Data
+    public static class Transport {
+        /**
+         * 同步客户端的HTTP实现：apache（连接池）或 url-connection（JDK，无连接池）
+         * 异步客户端固定使用 Netty
+         */
+        private String httpClient = "apache";
+
+        /**
+         * 最大连接数（SDK默认50）
+         */
+        private int maxConnections = 50;
+
+        /**
+         * 异步客户端等待连接的最大排队数
+         */
+        private int maxPendingConnectionAcquires = 10000;
+
+        /**
+         * 建立连接超时（毫秒）
+         */
+        private long connectionTimeoutMillis = 2000;
+
+        /**
+         * Socket读写超时（毫秒）
+         */
+        private long socketTimeoutMillis = 30000;
+
+        /**
+         * 从连接池获取连接的超时（毫秒）
+         */
+        private long connectionAcquisitionTimeoutMillis = 10000;
+
+        /**
+         * 连接最大存活时间（毫秒），小于等于0表示不限制
+         */
+        private long connectionTtlMillis = -1;
+
+        /**
+         * 空闲连接最大保留时间（毫秒）
+         */
+        private long connectionMaxIdleMillis = 60000;
+
+        /**
+         * 是否启用后台线程回收空闲连接
+         */
+        private boolean useIdleConnectionReaper = true;
+
+        /**
+         * 单次API调用（含重试）总超时（毫秒），小于等于0表示不限制
+         */
+        private long apiCallTimeoutMillis = 0;
+
+        /**
+         * 单次API调用尝试超时（毫秒），小于等于0表示不限制
+         */
+        private long apiCallAttemptTimeoutMillis = 0;
     }
     
     @Data
@@ -94,7 +233,12 @@ public class StorageConfigProperties {
         /**
          * 最大文件大小（字节）
          */
-        private long maxFileSize = 100 * 1024 * 1024; // 100MB
+        private long maxFileSize = 10L * 1024 * 1024 * 1024; // 10GB
+
+        /**
+         * 分片上传线程数（所有上传共享，应小于后端连接池大小）
+         */
+        private int multipartThreads = 16;
 
         /**
          * 临时文件目录
@@ -193,5 +337,302 @@ public class StorageConfigProperties {
          * 缓存目录
          */
         private String cacheDir = "/tmp/storage-cache";
+
+        /**
+         * 文件列表缓存（fileList）过期时间（秒）
+         */
+        private int listExpiration = 300; // 5分钟
+
+        /**
+         * 文件列表缓存写入多久后在访问时触发后台刷新（秒），0表示不刷新
+         * 刷新期间继续返回旧数据，应小于过期时间
+         */
+        private int listRefreshAfter = 60;
+
+        /**
+         * 后台刷新线程数
+         */
+        private int listRefreshThreads = 2;
+
+        /**
+         * 后台刷新队列长度（队列满时放弃本次刷新）
+         */
+        private int listRefreshQueueSize = 200;
+
+        /**
+         * 按前缀覆盖文件列表缓存过期时间（最长匹配优先）
+         */
+        private List<PrefixTtl> prefixTtls = new ArrayList<>();
+    }
+
+    @Data
+    public static class PrefixTtl {
+        /**
+         * 存储桶（为空表示所有存储桶）
+         */
+        private String bucket;
+
+        /**
+         * 前缀，例如 archive/ 或 hot/uploads/
+         */
+        private String prefix = "";
+
+        /**
+         * 过期时间（秒）
+         */
+        private int expiration;
+    }
+
+    @Data
+    public static class Async {
+        /**
+         * 读取上传流的线程数（异步上传时把阻塞的输入流转为非阻塞请求体）
+         */
+        private int streamThreads = 8;
+
+        /**
+         * 流式接口（/objects/stream、/search?pattern=）的异步超时（毫秒），0 表示不超时；
+         * 其他异步接口仍使用 spring.mvc.async.request-timeout
+         */
+        private long streamTimeout = 0;
+    }
+
+    @Data
+    public static class Prefetch {
+        /**
+         * 是否启用列表预读（返回一页后预加载下一页和子文件夹首页）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 预加载首页的子文件夹数量（按列表顺序取前N个），0表示只预读下一页
+         */
+        private int childFolders = 3;
+
+        /**
+         * 预读线程数（低优先级线程）
+         */
+        private int threads = 2;
+
+        /**
+         * 预读队列长度（队列满时放弃预读）
+         */
+        private int queueSize = 100;
+
+        /**
+         * 每个后端同时进行（含排队）的预读任务上限
+         */
+        private int maxConcurrentPerBackend = 4;
+    }
+
+    @Data
+    public static class SortedListing {
+        /**
+         * 单个目录的条目数上限（文件夹+文件），超过时排序/过滤列表报错，应使用普通分页列表
+         */
+        private int maxEntries = 1_000_000;
+
+        /**
+         * 所有缓存视图的条目总数上限（不小于 maxEntries，保证最大的目录也能留在缓存中）
+         */
+        private long maxCachedEntries = 2_000_000L;
+
+        /**
+         * 装载视图的线程数（所有目录共享，装载期间不占用缓存锁）
+         */
+        private int threads = 2;
+
+        /**
+         * 等待装载的目录数上限，队列满时请求报错
+         */
+        private int queueSize = 16;
+    }
+
+    @Data
+    public static class ParallelListing {
+        /**
+         * 是否启用并行遍历（文件夹大小、递归删除、重命名、复制）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 并行遍历线程数（所有遍历共享，应小于后端连接池大小）
+         */
+        private int threads = 8;
+
+        /**
+         * 单次遍历最多划分的分区数
+         */
+        private int maxPartitions = 16;
+    }
+
+    @Data
+    public static class PatternSearch {
+        /**
+         * 并发列出各分支和子目录的线程数（所有搜索共享，应小于后端连接池大小）
+         */
+        private int threads = 8;
+
+        /**
+         * glob 中 {a,b} 展开的最大分支数，超过后不展开，按展开前的公共前缀列出
+         */
+        private int maxBranches = 64;
+
+        /**
+         * 匹配单个key的最大步数（按正则引擎读取字符的次数计），防止回溯严重的模式占满搜索线程；0表示不限制
+         */
+        private int maxMatchSteps = 1000000;
+    }
+
+    @Data
+    public static class BatchUpload {
+        /**
+         * 上传线程数（所有批量上传共享，应小于后端连接池大小）
+         */
+        private int threads = 32;
+
+        /**
+         * 单个批量请求同时上传的文件数
+         */
+        private int concurrency = 16;
+
+        /**
+         * 单个批量请求在内存中等待上传的最大字节数，超过后暂停读取请求体
+         */
+        private long maxBufferedBytes = 64L * 1024 * 1024;
+
+        /**
+         * 单个批量请求最多包含的文件数
+         */
+        private int maxFiles = 20000;
+    }
+
+    @Data
+    public static class UploadSession {
+        /**
+         * 会话状态目录（会话元数据和不足一个分片的未上传数据），为空时使用 upload.tempDir 下的 upload-sessions
+         */
+        private String dir;
+
+        /**
+         * 会话闲置多久后过期（分钟），过期会话的分片上传被中止
+         */
+        private long expireMinutes = 1440;
+
+        /**
+         * 过期会话的清理间隔（秒）
+         */
+        private long cleanupInterval = 600;
+
+        /**
+         * 最多同时存在的会话数
+         */
+        private int maxSessions = 1000;
+    }
+
+    @Data
+    public static class MetadataIndex {
+        /**
+         * 是否启用元数据索引（列表、统计、搜索优先读取索引）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 索引目录，为空时使用 cache.cacheDir 下的 metadata-index
+         */
+        private String dir;
+
+        /**
+         * 完整爬取后索引可直接使用的时长（秒），超过后回退到S3并在后台重新爬取
+         * 绕过本服务直接写入S3的改动在此时间内不可见
+         */
+        private int maxAge = 3600;
+
+        /**
+         * 单个bucket最多索引的对象数，超过后放弃爬取，该bucket始终读取S3
+         */
+        private int maxObjects = 5_000_000;
+
+        /**
+         * 爬取线程数（同时爬取的bucket数）
+         */
+        private int crawlThreads = 1;
+
+        /**
+         * 变更日志达到该记录数后合并为新快照
+         */
+        private int compactAfter = 100_000;
+
+        /**
+         * 是否为key建立子串搜索索引（三元组倒排索引，每个key约占数百字节内存）
+         */
+        private boolean searchIndex = true;
+
+        /**
+         * 列式快照（按大小/修改时间/存储类型/扩展名查询）过时后的最短重建间隔（秒），
+         * 期间的查询使用旧快照并按索引当前状态校正，新增对象在重建后出现
+         */
+        private long columnRefresh = 30;
+
+        /**
+         * 定时增量同步
+         */
+        private IndexSync sync = new IndexSync();
+
+        /**
+         * 从 S3 Inventory 清单导入
+         */
+        private IndexInventory inventory = new IndexInventory();
+    }
+
+    @Data
+    public static class IndexInventory {
+        /**
+         * 允许导入的本地清单目录（相当于清单目标bucket的根目录），为空时只能从S3读取清单
+         */
+        private String localDir;
+
+        /**
+         * 并行解析的数据文件数
+         */
+        private int threads = 4;
+
+        /**
+         * 清单生成后最多可导入的时长（秒），更旧的清单与S3差异过大，应直接爬取
+         */
+        private int maxSnapshotAge = 172800;
+    }
+
+    @Data
+    public static class IndexSync {
+        /**
+         * 是否定时增量同步已建立的索引（发现绕过本服务直接写入S3的改动）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 同步周期（秒），有变更的分区每个周期都会重新遍历
+         */
+        private int interval = 300;
+
+        /**
+         * 连续无变更的分区逐次加倍遍历间隔，最长不超过该值（秒），应小于 maxAge
+         */
+        private int maxInterval = 1800;
+
+        /**
+         * 同步线程数（同时遍历的分区数，所有bucket共享，应小于后端连接池大小）
+         */
+        private int threads = 4;
+
+        /**
+         * 对象数超过该值的文件夹按子文件夹拆分为多个分区
+         */
+        private int splitThreshold = 50_000;
+
+        /**
+         * 最大拆分层数
+         */
+        private int maxDepth = 3;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
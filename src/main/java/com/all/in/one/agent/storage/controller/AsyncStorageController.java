@@ -0,0 +1,133 @@
+package com.all.in.one.agent.storage.controller;
+
+import com.all.in.one.agent.storage.common.Result;
+import com.all.in.one.agent.storage.dto.FileListDTO;
+import com.all.in.one.agent.storage.service.StorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 异步存储控制器
+ *
+ * 返回 CompletableFuture，请求线程在发出S3调用后立即释放，
+ * 由 S3AsyncClient（Netty）在少量线程上维持大量并发的S3请求
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/storage/async")
+@CrossOrigin(origins = "*")
+public class AsyncStorageController {
+
+    private final StorageService storageService;
+
+    public AsyncStorageController(StorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    /**
+     * 获取文件列表（异步）
+     */
+    @PostMapping("/files/list")
+    public CompletableFuture<Result<Map<String, Object>>> listFiles(@RequestBody Map<String, Object> request) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+
+            FileListDTO listDTO = new FileListDTO();
+            listDTO.setBackendName(backendKey);
+            listDTO.setBucketName((String) request.get("bucketName"));
+            listDTO.setPrefix((String) request.get("prefix"));
+            listDTO.setDelimiter((String) request.get("delimiter"));
+            listDTO.setContinuationToken((String) request.get("continuationToken"));
+
+            if (request.get("pageSize") != null) {
+                listDTO.setPageSize(((Number) request.get("pageSize")).intValue());
+            }
+
+            return storageService.listFilesAsync(listDTO)
+                    .thenApply(Result::success)
+                    .exceptionally(e -> error("获取文件列表失败", e));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(error("获取文件列表失败", e));
+        }
+    }
+
+    /**
+     * 上传文件（异步）
+     */
+    @PostMapping("/upload")
+    public CompletableFuture<Result<Map<String, Object>>> uploadFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "bucketName", required = false) String bucketName,
+            @RequestParam(value = "objectKey", required = false) String objectKey) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            return storageService.uploadFileAsync(file, backendKey, bucketName, objectKey)
+                    .thenApply(Result::success)
+                    .exceptionally(e -> error("文件上传失败", e));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(error("文件上传失败", e));
+        }
+    }
+
+    /**
+     * 复制文件（异步）
+     */
+    @PostMapping("/files/copy")
+    public CompletableFuture<Result<Void>> copyFile(@RequestBody Map<String, String> request) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            String sourceBucket = request.get("sourceBucket");
+            String sourceKey = request.get("sourceKey");
+            String targetBucket = request.get("targetBucket");
+            String targetKey = request.get("targetKey");
+
+            // 验证参数
+            if (sourceBucket == null || sourceBucket.isEmpty()) {
+                return CompletableFuture.completedFuture(Result.error("源 bucket 不能为空"));
+            }
+            if (sourceKey == null || sourceKey.isEmpty()) {
+                return CompletableFuture.completedFuture(Result.error("源文件路径不能为空"));
+            }
+            if (targetBucket == null || targetBucket.isEmpty()) {
+                return CompletableFuture.completedFuture(Result.error("目标 bucket 不能为空"));
+            }
+            if (targetKey == null || targetKey.isEmpty()) {
+                return CompletableFuture.completedFuture(Result.error("目标文件路径不能为空"));
+            }
+
+            return storageService.copyFileAsync(backendKey, sourceBucket, sourceKey, targetBucket, targetKey)
+                    .thenApply(ignored -> Result.<Void>success())
+                    .exceptionally(e -> error("复制文件失败", e));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(error("复制文件失败", e));
+        }
+    }
+
+    /**
+     * 删除文件或文件夹（异步）
+     */
+    @DeleteMapping("/files")
+    public CompletableFuture<Result<Void>> deleteFile(
+            @RequestParam String bucketName,
+            @RequestParam String objectKey) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            return storageService.deleteFileAsync(backendKey, bucketName, objectKey)
+                    .thenApply(ignored -> Result.<Void>success())
+                    .exceptionally(e -> error("删除文件失败", e));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(error("删除文件失败", e));
+        }
+    }
+
+    private <T> Result<T> error(String message, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        log.error(message, cause);
+        return Result.error(message + ": " + cause.getMessage());
+    }
+}
@@ -1,21 +1,25 @@
 package com.all.in.one.agent.storage.controller;
 
 import com.all.in.one.agent.storage.common.Result;
-import com.all.in.one.agent.storage.dto.FileItem;
 import com.all.in.one.agent.storage.dto.FileListResponse;
 import com.all.in.one.agent.storage.dto.FolderStats;
+import com.all.in.one.agent.storage.dto.MetadataIndexStatus;
+import com.all.in.one.agent.storage.dto.MetadataIndexSyncStats;
+import com.all.in.one.agent.storage.service.FileListingService;
+import com.all.in.one.agent.storage.service.ListingPrefetchService;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
+import com.all.in.one.agent.storage.service.MetadataIndexSyncService;
+import com.all.in.one.agent.storage.service.SortedListingService;
 import com.all.in.one.agent.storage.service.StorageService;
-import com.all.in.one.agent.storage.util.S3ClientUtil;
+import com.all.in.one.agent.storage.util.S3PoolMetrics;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import software.amazon.awssdk.services.s3.model.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * 优化后的存储控制器
@@ -23,7 +27,7 @@ import java.util.stream.Collectors;
  * 功能：
  * 1. 混合列表接口（文件夹+文件一次返回）
  * 2. 本地内存缓存（Caffeine）
- * 3. ETag HTTP缓存
+ * 3. ETag HTTP缓存（按页计算，If-None-Match 命中时返回304）
  * 4. 文件夹统计信息
  * 5. 智能排序（文件夹优先）
  */
@@ -34,16 +38,31 @@ import java.util.stream.Collectors;
 public class OptimizedStorageController {
 
     private final StorageService storageService;
-    private final S3ClientUtil s3ClientUtil;
+    private final FileListingService fileListingService;
+    private final ListingPrefetchService listingPrefetchService;
+    private final SortedListingService sortedListingService;
     private final org.springframework.cache.CacheManager cacheManager;
+    private final S3PoolMetrics poolMetrics;
+    private final MetadataIndexService metadataIndexService;
+    private final MetadataIndexSyncService metadataIndexSyncService;
 
     public OptimizedStorageController(
             StorageService storageService,
-            S3ClientUtil s3ClientUtil,
-            org.springframework.cache.CacheManager cacheManager) {
+            FileListingService fileListingService,
+            ListingPrefetchService listingPrefetchService,
+            SortedListingService sortedListingService,
+            org.springframework.cache.CacheManager cacheManager,
+            S3PoolMetrics poolMetrics,
+            MetadataIndexService metadataIndexService,
+            MetadataIndexSyncService metadataIndexSyncService) {
         this.storageService = storageService;
-        this.s3ClientUtil = s3ClientUtil;
+        this.fileListingService = fileListingService;
+        this.listingPrefetchService = listingPrefetchService;
+        this.sortedListingService = sortedListingService;
         this.cacheManager = cacheManager;
+        this.poolMetrics = poolMetrics;
+        this.metadataIndexService = metadataIndexService;
+        this.metadataIndexSyncService = metadataIndexSyncService;
         log.info("优化存储控制器已启动 - 使用本地内存缓存（Caffeine）");
     }
 
@@ -64,6 +83,14 @@ public class OptimizedStorageController {
         return ResponseEntity.ok(Result.success("已清除 " + cleared + " 个缓存"));
     }
 
+    /**
+     * S3连接池实时指标（已租用/等待/可用/最大连接数）
+     */
+    @GetMapping("/pool-stats")
+    public ResponseEntity<Result<Map<String, Map<String, Object>>>> poolStats() {
+        return ResponseEntity.ok(Result.success(poolMetrics.snapshot()));
+    }
+
     /**
      * 优化后的文件列表接口
      *
@@ -71,6 +98,9 @@ public class OptimizedStorageController {
      * @param prefix 前缀（目录路径）
      * @param continuationToken 分页token
      * @param pageSize 每页数量
+     * @param sort 整个目录范围的排序字段（name|size|lastModified），为空时按S3顺序分页
+     * @param order 排序方向（asc|desc）
+     * @param filter 名称过滤（仅在指定sort时生效）
      * @return 文件列表响应
      */
     @GetMapping("/list")
@@ -79,18 +109,46 @@ public class OptimizedStorageController {
             @RequestParam(required = false, defaultValue = "") String prefix,
             @RequestParam(required = false) String continuationToken,
             @RequestParam(defaultValue = "100") int pageSize,
-            @RequestParam(required = false) Long _t) {  // 时间戳参数，用于绕过缓存
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String order,
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false) Long _t,  // 时间戳参数，用于绕过缓存
+            WebRequest webRequest) {
 
         try {
-            // 从缓存或S3加载（使用@Cacheable自动缓存）
-            // 注意：不使用ETag，因为它与分页冲突
-            // 依赖Caffeine本地缓存已经足够快（2ms）
-            FileListResponse response = loadFileList(bucket, prefix, continuationToken, pageSize);
+            if (sort != null && !sort.isEmpty()) {
+                // 基于整个目录的排序视图分页，continuationToken 为不透明游标
+                String backendKey = storageService.getDefaultBackendKey();
+                FileListResponse response = sortedListingService.list(
+                        backendKey, bucket, prefix, sort, order, filter, continuationToken, pageSize);
+                return ResponseEntity
+                        .ok()
+                        .cacheControl(org.springframework.http.CacheControl.noStore())
+                        .body(Result.success(response));
+            }
+
+            // 从缓存或S3加载（并发未命中合并为一次S3调用）
+            String backendKey = storageService.getDefaultBackendKey();
+            FileListResponse response = fileListingService.listFiles(backendKey, bucket, prefix, continuationToken, pageSize);
+
+            // 后台预读下一页和子文件夹首页（不阻塞本次响应）
+            listingPrefetchService.afterPageServed(backendKey, bucket, prefix, pageSize, response);
+
+            // 每一页（bucket/prefix/token/pageSize 都在URL中）有自己的ETag，与分页互不影响；
+            // 浏览器每次都重新验证，内容未变时返回304
+            String etag = "W/\"" + response.getEtag() + "\"";
+            if (webRequest.checkNotModified(etag)) {
+                return ResponseEntity
+                        .status(HttpStatus.NOT_MODIFIED)
+                        .eTag(etag)
+                        .cacheControl(org.springframework.http.CacheControl.noCache().cachePrivate())
+                        .build();
+            }
 
-            // 返回结果（禁用浏览器缓存，只使用服务器端Caffeine缓存）
             return ResponseEntity
                     .ok()
-                    .cacheControl(org.springframework.http.CacheControl.noCache().noStore())
+                    .eTag(etag)
+                    .cacheControl(org.springframework.http.CacheControl.noCache().cachePrivate())
                     .body(Result.success(response));
 
         } catch (Exception e) {
@@ -102,164 +160,91 @@ public class OptimizedStorageController {
     }
 
     /**
-     * 加载文件列表（带缓存）
-     *
-     * Spring Cache会自动处理：
-     * - 首次调用：执行方法，缓存结果
-     * - 后续调用：直接返回缓存（5分钟内）
+     * 文件夹统计信息（带缓存）
      */
-    @Cacheable(
-        value = "fileList",
-        key = "#bucket + ':' + #prefix + ':' + (#continuationToken != null ? #continuationToken : '') + ':' + #pageSize"
-    )
-    public FileListResponse loadFileList(String bucket, String prefix, String continuationToken, int pageSize) {
-        log.debug("从S3加载文件列表 - bucket: {}, prefix: {}, token: {}", bucket, prefix, continuationToken);
-
-        FileListResponse response = loadFromS3(bucket, prefix, continuationToken, pageSize);
-
-        // 智能排序：文件夹优先，然后按名称
-        response.setItems(sortItems(response.getItems()));
-        response.setFromCache(false);  // 首次加载标记为非缓存
-
-        return response;
+    @GetMapping("/folder-stats")
+    public ResponseEntity<Result<FolderStats>> folderStats(
+            @RequestParam String bucket,
+            @RequestParam String prefix) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            return ResponseEntity.ok(Result.success(fileListingService.folderStats(backendKey, bucket, prefix)));
+        } catch (Exception e) {
+            log.error("获取文件夹统计失败 - bucket: {}, prefix: {}", bucket, prefix, e);
+            return ResponseEntity.ok(Result.error("获取文件夹统计失败: " + e.getMessage()));
+        }
     }
 
     /**
-     * 从S3加载混合内容（文件夹+文件）
+     * 元数据索引状态
      */
-    private FileListResponse loadFromS3(String bucket, String prefix, String continuationToken, int pageSize) {
+    @GetMapping("/index/status")
+    public ResponseEntity<Result<MetadataIndexStatus>> indexStatus(@RequestParam String bucket) {
         try {
             String backendKey = storageService.getDefaultBackendKey();
-            var backend = storageService.getBackend(backendKey);
-            var s3Client = s3ClientUtil.createS3Client(backend);
-
-            // 使用V1 API（ListObjects）因为某些S3服务的V2 API不返回CommonPrefixes
-            ListObjectsRequest.Builder requestBuilder = ListObjectsRequest.builder()
-                    .bucket(bucket)
-                    .prefix(prefix)
-                    .delimiter("/")  // 重要：让S3返回文件夹
-                    .maxKeys(pageSize);
-
-            if (continuationToken != null && !continuationToken.isEmpty()) {
-                requestBuilder.marker(continuationToken);  // V1使用marker而不是continuationToken
-            }
-
-            ListObjectsResponse response = s3Client.listObjects(requestBuilder.build());
-
-            List<FileItem> items = new ArrayList<>();
-
-            log.info("S3响应 - bucket: {}, prefix: '{}', CommonPrefixes: {}, Contents: {}",
-                    bucket, prefix, response.commonPrefixes().size(), response.contents().size());
-
-            // 添加文件夹（CommonPrefixes）- 不计算统计信息以提升性能
-            for (CommonPrefix commonPrefix : response.commonPrefixes()) {
-                String folderPrefix = commonPrefix.prefix();
-
-                // 不计算统计信息，直接添加文件夹（性能优化）
-                items.add(FileItem.folder(folderPrefix, null));
-            }
-
-            // 添加文件
-            for (S3Object s3Object : response.contents()) {
-                // 跳过"文件夹标记文件"（以/结尾的0字节文件）
-                if (s3Object.key().endsWith("/")) {
-                    continue;
-                }
-
-                FileItem fileItem = FileItem.builder()
-                        .name(extractFileName(s3Object.key()))
-                        .key(s3Object.key())
-                        .type("file")
-                        .size(s3Object.size())
-                        .lastModified(s3Object.lastModified())
-                        .build();
-
-                items.add(fileItem);
-            }
-
-            return FileListResponse.builder()
-                    .items(items)
-                    .nextContinuationToken(response.nextMarker())  // V1使用nextMarker
-                    .isTruncated(response.isTruncated())
-                    .totalCount(items.size())
-                    .fromCache(false)
-                    .build();
-
+            return ResponseEntity.ok(Result.success(metadataIndexService.status(storageService.getBackend(backendKey), bucket)));
         } catch (Exception e) {
-            log.error("从S3加载失败", e);
-            throw new RuntimeException("从S3加载失败: " + e.getMessage(), e);
+            log.error("获取元数据索引状态失败 - bucket: {}", bucket, e);
+            return ResponseEntity.ok(Result.error("获取元数据索引状态失败: " + e.getMessage()));
         }
     }
 
     /**
-     * 计算文件夹统计信息（带缓存，10分钟）
+     * 在后台重新爬取元数据索引
      */
-    @Cacheable(
-        value = "folderStats",
-        key = "#bucket + ':' + #prefix"
-    )
-    public FolderStats calculateFolderStats(String backendKey, String bucket, String prefix) {
+    @PostMapping("/index/crawl")
+    public ResponseEntity<Result<Boolean>> crawlIndex(@RequestParam String bucket) {
         try {
-            log.debug("计算文件夹统计 - bucket: {}, prefix: {}", bucket, prefix);
-
-            // 获取S3客户端
-            var backend = storageService.getBackend(backendKey);
-            var s3Client = s3ClientUtil.createS3Client(backend);
-
-            // 计算统计信息（限制扫描1000个文件避免性能问题）
-            ListObjectsV2Request request = ListObjectsV2Request.builder()
-                    .bucket(bucket)
-                    .prefix(prefix)
-                    .maxKeys(1000)
-                    .build();
-
-            ListObjectsV2Response response = s3Client.listObjectsV2(request);
-
-            int fileCount = (int) response.contents().stream()
-                    .filter(obj -> !obj.key().endsWith("/"))
-                    .count();
-
-            long totalSize = response.contents().stream()
-                    .filter(obj -> !obj.key().endsWith("/"))
-                    .mapToLong(S3Object::size)
-                    .sum();
-
-            return FolderStats.builder()
-                    .fileCount(fileCount)
-                    .totalSize(totalSize)
-                    .calculating(false)
-                    .build();
-
+            String backendKey = storageService.getDefaultBackendKey();
+            boolean started = metadataIndexService.crawl(backendKey, storageService.getBackend(backendKey), bucket);
+            return ResponseEntity.ok(Result.success(started));
         } catch (Exception e) {
-            log.error("计算文件夹统计信息失败", e);
-            return FolderStats.builder()
-                    .calculating(false)
-                    .build();
+            log.error("提交元数据索引爬取失败 - bucket: {}", bucket, e);
+            return ResponseEntity.ok(Result.error("提交元数据索引爬取失败: " + e.getMessage()));
         }
     }
 
     /**
-     * 智能排序：文件夹优先，然后按名称排序
+     * 在后台从 S3 Inventory 清单重建元数据索引（仅支持CSV格式）
+     *
+     * @param bucket   被清点的bucket，为空时使用清单中的 sourceBucket
+     * @param manifest s3://bucket/.../manifest.json 或本地清单目录下的 manifest.json
      */
-    private List<FileItem> sortItems(List<FileItem> items) {
-        return items.stream()
-                .sorted(Comparator
-                        // 1. 文件夹优先（true > false，所以文件夹排在前面）
-                        .comparing(FileItem::isFolder, Comparator.reverseOrder())
-                        // 2. 按名称排序（忽略大小写）
-                        .thenComparing(item -> item.getName().toLowerCase()))
-                .collect(Collectors.toList());
+    @PostMapping("/index/import-inventory")
+    public ResponseEntity<Result<Boolean>> importInventory(
+            @RequestParam(required = false) String bucket,
+            @RequestParam String manifest) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            boolean started = metadataIndexService.importInventory(backendKey, storageService.getBackend(backendKey),
+                    bucket, manifest);
+            return ResponseEntity.ok(Result.success(started));
+        } catch (Exception e) {
+            log.error("提交清单导入失败 - bucket: {}, manifest: {}", bucket, manifest, e);
+            return ResponseEntity.ok(Result.error("提交清单导入失败: " + e.getMessage()));
+        }
     }
 
-
     /**
-     * 提取文件名（去掉路径）
+     * 立即在后台增量同步元数据索引（遍历所有分区）
      */
-    private String extractFileName(String key) {
-        if (key == null || key.isEmpty()) {
-            return "";
+    @PostMapping("/index/sync")
+    public ResponseEntity<Result<Boolean>> syncIndex(@RequestParam String bucket) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            boolean started = metadataIndexSyncService.sync(backendKey, storageService.getBackend(backendKey), bucket);
+            return ResponseEntity.ok(Result.success(started));
+        } catch (Exception e) {
+            log.error("提交元数据索引同步失败 - bucket: {}", bucket, e);
+            return ResponseEntity.ok(Result.error("提交元数据索引同步失败: " + e.getMessage()));
         }
-        int lastSlash = key.lastIndexOf('/');
-        return lastSlash >= 0 ? key.substring(lastSlash + 1) : key;
+    }
+
+    /**
+     * 元数据索引增量同步指标（同步滞后、吞吐、变更数）
+     */
+    @GetMapping("/index/sync-stats")
+    public ResponseEntity<Result<List<MetadataIndexSyncStats>>> indexSyncStats() {
+        return ResponseEntity.ok(Result.success(metadataIndexSyncService.stats()));
     }
 }
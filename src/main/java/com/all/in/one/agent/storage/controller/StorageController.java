@@ -3,13 +3,40 @@ package com.all.in.one.agent.storage.controller;
 import com.all.in.one.agent.storage.common.Result;
 import com.all.in.one.agent.storage.config.DynamicConfigManager;
 import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.BatchUploadResult;
+import com.all.in.one.agent.storage.dto.FileItem;
 import com.all.in.one.agent.storage.dto.FileListDTO;
+import com.all.in.one.agent.storage.dto.FileListPage;
+import com.all.in.one.agent.storage.dto.KeySearchResult;
+import com.all.in.one.agent.storage.dto.MetadataIndexStatus;
+import com.all.in.one.agent.storage.dto.ObjectRangeQuery;
+import com.all.in.one.agent.storage.dto.ObjectRangeResult;
+import com.all.in.one.agent.storage.dto.ObjectStreamQuery;
+import com.all.in.one.agent.storage.dto.PatternSearchQuery;
+import com.all.in.one.agent.storage.dto.UploadSessionInfo;
+import com.all.in.one.agent.storage.service.BatchUploadService;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
+import com.all.in.one.agent.storage.service.ObjectQueryService;
+import com.all.in.one.agent.storage.service.ObjectStreamService;
+import com.all.in.one.agent.storage.service.PatternSearchService;
+import com.all.in.one.agent.storage.service.ResumableUploadService;
 import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.FileListJsonWriter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 
@@ -24,10 +51,30 @@ public class StorageController {
 
     private final StorageService storageService;
     private final DynamicConfigManager dynamicConfigManager;
-
-    public StorageController(StorageService storageService, DynamicConfigManager dynamicConfigManager) {
+    private final FileListJsonWriter fileListJsonWriter;
+    private final ObjectStreamService objectStreamService;
+    private final MetadataIndexService metadataIndexService;
+    private final PatternSearchService patternSearchService;
+    private final ObjectQueryService objectQueryService;
+    private final ResumableUploadService resumableUploadService;
+    private final BatchUploadService batchUploadService;
+    private final StorageConfigProperties configProperties;
+
+    public StorageController(StorageService storageService, DynamicConfigManager dynamicConfigManager,
+                             FileListJsonWriter fileListJsonWriter, ObjectStreamService objectStreamService,
+                             MetadataIndexService metadataIndexService, PatternSearchService patternSearchService,
+                             ObjectQueryService objectQueryService, ResumableUploadService resumableUploadService,
+                             BatchUploadService batchUploadService, StorageConfigProperties configProperties) {
         this.storageService = storageService;
         this.dynamicConfigManager = dynamicConfigManager;
+        this.fileListJsonWriter = fileListJsonWriter;
+        this.objectStreamService = objectStreamService;
+        this.metadataIndexService = metadataIndexService;
+        this.patternSearchService = patternSearchService;
+        this.objectQueryService = objectQueryService;
+        this.resumableUploadService = resumableUploadService;
+        this.batchUploadService = batchUploadService;
+        this.configProperties = configProperties;
     }
 
     /**
@@ -62,9 +109,12 @@ public class StorageController {
 
     /**
      * 获取文件列表
+     *
+     * 结果由 FileListJsonWriter 直接流式写出，JSON结构与 Result&lt;Map&gt; 相同
      */
     @PostMapping("/files/list")
-    public Result<Map<String, Object>> listFiles(@RequestBody Map<String, Object> request) {
+    public void listFiles(@RequestBody Map<String, Object> request, HttpServletResponse response) throws IOException {
+        FileListPage page;
         try {
             String backendKey = storageService.getDefaultBackendKey();
 
@@ -79,12 +129,13 @@ public class StorageController {
                 listDTO.setPageSize(((Number) request.get("pageSize")).intValue());
             }
 
-            Map<String, Object> result = storageService.listFiles(listDTO);
-            return Result.success(result);
+            page = storageService.listFilePage(listDTO);
         } catch (Exception e) {
             log.error("获取文件列表失败", e);
-            return Result.error("获取文件列表失败: " + e.getMessage());
+            fileListJsonWriter.writeError(response, "获取文件列表失败: " + e.getMessage());
+            return;
         }
+        fileListJsonWriter.write(response, page);
     }
 
     /**
@@ -105,6 +156,121 @@ public class StorageController {
         }
     }
 
+    /**
+     * 流式上传文件（支持多个文件），边解析请求体边分片写入S3，不缓存到内存或临时磁盘
+     *
+     * 不能使用 @RequestParam：读取请求参数会触发容器解析整个 multipart 请求体，
+     * 参数从查询字符串读取，也可以在请求体中文件之前以表单字段 bucketName、objectKey 传入
+     * （依赖 spring.servlet.multipart.resolve-lazily=true）
+     */
+    @PostMapping(value = "/upload/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Result<List<Map<String, Object>>> uploadStream(HttpServletRequest request) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            List<Map<String, Object>> results = storageService.uploadStream(request.getInputStream(),
+                    request.getContentType(), backendKey, queryParam(request, "bucketName"), queryParam(request, "objectKey"));
+            return Result.success(results);
+        } catch (Exception e) {
+            log.error("流式上传失败", e);
+            return Result.error("文件上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量上传多个文件或整个目录（表单中的多个文件字段），并发写入S3，返回每个文件的结果
+     *
+     * 参数 bucketName、prefix、preservePaths 从查询字符串读取（原因同 /upload/stream），
+     * bucketName、prefix 也可以在文件之前以表单字段传入；preservePaths 默认 true，保留目录上传时文件名中的相对路径
+     */
+    @PostMapping(value = "/upload/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Result<BatchUploadResult> uploadBatch(HttpServletRequest request) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            BatchUploadResult result = batchUploadService.upload(request.getInputStream(), request.getContentType(),
+                    backendKey, queryParam(request, "bucketName"), queryParam(request, "prefix"),
+                    !"false".equalsIgnoreCase(queryParam(request, "preservePaths")));
+            return Result.success(result);
+        } catch (Exception e) {
+            log.error("批量上传失败", e);
+            return Result.error("批量上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 创建断点续传会话
+     */
+    @PostMapping("/uploads")
+    public Result<UploadSessionInfo> createUploadSession(
+            @RequestParam String fileName,
+            @RequestParam long fileSize,
+            @RequestParam(required = false) String bucketName,
+            @RequestParam(required = false) String objectKey,
+            @RequestParam(required = false) String contentType) {
+        try {
+            String backendKey = storageService.getDefaultBackendKey();
+            return Result.success(resumableUploadService.create(backendKey, bucketName, objectKey, fileName, fileSize, contentType));
+        } catch (Exception e) {
+            log.error("创建上传会话失败", e);
+            return Result.error("创建上传会话失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询断点续传会话（客户端从返回的 offset 继续发送）
+     */
+    @GetMapping("/uploads/{sessionId}")
+    public Result<UploadSessionInfo> getUploadSession(@PathVariable String sessionId) {
+        try {
+            return Result.success(resumableUploadService.status(sessionId));
+        } catch (Exception e) {
+            log.error("查询上传会话失败", e);
+            return Result.error("查询上传会话失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 发送一个分块，请求体为文件从 offset 开始的原始字节（application/octet-stream）
+     */
+    @PutMapping("/uploads/{sessionId}")
+    public Result<UploadSessionInfo> uploadChunk(
+            @PathVariable String sessionId,
+            @RequestParam long offset,
+            HttpServletRequest request) {
+        try {
+            return Result.success(resumableUploadService.uploadChunk(sessionId, offset, request.getInputStream()));
+        } catch (Exception e) {
+            log.error("上传分块失败", e);
+            return Result.error("上传分块失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 完成断点续传
+     */
+    @PostMapping("/uploads/{sessionId}/complete")
+    public Result<Map<String, Object>> completeUploadSession(@PathVariable String sessionId) {
+        try {
+            return Result.success(resumableUploadService.complete(sessionId));
+        } catch (Exception e) {
+            log.error("完成上传失败", e);
+            return Result.error("完成上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 取消断点续传
+     */
+    @DeleteMapping("/uploads/{sessionId}")
+    public Result<Void> abortUploadSession(@PathVariable String sessionId) {
+        try {
+            resumableUploadService.abort(sessionId);
+            return Result.success();
+        } catch (Exception e) {
+            log.error("取消上传失败", e);
+            return Result.error("取消上传失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 下载文件
      */
@@ -180,6 +346,39 @@ public class StorageController {
         }
     }
 
+    /**
+     * 流式枚举对象（NDJSON，每行一个对象）
+     *
+     * 不传delimiter时平铺列出前缀下的全部对象，delimiter=/ 时只列出一级对象和子前缀。
+     * 结果随S3分页逐步写出，服务端内存占用与bucket大小无关；
+     * 连接中断或超时后可用已收到的最后一个key作为 startAfter 继续
+     */
+    @GetMapping("/objects/stream")
+    public ResponseEntity<StreamingResponseBody> streamObjects(
+            @RequestParam(required = false) String bucketName,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String delimiter,
+            @RequestParam(required = false) String startAfter,
+            @RequestParam(required = false) Long limit,
+            @RequestParam(required = false) Long minSize,
+            @RequestParam(required = false) Long maxSize,
+            HttpServletRequest request) {
+        // 参数错误在开始输出前以 StorageException 抛出，由全局异常处理返回 Result.error
+        StreamingResponseBody body = objectStreamService.stream(ObjectStreamQuery.builder()
+                .bucketName(bucketName)
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .startAfter(startAfter)
+                .limit(limit)
+                .minSize(minSize)
+                .maxSize(maxSize)
+                .build());
+        applyStreamTimeout(request);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     /**
      * 调试接口 - 列出所有文件(不分页,不过滤)
      */
@@ -296,6 +495,34 @@ public class StorageController {
         try {
             String backendKey = storageService.getDefaultBackendKey();
 
+            // 元数据索引可用时直接在索引中搜索（子串查询走三元组倒排索引）
+            StorageConfigProperties.Backend backend = storageService.getBackend(backendKey);
+            var indexed = metadataIndexService.search(backendKey, backend, bucketName, prefix, keyword, maxResults);
+            if (indexed.isPresent()) {
+                KeySearchResult hits = indexed.get();
+                List<Map<String, Object>> files = new java.util.ArrayList<>(hits.getFiles().size());
+                for (FileItem item : hits.getFiles()) {
+                    Map<String, Object> fileInfo = new java.util.HashMap<>();
+                    fileInfo.put("key", item.getKey());
+                    fileInfo.put("size", item.getSize());
+                    fileInfo.put("lastModified", item.getLastModified());
+                    fileInfo.put("storageClass", item.getStorageClass());
+                    fileInfo.put("isFolder", false);
+                    files.add(fileInfo);
+                }
+                Map<String, Object> searchResult = new java.util.HashMap<>();
+                searchResult.put("files", files);
+                searchResult.put("totalFound", hits.getTotalFound());
+                searchResult.put("totalCapped", hits.getTotalCapped());
+                searchResult.put("keyword", keyword);
+                searchResult.put("source", "index");
+                searchResult.put("indexState", "READY");
+                searchResult.put("indexCrawledAt", hits.getIndexCrawledAt());
+                searchResult.put("indexAgeSeconds",
+                        java.time.Duration.between(hits.getIndexCrawledAt(), java.time.Instant.now()).getSeconds());
+                return Result.success(searchResult);
+            }
+
             FileListDTO listDTO = new FileListDTO();
             listDTO.setBackendName(backendKey);
             listDTO.setBucketName(bucketName);
@@ -337,6 +564,11 @@ public class StorageController {
             searchResult.put("files", matched.size() > maxResults ? matched.subList(0, maxResults) : matched);
             searchResult.put("totalFound", matched.size());
             searchResult.put("keyword", keyword);
+            // 索引不可用（未建立、过期或有未完成的更新），报告其状态
+            MetadataIndexStatus indexStatus = metadataIndexService.status(backend, bucketName);
+            searchResult.put("source", "s3");
+            searchResult.put("indexState", indexStatus.getState());
+            searchResult.put("indexCrawledAt", indexStatus.getCrawledAt());
 
             return Result.success(searchResult);
         } catch (Exception e) {
@@ -345,6 +577,74 @@ public class StorageController {
         }
     }
 
+    /**
+     * 按glob或正则搜索文件（NDJSON，匹配结果逐步写出）
+     *
+     * 带 pattern 参数时使用此接口，mode=glob（默认）或 regex。
+     * 模式的字面量前缀作为S3的prefix，{a,b} 分支和通配的子目录并发列出，只访问可能匹配的key；
+     * 如 pattern=logs/2026-*&#47;**.gz 只逐级列出 logs/2026- 开头的目录
+     */
+    @GetMapping(value = "/search", params = "pattern")
+    public ResponseEntity<StreamingResponseBody> searchByPattern(
+            @RequestParam(required = false) String bucketName,
+            @RequestParam String pattern,
+            @RequestParam(defaultValue = "glob") String mode,
+            @RequestParam(required = false) Long limit,
+            HttpServletRequest request) {
+        // 参数或模式错误在开始输出前以 StorageException 抛出，由全局异常处理返回 Result.error
+        StreamingResponseBody body = patternSearchService.search(PatternSearchQuery.builder()
+                .bucketName(bucketName)
+                .pattern(pattern)
+                .mode(mode)
+                .limit(limit)
+                .build());
+        applyStreamTimeout(request);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    /**
+     * 按元数据范围查询文件
+     *
+     * 如 ?prefix=logs/&minSize=1073741824&modifiedBefore=2026-07-01T00:00:00Z&storageClass=STANDARD&extension=gz；
+     * 存储类型和扩展名可传多个（逗号分隔），sort=key|size|lastModified，order=asc|desc。
+     * 索引可用时在内存中的列式快照上查询，否则遍历S3过滤
+     */
+    @GetMapping("/query")
+    public Result<ObjectRangeResult> queryFiles(
+            @RequestParam(required = false) String bucketName,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) Long minSize,
+            @RequestParam(required = false) Long maxSize,
+            @RequestParam(required = false) java.time.Instant modifiedAfter,
+            @RequestParam(required = false) java.time.Instant modifiedBefore,
+            @RequestParam(required = false) List<String> storageClass,
+            @RequestParam(required = false) List<String> extension,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "asc") String order,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            ObjectRangeResult result = objectQueryService.query(ObjectRangeQuery.builder()
+                    .bucketName(bucketName)
+                    .prefix(prefix)
+                    .minSize(minSize)
+                    .maxSize(maxSize)
+                    .modifiedAfter(modifiedAfter)
+                    .modifiedBefore(modifiedBefore)
+                    .storageClasses(storageClass)
+                    .extensions(extension)
+                    .sort(sort)
+                    .descending("desc".equalsIgnoreCase(order))
+                    .limit(limit)
+                    .build());
+            return Result.success(result);
+        } catch (Exception e) {
+            log.error("查询文件失败", e);
+            return Result.error("查询文件失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 获取文件的预签名URL（用于分享）
      */
@@ -547,4 +847,24 @@ public class StorageController {
             return Result.error("复制文件夹失败: " + e.getMessage());
         }
     }
+
+    /**
+     * 流式接口使用 storage.async.stream-timeout，而不是 spring.mvc.async.request-timeout，
+     * 避免大bucket的枚举在全局异步超时后被中断
+     */
+    private void applyStreamTimeout(HttpServletRequest request) {
+        AsyncWebRequest asyncWebRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncWebRequest != null) {
+            // 0 由容器视为不超时
+            asyncWebRequest.setTimeout(configProperties.getAsync().getStreamTimeout());
+        }
+    }
+
+    /**
+     * 从查询字符串读取参数（不经过 request.getParameter，避免触发 multipart 解析）
+     */
+    private String queryParam(HttpServletRequest request, String name) {
+        String value = ServletUriComponentsBuilder.fromRequest(request).build().getQueryParams().getFirst(name);
+        return value != null && !value.isEmpty() ? URLDecoder.decode(value, StandardCharsets.UTF_8) : null;
+    }
 }
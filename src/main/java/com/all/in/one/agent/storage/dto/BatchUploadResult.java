@@ -0,0 +1,70 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量上传结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchUploadResult {
+
+    private String backendName;
+
+    private String bucketName;
+
+    /**
+     * 目标前缀
+     */
+    private String prefix;
+
+    /**
+     * 请求中的文件数
+     */
+    private Integer total;
+
+    private Integer succeeded;
+
+    private Integer failed;
+
+    /**
+     * 上传成功的总字节数
+     */
+    private Long totalBytes;
+
+    private Long tookMillis;
+
+    /**
+     * 每个文件的结果，顺序与请求中的文件一致
+     */
+    private List<Item> files;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        /**
+         * 请求中的文件名（目录上传时为相对路径）
+         */
+        private String fileName;
+
+        private String objectKey;
+
+        private Long size;
+
+        private Boolean success;
+
+        /**
+         * 失败原因
+         */
+        private String error;
+    }
+}
@@ -49,6 +49,16 @@ public class FileItem implements Serializable {
      */
     private String contentType;
 
+    /**
+     * 存储类型（仅文件有）
+     */
+    private String storageClass;
+
+    /**
+     * 对象ETag（仅文件有）
+     */
+    private String etag;
+
     /**
      * 文件夹统计信息（仅文件夹有）
      */
@@ -21,6 +21,8 @@ public class FileListDTO {
 
     private String continuationToken;
 
+    private String startAfter;      // 从指定key之后开始列出（仅首页，V2为startAfter，V1为marker）
+
     // 分页参数（与S3 maxKeys对齐）
     private Integer pageSize = 100;  // 每页显示数量
 
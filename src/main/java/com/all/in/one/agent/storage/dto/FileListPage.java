@@ -0,0 +1,46 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 文件列表单页结果（/files/list 的类型化模型）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileListPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 当前页的文件夹
+     */
+    private List<FileItem> folders;
+
+    /**
+     * 当前页的文件
+     */
+    private List<FileItem> files;
+
+    /**
+     * 每页数量
+     */
+    private Integer pageSize;
+
+    /**
+     * 是否还有更多数据
+     */
+    private Boolean hasMore;
+
+    /**
+     * 下一页的 continuation token
+     */
+    private String nextContinuationToken;
+}
@@ -1,5 +1,6 @@
 package com.all.in.one.agent.storage.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -43,4 +44,10 @@ public class FileListResponse implements Serializable {
      * 是否来自缓存
      */
     private Boolean fromCache;
+
+    /**
+     * 页面内容摘要（由key、大小、修改时间、ETag和分页信息计算，作为HTTP ETag返回）
+     */
+    @JsonIgnore
+    private String etag;
 }
@@ -0,0 +1,39 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 元数据索引中的key搜索结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeySearchResult {
+
+    /**
+     * 命中的文件（按key排序，最多 maxResults 个）
+     */
+    private List<FileItem> files;
+
+    /**
+     * 命中总数（达到计数上限时停止计数）
+     */
+    private Integer totalFound;
+
+    /**
+     * 命中数达到计数上限，实际命中更多
+     */
+    private Boolean totalCapped;
+
+    /**
+     * 索引最近一次完整爬取的开始时间（此后本服务的写入已同步到索引）
+     */
+    private Instant indexCrawledAt;
+}
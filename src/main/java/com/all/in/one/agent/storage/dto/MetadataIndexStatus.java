@@ -0,0 +1,45 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 元数据索引状态
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetadataIndexStatus {
+
+    private String bucket;
+
+    /**
+     * DISABLED / EMPTY / CRAWLING / READY / STALE / TOO_LARGE
+     */
+    private String state;
+
+    /**
+     * 已索引的对象数
+     */
+    private Integer objectCount;
+
+    /**
+     * 最近一次完整爬取的开始时间
+     */
+    private Instant crawledAt;
+
+    /**
+     * 是否正在爬取
+     */
+    private Boolean crawling;
+
+    /**
+     * 尚未合并到快照的变更日志记录数
+     */
+    private Integer journalRecords;
+}
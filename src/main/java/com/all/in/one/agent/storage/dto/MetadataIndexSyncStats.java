@@ -0,0 +1,97 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 元数据索引增量同步指标
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetadataIndexSyncStats {
+
+    private String backendKey;
+
+    private String bucket;
+
+    /**
+     * 是否正在同步
+     */
+    private Boolean running;
+
+    /**
+     * 全部分区都已同步到的时间（索引反映S3状态的时间点）
+     */
+    private Instant syncedAt;
+
+    /**
+     * 同步滞后（秒）：当前时间与 syncedAt 之差
+     */
+    private Long syncLagSeconds;
+
+    /**
+     * 同步滞后最大的分区
+     */
+    private String laggingPrefix;
+
+    /**
+     * 分区数
+     */
+    private Integer partitions;
+
+    private Long cycles;
+
+    private Long failedCycles;
+
+    private Instant lastCycleAt;
+
+    private Long lastCycleMillis;
+
+    /**
+     * 最近一次同步遍历的分区数 / 因无变更而跳过的分区数
+     */
+    private Integer lastSyncedPartitions;
+
+    private Integer lastSkippedPartitions;
+
+    /**
+     * 最近一次同步列出的对象数、列表请求数以及吞吐（对象/秒）
+     */
+    private Long lastScanned;
+
+    private Long lastRequests;
+
+    private Long lastObjectsPerSecond;
+
+    private Integer lastAdded;
+
+    private Integer lastModified;
+
+    private Integer lastDeleted;
+
+    /**
+     * 最近一次同步中，因本服务同时写入而推迟到下一次同步的变更数
+     */
+    private Integer lastDeferred;
+
+    /**
+     * 最近一次同步发现的新增/修改中，对象修改时间到写入索引的最大延迟（毫秒）
+     */
+    private Long lastMaxChangeLagMillis;
+
+    private Long totalScanned;
+
+    private Long totalAdded;
+
+    private Long totalModified;
+
+    private Long totalDeleted;
+
+    private String lastError;
+}
@@ -0,0 +1,63 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 按元数据范围查询对象的参数（大小、修改时间、存储类型、扩展名）
+ */
+@Data
+@Builder
+public class ObjectRangeQuery {
+
+    private String backendName;
+
+    private String bucketName;
+
+    private String prefix;
+
+    /**
+     * 对象大小下限（字节，包含）
+     */
+    private Long minSize;
+
+    /**
+     * 对象大小上限（字节，包含）
+     */
+    private Long maxSize;
+
+    /**
+     * 修改时间下限（包含）
+     */
+    private Instant modifiedAfter;
+
+    /**
+     * 修改时间上限（不包含）
+     */
+    private Instant modifiedBefore;
+
+    /**
+     * 存储类型（如 STANDARD、GLACIER），为空不限制
+     */
+    private List<String> storageClasses;
+
+    /**
+     * 扩展名（如 gz、log，不区分大小写），为空不限制
+     */
+    private List<String> extensions;
+
+    /**
+     * 排序字段：key（默认）、size、lastModified
+     */
+    private String sort;
+
+    private boolean descending;
+
+    /**
+     * 返回的最大文件数（统计覆盖全部匹配）
+     */
+    private Integer limit;
+}
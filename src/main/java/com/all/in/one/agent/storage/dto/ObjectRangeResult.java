@@ -0,0 +1,58 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 按元数据范围查询的结果
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObjectRangeResult {
+
+    /**
+     * 匹配的文件（按请求的字段排序，最多 limit 个）
+     */
+    private List<FileItem> files;
+
+    /**
+     * 匹配总数
+     */
+    private Long totalFound;
+
+    /**
+     * 匹配文件的总字节数
+     */
+    private Long totalSize;
+
+    /**
+     * 是否因达到 limit 而未返回全部匹配
+     */
+    private Boolean truncated;
+
+    /**
+     * index（列式快照）或 s3（索引不可用时遍历S3）
+     */
+    private String source;
+
+    /**
+     * 从S3遍历时是否因达到最大页数而提前停止（统计不完整）
+     */
+    private Boolean scanLimited;
+
+    private Instant indexCrawledAt;
+
+    /**
+     * 所用列式快照的构建时间，此后的新增对象不在结果中（删除和修改已按索引当前状态校正）
+     */
+    private Instant columnsBuiltAt;
+
+    private Long tookMillis;
+}
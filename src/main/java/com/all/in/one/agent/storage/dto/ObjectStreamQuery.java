@@ -0,0 +1,43 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 对象流式枚举查询参数
+ */
+@Data
+@Builder
+public class ObjectStreamQuery {
+
+    private String backendName;
+
+    private String bucketName;
+
+    private String prefix;
+
+    /**
+     * 为空时平铺列出前缀下的所有对象；为 "/" 时只列出一级对象和子前缀
+     */
+    private String delimiter;
+
+    /**
+     * 从指定key之后开始（用于断点续传，取上次结束行的 nextStartAfter）
+     */
+    private String startAfter;
+
+    /**
+     * 最多输出的条目数（对象+前缀），为空表示不限制
+     */
+    private Long limit;
+
+    /**
+     * 对象大小下限（字节，包含）
+     */
+    private Long minSize;
+
+    /**
+     * 对象大小上限（字节，包含）
+     */
+    private Long maxSize;
+}
@@ -0,0 +1,31 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * glob/正则搜索查询参数
+ */
+@Data
+@Builder
+public class PatternSearchQuery {
+
+    private String backendName;
+
+    private String bucketName;
+
+    /**
+     * 匹配模式，如 logs/2026-*&#47;**.gz 或 ^logs/2026-\d{2}/.*\.gz$
+     */
+    private String pattern;
+
+    /**
+     * glob（默认）或 regex
+     */
+    private String mode;
+
+    /**
+     * 最多输出的匹配数，为空表示不限制
+     */
+    private Long limit;
+}
@@ -0,0 +1,57 @@
+package com.all.in.one.agent.storage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * 断点续传会话
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionInfo {
+
+    private String sessionId;
+
+    private String backendName;
+
+    private String bucketName;
+
+    private String objectKey;
+
+    private String fileName;
+
+    private String contentType;
+
+    /**
+     * 文件总大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 服务端已收到的字节数，下一个分块应从该偏移量开始
+     */
+    private Long offset;
+
+    /**
+     * 分片大小：已上传到S3的数据按该大小切分，建议客户端分块大小取其整数倍
+     */
+    private Integer partSize;
+
+    /**
+     * 已上传到S3的分片数
+     */
+    private Integer partsUploaded;
+
+    private Instant createdAt;
+
+    /**
+     * 闲置到该时间后会话过期，已上传的分片被中止
+     */
+    private Instant expiresAt;
+}
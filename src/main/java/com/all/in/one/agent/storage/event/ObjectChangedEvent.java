@@ -0,0 +1,55 @@
+package com.all.in.one.agent.storage.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 对象变更事件
+ *
+ * 由 StorageService 的写操作（上传、删除、重命名、复制、创建文件夹）在成功后同步发布，
+ * 监听方据此按前缀失效缓存。objectKey 以 '/' 结尾表示整个文件夹发生了变化
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ObjectChangedEvent {
+
+    /**
+     * 存储后端key
+     */
+    private final String backendKey;
+
+    /**
+     * 存储桶
+     */
+    private final String bucketName;
+
+    /**
+     * 变更的对象key或文件夹前缀
+     */
+    private final String objectKey;
+
+    /**
+     * 是否为文件夹级别的变更
+     */
+    public boolean isFolder() {
+        return objectKey.endsWith("/");
+    }
+
+    /**
+     * 直接包含该对象的目录前缀（根目录为空字符串）
+     */
+    public String getParentPrefix() {
+        return parentOf(objectKey);
+    }
+
+    /**
+     * 计算key所在目录的前缀
+     */
+    public static String parentOf(String key) {
+        String path = key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash >= 0 ? path.substring(0, lastSlash + 1) : "";
+    }
+}
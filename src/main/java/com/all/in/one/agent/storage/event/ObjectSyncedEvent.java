@@ -0,0 +1,32 @@
+package com.all.in.one.agent.storage.event;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 增量同步发现的对象变更
+ *
+ * 由元数据索引的定时同步在把差异写入索引后发布，对应绕过本服务直接写入S3的改动。
+ * 作为 ObjectChangedEvent 的子类，缓存监听方按同样的规则失效；
+ * 索引自身的监听方忽略该事件（差异已写入索引）
+ */
+@Getter
+@ToString(callSuper = true)
+public class ObjectSyncedEvent extends ObjectChangedEvent {
+
+    /**
+     * 变更类型
+     */
+    public enum ChangeType {
+        ADDED,
+        MODIFIED,
+        DELETED
+    }
+
+    private final ChangeType changeType;
+
+    public ObjectSyncedEvent(String backendKey, String bucketName, String objectKey, ChangeType changeType) {
+        super(backendKey, bucketName, objectKey);
+        this.changeType = changeType;
+    }
+}
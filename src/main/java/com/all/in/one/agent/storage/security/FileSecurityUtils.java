@@ -1,5 +1,6 @@
 package com.all.in.one.agent.storage.security;
 
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
@@ -25,8 +26,11 @@ public class FileSecurityUtils {
         "exe", "bat", "cmd", "com", "pif", "scr", "jar", "js", "vbs", "sh"
     );
 
-    // 最大文件大小 (100MB)
-    private static final long MAX_FILE_SIZE = 100 * 1024 * 1024;
+    private final StorageConfigProperties configProperties;
+
+    public FileSecurityUtils(StorageConfigProperties configProperties) {
+        this.configProperties = configProperties;
+    }
 
     /**
      * 验证文件是否安全
@@ -36,8 +40,8 @@ public class FileSecurityUtils {
             return false;
         }
 
-        // 检查文件大小
-        if (fileSize > MAX_FILE_SIZE) {
+        // 检查文件大小（storage.upload.max-file-size）
+        if (fileSize > configProperties.getUpload().getMaxFileSize()) {
             return false;
         }
 
@@ -0,0 +1,20 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.BatchUploadResult;
+
+import java.io.InputStream;
+
+/**
+ * 批量上传服务
+ */
+public interface BatchUploadService {
+
+    /**
+     * 从 multipart 请求体中逐个读取文件并发上传到S3，返回每个文件的结果
+     *
+     * 请求体中位于文件之前的表单字段 bucketName、prefix 覆盖参数值；
+     * preservePaths 为 true 时文件名中的相对路径（目录上传）保留为 prefix 下的子目录
+     */
+    BatchUploadResult upload(InputStream body, String contentType, String backendName, String bucketName,
+                             String prefix, boolean preservePaths);
+}
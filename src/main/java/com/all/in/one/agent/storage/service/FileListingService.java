@@ -0,0 +1,29 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.dto.FolderStats;
+
+/**
+ * 文件列表缓存服务接口（/api/storage/v2）
+ */
+public interface FileListingService {
+
+    /**
+     * 获取混合列表（文件夹+文件），优先从缓存读取
+     *
+     * 同一 bucket/prefix/token 的并发未命中只会触发一次S3调用
+     */
+    FileListResponse listFiles(String backendKey, String bucket, String prefix, String continuationToken, int pageSize);
+
+    /**
+     * 预热：指定页不在缓存中时从S3加载并写入缓存
+     *
+     * 加载在调用线程上执行，预读线程池的优先级和并发上限因此对加载本身生效
+     */
+    void warm(String backendKey, String bucket, String prefix, String continuationToken, int pageSize);
+
+    /**
+     * 计算文件夹统计信息（带缓存）
+     */
+    FolderStats folderStats(String backendKey, String bucket, String prefix);
+}
@@ -0,0 +1,14 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.FileListResponse;
+
+/**
+ * 列表预读服务接口
+ */
+public interface ListingPrefetchService {
+
+    /**
+     * 一页列表返回后，在后台预加载下一页和前几个子文件夹的首页
+     */
+    void afterPageServed(String backendKey, String bucket, String prefix, int pageSize, FileListResponse page);
+}
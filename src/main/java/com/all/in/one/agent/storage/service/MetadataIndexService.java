@@ -0,0 +1,95 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.dto.FolderStats;
+import com.all.in.one.agent.storage.dto.KeySearchResult;
+import com.all.in.one.agent.storage.dto.MetadataIndexStatus;
+import com.all.in.one.agent.storage.dto.ObjectRangeQuery;
+import com.all.in.one.agent.storage.dto.ObjectRangeResult;
+import com.all.in.one.agent.storage.util.ObjectMetadataIndex;
+
+import java.util.NavigableMap;
+import java.util.Optional;
+
+/**
+ * 对象元数据索引服务接口
+ *
+ * 查询方法在索引可用（已完成爬取、未超过 maxAge、相关前缀没有未完成的更新）时返回结果，
+ * 否则返回 empty 由调用方回退到S3，同时在后台开始爬取
+ */
+public interface MetadataIndexService {
+
+    /**
+     * 从索引读取一页混合列表（文件夹+文件，未排序）
+     *
+     * @param continuationToken 上一页返回的索引分页token，S3的token不会由索引处理
+     */
+    Optional<FileListResponse> listFiles(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                                         String prefix, String continuationToken, int pageSize);
+
+    /**
+     * 从索引读取文件夹统计（递归，包含全部子孙对象）
+     *
+     * 文件夹（空字符串或以 '/' 结尾）直接读取汇总树，与文件夹内的对象数无关；其他前缀按范围累加
+     */
+    Optional<FolderStats> folderStats(String backendKey, StorageConfigProperties.Backend backend, String bucket, String prefix);
+
+    /**
+     * 在索引中按key搜索文件（忽略大小写的包含匹配）
+     *
+     * 使用三元组倒排索引，搜索索引尚未构建时扫描前缀范围；取到 maxResults 个结果、
+     * 命中计数达到上限后即停止，totalFound 此时为上限值
+     */
+    Optional<KeySearchResult> search(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                                    String prefix, String keyword, int maxResults);
+
+    /**
+     * 在索引中按大小、修改时间、存储类型、扩展名过滤文件
+     *
+     * 使用列式快照，按候选最少的范围条件遍历；快照过时时按索引当前状态校正结果并在后台重建，
+     * 快照尚未构建时扫描索引的前缀范围
+     */
+    Optional<ObjectRangeResult> rangeQuery(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                                           ObjectRangeQuery query);
+
+    /**
+     * 索引中前缀下的所有条目（按key排序的只读视图），供需要自行遍历的查询（如glob/正则搜索）使用
+     */
+    Optional<NavigableMap<String, ObjectMetadataIndex.Entry>> range(String backendKey, StorageConfigProperties.Backend backend,
+                                                                    String bucket, String prefix);
+
+    /**
+     * 是否为索引生成的分页token
+     */
+    boolean isIndexToken(String continuationToken);
+
+    /**
+     * 索引分页token对应的S3 startAfter（索引不可用时，调用方据此从S3继续分页），非索引token返回null
+     */
+    String startAfterOf(String continuationToken);
+
+    /**
+     * 在后台开始完整爬取（已在爬取时忽略）
+     *
+     * @return 是否提交了新的爬取
+     */
+    boolean crawl(String backendKey, StorageConfigProperties.Backend backend, String bucket);
+
+    /**
+     * 在后台用 S3 Inventory 清单重建索引（代替完整爬取，几千万对象的bucket可在数分钟内建立索引）
+     *
+     * 清单反映的是其生成时的状态，导入完成后立即开始一次增量同步补齐之后的改动
+     *
+     * @param bucket   被清点的bucket，为空时使用清单中的 sourceBucket
+     * @param manifest s3://bucket/.../manifest.json 或本地清单目录下的 manifest.json
+     * @return 是否提交了导入（已在爬取或导入时返回false）
+     * @throws com.all.in.one.agent.storage.exception.StorageException 清单无法读取、格式不支持或与bucket不符
+     */
+    boolean importInventory(String backendKey, StorageConfigProperties.Backend backend, String bucket, String manifest);
+
+    /**
+     * 索引状态
+     */
+    MetadataIndexStatus status(StorageConfigProperties.Backend backend, String bucket);
+}
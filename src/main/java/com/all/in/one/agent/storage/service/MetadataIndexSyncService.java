@@ -0,0 +1,34 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.MetadataIndexSyncStats;
+import com.all.in.one.agent.storage.util.ObjectMetadataIndex;
+
+import java.util.List;
+
+/**
+ * 元数据索引增量同步服务接口
+ *
+ * 对已完成爬取的索引定时按前缀分区遍历S3，与索引比较 ETag/大小/修改时间，
+ * 把新增、修改、删除写入索引并发布 ObjectSyncedEvent，
+ * 使绕过本服务直接写入S3的改动在一个同步周期内可见
+ */
+public interface MetadataIndexSyncService {
+
+    /**
+     * 开始定时同步该索引（已登记时忽略）
+     */
+    void register(String backendKey, StorageConfigProperties.Backend backend, String bucket, ObjectMetadataIndex index);
+
+    /**
+     * 立即在后台同步一次（所有分区，不考虑无变更分区的退避）
+     *
+     * @return 是否提交了同步；索引尚未完成爬取或同步未启用时返回false
+     */
+    boolean sync(String backendKey, StorageConfigProperties.Backend backend, String bucket);
+
+    /**
+     * 所有已登记索引的同步指标
+     */
+    List<MetadataIndexSyncStats> stats();
+}
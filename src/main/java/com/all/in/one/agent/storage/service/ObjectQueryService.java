@@ -0,0 +1,18 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.ObjectRangeQuery;
+import com.all.in.one.agent.storage.dto.ObjectRangeResult;
+
+/**
+ * 按元数据范围查询对象的服务接口
+ *
+ * 元数据索引可用时在内存中的列式快照上查询；不可用时回退到遍历S3并逐个过滤
+ * （同时在后台开始爬取，之后的查询使用索引）
+ */
+public interface ObjectQueryService {
+
+    /**
+     * @throws com.all.in.one.agent.storage.exception.StorageException 参数错误
+     */
+    ObjectRangeResult query(ObjectRangeQuery query);
+}
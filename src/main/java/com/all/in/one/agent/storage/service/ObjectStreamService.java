@@ -0,0 +1,23 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.ObjectStreamQuery;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * 对象流式枚举服务接口
+ *
+ * 每收到一页S3结果就逐行写出（NDJSON），内存占用与bucket大小无关
+ */
+public interface ObjectStreamService {
+
+    /**
+     * 校验参数并返回输出体；后端、bucket等参数错误在返回前以 StorageException 抛出
+     *
+     * 输出格式（每行一个JSON对象）：
+     * - {"type":"object","key":...,"size":...,"lastModified":...,"etag":...,"storageClass":...}
+     * - {"type":"prefix","key":...}（仅delimiter模式）
+     * - 最后一行 {"type":"end","count":...,"truncated":...,"nextStartAfter":...}
+     *   或出错时 {"type":"error","message":...}
+     */
+    StreamingResponseBody stream(ObjectStreamQuery query);
+}
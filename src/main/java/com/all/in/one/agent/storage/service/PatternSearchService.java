@@ -0,0 +1,24 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.PatternSearchQuery;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * glob/正则搜索服务接口
+ *
+ * 从模式中提取最长字面量前缀作为S3的prefix，相互独立的分支（{a,b}、正则的顶层 '|'）
+ * 和glob中通配的子目录并发列出，只访问模式可能匹配的key范围；匹配结果逐行写出（NDJSON）。
+ * 元数据索引可用时在索引的前缀范围内匹配，不访问S3
+ */
+public interface PatternSearchService {
+
+    /**
+     * 校验参数、编译模式并返回输出体；参数或模式错误在返回前以 StorageException 抛出
+     *
+     * 输出格式（每行一个JSON对象，多个分支并发列出，匹配结果不保证按key排序）：
+     * - {"type":"object","key":...,"size":...,"lastModified":...,"etag":...,"storageClass":...}
+     * - 最后一行 {"type":"end","count":...,"scanned":...,"requests":...,"truncated":...,"source":...,"prefixes":[...]}
+     *   或出错时 {"type":"error","message":...}
+     */
+    StreamingResponseBody search(PatternSearchQuery query);
+}
@@ -0,0 +1,42 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.UploadSessionInfo;
+
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * 断点续传服务
+ *
+ * 客户端创建会话后按顺序发送分块，每个分块从服务端当前偏移量开始；
+ * 连接中断后查询偏移量，只需从该位置继续发送。服务端收到的数据每满一个分片即上传为 S3 分片，
+ * 不足一个分片的部分保存在本地磁盘，会话状态在重启后恢复
+ */
+public interface ResumableUploadService {
+
+    /**
+     * 创建上传会话
+     */
+    UploadSessionInfo create(String backendName, String bucketName, String objectKey, String fileName,
+                             long fileSize, String contentType);
+
+    /**
+     * 查询会话状态（当前偏移量）
+     */
+    UploadSessionInfo status(String sessionId);
+
+    /**
+     * 写入一个分块，offset 必须等于服务端当前偏移量；连接中断时已收到的数据仍然保留
+     */
+    UploadSessionInfo uploadChunk(String sessionId, long offset, InputStream body);
+
+    /**
+     * 全部数据收到后完成上传，返回上传结果
+     */
+    Map<String, Object> complete(String sessionId);
+
+    /**
+     * 取消上传，中止已上传的分片
+     */
+    void abort(String sessionId);
+}
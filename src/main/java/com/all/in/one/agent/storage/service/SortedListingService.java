@@ -0,0 +1,20 @@
+package com.all.in.one.agent.storage.service;
+
+import com.all.in.one.agent.storage.dto.FileListResponse;
+
+/**
+ * 整个目录范围内的排序/过滤列表服务接口
+ */
+public interface SortedListingService {
+
+    /**
+     * 按指定字段对目录下的全部条目排序后分页
+     *
+     * @param sort   排序字段：name | size | lastModified
+     * @param order  asc | desc
+     * @param filter 名称过滤（忽略大小写的包含匹配），可为空
+     * @param cursor 上一页返回的 nextContinuationToken（不透明游标），首页为空
+     */
+    FileListResponse list(String backendKey, String bucket, String prefix, String sort, String order,
+                          String filter, String cursor, int pageSize);
+}
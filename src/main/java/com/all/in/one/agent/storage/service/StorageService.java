@@ -2,11 +2,14 @@ package com.all.in.one.agent.storage.service;
 
 import com.all.in.one.agent.storage.config.StorageConfigProperties;
 import com.all.in.one.agent.storage.dto.FileListDTO;
+import com.all.in.one.agent.storage.dto.FileListPage;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 存储服务接口
@@ -43,6 +46,14 @@ public interface StorageService {
      */
     Map<String, Object> uploadFile(MultipartFile file, String backendName, String bucketName, String objectKey);
 
+    /**
+     * 流式上传 multipart 请求体：逐个解析文件部分并直接分片写入S3，不经过内存或临时文件缓存
+     *
+     * 请求体中位于文件之前的表单字段 bucketName、objectKey 覆盖参数值，objectKey 只作用于下一个文件
+     */
+    List<Map<String, Object>> uploadStream(InputStream body, String contentType, String backendName,
+                                           String bucketName, String objectKey);
+
     /**
      * 下载文件
      */
@@ -53,6 +64,11 @@ public interface StorageService {
      */
     Map<String, Object> listFiles(FileListDTO listDTO);
 
+    /**
+     * 获取文件列表（类型化结果，供流式输出使用）
+     */
+    FileListPage listFilePage(FileListDTO listDTO);
+
     /**
      * 删除文件
      */
@@ -90,6 +106,8 @@ public interface StorageService {
 
     /**
      * 计算文件夹大小（递归计算所有子文件）
+     *
+     * 元数据索引可用时直接读取文件夹汇总，否则遍历文件夹下的所有对象
      */
     long calculateFolderSize(String backendName, String bucketName, String folderPath);
 
@@ -113,4 +131,24 @@ public interface StorageService {
      * @return 复制的文件数量
      */
     int copyFolder(String backendName, String sourceBucket, String sourceFolderPath, String targetBucket, String targetFolderPath);
+
+    /**
+     * 获取文件列表（异步，基于S3AsyncClient，不占用请求线程）
+     */
+    CompletableFuture<Map<String, Object>> listFilesAsync(FileListDTO listDTO);
+
+    /**
+     * 上传文件（异步）
+     */
+    CompletableFuture<Map<String, Object>> uploadFileAsync(MultipartFile file, String backendName, String bucketName, String objectKey);
+
+    /**
+     * 复制文件（异步）
+     */
+    CompletableFuture<Void> copyFileAsync(String backendName, String sourceBucket, String sourceKey, String targetBucket, String targetKey);
+
+    /**
+     * 删除文件或文件夹（异步，文件夹会递归删除）
+     */
+    CompletableFuture<Void> deleteFileAsync(String backendName, String bucketName, String objectKey);
 }
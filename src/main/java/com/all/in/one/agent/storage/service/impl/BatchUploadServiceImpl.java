@@ -0,0 +1,277 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.BatchUploadResult;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.security.FileSecurityUtils;
+import com.all.in.one.agent.storage.service.BatchUploadService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.MultipartStreamReader;
+import com.all.in.one.agent.storage.util.ObjectWriteSupport;
+import com.all.in.one.agent.storage.util.S3ClientRegistry;
+import com.all.in.one.agent.storage.util.S3MultipartUploader;
+import com.all.in.one.agent.storage.util.SizeLimitInputStream;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量上传服务实现
+ *
+ * 请求线程用 MultipartStreamReader 顺序解析请求体，小文件读入内存后交给共享线程池并发 putObject，
+ * 请求线程随即继续解析下一个文件，上传耗时与往返次数重叠；每个请求同时上传的文件数和在内存中等待的字节数有上限，
+ * 达到上限时暂停读取请求体（背压）。
+ *
+ * 超过分片阈值的文件不进入内存，在请求线程上直接分片流式上传（分片仍并发），期间已提交的小文件继续上传。
+ * 存储桶只检查一次，单个文件失败不影响其他文件
+ */
+@Slf4j
+@Service
+public class BatchUploadServiceImpl implements BatchUploadService {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_FORM_FIELD_BYTES = 4096;
+
+    private final StorageService storageService;
+    private final S3ClientRegistry clientRegistry;
+    private final S3MultipartUploader multipartUploader;
+    private final FileSecurityUtils fileSecurityUtils;
+    private final ObjectWriteSupport writeSupport;
+    private final StorageConfigProperties configProperties;
+    private final StorageConfigProperties.BatchUpload properties;
+
+    private final ThreadPoolExecutor executor;
+
+    public BatchUploadServiceImpl(StorageService storageService, S3ClientRegistry clientRegistry,
+                                  S3MultipartUploader multipartUploader, FileSecurityUtils fileSecurityUtils,
+                                  ObjectWriteSupport writeSupport,
+                                  StorageConfigProperties configProperties) {
+        this.storageService = storageService;
+        this.clientRegistry = clientRegistry;
+        this.multipartUploader = multipartUploader;
+        this.fileSecurityUtils = fileSecurityUtils;
+        this.writeSupport = writeSupport;
+        this.configProperties = configProperties;
+        this.properties = configProperties.getBatchUpload();
+
+        // 每个请求的并发数由信号量限制，队列不设上限
+        int threads = Math.max(1, properties.getThreads());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "batch-upload-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public BatchUploadResult upload(InputStream body, String contentType, String backendName, String bucketName,
+                                    String prefix, boolean preservePaths) {
+        long start = System.currentTimeMillis();
+        StorageConfigProperties.Backend backend = storageService.getBackend(backendName);
+        MultipartStreamReader reader = new MultipartStreamReader(body,
+                MultipartStreamReader.boundary(contentType), STREAM_BUFFER_SIZE);
+        S3Client s3Client = clientRegistry.getClient(backendName, backend);
+
+        long maxFileSize = configProperties.getUpload().getMaxFileSize();
+        int maxBuffered = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, properties.getMaxBufferedBytes()));
+        boolean streaming = multipartUploader.isMultipart(backend, -1);
+        // 读入内存的文件大小上限：超过后分片流式上传，后端未启用分片上传时直接拒绝
+        long memoryLimit = Math.min(Math.min(maxBuffered, maxFileSize),
+                streaming ? backend.getMultipart().getThreshold() : Long.MAX_VALUE);
+
+        Semaphore slots = new Semaphore(Math.max(1, properties.getConcurrency()));
+        Semaphore bufferedBytes = new Semaphore(maxBuffered);
+        List<BatchUploadResult.Item> items = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        Set<String> ensuredBuckets = new HashSet<>();
+
+        String actualBucketName = StringUtils.hasText(bucketName) ? bucketName : backend.getDefaultBucket();
+        String actualPrefix = normalizePrefix(prefix);
+        try {
+            MultipartStreamReader.Part part;
+            while ((part = reader.next()) != null) {
+                if (!part.isFile()) {
+                    String value = part.readString(MAX_FORM_FIELD_BYTES).trim();
+                    if ("bucketName".equals(part.getName()) && StringUtils.hasText(value)) {
+                        actualBucketName = value;
+                    } else if ("prefix".equals(part.getName())) {
+                        actualPrefix = normalizePrefix(value);
+                    }
+                    continue;
+                }
+                if (part.getFilename().isEmpty()) {
+                    continue;
+                }
+                if (items.size() >= properties.getMaxFiles()) {
+                    throw new StorageException("单次最多上传 " + properties.getMaxFiles() + " 个文件");
+                }
+
+                BatchUploadResult.Item item = BatchUploadResult.Item.builder()
+                        .fileName(part.getFilename())
+                        .success(false)
+                        .build();
+                items.add(item);
+                String objectKey = objectKey(actualPrefix, part.getFilename(), preservePaths);
+                if (objectKey == null || !fileSecurityUtils.isFileSecure(objectKey.substring(objectKey.lastIndexOf('/') + 1), 0)) {
+                    item.setError("文件类型不安全");
+                    continue;
+                }
+                item.setObjectKey(objectKey);
+                String bucket = actualBucketName;
+                if (ensuredBuckets.add(bucket)) {
+                    writeSupport.ensureBucket(s3Client, bucket);
+                }
+                S3MultipartUploader.UploadRequest request = S3MultipartUploader.UploadRequest.builder()
+                        .bucket(bucket)
+                        .key(objectKey)
+                        .contentType(part.getContentType())
+                        .build();
+
+                byte[] head = part.getInputStream().readNBytes((int) memoryLimit + 1);
+                if (head.length > memoryLimit) {
+                    if (!streaming) {
+                        item.setError("文件过大");
+                        continue;
+                    }
+                    // 大文件：在请求线程上边读边分片上传
+                    try {
+                        S3MultipartUploader.UploadResult uploaded = multipartUploader.upload(backendName, backend, request,
+                                new SizeLimitInputStream(new SequenceInputStream(new ByteArrayInputStream(head),
+                                        part.getInputStream()), maxFileSize));
+                        item.setSize(uploaded.getSize());
+                        item.setSuccess(true);
+                        writeSupport.onObjectChanged(backendName, bucket, objectKey);
+                    } catch (Exception e) {
+                        log.warn("批量上传文件失败 - bucket: {}, key: {}: {}", bucket, objectKey, e.getMessage());
+                        item.setError(e.getMessage());
+                    }
+                    continue;
+                }
+
+                int permits = Math.max(1, head.length);
+                slots.acquire();
+                bufferedBytes.acquire(permits);
+                futures.add(executor.submit(() -> {
+                    try {
+                        multipartUploader.putObject(backendName, backend, request, head, head.length);
+                        item.setSize((long) head.length);
+                        item.setSuccess(true);
+                        writeSupport.onObjectChanged(backendName, bucket, objectKey);
+                    } catch (Exception e) {
+                        log.warn("批量上传文件失败 - bucket: {}, key: {}: {}", bucket, objectKey, e.getMessage());
+                        item.setError(e.getMessage());
+                    } finally {
+                        bufferedBytes.release(permits);
+                        slots.release();
+                    }
+                }));
+            }
+        } catch (StorageException e) {
+            awaitAll(futures);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            awaitAll(futures);
+            throw new RuntimeException("批量上传被中断");
+        } catch (Exception e) {
+            awaitAll(futures);
+            log.error("批量上传失败 - backend: {}, bucket: {}, 已读取文件: {}", backendName, actualBucketName, items.size(), e);
+            throw new RuntimeException("批量上传失败: " + e.getMessage());
+        }
+        awaitAll(futures);
+
+        int succeeded = 0;
+        long totalBytes = 0;
+        for (BatchUploadResult.Item item : items) {
+            if (Boolean.TRUE.equals(item.getSuccess())) {
+                succeeded++;
+                totalBytes += item.getSize();
+            }
+        }
+        long tookMillis = System.currentTimeMillis() - start;
+        log.info("批量上传完成 - bucket: {}, prefix: {}, 文件: {}, 成功: {}, 大小: {}, 耗时: {}ms",
+                actualBucketName, actualPrefix, items.size(), succeeded, totalBytes, tookMillis);
+        return BatchUploadResult.builder()
+                .backendName(backendName)
+                .bucketName(actualBucketName)
+                .prefix(actualPrefix)
+                .total(items.size())
+                .succeeded(succeeded)
+                .failed(items.size() - succeeded)
+                .totalBytes(totalBytes)
+                .tookMillis(tookMillis)
+                .files(items)
+                .build();
+    }
+
+    /**
+     * 生成对象key：保留路径时按段清理文件名，去掉空段、"." 和 ".."；没有可用文件名时返回 null
+     */
+    private String objectKey(String prefix, String fileName, boolean preservePaths) {
+        String[] segments = fileName.replace('\\', '/').split("/");
+        StringBuilder key = new StringBuilder(prefix);
+        int from = preservePaths ? 0 : segments.length - 1;
+        boolean hasName = false;
+        for (int i = Math.max(0, from); i < segments.length; i++) {
+            String segment = segments[i].trim();
+            if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment)) {
+                continue;
+            }
+            if (hasName) {
+                key.append('/');
+            }
+            key.append(fileSecurityUtils.sanitizeFilename(segment));
+            hasName = true;
+        }
+        return hasName ? key.toString() : null;
+    }
+
+    private String normalizePrefix(String prefix) {
+        if (!StringUtils.hasText(prefix)) {
+            return "";
+        }
+        String normalized = prefix.trim().replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        return normalized.isEmpty() || normalized.endsWith("/") ? normalized : normalized + "/";
+    }
+
+    private void awaitAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ignored) {
+                // 任务内已记录到文件结果
+            }
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileItem;
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.dto.FolderStats;
+import com.all.in.one.agent.storage.event.ObjectChangedEvent;
+import com.all.in.one.agent.storage.service.FileListingService;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import com.all.in.one.agent.storage.util.S3ParallelLister;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 文件列表缓存服务实现类
+ *
+ * 列表和统计的加载放在独立的Bean中，保证经过Spring代理，缓存真正生效。
+ * 缓存未命中时通过 Caffeine 的原子加载合并并发请求：
+ * 同一个key只有一个线程访问S3，其余线程等待并共享结果
+ *
+ * 元数据索引可用时列表和统计直接读取索引，否则访问S3
+ *
+ * fileList 缓存由本服务构建并注册到 CacheManager（清除缓存接口仍然有效）：
+ * - 未命中在调用线程上加载（用户请求线程或预读线程），不占用公共线程池
+ * - 写入超过 listRefreshAfter 后的访问立即返回旧数据，同时在有界线程池中后台刷新
+ * - 过期时间按前缀覆盖（StorageConfigProperties.Cache.prefixTtls），热目录短、归档目录长
+ */
+@Slf4j
+@Service
+public class FileListingServiceImpl implements FileListingService {
+
+    static final String FILE_LIST_CACHE = "fileList";
+    static final String FOLDER_STATS_CACHE = "folderStats";
+
+    private final StorageService storageService;
+    private final S3ObjectLister objectLister;
+    private final S3ParallelLister parallelLister;
+    private final CacheManager cacheManager;
+    private final StorageConfigProperties.Cache cacheProperties;
+    private final MetadataIndexService metadataIndexService;
+
+    /**
+     * 后台刷新线程池（有界队列，队列满时放弃本次刷新）
+     */
+    private final ThreadPoolExecutor refreshExecutor;
+
+    public FileListingServiceImpl(StorageService storageService, S3ObjectLister objectLister, S3ParallelLister parallelLister,
+                                  CacheManager cacheManager, StorageConfigProperties configProperties,
+                                  MetadataIndexService metadataIndexService) {
+        this.storageService = storageService;
+        this.objectLister = objectLister;
+        this.parallelLister = parallelLister;
+        this.cacheManager = cacheManager;
+        this.cacheProperties = configProperties.getCache();
+        this.metadataIndexService = metadataIndexService;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, cacheProperties.getListRefreshThreads());
+        this.refreshExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, cacheProperties.getListRefreshQueueSize())),
+                r -> {
+                    Thread thread = new Thread(r, "file-list-refresh-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        if (cacheManager instanceof CaffeineCacheManager caffeineCacheManager) {
+            caffeineCacheManager.registerCustomCache(FILE_LIST_CACHE, buildFileListCache());
+        } else {
+            log.warn("CacheManager不是Caffeine实现，文件列表缓存不启用后台刷新");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    @Override
+    public FileListResponse listFiles(String backendKey, String bucket, String prefix, String continuationToken, int pageSize) {
+        FileListKey key = new FileListKey(backendKey, bucket, prefix != null ? prefix : "",
+                continuationToken != null ? continuationToken : "", pageSize);
+
+        // 需要区分命中/未命中以设置 fromCache，因此直接使用 Cache.get(key, loader)，
+        // CaffeineCache 对同一key的加载是原子的（单飞）
+        boolean[] loaded = {false};
+        FileListResponse response;
+        try {
+            response = fileListCache().get(key, () -> {
+                loaded[0] = true;
+                return load(key);
+            });
+        } catch (Cache.ValueRetrievalException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+
+        if (loaded[0]) {
+            return response;
+        }
+        // 缓存中的对象是共享的，命中时返回副本
+        return FileListResponse.builder()
+                .items(response.getItems())
+                .nextContinuationToken(response.getNextContinuationToken())
+                .isTruncated(response.getIsTruncated())
+                .totalCount(response.getTotalCount())
+                .fromCache(true)
+                .etag(response.getEtag())
+                .build();
+    }
+
+    @Override
+    public void warm(String backendKey, String bucket, String prefix, String continuationToken, int pageSize) {
+        FileListKey key = new FileListKey(backendKey, bucket, prefix != null ? prefix : "",
+                continuationToken != null ? continuationToken : "", pageSize);
+        // 已缓存时直接返回；未命中时在调用方（预读线程）上加载，与用户请求同时未命中时共享同一次加载
+        fileListCache().get(key, () -> load(key));
+    }
+
+    /**
+     * 计算文件夹统计信息（带缓存，sync 保证并发未命中只计算一次）
+     *
+     * 索引可用时读取汇总树；否则并行遍历整个前缀，结果对任意大小的文件夹都是准确的
+     *
+     * 失败时抛出异常而不是返回空统计，避免失败结果在整个过期时间内被缓存
+     */
+    @Override
+    @Cacheable(
+        value = FOLDER_STATS_CACHE,
+        key = "#backendKey + ':' + #bucket + ':' + #prefix",
+        sync = true
+    )
+    public FolderStats folderStats(String backendKey, String bucket, String prefix) {
+        try {
+            log.debug("计算文件夹统计 - bucket: {}, prefix: {}", bucket, prefix);
+
+            var backend = storageService.getBackend(backendKey);
+
+            var indexed = metadataIndexService.folderStats(backendKey, backend, bucket, prefix);
+            if (indexed.isPresent()) {
+                return indexed.get();
+            }
+
+            long[] totals = {0L, 0L};
+            parallelLister.walk(backendKey, backend, bucket, prefix, page -> {
+                for (S3Object s3Object : page.getContents()) {
+                    if (!s3Object.key().endsWith("/")) {
+                        totals[0]++;
+                        totals[1] += s3Object.size();
+                    }
+                }
+            });
+
+            return FolderStats.builder()
+                    .fileCount(Math.toIntExact(totals[0]))
+                    .totalSize(totals[1])
+                    .calculating(false)
+                    .build();
+
+        } catch (Exception e) {
+            log.error("计算文件夹统计信息失败 - bucket: {}, prefix: {}", bucket, prefix, e);
+            throw new RuntimeException("计算文件夹统计信息失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 写操作后按前缀失效缓存，代替清除全部缓存
+     *
+     * fileList：失效对象所在目录的所有分页；文件夹级变更还失效该文件夹之下的所有分页
+     * folderStats：失效所有祖先目录的统计（统计包含子孙对象）；文件夹级变更还失效其下的统计
+     *
+     * 上传到尚不存在的多级目录时，上级目录中新出现的隐式文件夹在后台刷新或过期后可见
+     */
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        String backendKey = event.getBackendKey();
+        String bucket = event.getBucketName();
+        String objectKey = event.getObjectKey();
+        String parent = event.getParentPrefix();
+        boolean folder = event.isFolder();
+
+        int pages = evict(FILE_LIST_CACHE, key -> key instanceof FileListKey listKey
+                && listKey.backendKey().equals(backendKey)
+                && listKey.bucket().equals(bucket)
+                && (listKey.prefix().equals(parent) || (folder && listKey.prefix().startsWith(objectKey))));
+
+        String statsKeyPrefix = backendKey + ":" + bucket + ":";
+        int stats = evict(FOLDER_STATS_CACHE, key -> {
+            if (!(key instanceof String statsKey) || !statsKey.startsWith(statsKeyPrefix)) {
+                return false;
+            }
+            String prefix = statsKey.substring(statsKeyPrefix.length());
+            return objectKey.startsWith(prefix) || (folder && prefix.startsWith(objectKey));
+        });
+
+        log.debug("缓存按前缀失效 - bucket: {}, key: {}, fileList: {}, folderStats: {}", bucket, objectKey, pages, stats);
+    }
+
+    /**
+     * 删除缓存中满足条件的条目，返回删除数量
+     */
+    @SuppressWarnings("unchecked")
+    private int evict(String cacheName, Predicate<Object> condition) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null || !(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?>)) {
+            return 0;
+        }
+        var nativeCache = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache();
+        int[] evicted = {0};
+        nativeCache.asMap().keySet().removeIf(key -> {
+            if (condition.test(key)) {
+                evicted[0]++;
+                return true;
+            }
+            return false;
+        });
+        return evicted[0];
+    }
+
+    /**
+     * 构建 fileList 缓存：按前缀的过期时间 + 后台刷新
+     *
+     * 使用同步缓存：CaffeineCache.get(key, loader) 在调用线程上执行加载；
+     * 只有后台刷新提交到 refreshExecutor
+     */
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> buildFileListCache() {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .initialCapacity(100)
+                .maximumSize(1000)
+                .expireAfter(new PrefixExpiry())
+                .recordStats();
+        if (cacheProperties.getListRefreshAfter() > 0) {
+            builder.refreshAfterWrite(cacheProperties.getListRefreshAfter(), TimeUnit.SECONDS);
+        }
+
+        log.info("文件列表缓存 - 过期: {}s, 后台刷新: {}s, 前缀覆盖: {}",
+                cacheProperties.getListExpiration(), cacheProperties.getListRefreshAfter(),
+                cacheProperties.getPrefixTtls().size());
+
+        return builder.build(new CacheLoader<>() {
+            @Override
+            public Object load(Object key) {
+                return FileListingServiceImpl.this.load((FileListKey) key);
+            }
+
+            @Override
+            public CompletableFuture<Object> asyncReload(Object key, Object oldValue, Executor executor) {
+                // 队列已满时抛出 RejectedExecutionException，Caffeine 放弃本次刷新并保留旧值
+                return CompletableFuture.supplyAsync(() -> {
+                    FileListKey listKey = (FileListKey) key;
+                    log.debug("后台刷新文件列表 - bucket: {}, prefix: {}", listKey.bucket(), listKey.prefix());
+                    return FileListingServiceImpl.this.load(listKey);
+                }, refreshExecutor);
+            }
+        });
+    }
+
+    /**
+     * 查找 fileList 条目的过期时间（最长前缀匹配）
+     */
+    private long expirationNanos(Object key) {
+        int seconds = cacheProperties.getListExpiration();
+        if (key instanceof FileListKey listKey) {
+            int matchedLength = -1;
+            for (StorageConfigProperties.PrefixTtl override : cacheProperties.getPrefixTtls()) {
+                String prefix = override.getPrefix() != null ? override.getPrefix() : "";
+                boolean bucketMatches = override.getBucket() == null || override.getBucket().isEmpty()
+                        || override.getBucket().equals(listKey.bucket());
+                if (bucketMatches && listKey.prefix().startsWith(prefix) && prefix.length() > matchedLength) {
+                    matchedLength = prefix.length();
+                    seconds = override.getExpiration();
+                }
+            }
+        }
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    private Cache fileListCache() {
+        Cache cache = cacheManager.getCache(FILE_LIST_CACHE);
+        if (cache == null) {
+            throw new IllegalStateException("缓存未配置: " + FILE_LIST_CACHE);
+        }
+        return cache;
+    }
+
+    /**
+     * 从元数据索引（可用时）或S3加载并排序
+     */
+    private FileListResponse load(FileListKey key) {
+        log.debug("加载文件列表 - bucket: {}, prefix: {}, token: {}", key.bucket(), key.prefix(), key.continuationToken());
+
+        var backend = storageService.getBackend(key.backendKey());
+        FileListResponse response = metadataIndexService
+                .listFiles(key.backendKey(), backend, key.bucket(), key.prefix(), key.continuationToken(), key.pageSize())
+                .orElseGet(() -> loadFromS3(key));
+
+        // 智能排序：文件夹优先，然后按名称
+        response.setItems(sortItems(response.getItems()));
+        response.setEtag(digest(response));
+        return response;
+    }
+
+    /**
+     * 计算页面摘要：内容不变时结果稳定，与是否命中缓存无关
+     */
+    private String digest(FileListResponse response) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (FileItem item : response.getItems()) {
+                update(digest, item.getType());
+                update(digest, item.getKey());
+                update(digest, item.getSize() != null ? item.getSize().toString() : null);
+                update(digest, item.getLastModified() != null ? String.valueOf(item.getLastModified().toEpochMilli()) : null);
+                update(digest, item.getEtag());
+            }
+            update(digest, response.getNextContinuationToken());
+            update(digest, String.valueOf(response.getIsTruncated()));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        // 分隔符，避免相邻字段拼接产生歧义
+        digest.update((byte) 0);
+    }
+
+    /**
+     * 从S3加载混合内容（文件夹+文件）
+     */
+    private FileListResponse loadFromS3(FileListKey key) {
+        try {
+            var backend = storageService.getBackend(key.backendKey());
+
+            // 上一页来自索引而索引已不可用时，从索引token记录的位置继续
+            boolean indexToken = metadataIndexService.isIndexToken(key.continuationToken());
+
+            // 优先使用V2 API，后端不支持时由 S3ObjectLister 回退到V1
+            S3ObjectLister.ListPage response = objectLister.list(key.backendKey(), backend, S3ObjectLister.ListRequest.builder()
+                    .bucket(key.bucket())
+                    .prefix(key.prefix())
+                    .delimiter("/")  // 重要：让S3返回文件夹
+                    .maxKeys(key.pageSize())
+                    .continuationToken(indexToken ? null : key.continuationToken())
+                    .startAfter(indexToken ? metadataIndexService.startAfterOf(key.continuationToken()) : null)
+                    .build());
+
+            List<FileItem> items = new ArrayList<>();
+
+            log.info("S3响应 - bucket: {}, prefix: '{}', V2: {}, CommonPrefixes: {}, Contents: {}",
+                    key.bucket(), key.prefix(), response.isV2(), response.getCommonPrefixes().size(), response.getContents().size());
+
+            // 添加文件夹（CommonPrefixes）- 不计算统计信息以提升性能
+            for (String folderPrefix : response.getCommonPrefixes()) {
+                items.add(FileItem.folder(folderPrefix, null));
+            }
+
+            // 添加文件
+            for (S3Object s3Object : response.getContents()) {
+                // 跳过"文件夹标记文件"（以/结尾的0字节文件）
+                if (s3Object.key().endsWith("/")) {
+                    continue;
+                }
+
+                items.add(FileItem.builder()
+                        .name(extractFileName(s3Object.key()))
+                        .key(s3Object.key())
+                        .type("file")
+                        .size(s3Object.size())
+                        .lastModified(s3Object.lastModified())
+                        .storageClass(s3Object.storageClassAsString())
+                        .etag(s3Object.eTag())
+                        .build());
+            }
+
+            return FileListResponse.builder()
+                    .items(items)
+                    .nextContinuationToken(response.getNextToken())
+                    .isTruncated(response.isTruncated())
+                    .totalCount(items.size())
+                    .fromCache(false)
+                    .build();
+
+        } catch (Exception e) {
+            log.error("从S3加载失败", e);
+            throw new RuntimeException("从S3加载失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 智能排序：文件夹优先，然后按名称排序
+     */
+    private List<FileItem> sortItems(List<FileItem> items) {
+        return items.stream()
+                .sorted(Comparator
+                        // 1. 文件夹优先（true > false，所以文件夹排在前面）
+                        .comparing(FileItem::isFolder, Comparator.reverseOrder())
+                        // 2. 按名称排序（忽略大小写）
+                        .thenComparing(item -> item.getName().toLowerCase()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 提取文件名（去掉路径）
+     */
+    private String extractFileName(String key) {
+        if (key == null || key.isEmpty()) {
+            return "";
+        }
+        int lastSlash = key.lastIndexOf('/');
+        return lastSlash >= 0 ? key.substring(lastSlash + 1) : key;
+    }
+
+    /**
+     * 创建和刷新时按前缀重新计算过期时间，读取不影响过期时间
+     */
+    private final class PrefixExpiry implements Expiry<Object, Object> {
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return expirationNanos(key);
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expirationNanos(key);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * fileList 缓存的key
+     */
+    record FileListKey(String backendKey, String bucket, String prefix, String continuationToken, int pageSize) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileItem;
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.service.FileListingService;
+import com.all.in.one.agent.storage.service.ListingPrefetchService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 列表预读服务实现类
+ *
+ * 预读是投机性的：在低优先级线程上执行，任何资源不足（后端并发上限、队列已满）
+ * 都直接放弃，不与用户请求争抢连接。预读结果写入 fileList 缓存，
+ * 用户请求与进行中的预读命中同一个key时共享同一次加载
+ */
+@Slf4j
+@Service
+public class ListingPrefetchServiceImpl implements ListingPrefetchService {
+
+    private final FileListingService fileListingService;
+    private final StorageConfigProperties.Prefetch prefetchProperties;
+
+    /**
+     * 每个后端的预读并发许可
+     */
+    private final Map<String, Semaphore> backendPermits = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor prefetchExecutor;
+
+    public ListingPrefetchServiceImpl(FileListingService fileListingService, StorageConfigProperties configProperties) {
+        this.fileListingService = fileListingService;
+        this.prefetchProperties = configProperties.getPrefetch();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, prefetchProperties.getThreads());
+        this.prefetchExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, prefetchProperties.getQueueSize())),
+                r -> {
+                    Thread thread = new Thread(r, "file-list-prefetch-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    @Override
+    public void afterPageServed(String backendKey, String bucket, String prefix, int pageSize, FileListResponse page) {
+        if (!prefetchProperties.isEnabled() || page == null) {
+            return;
+        }
+
+        // 1. 下一页
+        if (Boolean.TRUE.equals(page.getIsTruncated()) && page.getNextContinuationToken() != null) {
+            submit(backendKey, bucket, prefix, page.getNextContinuationToken(), pageSize);
+        }
+
+        // 2. 前N个子文件夹的首页（列表已按文件夹优先排序）
+        int remaining = prefetchProperties.getChildFolders();
+        if (page.getItems() == null) {
+            return;
+        }
+        for (FileItem item : page.getItems()) {
+            if (remaining <= 0 || !item.isFolder()) {
+                break;
+            }
+            submit(backendKey, bucket, item.getKey(), null, pageSize);
+            remaining--;
+        }
+    }
+
+    private void submit(String backendKey, String bucket, String prefix, String continuationToken, int pageSize) {
+        Semaphore permits = backendPermits.computeIfAbsent(backendKey,
+                key -> new Semaphore(Math.max(1, prefetchProperties.getMaxConcurrentPerBackend())));
+        if (!permits.tryAcquire()) {
+            log.debug("预读并发已达上限，跳过 - backend: {}, prefix: {}", backendKey, prefix);
+            return;
+        }
+
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    fileListingService.warm(backendKey, bucket, prefix, continuationToken, pageSize);
+                } catch (Exception e) {
+                    log.debug("预读失败 - bucket: {}, prefix: {}, 错误: {}", bucket, prefix, e.getMessage());
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            log.debug("预读队列已满，跳过 - backend: {}, prefix: {}", backendKey, prefix);
+        }
+    }
+}
@@ -0,0 +1,781 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileItem;
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.dto.FolderStats;
+import com.all.in.one.agent.storage.dto.KeySearchResult;
+import com.all.in.one.agent.storage.dto.MetadataIndexStatus;
+import com.all.in.one.agent.storage.dto.ObjectRangeQuery;
+import com.all.in.one.agent.storage.dto.ObjectRangeResult;
+import com.all.in.one.agent.storage.event.ObjectChangedEvent;
+import com.all.in.one.agent.storage.event.ObjectSyncedEvent;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
+import com.all.in.one.agent.storage.service.MetadataIndexSyncService;
+import com.all.in.one.agent.storage.util.FolderRollupTree;
+import com.all.in.one.agent.storage.util.KeyTrigramIndex;
+import com.all.in.one.agent.storage.util.MetadataIndexRegistry;
+import com.all.in.one.agent.storage.util.ObjectColumnStore;
+import com.all.in.one.agent.storage.util.ObjectMetadataIndex;
+import com.all.in.one.agent.storage.util.S3ClientRegistry;
+import com.all.in.one.agent.storage.util.S3InventoryReader;
+import com.all.in.one.agent.storage.util.S3ParallelLister;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * 对象元数据索引服务实现
+ *
+ * - 爬取：在独立线程池中用 S3ParallelLister 遍历整个bucket，完成后整体替换索引并写出快照；
+ *   也可以从 S3 Inventory 清单导入，替换方式相同
+ * - 增量：本服务的写操作发布 ObjectChangedEvent，文件用 HeadObject、文件夹重新列出前缀来更新索引；
+ *   更新完成前受影响的前缀标记为未完成，相关查询回退到S3，避免读到旧数据
+ * - 同步：已爬取的索引登记到 MetadataIndexSyncService 定时增量同步，发现绕过本服务的改动并推进新鲜度基准
+ * - 新鲜度：完整爬取（或覆盖全部分区的同步）开始后 maxAge 秒内索引可直接使用，之后回退到S3并在后台重新爬取
+ */
+@Slf4j
+@Service
+public class MetadataIndexServiceImpl implements MetadataIndexService {
+
+    private static final String TOKEN_PREFIX = "idx:";
+
+    /**
+     * key搜索的命中计数上限，超过后不再继续遍历
+     */
+    private static final int SEARCH_COUNT_LIMIT = 10000;
+
+    private final MetadataIndexRegistry indexRegistry;
+    private final S3ParallelLister parallelLister;
+    private final S3ClientRegistry clientRegistry;
+    private final S3InventoryReader inventoryReader;
+    private final MetadataIndexSyncService syncService;
+    private final StorageConfigProperties configProperties;
+    private final StorageConfigProperties.MetadataIndex properties;
+
+    private final ThreadPoolExecutor crawlExecutor;
+    private final ThreadPoolExecutor updateExecutor;
+
+    private final Set<ObjectMetadataIndex> crawling = ConcurrentHashMap.newKeySet();
+    private final Set<ObjectMetadataIndex> buildingTrigrams = ConcurrentHashMap.newKeySet();
+    private final Set<ObjectMetadataIndex> buildingColumns = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 超过 maxObjects 的索引，在记录的时间之前不再尝试爬取
+     */
+    private final Map<ObjectMetadataIndex, Long> tooLargeUntil = new ConcurrentHashMap<>();
+
+    /**
+     * 尚未完成更新的key（文件夹以 '/' 结尾），值为未完成的更新次数
+     */
+    private final Map<PendingKey, Integer> pending = new ConcurrentHashMap<>();
+
+    public MetadataIndexServiceImpl(MetadataIndexRegistry indexRegistry, S3ParallelLister parallelLister,
+                                    S3ClientRegistry clientRegistry, S3InventoryReader inventoryReader,
+                                    MetadataIndexSyncService syncService, StorageConfigProperties configProperties) {
+        this.indexRegistry = indexRegistry;
+        this.parallelLister = parallelLister;
+        this.clientRegistry = clientRegistry;
+        this.inventoryReader = inventoryReader;
+        this.syncService = syncService;
+        this.configProperties = configProperties;
+        this.properties = configProperties.getMetadataIndex();
+
+        AtomicInteger crawlIndex = new AtomicInteger();
+        int crawlThreads = Math.max(1, properties.getCrawlThreads());
+        this.crawlExecutor = new ThreadPoolExecutor(crawlThreads, crawlThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(64),
+                r -> {
+                    Thread thread = new Thread(r, "metadata-index-crawl-" + crawlIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        // 队列满时由写操作线程自己更新，保证索引不会漏掉本服务的写入
+        this.updateExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread thread = new Thread(r, "metadata-index-update");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        crawlExecutor.shutdownNow();
+        updateExecutor.shutdownNow();
+    }
+
+    @Override
+    public Optional<FileListResponse> listFiles(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                                                String prefix, String continuationToken, int pageSize) {
+        String actualPrefix = prefix != null ? prefix : "";
+        if (continuationToken != null && !continuationToken.isEmpty() && !isIndexToken(continuationToken)) {
+            return Optional.empty();
+        }
+        ObjectMetadataIndex index = usableIndex(backendKey, backend, bucket, actualPrefix);
+        if (index == null) {
+            return Optional.empty();
+        }
+
+        NavigableMap<String, ObjectMetadataIndex.Entry> remaining = index.range(actualPrefix);
+        String startAfter = isIndexToken(continuationToken) ? decodeToken(continuationToken) : null;
+        if (startAfter != null) {
+            // 上一页以子文件夹结束时跳过整个子文件夹
+            remaining = startAfter.endsWith("/")
+                    ? remaining.tailMap(ObjectMetadataIndex.successor(startAfter), true)
+                    : remaining.tailMap(startAfter, false);
+        }
+
+        List<FileItem> items = new ArrayList<>();
+        String lastKey = null;
+        boolean truncated = false;
+        while (true) {
+            Map.Entry<String, ObjectMetadataIndex.Entry> first = remaining.firstEntry();
+            if (first == null) {
+                break;
+            }
+            if (items.size() >= pageSize) {
+                truncated = true;
+                break;
+            }
+
+            String key = first.getKey();
+            String relativePath = key.substring(actualPrefix.length());
+            int slash = relativePath.indexOf('/');
+            if (slash >= 0) {
+                // 与S3的CommonPrefixes一致：一级子文件夹只出现一次
+                String folder = actualPrefix + relativePath.substring(0, slash + 1);
+                items.add(FileItem.folder(folder, null));
+                lastKey = folder;
+                remaining = remaining.tailMap(ObjectMetadataIndex.successor(folder), true);
+            } else {
+                if (!relativePath.isEmpty()) {
+                    items.add(toFileItem(key, relativePath, first.getValue()));
+                }
+                lastKey = key;
+                remaining = remaining.tailMap(key, false);
+            }
+        }
+
+        return Optional.of(FileListResponse.builder()
+                .items(items)
+                .nextContinuationToken(truncated ? encodeToken(lastKey) : null)
+                .isTruncated(truncated)
+                .totalCount(items.size())
+                .fromCache(false)
+                .build());
+    }
+
+    @Override
+    public Optional<FolderStats> folderStats(String backendKey, StorageConfigProperties.Backend backend,
+                                             String bucket, String prefix) {
+        String actualPrefix = prefix != null ? prefix : "";
+        ObjectMetadataIndex index = usableIndex(backendKey, backend, bucket, actualPrefix);
+        if (index == null) {
+            return Optional.empty();
+        }
+
+        long fileCount = 0;
+        long totalSize = 0L;
+        if (actualPrefix.isEmpty() || actualPrefix.endsWith("/")) {
+            // 文件夹直接读取汇总树
+            FolderRollupTree.Totals totals = index.folderTotals(actualPrefix);
+            fileCount = totals.fileCount();
+            totalSize = totals.totalBytes();
+        } else {
+            for (Map.Entry<String, ObjectMetadataIndex.Entry> item : index.range(actualPrefix).entrySet()) {
+                if (!item.getKey().endsWith("/")) {
+                    fileCount++;
+                    totalSize += item.getValue().size();
+                }
+            }
+        }
+        return Optional.of(FolderStats.builder()
+                .fileCount(Math.toIntExact(fileCount))
+                .totalSize(totalSize)
+                .calculating(false)
+                .build());
+    }
+
+    @Override
+    public Optional<KeySearchResult> search(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                                            String prefix, String keyword, int maxResults) {
+        String actualPrefix = prefix != null ? prefix : "";
+        ObjectMetadataIndex index = usableIndex(backendKey, backend, bucket, actualPrefix);
+        if (index == null) {
+            return Optional.empty();
+        }
+
+        String needle = KeyTrigramIndex.fold(keyword);
+        int countLimit = Math.max(maxResults, SEARCH_COUNT_LIMIT);
+        KeyTrigramIndex trigrams = index.trigrams();
+        if (trigrams == null) {
+            buildTrigrams(index);
+        }
+        KeyTrigramIndex.Hits hits;
+        if (trigrams != null && !needle.isEmpty()) {
+            hits = trigrams.search(needle, key -> key.startsWith(actualPrefix) && !key.endsWith("/"),
+                    maxResults, countLimit);
+        } else {
+            // 搜索索引尚未构建完成，按key顺序扫描前缀范围，计数达到上限即停止
+            List<String> keys = new ArrayList<>(Math.min(maxResults, 64));
+            int found = 0;
+            for (String key : index.range(actualPrefix).keySet()) {
+                if (!key.endsWith("/") && KeyTrigramIndex.containsFolded(key, needle)) {
+                    if (keys.size() < maxResults) {
+                        keys.add(key);
+                    }
+                    if (++found >= countLimit) {
+                        break;
+                    }
+                }
+            }
+            hits = new KeyTrigramIndex.Hits(keys, found, found >= countLimit);
+        }
+
+        List<FileItem> files = new ArrayList<>(hits.keys().size());
+        for (String key : hits.keys()) {
+            ObjectMetadataIndex.Entry entry = index.get(key);
+            if (entry != null) {
+                files.add(toFileItem(key, fileName(key), entry));
+            }
+        }
+        return Optional.of(KeySearchResult.builder()
+                .files(files)
+                .totalFound(hits.totalFound())
+                .totalCapped(hits.capped())
+                .indexCrawledAt(Instant.ofEpochMilli(index.getCrawledAt()))
+                .build());
+    }
+
+    @Override
+    public Optional<ObjectRangeResult> rangeQuery(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                                                  ObjectRangeQuery query) {
+        long start = System.currentTimeMillis();
+        String actualPrefix = query.getPrefix() != null ? query.getPrefix() : "";
+        ObjectMetadataIndex index = usableIndex(backendKey, backend, bucket, actualPrefix);
+        if (index == null) {
+            return Optional.empty();
+        }
+
+        ObjectColumnStore.Filter filter = ObjectColumnStore.Filter.of(query);
+        ObjectColumnStore.SortField sort = ObjectColumnStore.SortField.of(query.getSort());
+        int limit = query.getLimit() != null ? query.getLimit() : Integer.MAX_VALUE;
+
+        ObjectColumnStore columns = index.columns();
+        boolean stale = columns == null || columns.getChangeCount() != index.getChangeCount();
+        if (stale && (columns == null || System.currentTimeMillis() - columns.getBuiltAt()
+                >= TimeUnit.SECONDS.toMillis(properties.getColumnRefresh()))) {
+            buildColumns(index);
+        }
+
+        List<FileItem> files = new ArrayList<>();
+        long totalFound = 0;
+        long totalSize = 0;
+        if (columns == null) {
+            // 快照尚未构建完成，在索引的前缀范围内逐条过滤
+            List<Map.Entry<String, ObjectMetadataIndex.Entry>> matched = new ArrayList<>();
+            for (Map.Entry<String, ObjectMetadataIndex.Entry> item : index.range(actualPrefix).entrySet()) {
+                if (filter.matches(item.getKey(), item.getValue())) {
+                    matched.add(item);
+                    totalSize += item.getValue().size();
+                }
+            }
+            matched.sort(entryOrder(sort, query.isDescending()));
+            totalFound = matched.size();
+            for (Map.Entry<String, ObjectMetadataIndex.Entry> item : matched.subList(0, Math.min(limit, matched.size()))) {
+                files.add(toFileItem(item.getKey(), fileName(item.getKey()), item.getValue()));
+            }
+        } else if (!stale) {
+            ObjectColumnStore.Result result = columns.query(filter, sort, query.isDescending(), limit);
+            totalFound = result.matched();
+            totalSize = result.totalBytes();
+            for (int row : result.rows()) {
+                String key = columns.key(row);
+                files.add(toFileItem(key, fileName(key), columns.entry(row)));
+            }
+        } else {
+            // 快照构建后有变更：按索引当前的条目校正（删除和不再匹配的去掉），新增对象在重建后出现
+            ObjectColumnStore.Result result = columns.query(filter, sort, query.isDescending(), Integer.MAX_VALUE);
+            for (int row : result.rows()) {
+                String key = columns.key(row);
+                ObjectMetadataIndex.Entry current = index.get(key);
+                if (current == null || !filter.matches(key, current)) {
+                    continue;
+                }
+                totalFound++;
+                totalSize += current.size();
+                if (files.size() < limit) {
+                    files.add(toFileItem(key, fileName(key), current));
+                }
+            }
+        }
+
+        return Optional.of(ObjectRangeResult.builder()
+                .files(files)
+                .totalFound(totalFound)
+                .totalSize(totalSize)
+                .truncated(totalFound > files.size())
+                .source("index")
+                .scanLimited(false)
+                .indexCrawledAt(Instant.ofEpochMilli(index.getCrawledAt()))
+                .columnsBuiltAt(columns != null ? Instant.ofEpochMilli(columns.getBuiltAt()) : null)
+                .tookMillis(System.currentTimeMillis() - start)
+                .build());
+    }
+
+    private Comparator<Map.Entry<String, ObjectMetadataIndex.Entry>> entryOrder(ObjectColumnStore.SortField sort,
+                                                                               boolean descending) {
+        Comparator<Map.Entry<String, ObjectMetadataIndex.Entry>> byKey = Map.Entry.comparingByKey();
+        Comparator<Map.Entry<String, ObjectMetadataIndex.Entry>> order = switch (sort) {
+            case KEY -> byKey;
+            case SIZE -> Comparator.<Map.Entry<String, ObjectMetadataIndex.Entry>>comparingLong(item -> item.getValue().size())
+                    .thenComparing(byKey);
+            case LAST_MODIFIED -> Comparator.<Map.Entry<String, ObjectMetadataIndex.Entry>>comparingLong(item -> item.getValue().lastModified())
+                    .thenComparing(byKey);
+        };
+        return descending ? order.reversed() : order;
+    }
+
+    @Override
+    public Optional<NavigableMap<String, ObjectMetadataIndex.Entry>> range(String backendKey, StorageConfigProperties.Backend backend,
+                                                                           String bucket, String prefix) {
+        String actualPrefix = prefix != null ? prefix : "";
+        ObjectMetadataIndex index = usableIndex(backendKey, backend, bucket, actualPrefix);
+        return index != null ? Optional.of(index.range(actualPrefix)) : Optional.empty();
+    }
+
+    @Override
+    public boolean isIndexToken(String continuationToken) {
+        return continuationToken != null && continuationToken.startsWith(TOKEN_PREFIX);
+    }
+
+    @Override
+    public String startAfterOf(String continuationToken) {
+        if (!isIndexToken(continuationToken)) {
+            return null;
+        }
+        String lastKey = decodeToken(continuationToken);
+        // 上一页以子文件夹结束：S3的startAfter需越过该文件夹下的所有key，否则会再次返回同一个CommonPrefix
+        return lastKey.endsWith("/") ? lastKey + Character.MAX_VALUE : lastKey;
+    }
+
+    private String decodeToken(String continuationToken) {
+        try {
+            byte[] decoded = Base64.getUrlDecoder().decode(continuationToken.substring(TOKEN_PREFIX.length()));
+            return new String(decoded, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页token");
+        }
+    }
+
+    @Override
+    public boolean crawl(String backendKey, StorageConfigProperties.Backend backend, String bucket) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+        ObjectMetadataIndex index = indexRegistry.get(backend, bucket);
+        if (!crawling.add(index)) {
+            return false;
+        }
+        try {
+            crawlExecutor.execute(() -> runCrawl(backendKey, backend, bucket, index));
+            return true;
+        } catch (RejectedExecutionException e) {
+            crawling.remove(index);
+            log.warn("元数据索引爬取队列已满 - bucket: {}", bucket);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean importInventory(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                                   String manifestLocation) {
+        if (!properties.isEnabled()) {
+            throw new StorageException("元数据索引未启用");
+        }
+        S3InventoryReader.Manifest manifest = inventoryReader.readManifest(backendKey, backend, manifestLocation);
+        String targetBucket = bucket != null && !bucket.isEmpty() ? bucket : manifest.sourceBucket();
+        if (targetBucket == null || targetBucket.isEmpty()) {
+            throw new StorageException("存储桶名称不能为空");
+        }
+        if (manifest.sourceBucket() != null && !manifest.sourceBucket().equals(targetBucket)) {
+            throw new StorageException("清单属于bucket " + manifest.sourceBucket() + "，与 " + targetBucket + " 不符");
+        }
+        long maxSnapshotAge = TimeUnit.SECONDS.toMillis(properties.getInventory().getMaxSnapshotAge());
+        if (manifest.createdAt() > 0 && System.currentTimeMillis() - manifest.createdAt() > maxSnapshotAge) {
+            throw new StorageException("清单生成于 " + Instant.ofEpochMilli(manifest.createdAt()) + "，已超过可导入的时长，请直接爬取");
+        }
+
+        ObjectMetadataIndex index = indexRegistry.get(backend, targetBucket);
+        if (!crawling.add(index)) {
+            return false;
+        }
+        try {
+            crawlExecutor.execute(() -> {
+                runRebuild(backendKey, backend, targetBucket, index, "清单导入",
+                        sink -> inventoryReader.read(backendKey, backend, manifest, sink));
+                // 补齐清单生成之后的改动
+                syncService.sync(backendKey, backend, targetBucket);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            crawling.remove(index);
+            throw new StorageException("元数据索引爬取队列已满");
+        }
+    }
+
+    @Override
+    public MetadataIndexStatus status(StorageConfigProperties.Backend backend, String bucket) {
+        if (!properties.isEnabled()) {
+            return MetadataIndexStatus.builder().bucket(bucket).state("DISABLED").build();
+        }
+        ObjectMetadataIndex index = indexRegistry.get(backend, bucket);
+        boolean inProgress = crawling.contains(index);
+        String state;
+        if (isTooLarge(index)) {
+            state = "TOO_LARGE";
+        } else if (index.getCrawledAt() == 0) {
+            state = inProgress ? "CRAWLING" : "EMPTY";
+        } else {
+            state = isFresh(index) ? "READY" : "STALE";
+        }
+        return MetadataIndexStatus.builder()
+                .bucket(bucket)
+                .state(state)
+                .objectCount(index.size())
+                .crawledAt(index.getCrawledAt() > 0 ? Instant.ofEpochMilli(index.getCrawledAt()) : null)
+                .crawling(inProgress)
+                .journalRecords(index.getJournalRecords())
+                .build();
+    }
+
+    /**
+     * 本服务的写操作完成后更新索引
+     *
+     * 事件在写操作线程上同步分发，这里先把key标记为未完成再异步更新，
+     * 保证写操作返回后的查询不会从索引读到旧数据。增量同步发布的事件已写入索引，不再处理
+     */
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        if (!properties.isEnabled() || event instanceof ObjectSyncedEvent) {
+            return;
+        }
+        StorageConfigProperties.Backend backend = configProperties.getBackends().get(event.getBackendKey());
+        if (backend == null) {
+            return;
+        }
+
+        ObjectMetadataIndex index;
+        try {
+            index = indexRegistry.get(backend, event.getBucketName());
+        } catch (Exception e) {
+            log.warn("打开元数据索引失败 - bucket: {}", event.getBucketName(), e);
+            return;
+        }
+        // 尚未建立的索引不需要维护，爬取中的索引仍需记录变更
+        if (index.getCrawledAt() == 0 && !crawling.contains(index)) {
+            return;
+        }
+
+        PendingKey pendingKey = new PendingKey(index, event.getObjectKey());
+        pending.merge(pendingKey, 1, Integer::sum);
+        updateExecutor.execute(() -> {
+            try {
+                update(event.getBackendKey(), backend, event.getBucketName(), index, event.getObjectKey());
+            } finally {
+                pending.computeIfPresent(pendingKey, (key, count) -> count > 1 ? count - 1 : null);
+            }
+        });
+    }
+
+    /**
+     * 返回可用于查询的索引；不可用时按需提交后台爬取并返回null
+     */
+    private ObjectMetadataIndex usableIndex(String backendKey, StorageConfigProperties.Backend backend,
+                                            String bucket, String prefix) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        ObjectMetadataIndex index;
+        try {
+            index = indexRegistry.get(backend, bucket);
+        } catch (Exception e) {
+            log.warn("打开元数据索引失败，回退到S3 - bucket: {}", bucket, e);
+            return null;
+        }
+        if (isTooLarge(index)) {
+            return null;
+        }
+        if (index.getCrawledAt() > 0) {
+            // 重启后从磁盘加载的索引也需要同步，同步状态中的时间可能使其重新可用
+            syncService.register(backendKey, backend, bucket, index);
+        }
+        if (!isFresh(index)) {
+            crawl(backendKey, backend, bucket);
+            return null;
+        }
+        return hasPendingUpdates(index, prefix) ? null : index;
+    }
+
+    private boolean isFresh(ObjectMetadataIndex index) {
+        long crawledAt = index.getCrawledAt();
+        return crawledAt > 0
+                && System.currentTimeMillis() - crawledAt <= TimeUnit.SECONDS.toMillis(properties.getMaxAge());
+    }
+
+    private boolean isTooLarge(ObjectMetadataIndex index) {
+        Long until = tooLargeUntil.get(index);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * 前缀内有未完成的更新，或前缀位于正在更新的文件夹之内
+     */
+    private boolean hasPendingUpdates(ObjectMetadataIndex index, String prefix) {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        for (PendingKey key : pending.keySet()) {
+            if (key.index() == index && (key.key().startsWith(prefix) || prefix.startsWith(key.key()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 在爬取线程池中构建搜索索引（重启后首次搜索时），构建完成前搜索按范围扫描
+     */
+    private void buildTrigrams(ObjectMetadataIndex index) {
+        if (!properties.isSearchIndex() || !buildingTrigrams.add(index)) {
+            return;
+        }
+        try {
+            crawlExecutor.execute(() -> {
+                try {
+                    index.buildTrigrams();
+                } finally {
+                    buildingTrigrams.remove(index);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            buildingTrigrams.remove(index);
+        }
+    }
+
+    /**
+     * 在爬取线程池中重建列式快照，构建完成前的查询使用旧快照或扫描索引
+     */
+    private void buildColumns(ObjectMetadataIndex index) {
+        if (!buildingColumns.add(index)) {
+            return;
+        }
+        try {
+            crawlExecutor.execute(() -> {
+                try {
+                    index.buildColumns();
+                } finally {
+                    buildingColumns.remove(index);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            buildingColumns.remove(index);
+        }
+    }
+
+    private void runCrawl(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                          ObjectMetadataIndex index) {
+        runRebuild(backendKey, backend, bucket, index, "爬取",
+                sink -> parallelLister.walk(backendKey, backend, bucket, "", page -> {
+                    for (S3Object s3Object : page.getContents()) {
+                        sink.accept(s3Object.key(), toEntry(s3Object));
+                    }
+                }));
+    }
+
+    /**
+     * 从数据源装载全部条目后整体替换索引；调用前需已把索引加入 crawling
+     *
+     * 新鲜度基准为开始装载的时间，清单导入的数据更旧，由随后的增量同步补齐
+     */
+    private void runRebuild(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                            ObjectMetadataIndex index, String source, RebuildSource loader) {
+        long startedAt = System.currentTimeMillis();
+        ConcurrentSkipListMap<String, ObjectMetadataIndex.Entry> rebuilt = new ConcurrentSkipListMap<>();
+        log.info("开始{}元数据索引 - backend: {}, bucket: {}", source, backendKey, bucket);
+
+        // ConcurrentSkipListMap.size() 需要遍历，单独计数
+        AtomicLong count = new AtomicLong();
+        index.beginRebuild();
+        try {
+            loader.load((key, entry) -> {
+                if (rebuilt.put(key, entry) == null && count.incrementAndGet() > properties.getMaxObjects()) {
+                    throw new IndexTooLarge();
+                }
+            });
+            index.finishRebuild(rebuilt, startedAt);
+            tooLargeUntil.remove(index);
+            syncService.register(backendKey, backend, bucket, index);
+            if (properties.isSearchIndex()) {
+                index.buildTrigrams();
+            }
+            log.info("元数据索引{}完成 - bucket: {}, 对象数: {}, 耗时: {}ms",
+                    source, bucket, count.get(), System.currentTimeMillis() - startedAt);
+        } catch (IndexTooLarge e) {
+            index.abortRebuild();
+            tooLargeUntil.put(index, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(properties.getMaxAge()));
+            log.warn("bucket对象数超过 {}，不建立元数据索引 - bucket: {}", properties.getMaxObjects(), bucket);
+        } catch (Exception e) {
+            index.abortRebuild();
+            log.error("元数据索引{}失败 - bucket: {}", source, bucket, e);
+        } finally {
+            crawling.remove(index);
+        }
+    }
+
+    /**
+     * 更新单个key：文件用HeadObject获取最新元数据（不存在则删除），文件夹重新列出整个前缀
+     */
+    private void update(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                        ObjectMetadataIndex index, String objectKey) {
+        try {
+            if (objectKey.endsWith("/")) {
+                TreeMap<String, ObjectMetadataIndex.Entry> current = new TreeMap<>();
+                parallelLister.walk(backendKey, backend, bucket, objectKey, page -> {
+                    for (S3Object s3Object : page.getContents()) {
+                        current.put(s3Object.key(), toEntry(s3Object));
+                    }
+                });
+                index.removePrefix(objectKey);
+                for (Map.Entry<String, ObjectMetadataIndex.Entry> item : current.entrySet()) {
+                    index.put(item.getKey(), item.getValue());
+                }
+            } else {
+                HeadObjectResponse head = head(backendKey, backend, bucket, objectKey);
+                if (head == null) {
+                    index.remove(objectKey);
+                } else {
+                    index.put(objectKey, new ObjectMetadataIndex.Entry(
+                            head.contentLength() != null ? head.contentLength() : 0L,
+                            head.lastModified() != null ? head.lastModified().toEpochMilli() : 0L,
+                            head.eTag(),
+                            head.storageClassAsString()));
+                }
+            }
+
+            if (index.getJournalRecords() >= properties.getCompactAfter()) {
+                index.compact();
+            }
+        } catch (Exception e) {
+            // 无法确认最新状态，整个索引按过期处理，直到下一次完整爬取
+            log.error("更新元数据索引失败，等待重新爬取 - bucket: {}, key: {}", bucket, objectKey, e);
+            try {
+                index.markStale();
+            } catch (Exception stale) {
+                log.warn("标记元数据索引过期失败 - bucket: {}", bucket, stale);
+            }
+            crawl(backendKey, backend, bucket);
+        }
+    }
+
+    private HeadObjectResponse head(String backendKey, StorageConfigProperties.Backend backend,
+                                    String bucket, String objectKey) {
+        try {
+            return clientRegistry.getClient(backendKey, backend).headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(objectKey)
+                    .build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private ObjectMetadataIndex.Entry toEntry(S3Object s3Object) {
+        return new ObjectMetadataIndex.Entry(
+                s3Object.size() != null ? s3Object.size() : 0L,
+                s3Object.lastModified() != null ? s3Object.lastModified().toEpochMilli() : 0L,
+                s3Object.eTag(),
+                s3Object.storageClassAsString());
+    }
+
+    private FileItem toFileItem(String key, String name, ObjectMetadataIndex.Entry entry) {
+        return FileItem.builder()
+                .name(name)
+                .key(key)
+                .type("file")
+                .size(entry.size())
+                .lastModified(Instant.ofEpochMilli(entry.lastModified()))
+                .storageClass(entry.storageClass())
+                .etag(entry.etag())
+                .build();
+    }
+
+    private String fileName(String key) {
+        int lastSlash = key.lastIndexOf('/');
+        return lastSlash >= 0 ? key.substring(lastSlash + 1) : key;
+    }
+
+    private String encodeToken(String lastKey) {
+        return TOKEN_PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record PendingKey(ObjectMetadataIndex index, String key) {
+    }
+
+    /**
+     * 重建时装载全部条目，逐个交给 sink（sink 线程安全）
+     */
+    @FunctionalInterface
+    private interface RebuildSource {
+        void load(BiConsumer<String, ObjectMetadataIndex.Entry> sink) throws IOException;
+    }
+
+    /**
+     * 用于从爬取回调中提前退出
+     */
+    private static final class IndexTooLarge extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private IndexTooLarge() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,743 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.MetadataIndexSyncStats;
+import com.all.in.one.agent.storage.event.ObjectChangedEvent;
+import com.all.in.one.agent.storage.event.ObjectSyncedEvent;
+import com.all.in.one.agent.storage.event.ObjectSyncedEvent.ChangeType;
+import com.all.in.one.agent.storage.service.MetadataIndexSyncService;
+import com.all.in.one.agent.storage.util.IndexSyncState;
+import com.all.in.one.agent.storage.util.MetadataIndexRegistry;
+import com.all.in.one.agent.storage.util.ObjectMetadataIndex;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 元数据索引增量同步服务实现
+ *
+ * 分区：根目录只列出直接子对象（delimiter），每个一级文件夹作为一个分区递归列出；
+ * 对象数超过 splitThreshold 的文件夹继续按子文件夹拆分，分区在同步线程池中并行遍历。
+ *
+ * 比较：S3按key顺序返回，索引也按key排序，两者归并即可得到新增/修改/删除，
+ * 内存只与变更数有关；遇到S3顺序与Java字符串顺序不一致的分区（key含补充平面字符）时，
+ * 该分区改为整体装入有序表后再比较。
+ *
+ * 代价：S3没有变更通知，遍历一个分区的代价与其对象数成正比；每个分区记录水位线，
+ * 连续无变更的分区逐次加倍遍历间隔（不超过 maxInterval），有变更的分区每个周期都遍历，
+ * 索引写入和缓存失效只与变更数有关。
+ *
+ * 同步期间本服务自己的写操作涉及的key不在本次同步中修改（由索引自身的增量更新处理），
+ * 避免用同步开始时列出的旧状态覆盖更新的写入
+ */
+@Slf4j
+@Service
+public class MetadataIndexSyncServiceImpl implements MetadataIndexSyncService {
+
+    private static final String DELIMITER = "/";
+
+    private final MetadataIndexRegistry indexRegistry;
+    private final S3ObjectLister objectLister;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StorageConfigProperties configProperties;
+    private final StorageConfigProperties.IndexSync properties;
+
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor syncExecutor;
+
+    private final Map<ObjectMetadataIndex, Target> targets = new ConcurrentHashMap<>();
+
+    public MetadataIndexSyncServiceImpl(MetadataIndexRegistry indexRegistry, S3ObjectLister objectLister,
+                                        ApplicationEventPublisher eventPublisher, StorageConfigProperties configProperties) {
+        this.indexRegistry = indexRegistry;
+        this.objectLister = objectLister;
+        this.eventPublisher = eventPublisher;
+        this.configProperties = configProperties;
+        this.properties = configProperties.getMetadataIndex().getSync();
+
+        // 所有bucket的同步周期在同一个线程上依次进行，分区在同步线程池中并行
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metadata-index-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 分区数由bucket的目录结构决定，队列不设上限
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, properties.getThreads());
+        this.syncExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "metadata-index-sync-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        if (isEnabled()) {
+            long interval = Math.max(1, properties.getInterval());
+            scheduler.scheduleWithFixedDelay(this::tick, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        syncExecutor.shutdownNow();
+    }
+
+    @Override
+    public void register(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                         ObjectMetadataIndex index) {
+        if (!isEnabled() || targets.containsKey(index)) {
+            return;
+        }
+        targets.computeIfAbsent(index, key -> {
+            IndexSyncState state = IndexSyncState.load(index.getDir());
+            // 重启后恢复：上次同步覆盖全部分区的时间之前的改动已在索引中
+            index.markSynced(state.getSyncedAt());
+            log.info("元数据索引开始定时同步 - backend: {}, bucket: {}, 分区: {}", backendKey, bucket, state.size());
+            return new Target(backendKey, backend, bucket, index, state);
+        });
+    }
+
+    @Override
+    public boolean sync(String backendKey, StorageConfigProperties.Backend backend, String bucket) {
+        if (!isEnabled()) {
+            return false;
+        }
+        ObjectMetadataIndex index = indexRegistry.get(backend, bucket);
+        if (index.getCrawledAt() == 0) {
+            return false;
+        }
+        register(backendKey, backend, bucket, index);
+        Target target = targets.get(index);
+        if (target == null || target.running || !target.queued.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            scheduler.execute(() -> runCycle(target, true));
+            return true;
+        } catch (RejectedExecutionException e) {
+            target.queued.set(false);
+            return false;
+        }
+    }
+
+    @Override
+    public List<MetadataIndexSyncStats> stats() {
+        long now = System.currentTimeMillis();
+        List<MetadataIndexSyncStats> result = new ArrayList<>();
+        List<Target> sorted = new ArrayList<>(targets.values());
+        sorted.sort(Comparator.comparing((Target target) -> target.backendKey).thenComparing(target -> target.bucket));
+        for (Target target : sorted) {
+            long syncedAt = target.state.getSyncedAt();
+            IndexSyncState.Watermark lagging = target.state.all().stream()
+                    .min(Comparator.comparingLong(IndexSyncState.Watermark::syncedAt))
+                    .orElse(null);
+            result.add(MetadataIndexSyncStats.builder()
+                    .backendKey(target.backendKey)
+                    .bucket(target.bucket)
+                    .running(target.running)
+                    .syncedAt(syncedAt > 0 ? Instant.ofEpochMilli(syncedAt) : null)
+                    .syncLagSeconds(syncedAt > 0 ? TimeUnit.MILLISECONDS.toSeconds(now - syncedAt) : null)
+                    .laggingPrefix(lagging != null ? lagging.prefix() : null)
+                    .partitions(target.state.size())
+                    .cycles(target.cycles.get())
+                    .failedCycles(target.failedCycles.get())
+                    .lastCycleAt(target.lastCycleAt > 0 ? Instant.ofEpochMilli(target.lastCycleAt) : null)
+                    .lastCycleMillis(target.lastCycleMillis)
+                    .lastSyncedPartitions(target.lastSyncedPartitions)
+                    .lastSkippedPartitions(target.lastSkippedPartitions)
+                    .lastScanned(target.lastScanned)
+                    .lastRequests(target.lastRequests)
+                    .lastObjectsPerSecond(target.lastCycleMillis > 0 ? target.lastScanned * 1000 / target.lastCycleMillis : null)
+                    .lastAdded(target.lastAdded)
+                    .lastModified(target.lastModified)
+                    .lastDeleted(target.lastDeleted)
+                    .lastDeferred(target.lastDeferred)
+                    .lastMaxChangeLagMillis(target.lastMaxChangeLagMillis)
+                    .totalScanned(target.totalScanned.get())
+                    .totalAdded(target.totalAdded.get())
+                    .totalModified(target.totalModified.get())
+                    .totalDeleted(target.totalDeleted.get())
+                    .lastError(target.lastError)
+                    .build());
+        }
+        return result;
+    }
+
+    /**
+     * 同步期间记录本服务写操作涉及的key，这些key本次不由同步修改
+     */
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        if (event instanceof ObjectSyncedEvent || targets.isEmpty()) {
+            return;
+        }
+        for (Target target : targets.values()) {
+            Set<String> touched = target.touched;
+            if (touched != null && target.backendKey.equals(event.getBackendKey())
+                    && target.bucket.equals(event.getBucketName())) {
+                touched.add(event.getObjectKey());
+            }
+        }
+    }
+
+    private boolean isEnabled() {
+        return properties.isEnabled() && configProperties.getMetadataIndex().isEnabled();
+    }
+
+    /**
+     * 定时任务：依次同步所有已登记的索引，后端配置变化后旧索引不再同步
+     */
+    private void tick() {
+        for (Target target : targets.values()) {
+            try {
+                StorageConfigProperties.Backend current = configProperties.getBackends().get(target.backendKey);
+                if (current == null || indexRegistry.get(current, target.bucket) != target.index) {
+                    targets.remove(target.index);
+                    log.info("后端配置已变化，停止同步旧索引 - backend: {}, bucket: {}", target.backendKey, target.bucket);
+                    continue;
+                }
+                runCycle(target, false);
+            } catch (Exception e) {
+                log.error("元数据索引同步失败 - bucket: {}", target.bucket, e);
+            }
+        }
+    }
+
+    private void runCycle(Target target, boolean force) {
+        target.queued.set(false);
+        ObjectMetadataIndex index = target.index;
+        // 未完成爬取、已过期或正在重建的索引由完整爬取负责
+        if (index.getCrawledAt() == 0 || index.isRebuilding()) {
+            return;
+        }
+
+        Cycle cycle = new Cycle(target, force);
+        target.running = true;
+        target.touched = ConcurrentHashMap.newKeySet();
+        try {
+            cycle.submit("", () -> syncShallow(cycle, "", 0));
+            cycle.await();
+            finishCycle(cycle);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            target.touched = null;
+            target.running = false;
+        }
+    }
+
+    private void finishCycle(Cycle cycle) {
+        Target target = cycle.target;
+        long duration = System.currentTimeMillis() - cycle.startedAt;
+
+        target.cycles.incrementAndGet();
+        target.lastCycleAt = cycle.startedAt;
+        target.lastCycleMillis = duration;
+        target.lastSyncedPartitions = cycle.synced.get();
+        target.lastSkippedPartitions = cycle.skipped.get();
+        target.lastScanned = cycle.scanned.get();
+        target.lastRequests = cycle.requests.get();
+        target.lastAdded = cycle.added.get();
+        target.lastModified = cycle.modified.get();
+        target.lastDeleted = cycle.deleted.get();
+        target.lastDeferred = cycle.deferred.get();
+        target.lastMaxChangeLagMillis = cycle.maxChangeLag.get() > 0 ? cycle.maxChangeLag.get() : null;
+        target.totalScanned.addAndGet(cycle.scanned.get());
+        target.totalAdded.addAndGet(cycle.added.get());
+        target.totalModified.addAndGet(cycle.modified.get());
+        target.totalDeleted.addAndGet(cycle.deleted.get());
+        target.lastError = cycle.error;
+
+        IndexSyncState state = target.state;
+        if (cycle.error == null) {
+            // 所有分区都已同步到的时间：本次遍历的分区为开始列出的时间，跳过的分区为上一次同步的时间
+            state.retain(cycle.visited);
+            long syncedAt = state.all().stream()
+                    .mapToLong(IndexSyncState.Watermark::syncedAt)
+                    .min()
+                    .orElse(cycle.startedAt);
+            state.setSyncedAt(syncedAt);
+            target.index.markSynced(syncedAt);
+        } else {
+            target.failedCycles.incrementAndGet();
+        }
+
+        try {
+            state.save();
+            if (target.index.getJournalRecords() >= configProperties.getMetadataIndex().getCompactAfter()) {
+                target.index.compact();
+            }
+        } catch (IOException e) {
+            log.warn("保存同步状态失败 - bucket: {}", target.bucket, e);
+        }
+
+        int deltas = cycle.added.get() + cycle.modified.get() + cycle.deleted.get();
+        if (deltas > 0 || cycle.error != null) {
+            log.info("元数据索引同步完成 - bucket: {}, 分区: {}/{}, 列出: {}, 新增: {}, 修改: {}, 删除: {}, 推迟: {}, 耗时: {}ms{}",
+                    target.bucket, cycle.synced.get(), cycle.synced.get() + cycle.skipped.get(), cycle.scanned.get(),
+                    cycle.added.get(), cycle.modified.get(), cycle.deleted.get(), cycle.deferred.get(), duration,
+                    cycle.error != null ? ", 错误: " + cycle.error : "");
+        } else {
+            log.debug("元数据索引同步完成，无变更 - bucket: {}, 分区: {}, 列出: {}, 耗时: {}ms",
+                    target.bucket, cycle.synced.get(), cycle.scanned.get(), duration);
+        }
+    }
+
+    /**
+     * 同步前缀的直接子对象，并为每个子文件夹安排分区
+     */
+    private void syncShallow(Cycle cycle, String prefix, int depth) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        PartitionDiff diff = diff(cycle, prefix, false);
+        if (diff == null) {
+            // 后端不返回CommonPrefixes，无法按文件夹拆分
+            syncDeep(cycle, prefix);
+            return;
+        }
+        int deltas = apply(cycle, diff);
+        record(cycle, prefix, false, diff, deltas, startedAt);
+
+        for (String child : diff.children) {
+            planChild(cycle, child, depth + 1);
+        }
+    }
+
+    /**
+     * 大文件夹继续拆分，其余按水位线决定本次是否遍历
+     */
+    private void planChild(Cycle cycle, String child, int depth) {
+        IndexSyncState.Watermark watermark = cycle.target.state.get(child);
+        long objectCount = watermark != null ? watermark.objectCount() : cycle.target.index.range(child).size();
+        if (depth < properties.getMaxDepth() && objectCount > properties.getSplitThreshold()) {
+            cycle.submit(child, () -> syncShallow(cycle, child, depth));
+        } else if (cycle.force || watermark == null || !watermark.deep()
+                || System.currentTimeMillis() >= watermark.nextSyncAt()) {
+            cycle.submit(child, () -> syncDeep(cycle, child));
+        } else {
+            cycle.visited.add(child);
+            cycle.skipped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 同步前缀下的全部对象
+     */
+    private void syncDeep(Cycle cycle, String prefix) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        PartitionDiff diff = diff(cycle, prefix, true);
+        int deltas = apply(cycle, diff);
+        record(cycle, prefix, true, diff, deltas, startedAt);
+    }
+
+    /**
+     * 列出分区并与索引归并比较
+     *
+     * @return 比较结果；只列直接子对象但后端不支持delimiter时返回null
+     */
+    private PartitionDiff diff(Cycle cycle, String prefix, boolean deep) {
+        ObjectMetadataIndex index = cycle.target.index;
+        PartitionDiff diff = new PartitionDiff(index.range(prefix), prefix, deep);
+        try {
+            if (!list(cycle, prefix, deep, diff::accept, diff.children::add)) {
+                return null;
+            }
+        } catch (OutOfOrder e) {
+            // S3按UTF-8字节序返回，与Java字符串顺序在补充平面字符上不一致，改为排序后比较
+            log.debug("分区key顺序与索引不一致，排序后比较 - bucket: {}, prefix: {}", cycle.target.bucket, prefix);
+            TreeMap<String, ObjectMetadataIndex.Entry> sorted = new TreeMap<>();
+            List<String> children = new ArrayList<>();
+            list(cycle, prefix, deep, sorted::put, children::add);
+            diff = new PartitionDiff(index.range(prefix), prefix, deep);
+            diff.children.addAll(children);
+            sorted.forEach(diff::accept);
+        }
+        diff.finish();
+        return diff;
+    }
+
+    /**
+     * 逐页列出分区
+     *
+     * @return 只列直接子对象时，后端是否返回了CommonPrefixes
+     */
+    private boolean list(Cycle cycle, String prefix, boolean deep,
+                         BiConsumer<String, ObjectMetadataIndex.Entry> objectConsumer, Consumer<String> prefixConsumer) {
+        Target target = cycle.target;
+        String token = null;
+        S3ObjectLister.ListPage page;
+        do {
+            page = objectLister.list(target.backendKey, target.backend, S3ObjectLister.ListRequest.builder()
+                    .bucket(target.bucket)
+                    .prefix(prefix)
+                    .delimiter(deep ? null : DELIMITER)
+                    .continuationToken(token)
+                    .build());
+            cycle.requests.incrementAndGet();
+            if (!deep && !page.isDelimiterSupported()) {
+                return false;
+            }
+            for (S3Object s3Object : page.getContents()) {
+                cycle.scanned.incrementAndGet();
+                objectConsumer.accept(s3Object.key(), toEntry(s3Object));
+            }
+            if (page.getCommonPrefixes() != null) {
+                page.getCommonPrefixes().forEach(prefixConsumer);
+            }
+            token = page.getNextToken();
+        } while (page.isTruncated() && token != null);
+        return true;
+    }
+
+    /**
+     * 把分区的变更写入索引并发布事件，返回发现的变更数（含推迟的）
+     */
+    private int apply(Cycle cycle, PartitionDiff diff) throws IOException {
+        Target target = cycle.target;
+        ObjectMetadataIndex index = target.index;
+        for (Delta delta : diff.deltas) {
+            if (index.isRebuilding()) {
+                throw new IllegalStateException("索引正在重建，放弃本次同步");
+            }
+            if (target.isTouched(delta.key())) {
+                cycle.deferred.incrementAndGet();
+                continue;
+            }
+            switch (delta.type()) {
+                case ADDED, MODIFIED -> {
+                    index.put(delta.key(), delta.entry());
+                    if (delta.entry().lastModified() > 0) {
+                        long lag = System.currentTimeMillis() - delta.entry().lastModified();
+                        cycle.maxChangeLag.accumulateAndGet(lag, Math::max);
+                    }
+                    (delta.type() == ChangeType.ADDED ? cycle.added : cycle.modified).incrementAndGet();
+                }
+                case DELETED -> {
+                    if (delta.folder()) {
+                        index.removePrefix(delta.key());
+                    } else {
+                        index.remove(delta.key());
+                    }
+                    cycle.deleted.incrementAndGet();
+                }
+            }
+            eventPublisher.publishEvent(new ObjectSyncedEvent(target.backendKey, target.bucket, delta.key(), delta.type()));
+        }
+        return diff.deltas.size();
+    }
+
+    /**
+     * 更新分区水位线：无变更的递归分区逐次加倍下一次遍历的间隔
+     */
+    private void record(Cycle cycle, String prefix, boolean deep, PartitionDiff diff, int deltas, long startedAt) {
+        IndexSyncState state = cycle.target.state;
+        IndexSyncState.Watermark previous = state.get(prefix);
+        int quietRuns = deltas == 0 && previous != null && previous.deep() == deep ? previous.quietRuns() + 1 : 0;
+        long interval = TimeUnit.SECONDS.toMillis(Math.max(1, properties.getInterval()));
+        long maxInterval = TimeUnit.SECONDS.toMillis(Math.max(properties.getInterval(), properties.getMaxInterval()));
+        long nextInterval = deep ? Math.min(maxInterval, interval << Math.min(quietRuns, 16)) : interval;
+
+        state.put(new IndexSyncState.Watermark(prefix, deep, diff.objectCount, diff.totalBytes, diff.maxLastModified,
+                startedAt, deltas, quietRuns, startedAt + nextInterval));
+        cycle.visited.add(prefix);
+        cycle.synced.incrementAndGet();
+    }
+
+    private ObjectMetadataIndex.Entry toEntry(S3Object s3Object) {
+        return new ObjectMetadataIndex.Entry(
+                s3Object.size() != null ? s3Object.size() : 0L,
+                s3Object.lastModified() != null ? s3Object.lastModified().toEpochMilli() : 0L,
+                s3Object.eTag(),
+                s3Object.storageClassAsString());
+    }
+
+    /**
+     * 一个已登记的索引及其同步状态和指标
+     */
+    private static final class Target {
+        private final String backendKey;
+        private final StorageConfigProperties.Backend backend;
+        private final String bucket;
+        private final ObjectMetadataIndex index;
+        private final IndexSyncState state;
+
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private volatile boolean running;
+
+        /**
+         * 同步期间本服务写操作涉及的key，未在同步时为null
+         */
+        private volatile Set<String> touched;
+
+        private final AtomicLong cycles = new AtomicLong();
+        private final AtomicLong failedCycles = new AtomicLong();
+        private final AtomicLong totalScanned = new AtomicLong();
+        private final AtomicLong totalAdded = new AtomicLong();
+        private final AtomicLong totalModified = new AtomicLong();
+        private final AtomicLong totalDeleted = new AtomicLong();
+        private volatile long lastCycleAt;
+        private volatile long lastCycleMillis;
+        private volatile int lastSyncedPartitions;
+        private volatile int lastSkippedPartitions;
+        private volatile long lastScanned;
+        private volatile long lastRequests;
+        private volatile int lastAdded;
+        private volatile int lastModified;
+        private volatile int lastDeleted;
+        private volatile int lastDeferred;
+        private volatile Long lastMaxChangeLagMillis;
+        private volatile String lastError;
+
+        private Target(String backendKey, StorageConfigProperties.Backend backend, String bucket,
+                       ObjectMetadataIndex index, IndexSyncState state) {
+            this.backendKey = backendKey;
+            this.backend = backend;
+            this.bucket = bucket;
+            this.index = index;
+            this.state = state;
+        }
+
+        /**
+         * key是否与同步期间本服务写入的key或文件夹重叠
+         */
+        private boolean isTouched(String key) {
+            Set<String> current = touched;
+            if (current == null || current.isEmpty()) {
+                return false;
+            }
+            for (String written : current) {
+                if (written.equals(key)
+                        || (written.endsWith("/") && key.startsWith(written))
+                        || (key.endsWith("/") && written.startsWith(key))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 一次同步周期：跟踪未完成的分区任务和本次的计数
+     */
+    private final class Cycle {
+        private final Target target;
+        private final boolean force;
+        private final long startedAt = System.currentTimeMillis();
+
+        /**
+         * 本次遍历或按水位线跳过的分区
+         */
+        private final Set<String> visited = ConcurrentHashMap.newKeySet();
+
+        private final AtomicInteger synced = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger added = new AtomicInteger();
+        private final AtomicInteger modified = new AtomicInteger();
+        private final AtomicInteger deleted = new AtomicInteger();
+        private final AtomicInteger deferred = new AtomicInteger();
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong maxChangeLag = new AtomicLong();
+        private volatile String error;
+
+        private int outstanding;
+
+        private Cycle(Target target, boolean force) {
+            this.target = target;
+            this.force = force;
+        }
+
+        private void submit(String prefix, PartitionTask task) {
+            begin();
+            try {
+                syncExecutor.execute(() -> {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        fail(prefix, e);
+                    } finally {
+                        end();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                fail(prefix, e);
+                end();
+            }
+        }
+
+        private void fail(String prefix, Exception e) {
+            error = "prefix '" + prefix + "': " + e.getMessage();
+            log.warn("元数据索引分区同步失败 - bucket: {}, prefix: {}", target.bucket, prefix, e);
+        }
+
+        private synchronized void begin() {
+            outstanding++;
+        }
+
+        private synchronized void end() {
+            if (--outstanding == 0) {
+                notifyAll();
+            }
+        }
+
+        private synchronized void await() throws InterruptedException {
+            while (outstanding > 0) {
+                wait();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface PartitionTask {
+        void run() throws Exception;
+    }
+
+    private record Delta(ChangeType type, String key, ObjectMetadataIndex.Entry entry, boolean folder) {
+    }
+
+    /**
+     * 按key顺序逐个接收S3对象，与索引中同一分区的条目归并比较
+     */
+    private static final class PartitionDiff {
+        private final String prefix;
+        private final boolean deep;
+        private final List<Delta> deltas = new ArrayList<>();
+
+        /**
+         * 只列直接子对象时S3返回的子文件夹
+         */
+        private final List<String> children = new ArrayList<>();
+
+        /**
+         * 只列直接子对象时索引中的子文件夹
+         */
+        private final Set<String> indexFolders = new TreeSet<>();
+
+        private final Iterator<Map.Entry<String, ObjectMetadataIndex.Entry>> iterator;
+        private NavigableMap<String, ObjectMetadataIndex.Entry> remaining;
+        private Map.Entry<String, ObjectMetadataIndex.Entry> current;
+
+        private String lastKey;
+        private long objectCount;
+        private long totalBytes;
+        private long maxLastModified;
+
+        private PartitionDiff(NavigableMap<String, ObjectMetadataIndex.Entry> range, String prefix, boolean deep) {
+            this.prefix = prefix;
+            this.deep = deep;
+            this.iterator = deep ? range.entrySet().iterator() : null;
+            this.remaining = range;
+            next();
+        }
+
+        private void accept(String key, ObjectMetadataIndex.Entry entry) {
+            if (lastKey != null && lastKey.compareTo(key) >= 0) {
+                throw new OutOfOrder();
+            }
+            lastKey = key;
+            objectCount++;
+            totalBytes += entry.size();
+            maxLastModified = Math.max(maxLastModified, entry.lastModified());
+
+            while (current != null && current.getKey().compareTo(key) < 0) {
+                deltas.add(new Delta(ChangeType.DELETED, current.getKey(), null, false));
+                next();
+            }
+            if (current != null && current.getKey().equals(key)) {
+                if (!current.getValue().equals(entry)) {
+                    deltas.add(new Delta(ChangeType.MODIFIED, key, entry, false));
+                }
+                next();
+            } else {
+                deltas.add(new Delta(ChangeType.ADDED, key, entry, false));
+            }
+        }
+
+        /**
+         * S3列出完毕：索引中剩余的条目和S3中已不存在的子文件夹都已删除
+         */
+        private void finish() {
+            while (current != null) {
+                deltas.add(new Delta(ChangeType.DELETED, current.getKey(), null, false));
+                next();
+            }
+            if (!deep) {
+                Set<String> present = new HashSet<>(children);
+                for (String folder : indexFolders) {
+                    if (!present.contains(folder)) {
+                        deltas.add(new Delta(ChangeType.DELETED, folder, null, true));
+                    }
+                }
+            }
+        }
+
+        /**
+         * 移到索引中的下一个条目；只列直接子对象时跳过子文件夹并记录下来
+         */
+        private void next() {
+            if (deep) {
+                current = iterator.hasNext() ? iterator.next() : null;
+                return;
+            }
+            if (current != null) {
+                remaining = remaining.tailMap(current.getKey(), false);
+            }
+            while (true) {
+                current = remaining.firstEntry();
+                if (current == null) {
+                    return;
+                }
+                String relativePath = current.getKey().substring(prefix.length());
+                int slash = relativePath.indexOf('/');
+                if (slash < 0) {
+                    return;
+                }
+                String folder = prefix + relativePath.substring(0, slash + 1);
+                indexFolders.add(folder);
+                remaining = remaining.tailMap(ObjectMetadataIndex.successor(folder), true);
+            }
+        }
+    }
+
+    /**
+     * S3返回的key不是按Java字符串顺序递增
+     */
+    private static final class OutOfOrder extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private OutOfOrder() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileItem;
+import com.all.in.one.agent.storage.dto.ObjectRangeQuery;
+import com.all.in.one.agent.storage.dto.ObjectRangeResult;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
+import com.all.in.one.agent.storage.service.ObjectQueryService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.ObjectColumnStore;
+import com.all.in.one.agent.storage.util.ObjectMetadataIndex;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+
+/**
+ * 按元数据范围查询对象的服务实现
+ */
+@Slf4j
+@Service
+public class ObjectQueryServiceImpl implements ObjectQueryService {
+
+    private static final int DEFAULT_LIMIT = 1000;
+
+    private static final int MAX_LIMIT = 10000;
+
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * 回退到S3时最多遍历的页数
+     */
+    private static final int MAX_SCAN_PAGES = 2000;
+
+    private final StorageService storageService;
+    private final MetadataIndexService metadataIndexService;
+    private final S3ObjectLister objectLister;
+
+    public ObjectQueryServiceImpl(StorageService storageService, MetadataIndexService metadataIndexService,
+                                  S3ObjectLister objectLister) {
+        this.storageService = storageService;
+        this.metadataIndexService = metadataIndexService;
+        this.objectLister = objectLister;
+    }
+
+    @Override
+    public ObjectRangeResult query(ObjectRangeQuery query) {
+        if (query.getLimit() == null) {
+            query.setLimit(DEFAULT_LIMIT);
+        }
+        if (query.getLimit() <= 0 || query.getLimit() > MAX_LIMIT) {
+            throw new StorageException("limit必须在1到" + MAX_LIMIT + "之间");
+        }
+        if (query.getMinSize() != null && query.getMaxSize() != null && query.getMinSize() > query.getMaxSize()) {
+            throw new StorageException("minSize不能大于maxSize");
+        }
+        if (query.getModifiedAfter() != null && query.getModifiedBefore() != null
+                && !query.getModifiedAfter().isBefore(query.getModifiedBefore())) {
+            throw new StorageException("modifiedAfter必须早于modifiedBefore");
+        }
+        ObjectColumnStore.SortField sort = ObjectColumnStore.SortField.of(query.getSort());
+
+        String backendName;
+        StorageConfigProperties.Backend backend;
+        try {
+            backendName = query.getBackendName() != null && !query.getBackendName().isEmpty()
+                    ? query.getBackendName() : storageService.getDefaultBackendKey();
+            backend = storageService.getBackend(backendName);
+        } catch (Exception e) {
+            throw new StorageException("获取存储后端失败: " + e.getMessage(), e);
+        }
+        String bucket = query.getBucketName() != null && !query.getBucketName().isEmpty()
+                ? query.getBucketName() : backend.getDefaultBucket();
+        if (bucket == null || bucket.isEmpty()) {
+            throw new StorageException("bucket不能为空");
+        }
+
+        Optional<ObjectRangeResult> indexed = metadataIndexService.rangeQuery(backendName, backend, bucket, query);
+        if (indexed.isPresent()) {
+            ObjectRangeResult result = indexed.get();
+            log.debug("范围查询(索引) - bucket: {}, prefix: '{}', 匹配: {}, 耗时: {}ms",
+                    bucket, query.getPrefix(), result.getTotalFound(), result.getTookMillis());
+            return result;
+        }
+        return scanS3(backendName, backend, bucket, query, sort);
+    }
+
+    /**
+     * 索引不可用：遍历前缀下的对象逐个过滤，只保留排序后的前 limit 个
+     */
+    private ObjectRangeResult scanS3(String backendName, StorageConfigProperties.Backend backend, String bucket,
+                                     ObjectRangeQuery query, ObjectColumnStore.SortField sort) {
+        long start = System.currentTimeMillis();
+        ObjectColumnStore.Filter filter = ObjectColumnStore.Filter.of(query);
+        Comparator<FileItem> order = order(sort, query.isDescending());
+        // 堆顶为当前保留的结果中排在最后的一个
+        PriorityQueue<FileItem> kept = new PriorityQueue<>(order.reversed());
+        long totalFound = 0;
+        long totalSize = 0;
+
+        S3ObjectLister.ListRequest request = S3ObjectLister.ListRequest.builder()
+                .bucket(bucket)
+                .prefix(query.getPrefix())
+                .maxKeys(PAGE_SIZE)
+                .build();
+        int pages = 0;
+        boolean scanLimited = false;
+        while (true) {
+            S3ObjectLister.ListPage page = objectLister.list(backendName, backend, request);
+            for (S3Object object : page.getContents()) {
+                ObjectMetadataIndex.Entry entry = toEntry(object);
+                if (!filter.matches(object.key(), entry)) {
+                    continue;
+                }
+                totalFound++;
+                totalSize += entry.size();
+                kept.add(toFileItem(object.key(), entry));
+                if (kept.size() > query.getLimit()) {
+                    kept.poll();
+                }
+            }
+            if (!page.isTruncated() || page.getNextToken() == null) {
+                break;
+            }
+            if (++pages >= MAX_SCAN_PAGES) {
+                scanLimited = true;
+                break;
+            }
+            request.setContinuationToken(page.getNextToken());
+        }
+
+        List<FileItem> files = new ArrayList<>(kept);
+        files.sort(order);
+        log.info("范围查询(S3) - bucket: {}, prefix: '{}', 匹配: {}, 提前停止: {}, 耗时: {}ms",
+                bucket, query.getPrefix(), totalFound, scanLimited, System.currentTimeMillis() - start);
+        return ObjectRangeResult.builder()
+                .files(files)
+                .totalFound(totalFound)
+                .totalSize(totalSize)
+                .truncated(totalFound > files.size() || scanLimited)
+                .source("s3")
+                .scanLimited(scanLimited)
+                .tookMillis(System.currentTimeMillis() - start)
+                .build();
+    }
+
+    private Comparator<FileItem> order(ObjectColumnStore.SortField sort, boolean descending) {
+        Comparator<FileItem> byKey = Comparator.comparing(FileItem::getKey);
+        Comparator<FileItem> order = switch (sort) {
+            case KEY -> byKey;
+            case SIZE -> Comparator.comparing(FileItem::getSize).thenComparing(byKey);
+            case LAST_MODIFIED -> Comparator.comparing(FileItem::getLastModified).thenComparing(byKey);
+        };
+        return descending ? order.reversed() : order;
+    }
+
+    private ObjectMetadataIndex.Entry toEntry(S3Object s3Object) {
+        return new ObjectMetadataIndex.Entry(
+                s3Object.size() != null ? s3Object.size() : 0L,
+                s3Object.lastModified() != null ? s3Object.lastModified().toEpochMilli() : 0L,
+                s3Object.eTag(),
+                s3Object.storageClassAsString());
+    }
+
+    private FileItem toFileItem(String key, ObjectMetadataIndex.Entry entry) {
+        int lastSlash = key.lastIndexOf('/');
+        return FileItem.builder()
+                .name(lastSlash >= 0 ? key.substring(lastSlash + 1) : key)
+                .key(key)
+                .type("file")
+                .size(entry.size())
+                .lastModified(Instant.ofEpochMilli(entry.lastModified()))
+                .storageClass(entry.storageClass())
+                .etag(entry.etag())
+                .build();
+    }
+}
@@ -0,0 +1,277 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.ObjectStreamQuery;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.service.ObjectStreamService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 对象流式枚举服务实现
+ *
+ * 按页列出：写出当前页的同时异步请求下一页，任意时刻最多持有两页结果。
+ * 每页写完后flush，客户端随分块传输逐步收到数据；客户端断开后写出失败，停止继续列出
+ */
+@Slf4j
+@Service
+public class ObjectStreamServiceImpl implements ObjectStreamService {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final StorageService storageService;
+    private final S3ObjectLister objectLister;
+    private final ObjectMapper objectMapper;
+
+    public ObjectStreamServiceImpl(StorageService storageService, S3ObjectLister objectLister, ObjectMapper objectMapper) {
+        this.storageService = storageService;
+        this.objectLister = objectLister;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public StreamingResponseBody stream(ObjectStreamQuery query) {
+        if (query.getLimit() != null && query.getLimit() <= 0) {
+            throw new StorageException("limit必须大于0");
+        }
+        if (query.getMinSize() != null && query.getMaxSize() != null && query.getMinSize() > query.getMaxSize()) {
+            throw new StorageException("minSize不能大于maxSize");
+        }
+
+        String backendName;
+        StorageConfigProperties.Backend backend;
+        try {
+            backendName = query.getBackendName() != null && !query.getBackendName().isEmpty()
+                    ? query.getBackendName() : storageService.getDefaultBackendKey();
+            backend = storageService.getBackend(backendName);
+        } catch (Exception e) {
+            throw new StorageException("获取存储后端失败: " + e.getMessage(), e);
+        }
+        String bucket = query.getBucketName() != null && !query.getBucketName().isEmpty()
+                ? query.getBucketName() : backend.getDefaultBucket();
+        if (bucket == null || bucket.isEmpty()) {
+            throw new StorageException("bucket不能为空");
+        }
+
+        return outputStream -> {
+            Progress progress = new Progress();
+            try (JsonGenerator generator = createGenerator(outputStream)) {
+                try {
+                    enumerate(backendName, backend, bucket, query, generator, progress);
+                    writeEnd(generator, progress);
+                } catch (IOException e) {
+                    // 客户端断开，无法再写出
+                    log.debug("流式枚举中断 - bucket: {}, prefix: '{}', 已输出: {}", bucket, query.getPrefix(), progress.count);
+                    throw e;
+                } catch (Exception e) {
+                    log.error("流式枚举失败 - bucket: {}, prefix: '{}'", bucket, query.getPrefix(), e);
+                    writeError(generator, e, progress);
+                }
+            }
+            log.info("流式枚举完成 - bucket: {}, prefix: '{}', 扫描: {}, 输出: {}, 截断: {}",
+                    bucket, query.getPrefix(), progress.scanned, progress.count, progress.truncated);
+        };
+    }
+
+    private void enumerate(String backendName, StorageConfigProperties.Backend backend, String bucket,
+                           ObjectStreamQuery query, JsonGenerator generator, Progress progress) throws IOException {
+        S3ObjectLister.ListRequest request = S3ObjectLister.ListRequest.builder()
+                .bucket(bucket)
+                .prefix(query.getPrefix())
+                .delimiter(query.getDelimiter())
+                .maxKeys(PAGE_SIZE)
+                .startAfter(query.getStartAfter())
+                .build();
+
+        S3ObjectLister.ListPage page = objectLister.list(backendName, backend, request);
+        while (true) {
+            // 先发出下一页请求，与写出当前页重叠
+            CompletableFuture<S3ObjectLister.ListPage> next = null;
+            if (page.isTruncated() && page.getNextToken() != null) {
+                request.setContinuationToken(page.getNextToken());
+                next = objectLister.listAsync(backendName, backend, request);
+            }
+
+            boolean stopped;
+            try {
+                stopped = !writePage(page, query, generator, progress);
+                generator.flush();
+            } catch (IOException e) {
+                cancel(next);
+                throw e;
+            }
+
+            if (next == null) {
+                return;
+            }
+            if (stopped) {
+                cancel(next);
+                progress.truncated = true;
+                return;
+            }
+            page = await(next);
+        }
+    }
+
+    /**
+     * 按key顺序合并写出一页中的对象和前缀
+     *
+     * @return 达到limit时返回false
+     */
+    private boolean writePage(S3ObjectLister.ListPage page, ObjectStreamQuery query,
+                              JsonGenerator generator, Progress progress) throws IOException {
+        List<S3Object> contents = page.getContents();
+        List<String> prefixes = page.getCommonPrefixes();
+        int objectIndex = 0;
+        int prefixIndex = 0;
+
+        while (objectIndex < contents.size() || prefixIndex < prefixes.size()) {
+            if (query.getLimit() != null && progress.count >= query.getLimit()) {
+                progress.truncated = true;
+                return false;
+            }
+
+            boolean takePrefix = objectIndex >= contents.size()
+                    || (prefixIndex < prefixes.size() && prefixes.get(prefixIndex).compareTo(contents.get(objectIndex).key()) < 0);
+            if (takePrefix) {
+                String prefix = prefixes.get(prefixIndex++);
+                // 以子前缀结束时，继续用的 startAfter 需越过该前缀下的所有key，否则会再次返回同一个CommonPrefix
+                progress.lastKey = prefix + Character.MAX_VALUE;
+                progress.scanned++;
+                writePrefix(generator, prefix);
+                progress.count++;
+                progress.prefixes++;
+            } else {
+                S3Object object = contents.get(objectIndex++);
+                progress.lastKey = object.key();
+                progress.scanned++;
+                if (matchesSize(object, query)) {
+                    writeObject(generator, object);
+                    progress.count++;
+                    progress.bytes += object.size() != null ? object.size() : 0L;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesSize(S3Object object, ObjectStreamQuery query) {
+        long size = object.size() != null ? object.size() : 0L;
+        return (query.getMinSize() == null || size >= query.getMinSize())
+                && (query.getMaxSize() == null || size <= query.getMaxSize());
+    }
+
+    private void writeObject(JsonGenerator generator, S3Object object) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "object");
+        generator.writeStringField("key", object.key());
+        generator.writeFieldName("size");
+        if (object.size() != null) {
+            generator.writeNumber(object.size());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeFieldName("lastModified");
+        generator.writeObject(object.lastModified());
+        generator.writeStringField("etag", object.eTag());
+        generator.writeStringField("storageClass", object.storageClassAsString());
+        endLine(generator);
+    }
+
+    private void writePrefix(JsonGenerator generator, String prefix) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "prefix");
+        generator.writeStringField("key", prefix);
+        endLine(generator);
+    }
+
+    private void writeEnd(JsonGenerator generator, Progress progress) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "end");
+        writeProgress(generator, progress, progress.truncated);
+        endLine(generator);
+        generator.flush();
+    }
+
+    private void writeError(JsonGenerator generator, Exception e, Progress progress) throws IOException {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        generator.writeStartObject();
+        generator.writeStringField("type", "error");
+        generator.writeStringField("message", "流式枚举失败: " + cause.getMessage());
+        writeProgress(generator, progress, true);
+        endLine(generator);
+        generator.flush();
+    }
+
+    private void writeProgress(JsonGenerator generator, Progress progress, boolean resumable) throws IOException {
+        generator.writeNumberField("count", progress.count);
+        generator.writeNumberField("prefixCount", progress.prefixes);
+        generator.writeNumberField("scanned", progress.scanned);
+        generator.writeNumberField("bytes", progress.bytes);
+        generator.writeBooleanField("truncated", progress.truncated);
+        // 截断或出错时可作为 startAfter 继续
+        generator.writeStringField("nextStartAfter", resumable ? progress.lastKey : null);
+    }
+
+    /**
+     * 结束当前对象并换行（每行一个JSON对象）
+     */
+    private void endLine(JsonGenerator generator) throws IOException {
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private S3ObjectLister.ListPage await(CompletableFuture<S3ObjectLister.ListPage> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("流式枚举被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException("列出对象失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void cancel(CompletableFuture<?> future) {
+        if (future != null) {
+            future.cancel(true);
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+        // 顶层对象之间不加默认的空格分隔，换行由 endLine 写出
+        generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        return generator;
+    }
+
+    /**
+     * 枚举进度（单线程使用）
+     */
+    private static final class Progress {
+        private long count;
+        private long prefixes;
+        private long scanned;
+        private long bytes;
+        private boolean truncated;
+        private String lastKey;
+    }
+}
@@ -0,0 +1,484 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.PatternSearchQuery;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
+import com.all.in.one.agent.storage.service.PatternSearchService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.KeyPattern;
+import com.all.in.one.agent.storage.util.ObjectMetadataIndex;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * glob/正则搜索服务实现
+ *
+ * 每个分支、每个需要进入的子目录是一个列表任务，在共享线程池中并发执行：
+ * - glob 分支逐段处理，字面量段直接拼入前缀；通配段用 delimiter=/ 列出当前层，
+ *   只对名称匹配该段的子目录继续提交任务；含 ** 的段及正则分支递归列出剩余前缀
+ * - 任务把每页的匹配放入有界队列（背压），响应线程逐批写出并flush，客户端随即收到；
+ *   达到limit或客户端断开后取消，未开始的任务直接结束、进行中的任务在下一页前停止
+ */
+@Slf4j
+@Service
+public class PatternSearchServiceImpl implements PatternSearchService {
+
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * 待写出的批次上限（每批为一页中的匹配）
+     */
+    private static final int BUFFERED_BATCHES = 16;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final StorageService storageService;
+    private final MetadataIndexService metadataIndexService;
+    private final S3ObjectLister objectLister;
+    private final ObjectMapper objectMapper;
+    private final StorageConfigProperties.PatternSearch properties;
+    private final ThreadPoolExecutor executor;
+
+    public PatternSearchServiceImpl(StorageService storageService, MetadataIndexService metadataIndexService,
+                                    S3ObjectLister objectLister, ObjectMapper objectMapper,
+                                    StorageConfigProperties configProperties) {
+        this.storageService = storageService;
+        this.metadataIndexService = metadataIndexService;
+        this.objectLister = objectLister;
+        this.objectMapper = objectMapper;
+        this.properties = configProperties.getPatternSearch();
+
+        int threads = Math.max(1, properties.getThreads());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "pattern-search-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public StreamingResponseBody search(PatternSearchQuery query) {
+        if (query.getLimit() != null && query.getLimit() <= 0) {
+            throw new StorageException("limit必须大于0");
+        }
+        String mode = query.getMode() != null && !query.getMode().isEmpty() ? query.getMode() : "glob";
+        KeyPattern pattern = switch (mode) {
+            case "glob" -> KeyPattern.glob(query.getPattern(), properties.getMaxBranches(), properties.getMaxMatchSteps());
+            case "regex" -> KeyPattern.regex(query.getPattern(), properties.getMaxMatchSteps());
+            default -> throw new StorageException("不支持的搜索模式: " + mode + "（可选 glob、regex）");
+        };
+
+        String backendName;
+        StorageConfigProperties.Backend backend;
+        try {
+            backendName = query.getBackendName() != null && !query.getBackendName().isEmpty()
+                    ? query.getBackendName() : storageService.getDefaultBackendKey();
+            backend = storageService.getBackend(backendName);
+        } catch (Exception e) {
+            throw new StorageException("获取存储后端失败: " + e.getMessage(), e);
+        }
+        String bucket = query.getBucketName() != null && !query.getBucketName().isEmpty()
+                ? query.getBucketName() : backend.getDefaultBucket();
+        if (bucket == null || bucket.isEmpty()) {
+            throw new StorageException("bucket不能为空");
+        }
+
+        return outputStream -> {
+            Search search = new Search(backendName, backend, bucket, pattern, query.getLimit());
+            try (JsonGenerator generator = createGenerator(outputStream)) {
+                try {
+                    start(search);
+                    drain(search, generator);
+                    if (search.error.get() != null) {
+                        throw search.error.get();
+                    }
+                    writeEnd(generator, search);
+                } catch (IOException e) {
+                    // 客户端断开，无法再写出
+                    log.debug("模式搜索中断 - bucket: {}, pattern: '{}', 已输出: {}", bucket, pattern.getSource(), search.count);
+                    throw e;
+                } catch (Exception e) {
+                    log.error("模式搜索失败 - bucket: {}, pattern: '{}'", bucket, pattern.getSource(), e);
+                    writeError(generator, e, search);
+                } finally {
+                    search.cancelled = true;
+                }
+            }
+            log.info("模式搜索完成 - bucket: {}, pattern: '{}', 来源: {}, 前缀: {}, 请求: {}, 扫描: {}, 输出: {}, 截断: {}",
+                    bucket, pattern.getSource(), search.source, search.prefixes, search.requests.get(),
+                    search.scanned.get(), search.count, search.truncated);
+        };
+    }
+
+    /**
+     * 提交各分支的任务：所有分支的前缀在索引中都可用时读取索引，否则全部从S3列出
+     *
+     * 每个key只输出一次：索引中只扫描互不包含的前缀范围；从S3列出时重叠的分支各自列出，
+     * 但只输出匹配自身、且不匹配排在前面的分支的key（见 KeyPattern.matchesFirst）
+     */
+    private void start(Search search) {
+        List<KeyPattern.Branch> branches = search.pattern.branches();
+        for (KeyPattern.Branch branch : branches) {
+            search.prefixes.add(branch.prefix());
+        }
+
+        List<String> outermost = outermostPrefixes(search.prefixes);
+        List<NavigableMap<String, ObjectMetadataIndex.Entry>> ranges = new ArrayList<>(outermost.size());
+        for (String prefix : outermost) {
+            Optional<NavigableMap<String, ObjectMetadataIndex.Entry>> range =
+                    metadataIndexService.range(search.backendName, search.backend, search.bucket, prefix);
+            if (range.isEmpty()) {
+                ranges = null;
+                break;
+            }
+            ranges.add(range.get());
+        }
+
+        if (ranges != null) {
+            search.source = "index";
+            for (NavigableMap<String, ObjectMetadataIndex.Entry> range : ranges) {
+                submit(search, () -> scanIndex(search, range));
+            }
+            return;
+        }
+        search.source = "s3";
+        for (KeyPattern.Branch branch : branches) {
+            if (branch.segments() != null) {
+                submit(search, () -> walk(search, branch, "", 0));
+            } else {
+                submit(search, () -> listRecursive(search, branch, branch.prefix()));
+            }
+        }
+    }
+
+    /**
+     * 去掉以其他前缀开头的前缀，剩余前缀的key范围互不重叠
+     */
+    private static List<String> outermostPrefixes(Set<String> prefixes) {
+        List<String> sorted = new ArrayList<>(prefixes);
+        sorted.sort(null);
+        List<String> result = new ArrayList<>(sorted.size());
+        for (String prefix : sorted) {
+            if (result.isEmpty() || !prefix.startsWith(result.get(result.size() - 1))) {
+                result.add(prefix);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 逐段处理glob分支：base 为已确定的目录前缀，index 为下一个待处理的段
+     */
+    private void walk(Search search, KeyPattern.Branch branch, String base, int index) {
+        List<KeyPattern.Segment> segments = branch.segments();
+        StringBuilder prefix = new StringBuilder(base);
+        int last = segments.size() - 1;
+        while (index < last && segments.get(index).isLiteral()) {
+            prefix.append(segments.get(index).lead()).append('/');
+            index++;
+        }
+        String folder = prefix.toString();
+        KeyPattern.Segment segment = segments.get(index);
+        if (segment.recursive()) {
+            listRecursive(search, branch, folder + segment.lead());
+            return;
+        }
+
+        int next = index + 1;
+        boolean lastSegment = index == last;
+        S3ObjectLister.ListRequest request = S3ObjectLister.ListRequest.builder()
+                .bucket(search.bucket)
+                .prefix(folder + segment.lead())
+                .delimiter("/")
+                .maxKeys(PAGE_SIZE)
+                .build();
+        do {
+            S3ObjectLister.ListPage page = list(search, request);
+            if (!page.isDelimiterSupported()) {
+                // 后端不返回CommonPrefixes，无法逐级列出
+                listRecursive(search, branch, folder + segment.lead());
+                return;
+            }
+            if (lastSegment) {
+                offerMatches(search, branch, page.getContents());
+            } else {
+                search.scanned.addAndGet(page.getContents().size());
+                for (String child : page.getCommonPrefixes()) {
+                    String name = child.substring(folder.length(), child.length() - 1);
+                    if (search.pattern.matches(segment, name)) {
+                        submit(search, () -> walk(search, branch, child, next));
+                    }
+                }
+            }
+            request.setContinuationToken(page.isTruncated() ? page.getNextToken() : null);
+        } while (request.getContinuationToken() != null && !search.cancelled);
+    }
+
+    private void listRecursive(Search search, KeyPattern.Branch branch, String prefix) {
+        S3ObjectLister.ListRequest request = S3ObjectLister.ListRequest.builder()
+                .bucket(search.bucket)
+                .prefix(prefix)
+                .maxKeys(PAGE_SIZE)
+                .build();
+        do {
+            S3ObjectLister.ListPage page = list(search, request);
+            offerMatches(search, branch, page.getContents());
+            request.setContinuationToken(page.isTruncated() ? page.getNextToken() : null);
+        } while (request.getContinuationToken() != null && !search.cancelled);
+    }
+
+    private void scanIndex(Search search, NavigableMap<String, ObjectMetadataIndex.Entry> range) {
+        List<Match> batch = new ArrayList<>();
+        long scanned = 0;
+        for (Map.Entry<String, ObjectMetadataIndex.Entry> item : range.entrySet()) {
+            scanned++;
+            if (search.pattern.matches(item.getKey())) {
+                batch.add(new Match(item.getKey(), item.getValue()));
+            }
+            if (scanned % PAGE_SIZE == 0) {
+                search.scanned.addAndGet(PAGE_SIZE);
+                if (search.cancelled) {
+                    return;
+                }
+                if (!batch.isEmpty()) {
+                    offer(search, batch);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        search.scanned.addAndGet(scanned % PAGE_SIZE);
+        if (!batch.isEmpty()) {
+            offer(search, batch);
+        }
+    }
+
+    private S3ObjectLister.ListPage list(Search search, S3ObjectLister.ListRequest request) {
+        search.requests.incrementAndGet();
+        return objectLister.list(search.backendName, search.backend, request);
+    }
+
+    private void offerMatches(Search search, KeyPattern.Branch branch, List<S3Object> contents) {
+        search.scanned.addAndGet(contents.size());
+        List<Match> batch = new ArrayList<>();
+        for (S3Object object : contents) {
+            if (search.pattern.matchesFirst(branch, object.key())) {
+                batch.add(new Match(object.key(), toEntry(object)));
+            }
+        }
+        if (!batch.isEmpty()) {
+            offer(search, batch);
+        }
+    }
+
+    /**
+     * 放入待写出队列，队列满时等待响应线程写出（取消后放弃）
+     */
+    private void offer(Search search, List<Match> batch) {
+        try {
+            while (!search.cancelled) {
+                if (search.queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            search.cancelled = true;
+        }
+    }
+
+    private void submit(Search search, Runnable task) {
+        if (search.cancelled) {
+            return;
+        }
+        search.pending.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (!search.cancelled) {
+                        task.run();
+                    }
+                } catch (Exception e) {
+                    search.fail(e);
+                } finally {
+                    search.pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            search.pending.decrementAndGet();
+            search.fail(new RuntimeException("搜索线程池已关闭", e));
+        }
+    }
+
+    /**
+     * 在响应线程中逐批写出匹配，直到所有任务结束、达到limit或出错
+     */
+    private void drain(Search search, JsonGenerator generator) throws IOException {
+        while (true) {
+            List<Match> batch;
+            try {
+                batch = search.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("模式搜索被中断", e);
+            }
+            if (batch == null) {
+                // 任务先放入结果再结束计数，计数为0后队列中不会再有新的批次
+                if ((search.pending.get() == 0 && search.queue.isEmpty()) || search.error.get() != null) {
+                    return;
+                }
+                continue;
+            }
+            for (Match match : batch) {
+                if (search.limit != null && search.count >= search.limit) {
+                    search.truncated = true;
+                    search.cancelled = true;
+                    generator.flush();
+                    return;
+                }
+                writeObject(generator, match);
+                search.count++;
+            }
+            generator.flush();
+        }
+    }
+
+    private ObjectMetadataIndex.Entry toEntry(S3Object s3Object) {
+        return new ObjectMetadataIndex.Entry(
+                s3Object.size() != null ? s3Object.size() : 0L,
+                s3Object.lastModified() != null ? s3Object.lastModified().toEpochMilli() : 0L,
+                s3Object.eTag(),
+                s3Object.storageClassAsString());
+    }
+
+    private void writeObject(JsonGenerator generator, Match match) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "object");
+        generator.writeStringField("key", match.key());
+        generator.writeNumberField("size", match.entry().size());
+        generator.writeFieldName("lastModified");
+        generator.writeObject(Instant.ofEpochMilli(match.entry().lastModified()));
+        generator.writeStringField("etag", match.entry().etag());
+        generator.writeStringField("storageClass", match.entry().storageClass());
+        endLine(generator);
+    }
+
+    private void writeEnd(JsonGenerator generator, Search search) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "end");
+        writeProgress(generator, search);
+        endLine(generator);
+        generator.flush();
+    }
+
+    private void writeError(JsonGenerator generator, Exception e, Search search) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("type", "error");
+        generator.writeStringField("message", "模式搜索失败: " + e.getMessage());
+        writeProgress(generator, search);
+        endLine(generator);
+        generator.flush();
+    }
+
+    private void writeProgress(JsonGenerator generator, Search search) throws IOException {
+        generator.writeNumberField("count", search.count);
+        generator.writeNumberField("scanned", search.scanned.get());
+        generator.writeNumberField("requests", search.requests.get());
+        generator.writeBooleanField("truncated", search.truncated);
+        generator.writeStringField("source", search.source);
+        generator.writeArrayFieldStart("prefixes");
+        for (String prefix : search.prefixes) {
+            generator.writeString(prefix);
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * 结束当前对象并换行（每行一个JSON对象）
+     */
+    private void endLine(JsonGenerator generator) throws IOException {
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+        // 顶层对象之间不加默认的空格分隔，换行由 endLine 写出
+        generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+        return generator;
+    }
+
+    private record Match(String key, ObjectMetadataIndex.Entry entry) {
+    }
+
+    /**
+     * 一次搜索的状态：count/truncated 只由响应线程读写，其余字段由列表任务并发更新
+     */
+    private static final class Search {
+        private final String backendName;
+        private final StorageConfigProperties.Backend backend;
+        private final String bucket;
+        private final KeyPattern pattern;
+        private final Long limit;
+
+        private final BlockingQueue<List<Match>> queue = new ArrayBlockingQueue<>(BUFFERED_BATCHES);
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicReference<Exception> error = new AtomicReference<>();
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+        private final Set<String> prefixes = new LinkedHashSet<>();
+        private volatile boolean cancelled;
+        private String source;
+        private long count;
+        private boolean truncated;
+
+        Search(String backendName, StorageConfigProperties.Backend backend, String bucket, KeyPattern pattern, Long limit) {
+            this.backendName = backendName;
+            this.backend = backend;
+            this.bucket = bucket;
+            this.pattern = pattern;
+            this.limit = limit;
+        }
+
+        void fail(Exception e) {
+            error.compareAndSet(null, e);
+            cancelled = true;
+        }
+    }
+}
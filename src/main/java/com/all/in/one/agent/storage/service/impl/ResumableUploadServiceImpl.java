@@ -0,0 +1,398 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.UploadSessionInfo;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.security.FileSecurityUtils;
+import com.all.in.one.agent.storage.service.ResumableUploadService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.ObjectWriteSupport;
+import com.all.in.one.agent.storage.util.S3ClientRegistry;
+import com.all.in.one.agent.storage.util.S3MultipartUploader;
+import com.all.in.one.agent.storage.util.UploadSessionState;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * 断点续传服务实现
+ *
+ * 每个请求把收到的数据接在会话未上传数据之后放入一个分片大小的缓冲区，满一个分片即作为下一个 S3 分片上传，
+ * 请求结束（包括连接中断）时把剩余不足一个分片的数据写回本地磁盘，因此偏移量总是精确到已收到的字节；
+ * 内存占用为每个进行中的请求一个分片大小，与文件大小无关。
+ *
+ * 第一个分片满时才创建 S3 分片上传，小于一个分片的文件在完成时单次上传。
+ * 同一会话同时只允许一个请求写入
+ */
+@Slf4j
+@Service
+public class ResumableUploadServiceImpl implements ResumableUploadService {
+
+    private static final Pattern SESSION_ID = Pattern.compile("[0-9a-f]{32}");
+
+    private final StorageService storageService;
+    private final S3ClientRegistry clientRegistry;
+    private final S3MultipartUploader multipartUploader;
+    private final FileSecurityUtils fileSecurityUtils;
+    private final ObjectWriteSupport writeSupport;
+    private final StorageConfigProperties.UploadSession properties;
+
+    private final Path dir;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService cleaner;
+
+    public ResumableUploadServiceImpl(StorageService storageService, S3ClientRegistry clientRegistry,
+                                      S3MultipartUploader multipartUploader, FileSecurityUtils fileSecurityUtils,
+                                      ObjectWriteSupport writeSupport,
+                                      StorageConfigProperties configProperties) {
+        this.storageService = storageService;
+        this.clientRegistry = clientRegistry;
+        this.multipartUploader = multipartUploader;
+        this.fileSecurityUtils = fileSecurityUtils;
+        this.writeSupport = writeSupport;
+        this.properties = configProperties.getUploadSession();
+
+        String configuredDir = properties.getDir();
+        this.dir = configuredDir != null && !configuredDir.isEmpty()
+                ? Paths.get(configuredDir)
+                : Paths.get(configProperties.getUpload().getTempDir(), "upload-sessions");
+        loadSessions();
+
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upload-session-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, properties.getCleanupInterval());
+        cleaner.scheduleWithFixedDelay(this::cleanupExpired, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleaner.shutdownNow();
+    }
+
+    @Override
+    public UploadSessionInfo create(String backendName, String bucketName, String objectKey, String fileName,
+                                    long fileSize, String contentType) {
+        StorageConfigProperties.Backend backend = storageService.getBackend(backendName);
+        if (!multipartUploader.isMultipart(backend, -1)) {
+            throw new StorageException("存储后端未启用分片上传，不支持断点续传: " + backendName);
+        }
+        if (fileSize < 0) {
+            throw new StorageException("文件大小无效: " + fileSize);
+        }
+        if (!fileSecurityUtils.isFileSecure(fileName, fileSize)) {
+            throw new StorageException("文件类型不安全或文件过大");
+        }
+        if (sessions.size() >= properties.getMaxSessions()) {
+            throw new StorageException("上传会话数已达上限: " + properties.getMaxSessions());
+        }
+
+        String actualBucketName = StringUtils.hasText(bucketName) ? bucketName : backend.getDefaultBucket();
+        String originalFilename = fileSecurityUtils.sanitizeFilename(fileName);
+        String actualObjectKey = StringUtils.hasText(objectKey) ? objectKey : writeSupport.generateObjectKey(originalFilename);
+        writeSupport.ensureBucket(clientRegistry.getClient(backendName, backend), actualBucketName);
+
+        UploadSessionState state = new UploadSessionState(dir, UUID.randomUUID().toString().replace("-", ""),
+                backendName, actualBucketName, actualObjectKey, fileName, contentType, fileSize,
+                multipartUploader.partSize(backend, fileSize), System.currentTimeMillis());
+        try {
+            Files.createDirectories(dir);
+            state.save();
+        } catch (IOException e) {
+            throw new RuntimeException("创建上传会话失败: " + e.getMessage(), e);
+        }
+        sessions.put(state.getId(), new Session(state));
+        log.info("创建上传会话 - id: {}, bucket: {}, key: {}, 大小: {}, 分片: {}",
+                state.getId(), actualBucketName, actualObjectKey, fileSize, state.getPartSize());
+        return toInfo(state);
+    }
+
+    @Override
+    public UploadSessionInfo status(String sessionId) {
+        Session session = getSession(sessionId);
+        // 正在写入时读取的是写入前的状态，客户端以写入请求的响应为准
+        return toInfo(session.state);
+    }
+
+    @Override
+    public UploadSessionInfo uploadChunk(String sessionId, long offset, InputStream body) {
+        Session session = getSession(sessionId);
+        if (!session.lock.tryLock()) {
+            throw new StorageException("会话正在写入其他分块: " + sessionId);
+        }
+        try {
+            UploadSessionState state = session.state;
+            if (offset != state.getOffset()) {
+                throw new StorageException("偏移量不匹配，当前偏移量: " + state.getOffset());
+            }
+            StorageConfigProperties.Backend backend = storageService.getBackend(state.getBackendKey());
+            state.touch(System.currentTimeMillis());
+
+            byte[] buffer = new byte[state.getPartSize()];
+            int length = state.readPending(buffer);
+            long remaining = state.getFileSize() - offset;
+            long received = 0;
+            IOException interrupted = null;
+            try {
+                while (true) {
+                    if (length == buffer.length) {
+                        uploadPart(state, backend, buffer, length);
+                        length = 0;
+                    }
+                    long allowed = remaining - received;
+                    if (allowed == 0) {
+                        if (body.read() >= 0) {
+                            throw new StorageException("分块超出文件大小: " + state.getFileSize());
+                        }
+                        break;
+                    }
+                    int n;
+                    try {
+                        n = body.read(buffer, length, (int) Math.min(buffer.length - length, allowed));
+                    } catch (IOException e) {
+                        interrupted = e;
+                        break;
+                    }
+                    if (n < 0) {
+                        break;
+                    }
+                    length += n;
+                    received += n;
+                }
+            } finally {
+                // 无论成功与否，已收到的数据都保留，客户端从新的偏移量继续
+                state.writePending(buffer, length);
+                state.touch(System.currentTimeMillis());
+                state.save();
+            }
+            if (interrupted != null) {
+                log.warn("上传分块中断，已保留收到的数据 - id: {}, 收到: {}, 偏移量: {}",
+                        sessionId, received, state.getOffset());
+                throw new RuntimeException("上传分块中断: " + interrupted.getMessage());
+            }
+            log.debug("上传分块 - id: {}, 收到: {}, 偏移量: {} / {}", sessionId, received, state.getOffset(), state.getFileSize());
+            return toInfo(state);
+        } catch (IOException e) {
+            log.error("上传分块失败 - id: {}", sessionId, e);
+            throw new RuntimeException("上传分块失败: " + e.getMessage(), e);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> complete(String sessionId) {
+        Session session = getSession(sessionId);
+        if (!session.lock.tryLock()) {
+            throw new StorageException("会话正在写入分块: " + sessionId);
+        }
+        try {
+            UploadSessionState state = session.state;
+            if (state.getOffset() != state.getFileSize()) {
+                throw new StorageException("数据未接收完整: " + state.getOffset() + " / " + state.getFileSize());
+            }
+            StorageConfigProperties.Backend backend = storageService.getBackend(state.getBackendKey());
+            byte[] buffer = new byte[state.getPendingLength()];
+            int length = state.readPending(buffer);
+
+            if (state.getUploadId() == null) {
+                // 不足一个分片，单次上传
+                multipartUploader.putObject(state.getBackendKey(), backend, uploadRequest(state), buffer, length);
+            } else {
+                if (length > 0) {
+                    uploadPart(state, backend, buffer, length);
+                }
+                List<CompletedPart> parts = new ArrayList<>(state.getPartCount());
+                List<String> etags = state.getEtags();
+                for (int i = 0; i < etags.size(); i++) {
+                    parts.add(CompletedPart.builder().partNumber(i + 1).eTag(etags.get(i)).build());
+                }
+                multipartUploader.completeUpload(state.getBackendKey(), backend, uploadRequest(state), state.getUploadId(), parts);
+            }
+
+            sessions.remove(sessionId);
+            state.delete();
+            writeSupport.onObjectChanged(state.getBackendKey(), state.getBucket(), state.getKey());
+            log.info("断点续传完成 - id: {}, bucket: {}, key: {}, 大小: {}, 分片: {}",
+                    sessionId, state.getBucket(), state.getKey(), state.getFileSize(), state.getPartCount());
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("backendName", state.getBackendKey());
+            result.put("bucketName", state.getBucket());
+            result.put("objectKey", state.getKey());
+            result.put("fileName", state.getFileName());
+            result.put("fileSize", state.getFileSize());
+            result.put("contentType", state.getContentType());
+            result.put("uploadTime", System.currentTimeMillis());
+            return result;
+        } catch (IOException e) {
+            log.error("完成上传失败 - id: {}", sessionId, e);
+            throw new RuntimeException("完成上传失败: " + e.getMessage(), e);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    @Override
+    public void abort(String sessionId) {
+        Session session = getSession(sessionId);
+        if (!session.lock.tryLock()) {
+            throw new StorageException("会话正在写入分块: " + sessionId);
+        }
+        try {
+            discard(session.state);
+            log.info("取消上传会话 - id: {}", sessionId);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * 上传一个分片并记录（第一个分片前创建 S3 分片上传）
+     */
+    private void uploadPart(UploadSessionState state, StorageConfigProperties.Backend backend,
+                            byte[] buffer, int length) throws IOException {
+        if (state.getUploadId() == null) {
+            state.setUploadId(multipartUploader.createUpload(state.getBackendKey(), backend, uploadRequest(state)));
+            state.save();
+        }
+        CompletedPart part = multipartUploader.uploadPart(state.getBackendKey(), backend, uploadRequest(state),
+                state.getUploadId(), state.getPartCount() + 1, buffer, length);
+        state.addPart(part.eTag());
+        state.writePending(buffer, 0);
+        state.save();
+    }
+
+    /**
+     * 中止分片上传并删除会话
+     */
+    private void discard(UploadSessionState state) {
+        sessions.remove(state.getId());
+        if (state.getUploadId() != null) {
+            try {
+                StorageConfigProperties.Backend backend = storageService.getBackend(state.getBackendKey());
+                multipartUploader.abortUpload(state.getBackendKey(), backend, uploadRequest(state), state.getUploadId());
+            } catch (Exception e) {
+                // 后端已删除或不可用，未中止的分片由bucket的生命周期规则清理
+                log.warn("中止上传会话的分片上传失败 - id: {}, uploadId: {}: {}", state.getId(), state.getUploadId(), e.getMessage());
+            }
+        }
+        state.delete();
+    }
+
+    private void cleanupExpired() {
+        long expireBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(properties.getExpireMinutes());
+        int expired = 0;
+        for (Session session : sessions.values()) {
+            if (session.state.getUpdatedAt() >= expireBefore || !session.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (session.state.getUpdatedAt() < expireBefore) {
+                    discard(session.state);
+                    expired++;
+                }
+            } catch (Exception e) {
+                log.warn("清理过期上传会话失败 - id: {}", session.state.getId(), e);
+            } finally {
+                session.lock.unlock();
+            }
+        }
+        if (expired > 0) {
+            log.info("清理过期上传会话: {}, 剩余: {}", expired, sessions.size());
+        }
+    }
+
+    /**
+     * 启动时恢复会话目录中的会话
+     */
+    private void loadSessions() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + UploadSessionState.SESSION_SUFFIX)) {
+            for (Path file : files) {
+                UploadSessionState state = UploadSessionState.load(file);
+                if (state == null) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                sessions.put(state.getId(), new Session(state));
+            }
+        } catch (IOException e) {
+            log.warn("恢复上传会话失败 - dir: {}", dir, e);
+        }
+        if (!sessions.isEmpty()) {
+            log.info("恢复上传会话: {} - dir: {}", sessions.size(), dir);
+        }
+    }
+
+    private Session getSession(String sessionId) {
+        Session session = sessionId != null && SESSION_ID.matcher(sessionId).matches() ? sessions.get(sessionId) : null;
+        if (session == null) {
+            throw new StorageException("上传会话不存在或已过期: " + sessionId);
+        }
+        return session;
+    }
+
+    private S3MultipartUploader.UploadRequest uploadRequest(UploadSessionState state) {
+        return S3MultipartUploader.UploadRequest.builder()
+                .bucket(state.getBucket())
+                .key(state.getKey())
+                .contentType(state.getContentType())
+                .size(state.getFileSize())
+                .build();
+    }
+
+    private UploadSessionInfo toInfo(UploadSessionState state) {
+        return UploadSessionInfo.builder()
+                .sessionId(state.getId())
+                .backendName(state.getBackendKey())
+                .bucketName(state.getBucket())
+                .objectKey(state.getKey())
+                .fileName(state.getFileName())
+                .contentType(state.getContentType())
+                .fileSize(state.getFileSize())
+                .offset(state.getOffset())
+                .partSize(state.getPartSize())
+                .partsUploaded(state.getPartCount())
+                .createdAt(Instant.ofEpochMilli(state.getCreatedAt()))
+                .expiresAt(Instant.ofEpochMilli(state.getUpdatedAt() + TimeUnit.MINUTES.toMillis(properties.getExpireMinutes())))
+                .build();
+    }
+
+    /**
+     * 会话状态及其写入锁
+     */
+    private static final class Session {
+        private final UploadSessionState state;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private Session(UploadSessionState state) {
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.event.ObjectChangedEvent;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.service.SortedListingService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.PrefixTrie;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import com.all.in.one.agent.storage.util.SortedPrefixView;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 排序/过滤列表服务实现类
+ *
+ * 首次请求某个目录时遍历全部分页构建 SortedPrefixView 并缓存，
+ * 之后按游标位置直接取页。视图按条目数计权重，总量受 maxCachedEntries 限制；
+ * 写操作通过 ObjectChangedEvent 使对应目录的视图失效
+ *
+ * 视图版本由目录内容计算：视图被淘汰或过期后重新装载，只要内容未变，已发出的游标仍然有效。
+ * 装载在独立线程池中进行，不占用缓存的计算锁；同一目录的并发请求共享同一次装载
+ */
+@Slf4j
+@Service
+public class SortedListingServiceImpl implements SortedListingService {
+
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    private final StorageService storageService;
+    private final S3ObjectLister objectLister;
+    private final StorageConfigProperties.SortedListing properties;
+    private final AsyncCache<ViewKey, SortedPrefixView> views;
+
+    /**
+     * 装载视图的线程池（有界队列，队列满时请求报错）
+     */
+    private final ThreadPoolExecutor buildExecutor;
+
+    public SortedListingServiceImpl(StorageService storageService, S3ObjectLister objectLister,
+                                    StorageConfigProperties configProperties) {
+        this.storageService = storageService;
+        this.objectLister = objectLister;
+        this.properties = configProperties.getSortedListing();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, properties.getThreads());
+        this.buildExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueSize())),
+                r -> {
+                    Thread thread = new Thread(r, "sorted-listing-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        // 权重超过上限的条目会被立即淘汰，总量至少容纳一个最大的目录
+        long maxCachedEntries = Math.max(properties.getMaxCachedEntries(), properties.getMaxEntries() + 1L);
+        this.views = Caffeine.newBuilder()
+                .maximumWeight(maxCachedEntries)
+                .<ViewKey, SortedPrefixView>weigher((key, view) -> view.size() + 1)
+                .expireAfterWrite(configProperties.getCache().getListExpiration(), TimeUnit.SECONDS)
+                .buildAsync();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        buildExecutor.shutdownNow();
+    }
+
+    @Override
+    public FileListResponse list(String backendKey, String bucket, String prefix, String sort, String order,
+                                 String filter, String cursor, int pageSize) {
+        SortedPrefixView.SortField field = SortedPrefixView.SortField.parse(sort);
+        boolean descending = parseDescending(order);
+        String actualPrefix = prefix != null ? prefix : "";
+        String actualFilter = filter != null ? filter.trim() : "";
+
+        SortedPrefixView view = view(new ViewKey(backendKey, bucket, actualPrefix));
+
+        int position = 0;
+        if (cursor != null && !cursor.isEmpty()) {
+            position = decodeCursor(cursor, view, field, descending, actualFilter);
+        }
+
+        SortedPrefixView.Page page = view.page(field, descending, actualFilter, position, pageSize);
+        String nextCursor = page.nextPosition() >= 0
+                ? encodeCursor(view, field, descending, actualFilter, page.nextPosition())
+                : null;
+
+        return FileListResponse.builder()
+                .items(page.items())
+                .nextContinuationToken(nextCursor)
+                .isTruncated(nextCursor != null)
+                .totalCount(page.items().size())
+                .fromCache(true)
+                .build();
+    }
+
+    /**
+     * 写操作后使对应目录（及文件夹之下）的视图失效
+     */
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        String parent = event.getParentPrefix();
+        views.asMap().keySet().removeIf(key -> key.backendKey().equals(event.getBackendKey())
+                && key.bucket().equals(event.getBucketName())
+                && (key.prefix().equals(parent) || (event.isFolder() && key.prefix().startsWith(event.getObjectKey()))));
+    }
+
+    /**
+     * 取缓存的视图，未命中时在 buildExecutor 中装载并等待
+     */
+    private SortedPrefixView view(ViewKey key) {
+        CompletableFuture<SortedPrefixView> future;
+        try {
+            future = views.get(key, (viewKey, executor) -> CompletableFuture.supplyAsync(() -> build(viewKey), buildExecutor));
+        } catch (RejectedExecutionException e) {
+            throw new StorageException("排序列表装载任务过多，请稍后重试");
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Caffeine 异步移除失败的装载，这里立即移除，保证下一次请求重新装载
+            views.asMap().remove(key, future);
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+    }
+
+    /**
+     * 遍历目录下的全部分页，装载排序视图
+     *
+     * 条目数超过 maxEntries 时停止遍历并报错，避免无限制占用内存
+     */
+    private SortedPrefixView build(ViewKey key) {
+        long start = System.currentTimeMillis();
+        var backend = storageService.getBackend(key.backendKey());
+        String prefix = key.prefix();
+
+        List<String> folderNames = new ArrayList<>();
+        PrefixTrie seenFolders = new PrefixTrie();
+        List<String> fileNames = new ArrayList<>();
+        long[] sizes = new long[LIST_PAGE_SIZE];
+        long[] lastModified = new long[LIST_PAGE_SIZE];
+
+        S3ObjectLister.ListRequest request = S3ObjectLister.ListRequest.builder()
+                .bucket(key.bucket())
+                .prefix(prefix)
+                .delimiter("/")
+                .maxKeys(LIST_PAGE_SIZE)
+                .build();
+        S3ObjectLister.ListPage page;
+        do {
+            page = objectLister.list(key.backendKey(), backend, request);
+
+            for (String commonPrefix : page.getCommonPrefixes()) {
+                addFolder(folderNames, seenFolders, commonPrefix.substring(prefix.length()));
+            }
+            for (S3Object s3Object : page.getContents()) {
+                String relative = s3Object.key().substring(prefix.length());
+                int slash = relative.indexOf('/');
+                if (slash >= 0) {
+                    // 文件夹占位对象，或后端未按delimiter分组时的子目录对象
+                    addFolder(folderNames, seenFolders, relative.substring(0, slash + 1));
+                    continue;
+                }
+                if (relative.isEmpty()) {
+                    continue;
+                }
+                int index = fileNames.size();
+                if (index == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, index * 2);
+                    lastModified = Arrays.copyOf(lastModified, index * 2);
+                }
+                fileNames.add(relative);
+                sizes[index] = s3Object.size() != null ? s3Object.size() : 0L;
+                lastModified[index] = s3Object.lastModified() != null ? s3Object.lastModified().toEpochMilli() : 0L;
+            }
+
+            if (folderNames.size() + fileNames.size() > properties.getMaxEntries()) {
+                throw new StorageException("目录条目数超过 " + properties.getMaxEntries()
+                        + "，不支持排序/过滤列表，请使用不带 sort 参数的分页列表");
+            }
+
+            request.setContinuationToken(page.getNextToken());
+        } while (page.isTruncated() && page.getNextToken() != null);
+
+        int fileCount = fileNames.size();
+        String[] folders = folderNames.toArray(new String[0]);
+        String[] files = fileNames.toArray(new String[0]);
+        sizes = Arrays.copyOf(sizes, fileCount);
+        lastModified = Arrays.copyOf(lastModified, fileCount);
+        SortedPrefixView view = new SortedPrefixView(prefix, generation(folders, files, sizes, lastModified),
+                folders, files, sizes, lastModified);
+
+        log.info("排序视图装载完成 - bucket: {}, prefix: '{}', 文件夹: {}, 文件: {}, 耗时: {}ms",
+                key.bucket(), prefix, folderNames.size(), fileCount, System.currentTimeMillis() - start);
+        return view;
+    }
+
+    /**
+     * 视图版本：目录内容的摘要，内容不变时重新装载得到相同的版本
+     */
+    private long generation(String[] folders, String[] files, long[] sizes, long[] lastModified) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer numbers = ByteBuffer.allocate(2 * Long.BYTES);
+            for (String folder : folders) {
+                digest.update(folder.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            // 分隔文件夹与文件
+            digest.update((byte) 1);
+            for (int i = 0; i < files.length; i++) {
+                digest.update(files[i].getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                numbers.clear();
+                numbers.putLong(sizes[i]).putLong(lastModified[i]);
+                digest.update(numbers.array());
+            }
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    private void addFolder(List<String> folderNames, PrefixTrie seenFolders, String relativeFolder) {
+        String name = relativeFolder.endsWith("/") ? relativeFolder.substring(0, relativeFolder.length() - 1) : relativeFolder;
+        if (!name.isEmpty() && seenFolders.add(name)) {
+            folderNames.add(name);
+        }
+    }
+
+    private boolean parseDescending(String order) {
+        if (order == null || order.isEmpty() || "asc".equalsIgnoreCase(order)) {
+            return false;
+        }
+        if ("desc".equalsIgnoreCase(order)) {
+            return true;
+        }
+        throw new IllegalArgumentException("不支持的排序方向: " + order);
+    }
+
+    /**
+     * 游标内容：视图版本:排序字段:方向:过滤条件哈希:位置
+     */
+    private String encodeCursor(SortedPrefixView view, SortedPrefixView.SortField field, boolean descending,
+                                String filter, int position) {
+        String raw = view.getGeneration() + ":" + field.name() + ":" + (descending ? "d" : "a") + ":"
+                + Integer.toHexString(filter.hashCode()) + ":" + position;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int decodeCursor(String cursor, SortedPrefixView view, SortedPrefixView.SortField field,
+                             boolean descending, String filter) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的游标");
+        }
+        if (parts.length != 5
+                || !parts[1].equals(field.name())
+                || !parts[2].equals(descending ? "d" : "a")
+                || !parts[3].equals(Integer.toHexString(filter.hashCode()))) {
+            throw new IllegalArgumentException("游标与排序/过滤条件不匹配");
+        }
+        if (!parts[0].equals(String.valueOf(view.getGeneration()))) {
+            throw new IllegalStateException("目录内容已更新，请从第一页重新加载");
+        }
+        try {
+            return Integer.parseInt(parts[4]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的游标");
+        }
+    }
+
+    private record ViewKey(String backendKey, String bucket, String prefix) {
+    }
+}
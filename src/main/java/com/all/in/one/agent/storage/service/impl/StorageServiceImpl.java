@@ -1,27 +1,51 @@
 package com.all.in.one.agent.storage.service.impl;
 
 import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileItem;
 import com.all.in.one.agent.storage.dto.FileListDTO;
+import com.all.in.one.agent.storage.dto.FileListPage;
+import com.all.in.one.agent.storage.dto.FolderStats;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
 import com.all.in.one.agent.storage.service.StorageService;
-import com.all.in.one.agent.storage.util.S3ClientUtil;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.util.FolderInferenceCache;
+import com.all.in.one.agent.storage.util.MultipartStreamReader;
+import com.all.in.one.agent.storage.util.ObjectWriteSupport;
+import com.all.in.one.agent.storage.util.PrefixTrie;
+import com.all.in.one.agent.storage.util.S3ClientRegistry;
+import com.all.in.one.agent.storage.util.S3MultipartUploader;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import com.all.in.one.agent.storage.util.S3ParallelLister;
+import com.all.in.one.agent.storage.util.SizeLimitInputStream;
 import com.all.in.one.agent.storage.security.FileSecurityUtils;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FilenameUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -31,14 +55,56 @@ import java.util.stream.Collectors;
 @Service
 public class StorageServiceImpl implements StorageService {
 
+    /**
+     * 流式上传解析请求体的读缓冲区
+     */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 流式上传中普通表单字段的最大长度
+     */
+    private static final int MAX_FORM_FIELD_BYTES = 4096;
+
     private final StorageConfigProperties configProperties;
-    private final S3ClientUtil s3ClientUtil;
+    private final S3ClientRegistry clientRegistry;
+    private final S3ObjectLister objectLister;
+    private final S3ParallelLister parallelLister;
+    private final FolderInferenceCache folderInferenceCache;
     private final FileSecurityUtils fileSecurityUtils;
+    private final ObjectWriteSupport writeSupport;
+    private final MetadataIndexService metadataIndexService;
+    private final S3MultipartUploader multipartUploader;
+
+    /**
+     * 异步上传时读取阻塞输入流的线程池
+     */
+    private final ExecutorService streamExecutor;
 
-    public StorageServiceImpl(StorageConfigProperties configProperties, S3ClientUtil s3ClientUtil, FileSecurityUtils fileSecurityUtils) {
+    public StorageServiceImpl(StorageConfigProperties configProperties, S3ClientRegistry clientRegistry,
+                              S3ObjectLister objectLister, S3ParallelLister parallelLister,
+                              FolderInferenceCache folderInferenceCache,
+                              FileSecurityUtils fileSecurityUtils, ObjectWriteSupport writeSupport,
+                              MetadataIndexService metadataIndexService, S3MultipartUploader multipartUploader) {
         this.configProperties = configProperties;
-        this.s3ClientUtil = s3ClientUtil;
+        this.clientRegistry = clientRegistry;
+        this.objectLister = objectLister;
+        this.parallelLister = parallelLister;
+        this.folderInferenceCache = folderInferenceCache;
         this.fileSecurityUtils = fileSecurityUtils;
+        this.writeSupport = writeSupport;
+        this.metadataIndexService = metadataIndexService;
+        this.multipartUploader = multipartUploader;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.streamExecutor = Executors.newFixedThreadPool(configProperties.getAsync().getStreamThreads(), r -> {
+            Thread thread = new Thread(r, "s3-upload-stream-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
     }
 
     @Override
@@ -90,7 +156,7 @@ public class StorageServiceImpl implements StorageService {
     public boolean testConnection(String backendName) {
         try {
             StorageConfigProperties.Backend backend = getBackend(backendName);
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             ListBucketsRequest request = ListBucketsRequest.builder().build();
             s3Client.listBuckets(request);
             return true;
@@ -110,50 +176,34 @@ public class StorageServiceImpl implements StorageService {
         }
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
 
             String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
 
             // 安全清理文件名
             String originalFilename = fileSecurityUtils.sanitizeFilename(file.getOriginalFilename());
-            String actualObjectKey = objectKey != null ? objectKey : generateObjectKey(originalFilename);
+            String actualObjectKey = objectKey != null ? objectKey : writeSupport.generateObjectKey(originalFilename);
 
             // 检查存储桶是否存在，如果不存在则创建
-            try {
-                HeadBucketRequest headBucketRequest = HeadBucketRequest.builder()
-                        .bucket(actualBucketName)
-                        .build();
-                s3Client.headBucket(headBucketRequest);
-            } catch (NoSuchBucketException e) {
-                // 存储桶不存在，创建它
-                CreateBucketRequest createBucketRequest = CreateBucketRequest.builder()
-                        .bucket(actualBucketName)
-                        .build();
-                s3Client.createBucket(createBucketRequest);
-                log.info("创建存储桶: {}", actualBucketName);
-            }
+            writeSupport.ensureBucket(s3Client, actualBucketName);
 
-            // 上传文件到S3
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+            // 上传文件到S3（达到阈值时分片并发上传），内容可重新打开以便SDK签名和重试
+            multipartUploader.upload(backendName, backend, S3MultipartUploader.UploadRequest.builder()
                     .bucket(actualBucketName)
                     .key(actualObjectKey)
                     .contentType(file.getContentType())
-                    .build();
-
-            s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(
-                    file.getInputStream(), file.getSize()));
+                    .size(file.getSize())
+                    .build(), () -> {
+                        try {
+                            return file.getInputStream();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            writeSupport.onObjectChanged(backendName, actualBucketName, actualObjectKey);
 
             // 返回文件信息
-            Map<String, Object> result = new HashMap<>();
-            result.put("backendName", backendName);
-            result.put("bucketName", actualBucketName);
-            result.put("objectKey", actualObjectKey);
-            result.put("fileName", file.getOriginalFilename());
-            result.put("fileSize", file.getSize());
-            result.put("contentType", file.getContentType());
-            result.put("uploadTime", System.currentTimeMillis());
-
-            return result;
+            return buildUploadResult(file, backendName, actualBucketName, actualObjectKey);
 
         } catch (Exception e) {
             log.error("文件上传失败 - backend: {}, bucket: {}", backendName, bucketName, e);
@@ -161,12 +211,89 @@ public class StorageServiceImpl implements StorageService {
         }
     }
 
+    @Override
+    public List<Map<String, Object>> uploadStream(InputStream body, String contentType, String backendName,
+                                                  String bucketName, String objectKey) {
+        StorageConfigProperties.Backend backend = getBackend(backendName);
+        if (!multipartUploader.isMultipart(backend, -1)) {
+            throw new StorageException("存储后端未启用分片上传，不支持流式上传: " + backendName);
+        }
+        MultipartStreamReader reader = new MultipartStreamReader(body,
+                MultipartStreamReader.boundary(contentType), STREAM_BUFFER_SIZE);
+
+        S3Client s3Client = clientRegistry.getClient(backendName, backend);
+        String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
+        String nextObjectKey = objectKey;
+        Set<String> ensuredBuckets = new HashSet<>();
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            MultipartStreamReader.Part part;
+            while ((part = reader.next()) != null) {
+                if (!part.isFile()) {
+                    // 文件之前的表单字段
+                    if ("bucketName".equals(part.getName())) {
+                        String value = part.readString(MAX_FORM_FIELD_BYTES).trim();
+                        actualBucketName = StringUtils.hasText(value) ? value : actualBucketName;
+                    } else if ("objectKey".equals(part.getName())) {
+                        nextObjectKey = part.readString(MAX_FORM_FIELD_BYTES).trim();
+                    }
+                    continue;
+                }
+                if (part.getFilename().isEmpty()) {
+                    // 未选择文件的文件输入框
+                    continue;
+                }
+
+                // 大小未知，只检查类型，大小在读取时限制
+                if (!fileSecurityUtils.isFileSecure(part.getFilename(), 0)) {
+                    throw new StorageException("文件类型不安全: " + part.getFilename());
+                }
+                String originalFilename = fileSecurityUtils.sanitizeFilename(part.getFilename());
+                String actualObjectKey = StringUtils.hasText(nextObjectKey) ? nextObjectKey : writeSupport.generateObjectKey(originalFilename);
+                nextObjectKey = null;
+
+                if (ensuredBuckets.add(actualBucketName)) {
+                    writeSupport.ensureBucket(s3Client, actualBucketName);
+                }
+                S3MultipartUploader.UploadResult uploaded = multipartUploader.upload(backendName, backend,
+                        S3MultipartUploader.UploadRequest.builder()
+                                .bucket(actualBucketName)
+                                .key(actualObjectKey)
+                                .contentType(part.getContentType())
+                                .build(),
+                        new SizeLimitInputStream(part.getInputStream(), configProperties.getUpload().getMaxFileSize()));
+                writeSupport.onObjectChanged(backendName, actualBucketName, actualObjectKey);
+
+                Map<String, Object> result = new HashMap<>();
+                result.put("backendName", backendName);
+                result.put("bucketName", actualBucketName);
+                result.put("objectKey", actualObjectKey);
+                result.put("fileName", part.getFilename());
+                result.put("fileSize", uploaded.getSize());
+                result.put("contentType", part.getContentType());
+                result.put("uploadTime", System.currentTimeMillis());
+                results.add(result);
+                log.info("流式上传完成 - bucket: {}, key: {}, 大小: {}, 分片: {}, 耗时: {}ms",
+                        actualBucketName, actualObjectKey, uploaded.getSize(), uploaded.getParts(), uploaded.getMillis());
+            }
+        } catch (StorageException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("流式上传失败 - backend: {}, bucket: {}, 已完成: {}", backendName, actualBucketName, results.size(), e);
+            throw new RuntimeException("文件上传失败: " + e.getMessage());
+        }
+        if (results.isEmpty()) {
+            throw new StorageException("请求中没有文件");
+        }
+        return results;
+    }
+
     @Override
     public void downloadFile(String backendName, String bucketName, String objectKey, HttpServletResponse response) {
         StorageConfigProperties.Backend backend = getBackend(backendName);
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
 
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
@@ -193,266 +320,220 @@ public class StorageServiceImpl implements StorageService {
 
     @Override
     public Map<String, Object> listFiles(FileListDTO listDTO) {
-        if (listDTO == null) {
-            throw new RuntimeException("请求参数不能为空");
-        }
+        return toListMap(listFilePage(listDTO));
+    }
 
-        if (listDTO.getBackendName() == null || listDTO.getBackendName().isEmpty()) {
-            throw new RuntimeException("存储后端名称不能为空");
-        }
+    @Override
+    public FileListPage listFilePage(FileListDTO listDTO) {
+        validateListRequest(listDTO);
 
         StorageConfigProperties.Backend backend = getBackend(listDTO.getBackendName());
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
-            String bucketName = listDTO.getBucketName() != null ? listDTO.getBucketName() : backend.getDefaultBucket();
-
-            log.debug("开始获取文件列表 - backend: {}, bucket: {}, prefix: {}, delimiter: {}",
-                    listDTO.getBackendName(), bucketName, listDTO.getPrefix(), listDTO.getDelimiter());
-
-            // 使用V1 API（ListObjects）因为链家S3的V2 API不返回CommonPrefixes
-            var requestBuilder = ListObjectsRequest.builder()
-                    .bucket(bucketName)
-                    .maxKeys(listDTO.getPageSize() != null ? listDTO.getPageSize() : listDTO.getMaxKeys());
-
-            if (listDTO.getPrefix() != null && !listDTO.getPrefix().isEmpty()) {
-                requestBuilder = requestBuilder.prefix(listDTO.getPrefix());
-                log.debug("设置前缀: {}", listDTO.getPrefix());
-            }
-
-            if (listDTO.getDelimiter() != null && !listDTO.getDelimiter().isEmpty()) {
-                requestBuilder = requestBuilder.delimiter(listDTO.getDelimiter());
-                log.debug("设置分隔符: {}", listDTO.getDelimiter());
-            }
-
-            if (listDTO.getContinuationToken() != null && !listDTO.getContinuationToken().isEmpty()) {
-                requestBuilder = requestBuilder.marker(listDTO.getContinuationToken());  // V1使用marker代替continuationToken
-                log.debug("设置继续标记: {}", listDTO.getContinuationToken());
-            }
-
-            ListObjectsRequest request = requestBuilder.build();
+            S3ObjectLister.ListRequest request = buildListRequest(listDTO, backend);
             log.debug("S3请求参数: {}", request);
 
-            ListObjectsResponse response = s3Client.listObjects(request);
+            S3ObjectLister.ListPage page = objectLister.list(listDTO.getBackendName(), backend, request);
+            return buildListResult(listDTO, page, request, backend);
 
-            log.debug("S3响应 - 文件数: {}, 文件夹数: {}, 截断: {}",
-                    response.contents().size(),
-                    response.commonPrefixes() != null ? response.commonPrefixes().size() : 0,
-                    response.isTruncated());
+        } catch (Exception e) {
+            log.error("获取文件列表失败 - backend: {}, bucketName: {}, prefix: {}",
+                    listDTO.getBackendName(), listDTO.getBucketName(), listDTO.getPrefix(), e);
+            throw new RuntimeException("获取文件列表失败: " + e.getMessage());
+        }
+    }
 
-            Map<String, Object> result = new HashMap<>();
+    /**
+     * 校验列表请求参数
+     */
+    private void validateListRequest(FileListDTO listDTO) {
+        if (listDTO == null) {
+            throw new RuntimeException("请求参数不能为空");
+        }
 
-            // 1. 提取所有一级文件夹和当前目录下的文件
-            List<Map<String, Object>> allFolders = new ArrayList<>();
-            List<Map<String, Object>> allFiles = new ArrayList<>();
+        if (listDTO.getBackendName() == null || listDTO.getBackendName().isEmpty()) {
+            throw new RuntimeException("存储后端名称不能为空");
+        }
+    }
 
-            // 先用原有逻辑提取一级文件夹
-            if (response.commonPrefixes() != null) {
-                for (CommonPrefix commonPrefix : response.commonPrefixes()) {
-                    Map<String, Object> folderInfo = new HashMap<>();
-                    String prefix = commonPrefix.prefix();
-                    String folderName = prefix;
-                    if (listDTO.getPrefix() != null && !listDTO.getPrefix().isEmpty()) {
-                        folderName = prefix.replace(listDTO.getPrefix(), "");
-                    }
-                    if (folderName.endsWith("/")) {
-                        folderName = folderName.substring(0, folderName.length() - 1);
-                    }
-                    if (!folderName.isEmpty()) {
-                        folderInfo.put("key", prefix);
-                        folderInfo.put("name", folderName);
-                        folderInfo.put("isFolder", true);
-                        folderInfo.put("lastModified", null);
-                        folderInfo.put("size", 0L);
-                        allFolders.add(folderInfo);
-                    }
-                }
+    /**
+     * 构建列表请求（同步、异步共用）
+     */
+    private S3ObjectLister.ListRequest buildListRequest(FileListDTO listDTO, StorageConfigProperties.Backend backend) {
+        String bucketName = listDTO.getBucketName() != null ? listDTO.getBucketName() : backend.getDefaultBucket();
+
+        log.debug("开始获取文件列表 - backend: {}, bucket: {}, prefix: {}, delimiter: {}",
+                listDTO.getBackendName(), bucketName, listDTO.getPrefix(), listDTO.getDelimiter());
+
+        // V2/V1 由 S3ObjectLister 按后端能力探测结果选择
+        return S3ObjectLister.ListRequest.builder()
+                .bucket(bucketName)
+                .prefix(listDTO.getPrefix())
+                .delimiter(listDTO.getDelimiter())
+                .maxKeys(listDTO.getPageSize() != null ? listDTO.getPageSize() : listDTO.getMaxKeys())
+                .continuationToken(listDTO.getContinuationToken())
+                .startAfter(listDTO.getStartAfter())
+                .build();
+    }
+
+    /**
+     * 将列表响应转换为前端所需的文件夹/文件结构
+     */
+    private FileListPage buildListResult(FileListDTO listDTO, S3ObjectLister.ListPage response,
+                                         S3ObjectLister.ListRequest request, StorageConfigProperties.Backend backend) {
+        log.debug("S3响应 - V2: {}, 文件数: {}, 文件夹数: {}, 截断: {}",
+                response.isV2(),
+                response.getContents().size(),
+                response.getCommonPrefixes().size(),
+                response.isTruncated());
+
+        // 1. 提取所有一级文件夹和当前目录下的文件
+        List<FileItem> allFolders = new ArrayList<>();
+        List<FileItem> allFiles = new ArrayList<>(response.getContents().size());
+        String prefix = listDTO.getPrefix() != null ? listDTO.getPrefix() : "";
+        PrefixTrie folderKeys = new PrefixTrie();
+
+        // 先用原有逻辑提取一级文件夹
+        if (response.getCommonPrefixes() != null) {
+            for (String commonPrefix : response.getCommonPrefixes()) {
+                addFolder(allFolders, folderKeys, commonPrefix, prefix, null);
             }
-            // 补充：包含空目录占位对象（key 以 '/' 结尾且直接位于当前前缀下）
-            // 以及 Size=0 的根级对象（rclone风格的文件夹标记，不带斜杠）
-            for (S3Object obj : response.contents()) {
-                String key = obj.key();
-
-                // 处理带斜杠的文件夹标记（标准S3风格）
-                if (key.endsWith("/")) {
-                    String relative = (listDTO.getPrefix() != null && !listDTO.getPrefix().isEmpty())
-                            ? (key.startsWith(listDTO.getPrefix()) ? key.substring(listDTO.getPrefix().length()) : null)
-                            : key;
-                    if (relative != null && !relative.isEmpty() && !relative.contains("/")) {
-                        boolean exists = allFolders.stream().anyMatch(f -> key.equals(f.get("key")));
-                        if (!exists) {
-                            Map<String, Object> folderInfo = new HashMap<>();
-                            folderInfo.put("key", key);
-                            folderInfo.put("name", relative.substring(0, relative.length() - 1));
-                            folderInfo.put("isFolder", true);
-                            folderInfo.put("lastModified", null);
-                            folderInfo.put("size", 0L);
-                            allFolders.add(folderInfo);
-                        }
-                    }
+        }
+        // 补充：包含空目录占位对象（key 以 '/' 结尾且直接位于当前前缀下）
+        // 以及 Size=0 的根级对象（rclone风格的文件夹标记，不带斜杠）
+        for (S3Object obj : response.getContents()) {
+            String key = obj.key();
+
+            // 处理带斜杠的文件夹标记（标准S3风格）
+            if (key.endsWith("/")) {
+                String relative = key.startsWith(prefix) ? key.substring(prefix.length()) : null;
+                if (relative != null && !relative.isEmpty() && relative.indexOf('/') == relative.length() - 1) {
+                    addFolder(allFolders, folderKeys, key, prefix, null);
                 }
-                // 处理不带斜杠的文件夹标记（Size=0 且在根目录，rclone风格）
-                // 注意：只在没有prefix的情况下处理根级别的0字节对象作为文件夹
-                else if ((listDTO.getPrefix() == null || listDTO.getPrefix().isEmpty())
-                         && obj.size() != null && obj.size() == 0L
-                         && !key.contains("/")) {
-                    boolean exists = allFolders.stream().anyMatch(f ->
-                        key.equals(f.get("key")) || (key + "/").equals(f.get("key"))
-                    );
-                    if (!exists) {
-                        log.info("发现0字节文件夹标记: {}", key);
-                        Map<String, Object> folderInfo = new HashMap<>();
-                        folderInfo.put("key", key + "/"); // 添加斜杠以保持一致性
-                        folderInfo.put("name", key);
-                        folderInfo.put("isFolder", true);
-                        folderInfo.put("lastModified", obj.lastModified());
-                        folderInfo.put("size", 0L);
-                        allFolders.add(folderInfo);
-                    }
+            }
+            // 处理不带斜杠的文件夹标记（Size=0 且在根目录，rclone风格）
+            // 注意：只在没有prefix的情况下处理根级别的0字节对象作为文件夹
+            else if (prefix.isEmpty() && obj.size() != null && obj.size() == 0L && !key.contains("/")) {
+                if (addFolder(allFolders, folderKeys, key + "/", prefix, obj.lastModified())) {
+                    log.info("发现0字节文件夹标记: {}", key);
                 }
             }
-            // 如果没有commonPrefixes，尝试从文件列表中提取
-            // 当数据被截断时，需要遍历所有页面以发现所有文件夹
-            if (allFolders.isEmpty()) {
-                Set<String> folderSet = new HashSet<>();
-                String marker = null;
-                int pageCount = 0;
-                int maxPages = 100; // 安全限制，避免无限循环
-                ListObjectsResponse currentResponse = response;
-
-                log.debug("开始提取文件夹（分页模式），数据截断: {}", currentResponse.isTruncated());
-
-                do {
-                    pageCount++;
-                    log.info("处理第 {} 页，文件数: {}", pageCount, currentResponse.contents().size());
-
-                    // 从当前页提取文件夹
-                    for (S3Object obj : currentResponse.contents()) {
-                        String key = obj.key();
-
-                        // 方法1：从包含斜杠的路径中提取文件夹前缀
-                        if (key.contains("/")) {
-                            String folderPath;
-                            if (listDTO.getPrefix() == null || listDTO.getPrefix().isEmpty()) {
-                                folderPath = key.substring(0, key.indexOf("/") + 1);
-                            } else {
-                                if (key.startsWith(listDTO.getPrefix())) {
-                                    String relativePath = key.substring(listDTO.getPrefix().length());
-                                    if (relativePath.contains("/")) {
-                                        String subFolder = relativePath.substring(0, relativePath.indexOf("/") + 1);
-                                        folderPath = listDTO.getPrefix() + subFolder;
-                                    } else {
-                                        continue;
-                                    }
-                                } else {
-                                    continue;
-                                }
-                            }
-                            folderSet.add(folderPath);
-                        }
-                        // 方法2：0字节对象作为文件夹标记（rclone风格）
-                        else if (obj.size() != null && obj.size() == 0L && !key.endsWith("/")) {
-                            // 检查是否在当前前缀下
-                            if (listDTO.getPrefix() == null || listDTO.getPrefix().isEmpty() || key.startsWith(listDTO.getPrefix())) {
-                                String folderPath = key + "/";
-                                folderSet.add(folderPath);
-                                log.info("发现0字节文件夹标记: {}", key);
-                            }
-                        }
-                    }
-
-                    // 如果还有更多数据，继续获取下一页 (V1 API使用marker)
-                    if (currentResponse.isTruncated() && pageCount < maxPages) {
-                        marker = currentResponse.nextMarker();
-                        log.info("数据被截断，获取下一页，marker: {}", marker);
-
-                        ListObjectsRequest nextRequest = requestBuilder
-                                .marker(marker)
-                                .build();
-                        currentResponse = s3Client.listObjects(nextRequest);
-                    } else {
-                        break;
-                    }
-
-                } while (currentResponse.isTruncated() && pageCount < maxPages);
-
-                log.info("文件夹提取完成，总共处理 {} 页，发现 {} 个唯一文件夹", pageCount, folderSet.size());
+        }
+        // 后端不返回CommonPrefixes（或未使用delimiter）时，从key路径推断文件夹。
+        // 推断结果按前缀缓存，且只随第一页返回，避免翻页时重复
+        boolean delimiterHonored = request.getDelimiter() != null && !request.getDelimiter().isEmpty()
+                && response.isDelimiterSupported();
+        boolean firstPage = (request.getContinuationToken() == null || request.getContinuationToken().isEmpty())
+                && (request.getStartAfter() == null || request.getStartAfter().isEmpty());
+        if (allFolders.isEmpty() && !delimiterHonored && firstPage) {
+            List<String> inferred = folderInferenceCache.folders(listDTO.getBackendName(), backend, request.getBucket(), prefix);
+            for (String folderPath : inferred) {
+                addFolder(allFolders, folderKeys, folderPath, prefix, null);
+            }
+            log.debug("文件夹推断完成，共 {} 个", allFolders.size());
+        }
 
-                // 转换folderSet为文件夹信息列表
-                for (String folderPath : folderSet) {
-                    String folderName = folderPath;
-                    if (listDTO.getPrefix() != null && !listDTO.getPrefix().isEmpty()) {
-                        folderName = folderPath.replace(listDTO.getPrefix(), "");
-                    }
-                    if (folderName.endsWith("/")) {
-                        folderName = folderName.substring(0, folderName.length() - 1);
-                    }
-                    if (!folderName.isEmpty()) {
-                        Map<String, Object> folderInfo = new HashMap<>();
-                        folderInfo.put("key", folderPath);
-                        folderInfo.put("name", folderName);
-                        folderInfo.put("isFolder", true);
-                        folderInfo.put("lastModified", null);
-                        folderInfo.put("size", 0L);
-                        allFolders.add(folderInfo);
-                    }
-                }
+        // 提取当前目录下的文件
+        // 注意：当设置了delimiter='/'时，S3 API已经自动过滤了子目录中的文件
+        // contents只包含当前prefix下的直接文件，不包括子目录中的文件
+        // 因此我们不需要再做额外的过滤，信任S3返回的结果即可
+        for (S3Object obj : response.getContents()) {
+            String key = obj.key();
 
-                log.debug("文件夹提取完成，共 {} 个", allFolders.size());
+            // 跳过文件夹占位符（以/结尾的对象）
+            if (key.endsWith("/")) {
+                continue;
             }
 
-            // 提取当前目录下的文件
-            // 注意：当设置了delimiter='/'时，S3 API已经自动过滤了子目录中的文件
-            // contents只包含当前prefix下的直接文件，不包括子目录中的文件
-            // 因此我们不需要再做额外的过滤，信任S3返回的结果即可
-            for (S3Object obj : response.contents()) {
-                String key = obj.key();
+            // 跳过prefix本身（如果prefix是一个文件）
+            if (listDTO.getPrefix() != null && key.equals(listDTO.getPrefix())) {
+                continue;
+            }
 
-                // 跳过文件夹占位符（以/结尾的对象）
-                if (key.endsWith("/")) {
-                    continue;
-                }
+            // ✅ 移除了错误的客户端过滤逻辑
+            // S3的delimiter机制已经保证了contents只包含当前层级的文件
+            // 不需要再检查 relativePath.contains("/")
 
-                // 跳过prefix本身（如果prefix是一个文件）
-                if (listDTO.getPrefix() != null && key.equals(listDTO.getPrefix())) {
-                    continue;
-                }
-
-                // ✅ 移除了错误的客户端过滤逻辑
-                // S3的delimiter机制已经保证了contents只包含当前层级的文件
-                // 不需要再检查 relativePath.contains("/")
+            allFiles.add(toFileItem(obj));
+        }
 
-                Map<String, Object> fileInfo = convertToFileInfo(obj);
-                fileInfo.put("isFolder", false);
-                allFiles.add(fileInfo);
-            }
+        // 2. 使用S3原生分页返回当前页（不做内存二次分页）
+        int pageSize = listDTO.getPageSize() != null ? listDTO.getPageSize() : (listDTO.getMaxKeys() != null ? listDTO.getMaxKeys() : 100);
 
-            // 2. 使用S3原生分页返回当前页（不做内存二次分页）
-            List<Map<String, Object>> pageFolders = allFolders;
-            List<Map<String, Object>> pageFiles = allFiles;
+        log.info("文件列表获取成功 - 文件夹: {}, 文件: {}", allFolders.size(), allFiles.size());
 
-            Map<String, Object> pagination = new HashMap<>();
-            int pageSize = listDTO.getPageSize() != null ? listDTO.getPageSize() : (listDTO.getMaxKeys() != null ? listDTO.getMaxKeys() : 100);
-            pagination.put("pageSize", pageSize);
-            pagination.put("hasMore", response.isTruncated());
-            pagination.put("nextContinuationToken", response.nextMarker());  // V1 API使用nextMarker
-            pagination.put("currentCount", pageFolders.size() + pageFiles.size());
-            pagination.put("folderCount", pageFolders.size());
-            pagination.put("fileCount", pageFiles.size());
+        return FileListPage.builder()
+                .folders(allFolders)
+                .files(allFiles)
+                .pageSize(pageSize)
+                .hasMore(response.isTruncated())
+                .nextContinuationToken(response.getNextToken())
+                .build();
+    }
 
-            result.put("folders", pageFolders);
-            result.put("files", pageFiles);
-            result.put("pagination", pagination);
+    /**
+     * 转换为原有的 Map 结构（folders/files/pagination）
+     */
+    private Map<String, Object> toListMap(FileListPage page) {
+        List<Map<String, Object>> folders = new ArrayList<>(page.getFolders().size());
+        for (FileItem folder : page.getFolders()) {
+            Map<String, Object> folderInfo = new HashMap<>();
+            folderInfo.put("key", folder.getKey());
+            folderInfo.put("name", folder.getName());
+            folderInfo.put("isFolder", true);
+            folderInfo.put("lastModified", folder.getLastModified());
+            folderInfo.put("size", 0L);
+            folders.add(folderInfo);
+        }
 
-            log.info("文件列表获取成功 - 文件夹: {}, 文件: {}", pageFolders.size(), pageFiles.size());
+        List<Map<String, Object>> files = new ArrayList<>(page.getFiles().size());
+        for (FileItem file : page.getFiles()) {
+            Map<String, Object> fileInfo = new HashMap<>();
+            fileInfo.put("key", file.getKey());
+            fileInfo.put("size", file.getSize());
+            fileInfo.put("lastModified", file.getLastModified());
+            fileInfo.put("storageClass", file.getStorageClass());
+            fileInfo.put("isFolder", false);
+            files.add(fileInfo);
+        }
 
-            return result;
+        Map<String, Object> pagination = new HashMap<>();
+        pagination.put("pageSize", page.getPageSize());
+        pagination.put("hasMore", page.getHasMore());
+        pagination.put("nextContinuationToken", page.getNextContinuationToken());
+        pagination.put("currentCount", folders.size() + files.size());
+        pagination.put("folderCount", folders.size());
+        pagination.put("fileCount", files.size());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("folders", folders);
+        result.put("files", files);
+        result.put("pagination", pagination);
+        return result;
+    }
 
-        } catch (Exception e) {
-            log.error("获取文件列表失败 - backend: {}, bucketName: {}, prefix: {}",
-                    listDTO.getBackendName(), listDTO.getBucketName(), listDTO.getPrefix(), e);
-            throw new RuntimeException("获取文件列表失败: " + e.getMessage());
+    /**
+     * 添加文件夹条目（已存在时忽略）
+     *
+     * @return 是否新增
+     */
+    private boolean addFolder(List<FileItem> folders, PrefixTrie folderKeys, String folderKey,
+                              String prefix, Instant lastModified) {
+        String folderName = folderKey.startsWith(prefix) ? folderKey.substring(prefix.length()) : folderKey;
+        if (folderName.endsWith("/")) {
+            folderName = folderName.substring(0, folderName.length() - 1);
+        }
+        if (folderName.isEmpty() || !folderKeys.add(folderKey)) {
+            return false;
         }
+        folders.add(FileItem.builder()
+                .key(folderKey)
+                .name(folderName)
+                .type("folder")
+                .lastModified(lastModified)
+                .size(0L)
+                .build());
+        return true;
     }
 
     @Override
@@ -460,12 +541,12 @@ public class StorageServiceImpl implements StorageService {
         StorageConfigProperties.Backend backend = getBackend(backendName);
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
 
             // 如果是文件夹（以/结尾），需要递归删除所有子文件
             if (objectKey.endsWith("/")) {
-                deleteFolderRecursively(s3Client, actualBucketName, objectKey);
+                deleteFolderRecursively(backendName, backend, s3Client, actualBucketName, objectKey);
             } else {
                 // 普通文件直接删除
                 DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
@@ -475,6 +556,7 @@ public class StorageServiceImpl implements StorageService {
 
                 s3Client.deleteObject(deleteObjectRequest);
             }
+            writeSupport.onObjectChanged(backendName, actualBucketName, objectKey);
 
         } catch (Exception e) {
             log.error("文件删除失败 - backend: {}, bucket: {}, key: {}", backendName, bucketName, objectKey, e);
@@ -485,58 +567,42 @@ public class StorageServiceImpl implements StorageService {
     /**
      * 递归删除文件夹及其所有内容
      */
-    private void deleteFolderRecursively(S3Client s3Client, String bucketName, String prefix) {
+    private void deleteFolderRecursively(String backendName, StorageConfigProperties.Backend backend,
+                                         S3Client s3Client, String bucketName, String prefix) {
         try {
             log.info("开始递归删除文件夹: bucket={}, prefix={}", bucketName, prefix);
 
-            // 列出所有子对象（不使用delimiter，获取所有递归内容）
-            software.amazon.awssdk.services.s3.model.ListObjectsV2Request listRequest =
-                software.amazon.awssdk.services.s3.model.ListObjectsV2Request.builder()
-                    .bucket(bucketName)
-                    .prefix(prefix)
-                    .build();
-
-            software.amazon.awssdk.services.s3.model.ListObjectsV2Response listResponse;
-            int totalDeleted = 0;
+            int[] totalDeleted = {0};
 
-            do {
-                listResponse = s3Client.listObjectsV2(listRequest);
-                log.info("列出对象: 找到 {} 个对象", listResponse.contents().size());
+            // 列出所有子对象（不使用delimiter，获取所有递归内容）
+            parallelLister.walk(backendName, backend, bucketName, prefix, page -> {
+                log.info("列出对象: 找到 {} 个对象", page.getContents().size());
 
-                if (!listResponse.contents().isEmpty()) {
-                    // 逐个删除，避免批量删除的URI问题
-                    for (software.amazon.awssdk.services.s3.model.S3Object s3Object : listResponse.contents()) {
-                        try {
-                            DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
-                                    .bucket(bucketName)
-                                    .key(s3Object.key())
-                                    .build();
+                // 逐个删除，避免批量删除的URI问题
+                for (S3Object s3Object : page.getContents()) {
+                    try {
+                        DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
+                                .bucket(bucketName)
+                                .key(s3Object.key())
+                                .build();
 
-                            s3Client.deleteObject(deleteRequest);
-                            totalDeleted++;
+                        s3Client.deleteObject(deleteRequest);
+                        totalDeleted[0]++;
 
-                            if (totalDeleted % 10 == 0) {
-                                log.info("已删除 {} 个对象", totalDeleted);
-                            }
-                        } catch (Exception e) {
-                            log.error("删除对象失败: {}", s3Object.key(), e);
-                            // 继续删除其他文件
+                        if (totalDeleted[0] % 10 == 0) {
+                            log.info("已删除 {} 个对象", totalDeleted[0]);
                         }
+                    } catch (Exception e) {
+                        log.error("删除对象失败: {}", s3Object.key(), e);
+                        // 继续删除其他文件
                     }
                 }
+            });
 
-                // 如果还有更多对象，继续删除
-                if (listResponse.isTruncated()) {
-                    listRequest = listRequest.toBuilder()
-                        .continuationToken(listResponse.nextContinuationToken())
-                        .build();
-                }
-            } while (listResponse.isTruncated());
-
-            log.info("文件夹删除完成，共删除 {} 个对象: {}", totalDeleted, prefix);
+            log.info("文件夹删除完成，共删除 {} 个对象: {}", totalDeleted[0], prefix);
 
             // 如果一个对象都没删除，说明文件夹可能是空的或不存在
-            if (totalDeleted == 0) {
+            if (totalDeleted[0] == 0) {
                 log.warn("文件夹为空或不存在: {}", prefix);
             }
 
@@ -551,7 +617,7 @@ public class StorageServiceImpl implements StorageService {
         StorageConfigProperties.Backend backend = getBackend(backendName);
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
 
             // 获取内容类型
@@ -646,7 +712,8 @@ public class StorageServiceImpl implements StorageService {
     public String getPresignedUrl(String backendName, String bucketName, String objectKey, int expirationSeconds) {
         StorageConfigProperties.Backend backend = getBackend(backendName);
 
-        try(  S3Presigner presigner = s3ClientUtil.createS3Presigner(backend)) {
+        try {
+            S3Presigner presigner = clientRegistry.getPresigner(backendName, backend);
             String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
 
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
@@ -672,7 +739,7 @@ public class StorageServiceImpl implements StorageService {
         StorageConfigProperties.Backend backend = getBackend(backendName);
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
 
             // 确保文件夹路径以/结尾
@@ -686,6 +753,7 @@ public class StorageServiceImpl implements StorageService {
                     .build();
 
             s3Client.putObject(putObjectRequest, RequestBody.empty());
+            writeSupport.onObjectChanged(backendName, actualBucketName, folderPath);
 
         } catch (Exception e) {
             log.error("创建文件夹失败 - backend: {}, bucket: {}, folderPath: {}", backendName, bucketName, folderPath, e);
@@ -698,7 +766,7 @@ public class StorageServiceImpl implements StorageService {
         StorageConfigProperties.Backend backend = getBackend(backendName);
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             ListBucketsRequest request = ListBucketsRequest.builder().build();
             ListBucketsResponse response = s3Client.listBuckets(request);
 
@@ -717,7 +785,7 @@ public class StorageServiceImpl implements StorageService {
         StorageConfigProperties.Backend backend = getBackend(backendName);
 
         try {
-            S3Client s3Client = s3ClientUtil.createS3Client(backend);
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
 
             // 构建删除请求
@@ -735,6 +803,7 @@ public class StorageServiceImpl implements StorageService {
                     .build();
 
             DeleteObjectsResponse response = s3Client.deleteObjects(deleteObjectsRequest);
+            objectKeys.forEach(key -> writeSupport.onObjectChanged(backendName, actualBucketName, key));
 
             log.info("批量删除文件成功 - backend: {}, bucket: {}, 删除数量: {}",
                     backendName, actualBucketName, response.deleted().size());
@@ -745,20 +814,27 @@ public class StorageServiceImpl implements StorageService {
         }
     }
 
-    private String generateObjectKey(String originalFilename) {
-        String extension = FilenameUtils.getExtension(originalFilename);
-        String baseName = FilenameUtils.getBaseName(originalFilename);
-        String timestamp = String.valueOf(System.currentTimeMillis());
-        return baseName + "_" + timestamp + "." + extension;
+    private Map<String, Object> buildUploadResult(MultipartFile file, String backendName, String bucketName, String objectKey) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("backendName", backendName);
+        result.put("bucketName", bucketName);
+        result.put("objectKey", objectKey);
+        result.put("fileName", file.getOriginalFilename());
+        result.put("fileSize", file.getSize());
+        result.put("contentType", file.getContentType());
+        result.put("uploadTime", System.currentTimeMillis());
+        return result;
     }
 
-    private Map<String, Object> convertToFileInfo(S3Object s3Object) {
-        Map<String, Object> fileInfo = new HashMap<>();
-        fileInfo.put("key", s3Object.key());
-        fileInfo.put("size", s3Object.size());
-        fileInfo.put("lastModified", s3Object.lastModified());
-        fileInfo.put("storageClass", s3Object.storageClassAsString());
-        return fileInfo;
+    private FileItem toFileItem(S3Object s3Object) {
+        return FileItem.builder()
+                .key(s3Object.key())
+                .type("file")
+                .size(s3Object.size())
+                .lastModified(s3Object.lastModified())
+                .storageClass(s3Object.storageClassAsString())
+                .etag(s3Object.eTag())
+                .build();
     }
 
     @Override
@@ -772,7 +848,8 @@ public class StorageServiceImpl implements StorageService {
 
         log.info("开始重命名文件: bucket={}, oldKey={}, newKey={}", actualBucket, oldKey, newKey);
 
-        try (S3Client s3Client = s3ClientUtil.createS3Client(backend)) {
+        try {
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             // 检查源文件是否存在
             try {
                 s3Client.headObject(HeadObjectRequest.builder()
@@ -796,7 +873,7 @@ public class StorageServiceImpl implements StorageService {
 
             // 如果是文件夹（以 / 结尾），需要递归重命名所有子对象
             if (oldKey.endsWith("/")) {
-                renameFolder(s3Client, actualBucket, oldKey, newKey);
+                renameFolder(backendName, backend, s3Client, actualBucket, oldKey, newKey);
             } else {
                 // 普通文件：复制 + 删除
                 CopyObjectRequest copyRequest = CopyObjectRequest.builder()
@@ -819,6 +896,8 @@ public class StorageServiceImpl implements StorageService {
                 log.info("源文件删除成功: {}", oldKey);
             }
 
+            writeSupport.onObjectChanged(backendName, actualBucket, oldKey);
+            writeSupport.onObjectChanged(backendName, actualBucket, newKey);
             log.info("文件重命名完成: {} -> {}", oldKey, newKey);
         } catch (Exception e) {
             log.error("重命名文件失败: oldKey={}, newKey={}", oldKey, newKey, e);
@@ -826,25 +905,17 @@ public class StorageServiceImpl implements StorageService {
         }
     }
 
-    private void renameFolder(S3Client s3Client, String bucket, String oldPrefix, String newPrefix) {
+    private void renameFolder(String backendName, StorageConfigProperties.Backend backend,
+                              S3Client s3Client, String bucket, String oldPrefix, String newPrefix) {
         log.info("开始重命名文件夹: oldPrefix={}, newPrefix={}", oldPrefix, newPrefix);
 
-        // 列出所有以 oldPrefix 开头的对象
-        ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
-                .bucket(bucket)
-                .prefix(oldPrefix)
-                .build();
-
-        ListObjectsV2Response listResponse;
-        int totalCount = 0;
-
-        do {
-            listResponse = s3Client.listObjectsV2(listRequest);
-            List<S3Object> objects = listResponse.contents();
+        int[] totalCount = {0};
 
-            for (S3Object s3Object : objects) {
+        // 列出所有以 oldPrefix 开头的对象
+        parallelLister.walk(backendName, backend, bucket, oldPrefix, page -> {
+            for (S3Object s3Object : page.getContents()) {
                 String oldKey = s3Object.key();
-                String newKey = oldKey.replaceFirst("^" + oldPrefix, newPrefix);
+                String newKey = newPrefix + oldKey.substring(oldPrefix.length());
 
                 // 复制对象
                 CopyObjectRequest copyRequest = CopyObjectRequest.builder()
@@ -864,21 +935,12 @@ public class StorageServiceImpl implements StorageService {
 
                 s3Client.deleteObject(deleteRequest);
 
-                totalCount++;
+                totalCount[0]++;
                 log.debug("文件夹内对象重命名: {} -> {}", oldKey, newKey);
             }
+        });
 
-            // 如果有更多对象，继续列表
-            if (listResponse.isTruncated()) {
-                listRequest = ListObjectsV2Request.builder()
-                        .bucket(bucket)
-                        .prefix(oldPrefix)
-                        .continuationToken(listResponse.nextContinuationToken())
-                        .build();
-            }
-        } while (listResponse.isTruncated());
-
-        log.info("文件夹重命名完成，共处理 {} 个对象", totalCount);
+        log.info("文件夹重命名完成，共处理 {} 个对象", totalCount[0]);
     }
 
     @Override
@@ -892,39 +954,29 @@ public class StorageServiceImpl implements StorageService {
 
         log.info("开始计算文件夹大小: bucket={}, folderPath={}", actualBucket, folderPath);
 
-        try (S3Client s3Client = s3ClientUtil.createS3Client(backend)) {
-            long totalSize = 0;
-            int fileCount = 0;
-
-            // 列出文件夹下所有文件（递归）
-            ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
-                    .bucket(actualBucket)
-                    .prefix(folderPath)
-                    .build();
-
-            ListObjectsV2Response listResponse;
+        Optional<FolderStats> indexed = metadataIndexService.folderStats(backendName, backend, actualBucket, folderPath);
+        if (indexed.isPresent()) {
+            log.info("文件夹大小计算完成（元数据索引汇总）: folderPath={}, totalSize={}, fileCount={}",
+                    folderPath, indexed.get().getTotalSize(), indexed.get().getFileCount());
+            return indexed.get().getTotalSize();
+        }
 
-            do {
-                listResponse = s3Client.listObjectsV2(listRequest);
+        try {
+            long[] totals = {0L, 0L};
 
-                for (S3Object s3Object : listResponse.contents()) {
+            // 列出文件夹下所有文件（递归）
+            parallelLister.walk(backendName, backend, actualBucket, folderPath, page -> {
+                for (S3Object s3Object : page.getContents()) {
                     // 跳过文件夹标记本身
                     if (!s3Object.key().endsWith("/")) {
-                        totalSize += s3Object.size();
-                        fileCount++;
+                        totals[0] += s3Object.size();
+                        totals[1]++;
                     }
                 }
+            });
 
-                // 如果有更多数据，继续获取
-                if (listResponse.isTruncated()) {
-                    listRequest = ListObjectsV2Request.builder()
-                            .bucket(actualBucket)
-                            .prefix(folderPath)
-                            .continuationToken(listResponse.nextContinuationToken())
-                            .build();
-                }
-
-            } while (listResponse.isTruncated());
+            long totalSize = totals[0];
+            long fileCount = totals[1];
 
             log.info("文件夹大小计算完成: folderPath={}, totalSize={}, fileCount={}", folderPath, totalSize, fileCount);
 
@@ -946,7 +998,8 @@ public class StorageServiceImpl implements StorageService {
             throw new RuntimeException("存储后端不可用: " + backendName);
         }
 
-        try (S3Client s3Client = s3ClientUtil.createS3Client(backend)) {
+        try {
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
             // 使用 S3 CopyObject API
             CopyObjectRequest copyRequest = CopyObjectRequest.builder()
                     .sourceBucket(sourceBucket)
@@ -956,6 +1009,7 @@ public class StorageServiceImpl implements StorageService {
                     .build();
 
             s3Client.copyObject(copyRequest);
+            writeSupport.onObjectChanged(backendName, targetBucket, targetKey);
 
             log.info("文件复制成功: source={}:{}, target={}:{}",
                     sourceBucket, sourceKey, targetBucket, targetKey);
@@ -986,20 +1040,15 @@ public class StorageServiceImpl implements StorageService {
             throw new RuntimeException("存储后端不可用: " + backendName);
         }
 
-        int copiedCount = 0;
+        int[] copiedCount = {0};
+        String sourcePrefix = sourceFolderPath;
+        String targetPrefix = targetFolderPath;
 
-        try (S3Client s3Client = s3ClientUtil.createS3Client(backend)) {
-            ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
-                    .bucket(sourceBucket)
-                    .prefix(sourceFolderPath)
-                    .build();
-
-            ListObjectsV2Response listResponse;
-
-            do {
-                listResponse = s3Client.listObjectsV2(listRequest);
+        try {
+            S3Client s3Client = clientRegistry.getClient(backendName, backend);
 
-                for (S3Object s3Object : listResponse.contents()) {
+            parallelLister.walk(backendName, backend, sourceBucket, sourcePrefix, page -> {
+                for (S3Object s3Object : page.getContents()) {
                     String sourceKey = s3Object.key();
 
                     // 跳过文件夹标记对象
@@ -1008,8 +1057,8 @@ public class StorageServiceImpl implements StorageService {
                     }
 
                     // 计算目标路径
-                    String relativePath = sourceKey.substring(sourceFolderPath.length());
-                    String targetKey = targetFolderPath + relativePath;
+                    String relativePath = sourceKey.substring(sourcePrefix.length());
+                    String targetKey = targetPrefix + relativePath;
 
                     // 复制单个文件
                     try {
@@ -1021,7 +1070,7 @@ public class StorageServiceImpl implements StorageService {
                                 .build();
 
                         s3Client.copyObject(copyRequest);
-                        copiedCount++;
+                        copiedCount[0]++;
 
                         log.debug("文件复制成功: {} -> {}", sourceKey, targetKey);
 
@@ -1030,20 +1079,14 @@ public class StorageServiceImpl implements StorageService {
                         // 继续复制其他文件
                     }
                 }
+            });
 
-                // 继续下一页
-                if (listResponse.isTruncated()) {
-                    listRequest = listRequest.toBuilder()
-                            .continuationToken(listResponse.nextContinuationToken())
-                            .build();
-                }
-
-            } while (listResponse.isTruncated());
+            writeSupport.onObjectChanged(backendName, targetBucket, targetPrefix);
 
             log.info("文件夹复制完成: source={}:{}, target={}:{}, 共复制 {} 个文件",
-                    sourceBucket, sourceFolderPath, targetBucket, targetFolderPath, copiedCount);
+                    sourceBucket, sourceFolderPath, targetBucket, targetFolderPath, copiedCount[0]);
 
-            return copiedCount;
+            return copiedCount[0];
 
         } catch (Exception e) {
             log.error("文件夹复制失败: source={}:{}, target={}:{}",
@@ -1051,4 +1094,191 @@ public class StorageServiceImpl implements StorageService {
             throw new RuntimeException("文件夹复制失败: " + e.getMessage(), e);
         }
     }
+
+    // ==================== 异步执行引擎（S3AsyncClient） ====================
+
+    @Override
+    public CompletableFuture<Map<String, Object>> listFilesAsync(FileListDTO listDTO) {
+        validateListRequest(listDTO);
+
+        StorageConfigProperties.Backend backend = getBackend(listDTO.getBackendName());
+        S3ObjectLister.ListRequest request = buildListRequest(listDTO, backend);
+
+        // 响应在SDK的回调线程上转换，不占用请求线程
+        CompletableFuture<Map<String, Object>> future = objectLister.listAsync(listDTO.getBackendName(), backend, request)
+                .thenApply(page -> toListMap(buildListResult(listDTO, page, request, backend)));
+
+        return withFailureMessage(future, "获取文件列表失败");
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> uploadFileAsync(MultipartFile file, String backendName, String bucketName, String objectKey) {
+        StorageConfigProperties.Backend backend = getBackend(backendName);
+
+        // 文件安全检查
+        if (!fileSecurityUtils.isFileSecure(file.getOriginalFilename(), file.getSize())) {
+            throw new RuntimeException("文件类型不安全或文件过大");
+        }
+
+        S3AsyncClient asyncClient = clientRegistry.getAsyncClient(backendName, backend);
+        String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
+        String originalFilename = fileSecurityUtils.sanitizeFilename(file.getOriginalFilename());
+        String actualObjectKey = objectKey != null ? objectKey : writeSupport.generateObjectKey(originalFilename);
+
+        InputStream inputStream;
+        try {
+            inputStream = file.getInputStream();
+        } catch (IOException e) {
+            throw new RuntimeException("文件上传失败: " + e.getMessage(), e);
+        }
+
+        if (multipartUploader.isMultipart(backend, file.getSize())) {
+            // 大文件分片并发上传：分片由分片上传线程池发出，读取输入流占用一个流读取线程
+            S3MultipartUploader.UploadRequest uploadRequest = S3MultipartUploader.UploadRequest.builder()
+                    .bucket(actualBucketName)
+                    .key(actualObjectKey)
+                    .contentType(file.getContentType())
+                    .size(file.getSize())
+                    .build();
+            CompletableFuture<Map<String, Object>> future = writeSupport.ensureBucketAsync(asyncClient, actualBucketName)
+                    .thenApplyAsync(ignored -> {
+                        try {
+                            multipartUploader.upload(backendName, backend, uploadRequest, inputStream);
+                        } catch (IOException e) {
+                            throw new CompletionException(e);
+                        }
+                        writeSupport.onObjectChanged(backendName, actualBucketName, actualObjectKey);
+                        return buildUploadResult(file, backendName, actualBucketName, actualObjectKey);
+                    }, streamExecutor)
+                    .whenComplete((result, error) -> closeQuietly(inputStream));
+            return withFailureMessage(future, "文件上传失败");
+        }
+
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(actualBucketName)
+                .key(actualObjectKey)
+                .contentType(file.getContentType())
+                .build();
+
+        CompletableFuture<Map<String, Object>> future = writeSupport.ensureBucketAsync(asyncClient, actualBucketName)
+                .thenCompose(ignored -> asyncClient.putObject(putObjectRequest,
+                        AsyncRequestBody.fromInputStream(inputStream, file.getSize(), streamExecutor)))
+                .thenApply(response -> {
+                    writeSupport.onObjectChanged(backendName, actualBucketName, actualObjectKey);
+                    return buildUploadResult(file, backendName, actualBucketName, actualObjectKey);
+                })
+                .whenComplete((result, error) -> closeQuietly(inputStream));
+
+        return withFailureMessage(future, "文件上传失败");
+    }
+
+    @Override
+    public CompletableFuture<Void> copyFileAsync(String backendName, String sourceBucket, String sourceKey, String targetBucket, String targetKey) {
+        StorageConfigProperties.Backend backend = getBackend(backendName);
+        S3AsyncClient asyncClient = clientRegistry.getAsyncClient(backendName, backend);
+
+        CopyObjectRequest copyRequest = CopyObjectRequest.builder()
+                .sourceBucket(sourceBucket)
+                .sourceKey(sourceKey)
+                .destinationBucket(targetBucket)
+                .destinationKey(targetKey)
+                .build();
+
+        CompletableFuture<Void> future = asyncClient.copyObject(copyRequest)
+                .thenAccept(response -> {
+                    writeSupport.onObjectChanged(backendName, targetBucket, targetKey);
+                    log.info("文件复制成功: source={}:{}, target={}:{}",
+                            sourceBucket, sourceKey, targetBucket, targetKey);
+                });
+
+        return withFailureMessage(future, "文件复制失败");
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFileAsync(String backendName, String bucketName, String objectKey) {
+        StorageConfigProperties.Backend backend = getBackend(backendName);
+        S3AsyncClient asyncClient = clientRegistry.getAsyncClient(backendName, backend);
+        String actualBucketName = bucketName != null ? bucketName : backend.getDefaultBucket();
+
+        CompletableFuture<Void> future;
+        if (objectKey.endsWith("/")) {
+            AtomicInteger deleted = new AtomicInteger();
+            future = deleteFolderAsync(backendName, backend, asyncClient, actualBucketName, objectKey, null, deleted)
+                    .thenRun(() -> log.info("文件夹删除完成，共删除 {} 个对象: {}", deleted.get(), objectKey));
+        } else {
+            future = asyncClient.deleteObject(DeleteObjectRequest.builder()
+                            .bucket(actualBucketName)
+                            .key(objectKey)
+                            .build())
+                    .thenAccept(response -> log.debug("文件删除成功: {}", objectKey));
+        }
+
+        future = future.whenComplete((result, error) -> writeSupport.onObjectChanged(backendName, actualBucketName, objectKey));
+        return withFailureMessage(future, "文件删除失败");
+    }
+
+    /**
+     * 异步递归删除文件夹：逐页列出，每页内的删除请求并发执行
+     */
+    private CompletableFuture<Void> deleteFolderAsync(String backendName, StorageConfigProperties.Backend backend,
+                                                      S3AsyncClient asyncClient, String bucketName, String prefix,
+                                                      String continuationToken, AtomicInteger deleted) {
+        S3ObjectLister.ListRequest listRequest = S3ObjectLister.ListRequest.builder()
+                .bucket(bucketName)
+                .prefix(prefix)
+                .continuationToken(continuationToken)
+                .build();
+
+        return objectLister.listAsync(backendName, backend, listRequest).thenCompose(listResponse -> {
+            CompletableFuture<?>[] deletes = listResponse.getContents().stream()
+                    .map(s3Object -> asyncClient.deleteObject(DeleteObjectRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(s3Object.key())
+                                    .build())
+                            .handle((response, error) -> {
+                                if (error != null) {
+                                    // 继续删除其他文件
+                                    log.error("删除对象失败: {}", s3Object.key(), error);
+                                } else {
+                                    deleted.incrementAndGet();
+                                }
+                                return null;
+                            }))
+                    .toArray(CompletableFuture[]::new);
+
+            return CompletableFuture.allOf(deletes).thenCompose(ignored -> listResponse.isTruncated()
+                    ? deleteFolderAsync(backendName, backend, asyncClient, bucketName, prefix, listResponse.getNextToken(), deleted)
+                    : CompletableFuture.completedFuture(null));
+        });
+    }
+
+    /**
+     * 为异步结果附加与同步接口一致的错误信息
+     */
+    private <T> CompletableFuture<T> withFailureMessage(CompletableFuture<T> future, String message) {
+        return future.handle((value, error) -> {
+            if (error == null) {
+                return value;
+            }
+            Throwable cause = unwrapCompletion(error);
+            log.error("{}: {}", message, cause.getMessage(), cause);
+            throw new CompletionException(new RuntimeException(message + ": " + cause.getMessage(), cause));
+        });
+    }
+
+    private Throwable unwrapCompletion(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            log.debug("关闭上传流失败", e);
+        }
+    }
 }
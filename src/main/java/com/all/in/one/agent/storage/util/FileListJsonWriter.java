@@ -0,0 +1,124 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.common.Result;
+import com.all.in.one.agent.storage.dto.FileItem;
+import com.all.in.one.agent.storage.dto.FileListPage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 文件列表的流式JSON输出
+ *
+ * 直接用 JsonGenerator 逐行写出 FileListPage，输出结构与
+ * Result&lt;Map&gt;（folders/files/pagination）完全一致，
+ * 省去每行一个HashMap以及Jackson的反射序列化。
+ * 日期等值仍交给Spring配置的 ObjectMapper 处理，格式与其他接口保持一致
+ */
+@Component
+public class FileListJsonWriter {
+
+    private final ObjectMapper objectMapper;
+
+    public FileListJsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 以 Result.success 的结构写出一页文件列表
+     */
+    public void write(HttpServletResponse response, FileListPage page) throws IOException {
+        Result<Void> ok = Result.success();
+        prepare(response);
+
+        try (JsonGenerator generator = createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeNumberField("code", ok.getCode());
+            generator.writeStringField("message", ok.getMessage());
+
+            generator.writeObjectFieldStart("data");
+            writeFolders(generator, page.getFolders());
+            writeFiles(generator, page.getFiles());
+            writePagination(generator, page);
+            generator.writeEndObject();
+
+            generator.writeBooleanField("success", ok.getSuccess());
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * 写出错误结果（结构与 Result.error 相同）
+     */
+    public void writeError(HttpServletResponse response, String message) throws IOException {
+        prepare(response);
+        objectMapper.writeValue(response.getOutputStream(), Result.error(message));
+    }
+
+    private void writeFolders(JsonGenerator generator, List<FileItem> folders) throws IOException {
+        generator.writeArrayFieldStart("folders");
+        for (FileItem folder : folders) {
+            generator.writeStartObject();
+            generator.writeStringField("key", folder.getKey());
+            generator.writeStringField("name", folder.getName());
+            generator.writeBooleanField("isFolder", true);
+            generator.writeFieldName("lastModified");
+            generator.writeObject(folder.getLastModified());
+            generator.writeNumberField("size", 0L);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeFiles(JsonGenerator generator, List<FileItem> files) throws IOException {
+        generator.writeArrayFieldStart("files");
+        for (FileItem file : files) {
+            generator.writeStartObject();
+            generator.writeStringField("key", file.getKey());
+            generator.writeFieldName("size");
+            if (file.getSize() != null) {
+                generator.writeNumber(file.getSize());
+            } else {
+                generator.writeNull();
+            }
+            generator.writeFieldName("lastModified");
+            generator.writeObject(file.getLastModified());
+            generator.writeStringField("storageClass", file.getStorageClass());
+            generator.writeBooleanField("isFolder", false);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    private void writePagination(JsonGenerator generator, FileListPage page) throws IOException {
+        int folderCount = page.getFolders().size();
+        int fileCount = page.getFiles().size();
+
+        generator.writeObjectFieldStart("pagination");
+        generator.writeNumberField("pageSize", page.getPageSize());
+        generator.writeBooleanField("hasMore", Boolean.TRUE.equals(page.getHasMore()));
+        generator.writeStringField("nextContinuationToken", page.getNextContinuationToken());
+        generator.writeNumberField("currentCount", folderCount + fileCount);
+        generator.writeNumberField("folderCount", folderCount);
+        generator.writeNumberField("fileCount", fileCount);
+        generator.writeEndObject();
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        // 由 ObjectMapper 创建，writeObject 使用与全局一致的序列化配置
+        return objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8);
+    }
+
+    private void prepare(HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    }
+}
@@ -0,0 +1,126 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.event.ObjectChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按前缀缓存的文件夹推断结果
+ *
+ * 后端不返回CommonPrefixes时，需要遍历前缀下的对象才能从key路径中推断出子文件夹。
+ * 推断结果按 后端 + 后端配置指纹 + bucket + prefix 缓存，收到对象变更事件时使受影响前缀的结果失效：
+ * 本服务的写操作发布 ObjectChangedEvent，元数据索引增量同步发现的外部改动发布 ObjectSyncedEvent；
+ * 两者都未覆盖的外部改动在缓存过期后可见
+ */
+@Slf4j
+@Component
+public class FolderInferenceCache {
+
+    /**
+     * 单次推断最多遍历的页数，超过后返回已发现的部分结果
+     */
+    private static final int MAX_PAGES = 100;
+
+    private final S3ObjectLister objectLister;
+
+    private final Cache<InferenceKey, List<String>> folders = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(10, TimeUnit.MINUTES)
+            .build();
+
+    public FolderInferenceCache(S3ObjectLister objectLister) {
+        this.objectLister = objectLister;
+    }
+
+    /**
+     * 获取前缀下的一级子文件夹（key以 '/' 结尾），未缓存时遍历推断
+     */
+    public List<String> folders(String backendKey, StorageConfigProperties.Backend backend, String bucket, String prefix) {
+        InferenceKey key = new InferenceKey(backendKey, S3ClientRegistry.fingerprint(backend), bucket,
+                prefix != null ? prefix : "");
+        return folders.get(key, k -> infer(backendKey, backend, k.bucket(), k.prefix()));
+    }
+
+    /**
+     * 对象写入/删除后，使包含该对象的前缀以及该前缀之下的推断结果失效
+     */
+    @EventListener
+    public void onObjectChanged(ObjectChangedEvent event) {
+        String changed = event.getObjectKey() != null ? event.getObjectKey() : "";
+        folders.asMap().keySet().removeIf(key -> key.backendKey().equals(event.getBackendKey())
+                && key.bucket().equals(event.getBucketName())
+                && (changed.startsWith(key.prefix()) || key.prefix().startsWith(changed)));
+    }
+
+    private List<String> infer(String backendKey, StorageConfigProperties.Backend backend, String bucket, String prefix) {
+        PrefixTrie seen = new PrefixTrie();
+        List<String> result = new ArrayList<>();
+        int[] pageCount = {0};
+
+        try {
+            objectLister.walk(backendKey, backend, bucket, prefix, page -> {
+                if (++pageCount[0] > MAX_PAGES) {
+                    throw new PageLimitReached();
+                }
+                for (S3Object obj : page.getContents()) {
+                    String folderPath = folderOf(obj, prefix);
+                    if (folderPath != null && seen.add(folderPath)) {
+                        result.add(folderPath);
+                    }
+                }
+            });
+        } catch (PageLimitReached e) {
+            log.warn("文件夹推断达到页数上限 {}，返回部分结果 - bucket: {}, prefix: '{}'", MAX_PAGES, bucket, prefix);
+        }
+
+        log.info("文件夹推断完成 - bucket: {}, prefix: '{}', 页数: {}, 文件夹: {}",
+                bucket, prefix, Math.min(pageCount[0], MAX_PAGES), result.size());
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * 从对象key中提取当前前缀下的一级文件夹
+     */
+    private String folderOf(S3Object obj, String prefix) {
+        String key = obj.key();
+        if (!key.startsWith(prefix)) {
+            return null;
+        }
+        String relativePath = key.substring(prefix.length());
+
+        // 方法1：从包含斜杠的路径中提取文件夹前缀
+        int slash = relativePath.indexOf('/');
+        if (slash > 0) {
+            return prefix + relativePath.substring(0, slash + 1);
+        }
+        // 方法2：0字节对象作为文件夹标记（rclone风格）
+        if (slash < 0 && !relativePath.isEmpty() && obj.size() != null && obj.size() == 0L) {
+            return key + "/";
+        }
+        return null;
+    }
+
+    private record InferenceKey(String backendKey, String fingerprint, String bucket, String prefix) {
+    }
+
+    /**
+     * 用于从遍历回调中提前退出
+     */
+    private static final class PageLimitReached extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private PageLimitReached() {
+            super(null, null, false, false);
+        }
+    }
+}
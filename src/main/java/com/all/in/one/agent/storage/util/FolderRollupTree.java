@@ -0,0 +1,171 @@
+package com.all.in.one.agent.storage.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 文件夹用量汇总树
+ *
+ * 每个文件夹一个节点，记录其下（递归）的文件数和总字节数。对象的新增、删除、大小变化
+ * 沿key的路径更新所有祖先节点，代价与目录深度相关；查询任意文件夹的统计只需按路径找到节点，
+ * 与文件夹内的对象数无关。
+ *
+ * 文件夹标记（以 '/' 结尾的key）不计入文件数，与按S3列表统计的结果一致；
+ * 文件数降为0的节点随即删除，树的大小与仍有文件的文件夹数相关
+ */
+public final class FolderRollupTree {
+
+    /**
+     * 文件夹的汇总值
+     */
+    public record Totals(long fileCount, long totalBytes) {
+    }
+
+    private static final Totals EMPTY = new Totals(0, 0);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+
+    /**
+     * 从一组条目构建
+     */
+    public static FolderRollupTree build(Map<String, ObjectMetadataIndex.Entry> entries) {
+        FolderRollupTree tree = new FolderRollupTree();
+        for (Map.Entry<String, ObjectMetadataIndex.Entry> item : entries.entrySet()) {
+            if (!isFolderMarker(item.getKey())) {
+                tree.update(item.getKey(), 1, item.getValue().size());
+            }
+        }
+        return tree;
+    }
+
+    public void add(String key, long size) {
+        if (isFolderMarker(key)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            update(key, 1, size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void resize(String key, long oldSize, long newSize) {
+        if (isFolderMarker(key)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            update(key, 0, newSize - oldSize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key, long size) {
+        if (isFolderMarker(key)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            update(key, -1, -size);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除整个文件夹（空字符串为根目录）
+     */
+    public void removeFolder(String folder) {
+        lock.writeLock().lock();
+        try {
+            if (folder.isEmpty()) {
+                root = new Node();
+                return;
+            }
+            Node node = find(folder);
+            if (node != null) {
+                update(folder, -node.fileCount, -node.totalBytes);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 文件夹（空字符串或以 '/' 结尾）下的汇总值，没有文件时为0
+     */
+    public Totals get(String folder) {
+        lock.readLock().lock();
+        try {
+            Node node = find(folder);
+            return node != null ? new Totals(node.fileCount, node.totalBytes) : EMPTY;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean isFolderMarker(String key) {
+        return key.endsWith("/");
+    }
+
+    /**
+     * 沿路径（根目录及路径上的每一级文件夹）累加文件数和字节数
+     */
+    private void update(String key, long countDelta, long bytesDelta) {
+        Node node = root;
+        node.add(countDelta, bytesDelta);
+        int from = 0;
+        int slash;
+        while ((slash = key.indexOf('/', from)) >= 0) {
+            String name = key.substring(from, slash);
+            Node child = node.children != null ? node.children.get(name) : null;
+            if (child == null) {
+                if (countDelta < 0) {
+                    return;
+                }
+                child = new Node();
+                node.child(name, child);
+            }
+            child.add(countDelta, bytesDelta);
+            if (child.fileCount <= 0) {
+                node.children.remove(name);
+                return;
+            }
+            node = child;
+            from = slash + 1;
+        }
+    }
+
+    private Node find(String folder) {
+        Node node = root;
+        int from = 0;
+        int slash;
+        while (node != null && (slash = folder.indexOf('/', from)) >= 0) {
+            node = node.children != null ? node.children.get(folder.substring(from, slash)) : null;
+            from = slash + 1;
+        }
+        return node;
+    }
+
+    private static final class Node {
+        private long fileCount;
+        private long totalBytes;
+        private Map<String, Node> children;
+
+        void add(long countDelta, long bytesDelta) {
+            fileCount += countDelta;
+            totalBytes += bytesDelta;
+        }
+
+        void child(String name, Node node) {
+            if (children == null) {
+                children = new HashMap<>(4);
+            }
+            children.put(name, node);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.all.in.one.agent.storage.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 元数据索引增量同步的分区水位线
+ *
+ * 每个同步分区（一个前缀）记录最近一次同步的时间、对象数、总大小、最新的 lastModified
+ * 以及连续无变化的次数，用于决定下一次遍历该分区的时间；
+ * 保存在索引目录下的 sync-state.bin，重启后据此恢复索引的新鲜度基准和各分区的同步节奏
+ */
+@Slf4j
+public final class IndexSyncState {
+
+    private static final int MAGIC = 0x4D53594E; // "MSYN"
+    private static final int VERSION = 1;
+
+    private static final String STATE_FILE = "sync-state.bin";
+
+    /**
+     * 单个分区的水位线（时间均为毫秒）
+     *
+     * @param prefix          分区前缀
+     * @param deep            true 为递归遍历整个前缀，false 只遍历直接子对象（子文件夹另行分区）
+     * @param objectCount     最近一次同步时的对象数
+     * @param totalBytes      最近一次同步时的对象总大小
+     * @param maxLastModified 分区内最新的对象修改时间
+     * @param syncedAt        最近一次同步开始列出的时间
+     * @param deltas          最近一次同步发现的变更数
+     * @param quietRuns       连续无变更的同步次数
+     * @param nextSyncAt      下一次同步的最早时间
+     */
+    public record Watermark(String prefix, boolean deep, long objectCount, long totalBytes, long maxLastModified,
+                            long syncedAt, int deltas, int quietRuns, long nextSyncAt) {
+    }
+
+    private final Path file;
+    private final Map<String, Watermark> watermarks = new ConcurrentHashMap<>();
+
+    /**
+     * 全部分区都已同步到的时间，0表示尚未完成过同步
+     */
+    private volatile long syncedAt;
+
+    private IndexSyncState(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 从索引目录加载（文件不存在或格式不兼容时为空状态）
+     */
+    public static IndexSyncState load(Path dir) {
+        IndexSyncState state = new IndexSyncState(dir.resolve(STATE_FILE));
+        if (!Files.exists(state.file)) {
+            return state;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(state.file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("同步状态文件格式不兼容，重新开始同步 - {}", state.file);
+                return state;
+            }
+            state.syncedAt = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Watermark watermark = new Watermark(in.readUTF(), in.readBoolean(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readLong());
+                state.watermarks.put(watermark.prefix(), watermark);
+            }
+        } catch (IOException e) {
+            log.warn("读取同步状态失败，重新开始同步 - {}", state.file, e);
+            state.watermarks.clear();
+            state.syncedAt = 0;
+        }
+        return state;
+    }
+
+    public long getSyncedAt() {
+        return syncedAt;
+    }
+
+    public void setSyncedAt(long syncedAt) {
+        this.syncedAt = syncedAt;
+    }
+
+    public Watermark get(String prefix) {
+        return watermarks.get(prefix);
+    }
+
+    public void put(Watermark watermark) {
+        watermarks.put(watermark.prefix(), watermark);
+    }
+
+    public int size() {
+        return watermarks.size();
+    }
+
+    public List<Watermark> all() {
+        return new ArrayList<>(watermarks.values());
+    }
+
+    /**
+     * 只保留本次同步仍然存在的分区（文件夹被删除或分区方式变化后，旧的水位线随之丢弃）
+     */
+    public void retain(Set<String> prefixes) {
+        watermarks.keySet().retainAll(prefixes);
+    }
+
+    /**
+     * 写出到索引目录
+     */
+    public synchronized void save() throws IOException {
+        Path temp = file.resolveSibling(STATE_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            List<Watermark> snapshot = all();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(syncedAt);
+            out.writeInt(snapshot.size());
+            for (Watermark watermark : snapshot) {
+                out.writeUTF(watermark.prefix());
+                out.writeBoolean(watermark.deep());
+                out.writeLong(watermark.objectCount());
+                out.writeLong(watermark.totalBytes());
+                out.writeLong(watermark.maxLastModified());
+                out.writeLong(watermark.syncedAt());
+                out.writeInt(watermark.deltas());
+                out.writeInt(watermark.quietRuns());
+                out.writeLong(watermark.nextSyncAt());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
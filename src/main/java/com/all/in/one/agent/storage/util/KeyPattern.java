@@ -0,0 +1,593 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.exception.StorageException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 对象key匹配模式（glob或正则）
+ *
+ * 编译时把模式拆成相互独立的分支，并提取每个分支的最长字面量前缀作为S3列表的 prefix：
+ * - glob 中的 {a,b} 展开为多个分支（超过分支上限时不展开，整体作为一个分支）；
+ *   glob 分支还按 '/' 拆成路径段，调用方可逐级列出、只进入能匹配的子目录
+ * - 正则按顶层 '|' 拆分，以 '^' 开头的分支可下推前缀，其他分支需要列出整个bucket
+ *
+ * glob 语法：* 匹配不含 '/' 的任意字符，** 匹配任意字符（整段的 ** 可匹配零级目录），
+ * ? 匹配一个非 '/' 字符，[abc] / [!a-z] 字符集合，{a,b} 多选一，\ 转义；整个key需完全匹配。
+ * 正则按 find 语义匹配（需要完全匹配时使用 ^...$）
+ *
+ * 匹配单个key时按读取字符的次数计步，超过上限抛出 StorageException，
+ * 避免 (a+)+$ 这类回溯严重的模式长时间占用搜索线程
+ */
+public final class KeyPattern {
+
+    /**
+     * 一个独立分支：列出 prefix 下的key即可找到该分支的全部匹配
+     *
+     * @param prefix   最长字面量前缀
+     * @param segments 按 '/' 拆分的路径段（从key开头算起），为null时只能递归列出 prefix
+     * @param pattern  只匹配该分支的正则；正则模式的分支为null，按整个模式匹配
+     */
+    public record Branch(String prefix, List<Segment> segments, Pattern pattern) {
+    }
+
+    /**
+     * glob 分支的一个路径段
+     *
+     * @param lead      段开头的字面量部分
+     * @param pattern   匹配整段的正则，字面量段为null
+     * @param recursive 是否包含 **（可跨越 '/'，需递归列出）
+     */
+    public record Segment(String lead, Pattern pattern, boolean recursive) {
+
+        public boolean isLiteral() {
+            return pattern == null;
+        }
+    }
+
+    private static final String GLOB_META = "*?[{";
+
+    private final String source;
+    private final List<Pattern> patterns;
+    private final List<Branch> branches;
+    private final boolean anchored;
+    private final int maxMatchSteps;
+
+    private KeyPattern(String source, List<Pattern> patterns, List<Branch> branches, boolean anchored,
+                       int maxMatchSteps) {
+        this.source = source;
+        this.patterns = patterns;
+        this.branches = branches;
+        this.anchored = anchored;
+        this.maxMatchSteps = maxMatchSteps;
+    }
+
+    /**
+     * 编译glob模式
+     *
+     * @param maxBranches   {a,b} 展开后的最大分支数
+     * @param maxMatchSteps 匹配单个key的最大步数，0表示不限制
+     * @throws StorageException 模式为空或语法错误
+     */
+    public static KeyPattern glob(String glob, int maxBranches, int maxMatchSteps) {
+        if (glob == null || glob.isEmpty()) {
+            throw new StorageException("匹配模式不能为空");
+        }
+        List<String> expanded = expandBraces(glob, Math.max(1, maxBranches));
+        if (expanded == null) {
+            expanded = List.of(glob);
+        }
+
+        List<Branch> branches = new ArrayList<>(expanded.size());
+        List<Branch> matchAll = new ArrayList<>();
+        for (String alternative : expanded) {
+            Branch branch = new Branch(globLead(alternative), hasBrace(alternative) ? null : segments(alternative),
+                    compile(globToRegex(alternative)));
+            branches.add(branch);
+            if (firstMeta(alternative) == alternative.length() - 2 && alternative.endsWith("**")) {
+                // 字面量 + **：匹配该前缀下的所有key
+                matchAll.add(branch);
+            }
+        }
+        branches = coverMatchAll(branches, matchAll);
+
+        List<Pattern> patterns = new ArrayList<>(branches.size());
+        for (Branch branch : branches) {
+            patterns.add(branch.pattern());
+        }
+        return new KeyPattern(glob, patterns, branches, true, maxMatchSteps);
+    }
+
+    /**
+     * 编译正则模式
+     *
+     * @param maxMatchSteps 匹配单个key的最大步数，0表示不限制
+     * @throws StorageException 模式为空或语法错误
+     */
+    public static KeyPattern regex(String regex, int maxMatchSteps) {
+        if (regex == null || regex.isEmpty()) {
+            throw new StorageException("匹配模式不能为空");
+        }
+        Pattern pattern = compile(regex);
+        List<Branch> branches = new ArrayList<>();
+        for (String alternative : splitAlternatives(regex)) {
+            branches.add(new Branch(regexLead(alternative), null, null));
+        }
+        return new KeyPattern(regex, List.of(pattern), coverRecursive(branches), false, maxMatchSteps);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public List<Branch> branches() {
+        return branches;
+    }
+
+    public boolean matches(String key) {
+        for (Pattern pattern : patterns) {
+            if (matches(pattern, key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * key 是否由该分支输出：key 匹配该分支，且不匹配排在它前面的分支。
+     * 每个分支列出时都能找到自己的全部匹配，按此规则重叠的分支（如 {a*,ab*}）不会重复输出同一个key；
+     * 正则模式的分支前缀互不包含，列出的范围不重叠，按整个模式匹配
+     */
+    public boolean matchesFirst(Branch branch, String key) {
+        if (branch.pattern() == null) {
+            return matches(key);
+        }
+        if (!matches(branch.pattern(), key)) {
+            return false;
+        }
+        for (Branch other : branches) {
+            if (other == branch) {
+                return true;
+            }
+            if (matches(other.pattern(), key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 目录名是否匹配glob分支的路径段
+     */
+    public boolean matches(Segment segment, String name) {
+        return segment.isLiteral() ? segment.lead().equals(name) : matches(segment.pattern(), name);
+    }
+
+    private boolean matches(Pattern pattern, String key) {
+        CharSequence input = maxMatchSteps > 0 ? new BudgetedSequence(key, maxMatchSteps) : key;
+        Matcher matcher = pattern.matcher(input);
+        return anchored ? matcher.matches() : matcher.find();
+    }
+
+    private static Pattern compile(String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new StorageException("无效的匹配模式: " + e.getDescription());
+        }
+    }
+
+    // ---------------------------------------------------------------- glob
+
+    /**
+     * 展开所有 {a,b}，分支数超过上限时返回null
+     */
+    private static List<String> expandBraces(String glob, int maxBranches) {
+        int open = findUnescaped(glob, 0, '{');
+        if (open < 0) {
+            return List.of(glob);
+        }
+        int close = matchingBrace(glob, open);
+        if (close < 0) {
+            throw new StorageException("无效的匹配模式: 缺少 '}'");
+        }
+        List<String> options = splitTopLevel(glob.substring(open + 1, close), ',');
+        String head = glob.substring(0, open);
+        String tail = glob.substring(close + 1);
+
+        Set<String> result = new LinkedHashSet<>();
+        for (String option : options) {
+            // 选项本身可能含有嵌套的 {}，与后缀一起递归展开
+            List<String> rest = expandBraces(option + tail, maxBranches);
+            if (rest == null) {
+                return null;
+            }
+            for (String item : rest) {
+                result.add(head + item);
+                if (result.size() > maxBranches) {
+                    return null;
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * 去掉被 前缀** 分支覆盖的分支：该分支匹配以其前缀开头的所有key，其他前缀更长的分支不必再列出
+     */
+    private static List<Branch> coverMatchAll(List<Branch> branches, List<Branch> matchAll) {
+        if (matchAll.isEmpty()) {
+            return branches;
+        }
+        List<Branch> result = new ArrayList<>();
+        for (Branch branch : branches) {
+            boolean covered = false;
+            for (Branch other : matchAll) {
+                if (other != branch && branch.prefix().startsWith(other.prefix())
+                        && (other.prefix().length() < branch.prefix().length() || !matchAll.contains(branch))) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                result.add(branch);
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasBrace(String glob) {
+        return findUnescaped(glob, 0, '{') >= 0;
+    }
+
+    /**
+     * 按 '/' 拆分路径段（不含 {} 的glob）
+     */
+    private static List<Segment> segments(String glob) {
+        List<Segment> segments = new ArrayList<>();
+        for (String part : splitTopLevel(glob, '/')) {
+            boolean literal = firstMeta(part) < 0;
+            segments.add(new Segment(globLead(part),
+                    literal ? null : compile(globToRegex(part)),
+                    part.contains("**")));
+        }
+        return segments;
+    }
+
+    /**
+     * glob 开头的字面量部分（去掉转义）
+     */
+    private static String globLead(String glob) {
+        StringBuilder lead = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\' && i + 1 < glob.length()) {
+                lead.append(glob.charAt(++i));
+            } else if (GLOB_META.indexOf(c) >= 0) {
+                break;
+            } else {
+                lead.append(c);
+            }
+        }
+        return lead.toString();
+    }
+
+    private static int firstMeta(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (GLOB_META.indexOf(c) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        int length = glob.length();
+        for (int i = 0; i < length; i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                literal.append(i + 1 < length ? glob.charAt(++i) : '\\');
+                continue;
+            }
+            if (GLOB_META.indexOf(c) < 0) {
+                literal.append(c);
+                continue;
+            }
+            flushLiteral(regex, literal);
+            switch (c) {
+                case '*' -> {
+                    if (i + 1 < length && glob.charAt(i + 1) == '*') {
+                        i++;
+                        boolean wholeSegment = (i - 1 == 0 || glob.charAt(i - 2) == '/')
+                                && i + 1 < length && glob.charAt(i + 1) == '/';
+                        if (wholeSegment) {
+                            // "**/" 可匹配零级或多级目录
+                            i++;
+                            regex.append("(?:.*/)?");
+                        } else {
+                            regex.append(".*");
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                }
+                case '?' -> regex.append("[^/]");
+                case '[' -> i = appendClass(glob, i, regex);
+                case '{' -> {
+                    int close = matchingBrace(glob, i);
+                    if (close < 0) {
+                        throw new StorageException("无效的匹配模式: 缺少 '}'");
+                    }
+                    regex.append("(?:");
+                    List<String> options = splitTopLevel(glob.substring(i + 1, close), ',');
+                    for (int o = 0; o < options.size(); o++) {
+                        if (o > 0) {
+                            regex.append('|');
+                        }
+                        regex.append(globToRegex(options.get(o)));
+                    }
+                    regex.append(')');
+                    i = close;
+                }
+                default -> throw new IllegalStateException();
+            }
+        }
+        flushLiteral(regex, literal);
+        return regex.toString();
+    }
+
+    private static void flushLiteral(StringBuilder regex, StringBuilder literal) {
+        if (!literal.isEmpty()) {
+            regex.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+
+    /**
+     * 转换字符集合 [...]，返回 ']' 的位置；集合不匹配 '/'
+     */
+    private static int appendClass(String glob, int open, StringBuilder regex) {
+        int i = open + 1;
+        boolean negate = i < glob.length() && (glob.charAt(i) == '!' || glob.charAt(i) == '^');
+        if (negate) {
+            i++;
+        }
+        StringBuilder body = new StringBuilder();
+        int start = i;
+        for (; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == ']' && i > start) {
+                regex.append(negate ? "[^/" : "(?![/])[").append(body).append(']');
+                return i;
+            }
+            if (c == '\\' && i + 1 < glob.length()) {
+                c = glob.charAt(++i);
+            }
+            if (c == '-' && i > start && i + 1 < glob.length() && glob.charAt(i + 1) != ']') {
+                body.append('-');
+            } else if (Character.isLetterOrDigit(c)) {
+                body.append(c);
+            } else {
+                // 其余符号一律转义，避免 [ & ^ 等在Java字符集合中的特殊含义
+                body.append('\\').append(c);
+            }
+        }
+        throw new StorageException("无效的匹配模式: 缺少 ']'");
+    }
+
+    private static int matchingBrace(String glob, int open) {
+        int depth = 0;
+        for (int i = open; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipClass(glob, i);
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 按分隔符拆分，跳过转义、[] 和嵌套的 {}
+     */
+    private static List<String> splitTopLevel(String text, char separator) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int from = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipClass(text, i);
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            } else if (c == separator && depth == 0) {
+                parts.add(text.substring(from, i));
+                from = i + 1;
+            }
+        }
+        parts.add(text.substring(from));
+        return parts;
+    }
+
+    private static int findUnescaped(String text, int from, char target) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                i = skipClass(text, i);
+            } else if (c == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 返回 [...] 的 ']' 位置，没有闭合时返回 '[' 本身（由 appendClass 报错）
+     */
+    private static int skipClass(String text, int open) {
+        int i = open + 1;
+        if (i < text.length() && (text.charAt(i) == '!' || text.charAt(i) == '^')) {
+            i++;
+        }
+        int start = i;
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ']' && i > start) {
+                return i;
+            }
+        }
+        return open;
+    }
+
+    // ---------------------------------------------------------------- regex
+
+    /**
+     * 按顶层 '|' 拆分正则
+     */
+    private static List<String> splitAlternatives(String regex) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int classDepth = 0;
+        int from = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                classDepth++;
+            } else if (c == ']' && classDepth > 0) {
+                classDepth--;
+            } else if (classDepth > 0) {
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == '|' && depth == 0) {
+                parts.add(regex.substring(from, i));
+                from = i + 1;
+            }
+        }
+        parts.add(regex.substring(from));
+        return parts;
+    }
+
+    /**
+     * 以 '^' 开头的正则分支的字面量前缀；不以 '^' 开头时任意位置都可能匹配，返回空串
+     */
+    private static String regexLead(String regex) {
+        if (!regex.startsWith("^")) {
+            return "";
+        }
+        StringBuilder lead = new StringBuilder();
+        int lastAtom = 0;
+        int i = 1;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '*' || c == '?' || c == '{') {
+                // 量词作用于上一个字符，该字符可能不出现
+                lead.setLength(lastAtom);
+                break;
+            }
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // \d \w \Q 等
+                    break;
+                }
+                lastAtom = lead.length();
+                lead.append(regex.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+            if (".[]()+^$|".indexOf(c) >= 0) {
+                break;
+            }
+            lastAtom = lead.length();
+            lead.append(c);
+            i++;
+        }
+        return lead.toString();
+    }
+
+    /**
+     * 去掉被其他分支覆盖的分支：递归列出 a 时已包含以 a 开头的所有前缀
+     */
+    private static List<Branch> coverRecursive(List<Branch> branches) {
+        List<Branch> result = new ArrayList<>();
+        for (Branch branch : branches) {
+            boolean covered = false;
+            for (Branch other : branches) {
+                if (other != branch && other.segments() == null && branch.prefix().startsWith(other.prefix())
+                        && (other.prefix().length() < branch.prefix().length() || result.contains(other))) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                result.add(branch);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 计数 charAt 调用的字符序列：正则引擎每读取一个字符计一步，超过上限时中止匹配
+     */
+    private static final class BudgetedSequence implements CharSequence {
+        private final String value;
+        private final int maxSteps;
+        private int steps;
+
+        BudgetedSequence(String value, int maxSteps) {
+            this.value = value;
+            this.maxSteps = maxSteps;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++steps > maxSteps) {
+                throw new StorageException("匹配模式过于复杂: 单个key的匹配步数超过 " + maxSteps + "，请简化模式");
+            }
+            return value.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return value.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return value.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
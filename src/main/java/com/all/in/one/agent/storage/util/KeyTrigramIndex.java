@@ -0,0 +1,348 @@
+package com.all.in.one.agent.storage.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * 对象key的三元组（trigram）倒排索引，用于忽略大小写的子串搜索
+ *
+ * 每个key分配一个递增的编号（构建时按key顺序，之后新增的排在后面），key中每个不同的
+ * 三字符片段（逐字符转小写后）对应一个按编号升序的倒排表。查询时按编号顺序遍历
+ * 关键字所有片段倒排表的交集，对候选key做一次包含校验，取到 limit 个结果、
+ * 计数达到 countLimit 后即停止，代价与返回数相关，与key总数和命中总数无关。
+ *
+ * 关键字少于3个字符时，遍历包含该关键字的所有片段的倒排表的并集，再加上不足3个字符的key。
+ * 删除只把编号标记为空，空编号过多时整体重建（按key顺序重新编号）
+ */
+public final class KeyTrigramIndex {
+
+    /**
+     * 关键字最少字符数
+     */
+    public static final int GRAM = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private List<String> keys = new ArrayList<>();
+    private Map<String, Integer> ids = new HashMap<>();
+    private Map<Long, IntList> postings = new HashMap<>();
+    private IntList shortKeys = new IntList();
+    private int removed;
+
+    /**
+     * 从一组key构建
+     */
+    public static KeyTrigramIndex build(Collection<String> keys) {
+        KeyTrigramIndex index = new KeyTrigramIndex();
+        for (String key : keys) {
+            index.addUnlocked(key);
+        }
+        return index;
+    }
+
+    public void add(String key) {
+        lock.writeLock().lock();
+        try {
+            addUnlocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            Integer id = ids.remove(key);
+            if (id == null) {
+                return;
+            }
+            keys.set(id, null);
+            removed++;
+            if (removed > 1024 && removed > keys.size() / 2) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查找包含关键字（忽略大小写）且满足过滤条件的key
+     *
+     * 按编号顺序取前 limit 个命中并按key排序返回；命中计数达到 countLimit 时停止，
+     * 此时 totalFound 为 countLimit，capped 为 true
+     *
+     * @param keyword 非空关键字
+     */
+    public Hits search(String keyword, Predicate<String> filter, int limit, int countLimit) {
+        String needle = fold(keyword);
+        if (needle.isEmpty()) {
+            throw new IllegalArgumentException("关键字不能为空");
+        }
+
+        List<String> matched = new ArrayList<>(Math.min(limit, 64));
+        int found = 0;
+        lock.readLock().lock();
+        try {
+            IdCursor candidates = needle.length() >= GRAM ? intersection(needle) : union(needle);
+            for (int id = candidates.next(); id >= 0; id = candidates.next()) {
+                String key = keys.get(id);
+                if (key == null || !filter.test(key) || !containsFolded(key, needle)) {
+                    continue;
+                }
+                if (matched.size() < limit) {
+                    matched.add(key);
+                }
+                if (++found >= countLimit) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matched.sort(null);
+        return new Hits(matched, found, found >= countLimit);
+    }
+
+    /**
+     * value（逐字符转小写后）是否包含已转小写的 needle，不分配新字符串
+     */
+    public static boolean containsFolded(String value, String needle) {
+        int max = value.length() - needle.length();
+        for (int i = 0; i <= max; i++) {
+            int j = 0;
+            while (j < needle.length() && Character.toLowerCase(value.charAt(i + j)) == needle.charAt(j)) {
+                j++;
+            }
+            if (j == needle.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 逐字符转小写（不使用 String.toLowerCase，保证长度不变、与区域设置无关）
+     */
+    public static String fold(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    private void addUnlocked(String key) {
+        if (ids.containsKey(key)) {
+            return;
+        }
+        int id = keys.size();
+        keys.add(key);
+        ids.put(key, id);
+        if (key.length() < GRAM) {
+            shortKeys.add(id);
+        }
+        for (long gram : grams(fold(key))) {
+            postings.computeIfAbsent(gram, g -> new IntList()).add(id);
+        }
+    }
+
+    /**
+     * 关键字所有片段倒排表的交集，从最短的倒排表出发，在其余倒排表中跳跃查找
+     */
+    private IdCursor intersection(String needle) {
+        List<IntList> lists = new ArrayList<>();
+        for (long gram : grams(needle)) {
+            IntList list = postings.get(gram);
+            if (list == null) {
+                return () -> -1;
+            }
+            lists.add(list);
+        }
+        lists.sort((left, right) -> Integer.compare(left.size, right.size));
+
+        IntList first = lists.get(0);
+        int[] positions = new int[lists.size()];
+        return () -> {
+            candidates:
+            while (positions[0] < first.size) {
+                int id = first.values[positions[0]++];
+                for (int i = 1; i < lists.size(); i++) {
+                    positions[i] = lists.get(i).seek(positions[i], id);
+                    if (positions[i] >= lists.get(i).size) {
+                        positions[0] = first.size;
+                        return -1;
+                    }
+                    if (lists.get(i).values[positions[i]] != id) {
+                        continue candidates;
+                    }
+                }
+                return id;
+            }
+            return -1;
+        };
+    }
+
+    /**
+     * 短关键字：所有包含关键字的片段的倒排表与短key列表的并集（按编号归并去重）
+     */
+    private IdCursor union(String needle) {
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingInt(head -> head[0]));
+        List<IntList> lists = new ArrayList<>();
+        for (Map.Entry<Long, IntList> posting : postings.entrySet()) {
+            if (gramContains(posting.getKey(), needle)) {
+                lists.add(posting.getValue());
+            }
+        }
+        lists.add(shortKeys);
+        for (int i = 0; i < lists.size(); i++) {
+            if (lists.get(i).size > 0) {
+                // {当前编号, 倒排表序号, 位置}
+                heads.add(new int[]{lists.get(i).values[0], i, 0});
+            }
+        }
+        int[] last = {-1};
+        return () -> {
+            while (!heads.isEmpty()) {
+                int[] head = heads.poll();
+                int id = head[0];
+                IntList list = lists.get(head[1]);
+                if (++head[2] < list.size) {
+                    head[0] = list.values[head[2]];
+                    heads.add(head);
+                }
+                if (id != last[0]) {
+                    last[0] = id;
+                    return id;
+                }
+            }
+            return -1;
+        };
+    }
+
+    private static boolean gramContains(long gram, String needle) {
+        char first = (char) (gram >>> 32);
+        char second = (char) (gram >>> 16);
+        char third = (char) gram;
+        if (needle.length() == 1) {
+            char c = needle.charAt(0);
+            return first == c || second == c || third == c;
+        }
+        return (first == needle.charAt(0) && second == needle.charAt(1))
+                || (second == needle.charAt(0) && third == needle.charAt(1));
+    }
+
+    /**
+     * 重新编号，丢弃已删除的key
+     */
+    private void rebuild() {
+        List<String> live = new ArrayList<>(ids.size());
+        for (String key : keys) {
+            if (key != null) {
+                live.add(key);
+            }
+        }
+        live.sort(null);
+        keys = new ArrayList<>(live.size());
+        ids = new HashMap<>(live.size() * 2);
+        postings = new HashMap<>();
+        shortKeys = new IntList();
+        removed = 0;
+        for (String key : live) {
+            addUnlocked(key);
+        }
+    }
+
+    /**
+     * 字符串中所有不同的三字符片段，每个片段打包为一个long（排序去重）
+     */
+    private static long[] grams(String folded) {
+        int count = Math.max(0, folded.length() - GRAM + 1);
+        long[] grams = new long[count];
+        for (int i = 0; i < count; i++) {
+            grams[i] = ((long) folded.charAt(i) << 32) | ((long) folded.charAt(i + 1) << 16) | folded.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct == count ? grams : Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * 升序的int列表（倒排表）
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * 从 from 开始第一个不小于 value 的位置（倍增后二分）
+         */
+        int seek(int from, int value) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && values[high] < value) {
+                low = high + 1;
+                high = from + step;
+                step <<= 1;
+            }
+            high = Math.min(high, size);
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * 按编号升序逐个返回候选编号，结束时返回 -1
+     */
+    @FunctionalInterface
+    private interface IdCursor {
+        int next();
+    }
+
+    /**
+     * 搜索结果
+     *
+     * @param keys       命中的key（按key排序，最多 limit 个）
+     * @param totalFound 命中数（capped 时为计数上限）
+     * @param capped     命中数达到计数上限，实际命中更多
+     */
+    public record Hits(List<String> keys, int totalFound, boolean capped) {
+    }
+}
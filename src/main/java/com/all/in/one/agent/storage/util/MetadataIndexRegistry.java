@@ -0,0 +1,71 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 元数据索引的打开与定位
+ *
+ * 每个 后端配置指纹 + bucket 对应一个索引目录（目录名为二者的摘要），
+ * 后端连接信息变化后自动使用新的索引，旧目录保留在磁盘上。
+ * 索引在首次访问时从磁盘加载，应用关闭时关闭变更日志
+ */
+@Slf4j
+@Component
+public class MetadataIndexRegistry {
+
+    private final Path baseDir;
+    private final ConcurrentHashMap<String, ObjectMetadataIndex> indexes = new ConcurrentHashMap<>();
+
+    public MetadataIndexRegistry(StorageConfigProperties configProperties) {
+        String dir = configProperties.getMetadataIndex().getDir();
+        this.baseDir = dir != null && !dir.isEmpty()
+                ? Paths.get(dir)
+                : Paths.get(configProperties.getCache().getCacheDir(), "metadata-index");
+    }
+
+    /**
+     * 获取（必要时加载）后端 + bucket 的索引
+     */
+    public ObjectMetadataIndex get(StorageConfigProperties.Backend backend, String bucket) {
+        String id = indexId(S3ClientRegistry.fingerprint(backend), bucket);
+        return indexes.computeIfAbsent(id, key -> {
+            try {
+                return ObjectMetadataIndex.open(baseDir.resolve(key), bucket);
+            } catch (IOException e) {
+                throw new UncheckedIOException("打开元数据索引失败: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexes.values().forEach(ObjectMetadataIndex::close);
+        indexes.clear();
+        log.info("元数据索引已关闭");
+    }
+
+    private static String indexId(String fingerprint, String bucket) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(bucket.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.exception.StorageException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * multipart/form-data 流式解析
+ *
+ * 按顺序逐个返回表单部分，每个部分的内容以输入流的形式边读边解析，
+ * 不缓存到内存或临时文件；内存占用固定为一个读缓冲区（与请求大小无关）。
+ *
+ * 用法：
+ * <pre>
+ * MultipartStreamReader reader = new MultipartStreamReader(request.getInputStream(), boundary, 64 * 1024);
+ * MultipartStreamReader.Part part;
+ * while ((part = reader.next()) != null) {
+ *     if (part.isFile()) { ... part.getInputStream() ... }
+ * }
+ * </pre>
+ * 调用 next() 时上一个部分未读完的内容会被跳过。
+ */
+public class MultipartStreamReader {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte DASH = '-';
+
+    /**
+     * 单个部分头部的最大长度
+     */
+    private static final int MAX_HEADER_SIZE = 16 * 1024;
+
+    private final InputStream in;
+    /**
+     * 分隔符：CRLF--boundary（第一个分隔符前补一个CRLF，统一处理）
+     */
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+
+    private Part current;
+    private boolean finished;
+
+    public MultipartStreamReader(InputStream in, String boundary, int bufferSize) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(bufferSize, delimiter.length * 4)];
+        this.buffer[0] = CR;
+        this.buffer[1] = LF;
+        this.limit = 2;
+    }
+
+    /**
+     * 从 Content-Type 中取 boundary
+     */
+    public static String boundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            throw new StorageException("请求不是 multipart 格式: " + contentType);
+        }
+        String boundary = parameters(contentType).get("boundary");
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new StorageException("multipart 请求缺少有效的 boundary");
+        }
+        return boundary;
+    }
+
+    /**
+     * 下一个部分，没有更多部分时返回 null
+     */
+    public Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (current != null) {
+            current.skipRemaining();
+        } else {
+            // 跳过第一个分隔符之前的前导内容
+            while (bodyRead(null, 0, buffer.length) >= 0) {
+                // 丢弃
+            }
+        }
+
+        // 分隔符之后："--" 表示结束，否则是（可能带空白的）换行
+        if (!ensure(2)) {
+            throw new IOException("multipart 请求体不完整");
+        }
+        if (buffer[pos] == DASH && buffer[pos + 1] == DASH) {
+            finished = true;
+            current = null;
+            return null;
+        }
+        skipLine();
+
+        Map<String, String> headers = readHeaders();
+        current = new Part(headers);
+        return current;
+    }
+
+    /**
+     * 读取当前部分的内容，到分隔符为止；dest 为 null 时只跳过
+     */
+    private int bodyRead(byte[] dest, int off, int len) throws IOException {
+        while (true) {
+            int index = indexOfDelimiter();
+            if (index == pos) {
+                pos += delimiter.length;
+                return -1;
+            }
+            int available = index >= 0 ? index - pos : limit - pos - (delimiter.length - 1);
+            if (available > 0) {
+                int n = Math.min(len, available);
+                if (dest != null) {
+                    System.arraycopy(buffer, pos, dest, off, n);
+                }
+                pos += n;
+                return n;
+            }
+            if (!fill()) {
+                throw new IOException("multipart 请求体不完整");
+            }
+        }
+    }
+
+    /**
+     * 在缓冲区中查找分隔符，找不到返回 -1
+     */
+    private int indexOfDelimiter() {
+        int last = limit - delimiter.length;
+        outer:
+        for (int i = pos; i <= last; i++) {
+            if (buffer[i] != CR) {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private Map<String, String> readHeaders() throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int total = 0;
+        while (true) {
+            line.reset();
+            while (true) {
+                if (!ensure(1)) {
+                    throw new IOException("multipart 请求体不完整");
+                }
+                byte b = buffer[pos++];
+                if (++total > MAX_HEADER_SIZE) {
+                    throw new StorageException("multipart 部分头部过长");
+                }
+                if (b == LF) {
+                    break;
+                }
+                if (b != CR) {
+                    line.write(b);
+                }
+            }
+            if (line.size() == 0) {
+                return headers;
+            }
+            // 浏览器按UTF-8发送文件名
+            String header = line.toString(StandardCharsets.UTF_8);
+            int colon = header.indexOf(':');
+            if (colon > 0) {
+                headers.put(header.substring(0, colon).trim().toLowerCase(Locale.ROOT), header.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    /**
+     * 跳过到行尾（分隔符之后可能带有空白）
+     */
+    private void skipLine() throws IOException {
+        while (true) {
+            if (!ensure(1)) {
+                throw new IOException("multipart 请求体不完整");
+            }
+            if (buffer[pos++] == LF) {
+                return;
+            }
+        }
+    }
+
+    private boolean ensure(int count) throws IOException {
+        while (limit - pos < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把未读部分移到缓冲区开头并读入更多数据，输入流结束时返回 false
+     */
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * 解析头部参数，如 form-data; name="file"; filename="a.txt"
+     */
+    static Map<String, String> parameters(String header) {
+        Map<String, String> params = new LinkedHashMap<>();
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            i++;
+            int eq = header.indexOf('=', i);
+            if (eq < 0) {
+                break;
+            }
+            String name = header.substring(i, eq).trim().toLowerCase(Locale.ROOT);
+            StringBuilder value = new StringBuilder();
+            int j = eq + 1;
+            while (j < header.length() && header.charAt(j) == ' ') {
+                j++;
+            }
+            if (j < header.length() && header.charAt(j) == '"') {
+                for (j++; j < header.length() && header.charAt(j) != '"'; j++) {
+                    char c = header.charAt(j);
+                    if (c == '\\' && j + 1 < header.length()) {
+                        c = header.charAt(++j);
+                    }
+                    value.append(c);
+                }
+                i = header.indexOf(';', j);
+            } else {
+                int end = header.indexOf(';', j);
+                value.append(header, j, end < 0 ? header.length() : end);
+                i = end;
+            }
+            params.putIfAbsent(name, value.toString().trim());
+        }
+        return params;
+    }
+
+    /**
+     * 表单中的一个部分
+     */
+    public final class Part {
+        private final Map<String, String> headers;
+        private final String name;
+        private final String filename;
+        private final InputStream inputStream;
+        private boolean done;
+
+        private Part(Map<String, String> headers) {
+            this.headers = headers;
+            Map<String, String> disposition = parameters(headers.getOrDefault("content-disposition", ""));
+            this.name = disposition.get("name");
+            String extended = disposition.get("filename*");
+            this.filename = extended != null ? decodeExtended(extended) : disposition.get("filename");
+            this.inputStream = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    byte[] one = new byte[1];
+                    return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (done || current != Part.this) {
+                        return -1;
+                    }
+                    if (len == 0) {
+                        return 0;
+                    }
+                    int n = bodyRead(b, off, len);
+                    if (n < 0) {
+                        done = true;
+                    }
+                    return n;
+                }
+            };
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * 文件名，普通字段为 null
+         */
+        public String getFilename() {
+            return filename;
+        }
+
+        public String getContentType() {
+            return headers.get("content-type");
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public boolean isFile() {
+            return filename != null;
+        }
+
+        /**
+         * 内容输入流（关闭无效果，读到本部分结束返回 -1）
+         */
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+
+        /**
+         * 读取普通字段的值
+         */
+        public String readString(int maxBytes) throws IOException {
+            byte[] value = inputStream.readNBytes(maxBytes + 1);
+            if (value.length > maxBytes) {
+                throw new StorageException("表单字段过长: " + name);
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        private void skipRemaining() throws IOException {
+            while (!done) {
+                if (bodyRead(null, 0, buffer.length) < 0) {
+                    done = true;
+                }
+            }
+        }
+
+        /**
+         * RFC 5987：UTF-8''%E6%96%87%E4%BB%B6.txt
+         */
+        private String decodeExtended(String value) {
+            int quote = value.indexOf("''");
+            if (quote < 0) {
+                return value;
+            }
+            try {
+                return URLDecoder.decode(value.substring(quote + 2).replace("+", "%2B"), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                return value;
+            }
+        }
+    }
+}
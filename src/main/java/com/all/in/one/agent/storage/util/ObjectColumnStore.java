@@ -0,0 +1,392 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.dto.ObjectRangeQuery;
+import com.all.in.one.agent.storage.exception.StorageException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * 对象元数据的列式快照，用于按大小、修改时间、存储类型、扩展名过滤
+ *
+ * 文件（不含文件夹标记）按key顺序编号，每列一个基本类型数组；存储类型和扩展名按字典编码。
+ * 另外保存按大小、按修改时间排序的两个编号数组，范围条件用二分查找定位。
+ * 查询时在 key前缀、大小、修改时间 三个范围中选候选最少的一个遍历，其余条件逐行比较，
+ * 代价与候选数相关。
+ *
+ * 快照构建后不再修改，由 ObjectMetadataIndex 在变更后按需重建
+ */
+public final class ObjectColumnStore {
+
+    /**
+     * 排序字段
+     */
+    public enum SortField {
+        KEY, SIZE, LAST_MODIFIED;
+
+        /**
+         * 解析查询参数（key、size、lastModified），为空时按key排序
+         *
+         * @throws StorageException 不支持的字段
+         */
+        public static SortField of(String sort) {
+            if (sort == null || sort.isEmpty() || "key".equalsIgnoreCase(sort)) {
+                return KEY;
+            }
+            if ("size".equalsIgnoreCase(sort)) {
+                return SIZE;
+            }
+            if ("lastModified".equalsIgnoreCase(sort)) {
+                return LAST_MODIFIED;
+            }
+            throw new StorageException("不支持的排序字段: " + sort + "（可选 key、size、lastModified）");
+        }
+    }
+
+    /**
+     * 过滤条件，为null的条件不限制
+     *
+     * @param modifiedFrom   修改时间下限（毫秒，包含）
+     * @param modifiedTo     修改时间上限（毫秒，不包含）
+     * @param storageClasses 大写的存储类型
+     * @param extensions     小写、不含 '.' 的扩展名，空字符串表示没有扩展名
+     */
+    public record Filter(String prefix, Long minSize, Long maxSize, Long modifiedFrom, Long modifiedTo,
+                         Set<String> storageClasses, Set<String> extensions) {
+
+        /**
+         * 从查询参数构建，存储类型转大写、扩展名转小写并去掉开头的 '.'
+         */
+        public static Filter of(ObjectRangeQuery query) {
+            return new Filter(
+                    query.getPrefix() != null && !query.getPrefix().isEmpty() ? query.getPrefix() : null,
+                    query.getMinSize(),
+                    query.getMaxSize(),
+                    query.getModifiedAfter() != null ? query.getModifiedAfter().toEpochMilli() : null,
+                    query.getModifiedBefore() != null ? query.getModifiedBefore().toEpochMilli() : null,
+                    normalize(query.getStorageClasses(), false),
+                    normalize(query.getExtensions(), true));
+        }
+
+        private static Set<String> normalize(List<String> values, boolean extension) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            Set<String> normalized = new HashSet<>();
+            for (String value : values) {
+                String trimmed = value.trim();
+                if (extension) {
+                    normalized.add((trimmed.startsWith(".") ? trimmed.substring(1) : trimmed).toLowerCase(Locale.ROOT));
+                } else if (!trimmed.isEmpty()) {
+                    normalized.add(trimmed.toUpperCase(Locale.ROOT));
+                }
+            }
+            return normalized;
+        }
+
+        public boolean matches(String key, ObjectMetadataIndex.Entry entry) {
+            return (prefix == null || key.startsWith(prefix))
+                    && !key.endsWith("/")
+                    && (minSize == null || entry.size() >= minSize)
+                    && (maxSize == null || entry.size() <= maxSize)
+                    && (modifiedFrom == null || entry.lastModified() >= modifiedFrom)
+                    && (modifiedTo == null || entry.lastModified() < modifiedTo)
+                    && (storageClasses == null || storageClasses.contains(storageClass(entry.storageClass())))
+                    && (extensions == null || extensions.contains(extension(key)));
+        }
+    }
+
+    /**
+     * 查询结果：rows 为前 limit 个匹配的编号（已排序），matched/totalBytes 为全部匹配的统计
+     */
+    public record Result(int[] rows, int matched, long totalBytes) {
+    }
+
+    private final long changeCount;
+    private final long builtAt;
+    private final String[] keys;
+    private final long[] sizes;
+    private final long[] lastModified;
+    private final String[] etags;
+    private final short[] storageClassCodes;
+    private final String[] storageClassNames;
+    private final int[] extensionCodes;
+    private final String[] extensionNames;
+    private final int[] bySize;
+    private final int[] byLastModified;
+
+    private ObjectColumnStore(long changeCount, String[] keys, long[] sizes, long[] lastModified, String[] etags,
+                              short[] storageClassCodes, String[] storageClassNames,
+                              int[] extensionCodes, String[] extensionNames) {
+        this.changeCount = changeCount;
+        this.builtAt = System.currentTimeMillis();
+        this.keys = keys;
+        this.sizes = sizes;
+        this.lastModified = lastModified;
+        this.etags = etags;
+        this.storageClassCodes = storageClassCodes;
+        this.storageClassNames = storageClassNames;
+        this.extensionCodes = extensionCodes;
+        this.extensionNames = extensionNames;
+        this.bySize = sortedBy(sizes);
+        this.byLastModified = sortedBy(lastModified);
+    }
+
+    /**
+     * 从索引条目构建（调用方保证构建期间条目不变）
+     *
+     * @param changeCount 条目对应的索引变更计数
+     */
+    public static ObjectColumnStore build(NavigableMap<String, ObjectMetadataIndex.Entry> entries, long changeCount) {
+        int count = 0;
+        for (String key : entries.keySet()) {
+            if (!key.endsWith("/")) {
+                count++;
+            }
+        }
+
+        String[] keys = new String[count];
+        long[] sizes = new long[count];
+        long[] lastModified = new long[count];
+        String[] etags = new String[count];
+        short[] storageClassCodes = new short[count];
+        int[] extensionCodes = new int[count];
+        Map<String, Integer> storageClassDictionary = new HashMap<>();
+        Map<String, Integer> extensionDictionary = new HashMap<>();
+
+        int row = 0;
+        for (Map.Entry<String, ObjectMetadataIndex.Entry> item : entries.entrySet()) {
+            String key = item.getKey();
+            if (key.endsWith("/") || row >= count) {
+                continue;
+            }
+            ObjectMetadataIndex.Entry entry = item.getValue();
+            keys[row] = key;
+            sizes[row] = entry.size();
+            lastModified[row] = entry.lastModified();
+            etags[row] = entry.etag();
+            storageClassCodes[row] = (short) code(storageClassDictionary, storageClass(entry.storageClass()));
+            extensionCodes[row] = code(extensionDictionary, extension(key));
+            row++;
+        }
+        return new ObjectColumnStore(changeCount, keys, sizes, lastModified, etags,
+                storageClassCodes, names(storageClassDictionary), extensionCodes, names(extensionDictionary));
+    }
+
+    /**
+     * 构建时的索引变更计数，与索引当前值不同时说明此后有变更
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public String key(int row) {
+        return keys[row];
+    }
+
+    public ObjectMetadataIndex.Entry entry(int row) {
+        return new ObjectMetadataIndex.Entry(sizes[row], lastModified[row], etags[row],
+                storageClassNames[storageClassCodes[row]]);
+    }
+
+    /**
+     * 过滤并排序
+     *
+     * @param limit 返回的最大编号数（统计仍覆盖全部匹配）
+     */
+    public Result query(Filter filter, SortField sort, boolean descending, int limit) {
+        // 三个范围条件各自对应的位置区间
+        int keyFrom = 0;
+        int keyTo = keys.length;
+        if (filter.prefix() != null && !filter.prefix().isEmpty()) {
+            keyFrom = lowerBound(keys, filter.prefix());
+            keyTo = lowerBound(keys, ObjectMetadataIndex.successor(filter.prefix()));
+        }
+        int sizeFrom = filter.minSize() != null ? lowerBound(bySize, sizes, filter.minSize()) : 0;
+        int sizeTo = filter.maxSize() != null && filter.maxSize() < Long.MAX_VALUE
+                ? lowerBound(bySize, sizes, filter.maxSize() + 1) : keys.length;
+        int timeFrom = filter.modifiedFrom() != null ? lowerBound(byLastModified, lastModified, filter.modifiedFrom()) : 0;
+        int timeTo = filter.modifiedTo() != null ? lowerBound(byLastModified, lastModified, filter.modifiedTo()) : keys.length;
+
+        boolean[] storageClassAllowed = allowed(storageClassNames, filter.storageClasses());
+        boolean[] extensionAllowed = allowed(extensionNames, filter.extensions());
+
+        // 选候选最少的区间驱动遍历
+        int[] order = null;
+        int from = keyFrom;
+        int to = keyTo;
+        SortField drivenBy = SortField.KEY;
+        if (sizeTo - sizeFrom < to - from) {
+            order = bySize;
+            from = sizeFrom;
+            to = sizeTo;
+            drivenBy = SortField.SIZE;
+        }
+        if (timeTo - timeFrom < to - from) {
+            order = byLastModified;
+            from = timeFrom;
+            to = timeTo;
+            drivenBy = SortField.LAST_MODIFIED;
+        }
+
+        int[] matched = new int[Math.max(0, to - from)];
+        int count = 0;
+        long totalBytes = 0;
+        for (int position = from; position < to; position++) {
+            int row = order != null ? order[position] : position;
+            if (row < keyFrom || row >= keyTo
+                    || sizes[row] < (filter.minSize() != null ? filter.minSize() : Long.MIN_VALUE)
+                    || sizes[row] > (filter.maxSize() != null ? filter.maxSize() : Long.MAX_VALUE)
+                    || (filter.modifiedFrom() != null && lastModified[row] < filter.modifiedFrom())
+                    || (filter.modifiedTo() != null && lastModified[row] >= filter.modifiedTo())
+                    || (storageClassAllowed != null && !storageClassAllowed[storageClassCodes[row]])
+                    || (extensionAllowed != null && !extensionAllowed[extensionCodes[row]])) {
+                continue;
+            }
+            matched[count++] = row;
+            totalBytes += sizes[row];
+        }
+        matched = Arrays.copyOf(matched, count);
+
+        if (drivenBy != sort) {
+            // 编号即key顺序；先恢复key顺序再稳定排序，值相同时总是按key排列，与驱动遍历的区间无关
+            if (drivenBy != SortField.KEY) {
+                Arrays.sort(matched);
+            }
+            switch (sort) {
+                case SIZE -> matched = sortRows(matched, sizes);
+                case LAST_MODIFIED -> matched = sortRows(matched, lastModified);
+                default -> {
+                }
+            }
+        }
+
+        int[] rows = new int[Math.min(Math.max(0, limit), count)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = descending ? matched[count - 1 - i] : matched[i];
+        }
+        return new Result(rows, count, totalBytes);
+    }
+
+    public static String storageClass(String storageClass) {
+        return storageClass != null && !storageClass.isEmpty() ? storageClass.toUpperCase(Locale.ROOT) : "STANDARD";
+    }
+
+    /**
+     * key最后一段中最后一个 '.' 之后的部分（小写），没有时为空字符串
+     */
+    public static String extension(String key) {
+        int dot = key.lastIndexOf('.');
+        if (dot < 0 || dot < key.lastIndexOf('/') || dot == key.length() - 1) {
+            return "";
+        }
+        return key.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static int code(Map<String, Integer> dictionary, String value) {
+        return dictionary.computeIfAbsent(value, v -> dictionary.size());
+    }
+
+    private static String[] names(Map<String, Integer> dictionary) {
+        String[] names = new String[dictionary.size()];
+        dictionary.forEach((name, code) -> names[code] = name);
+        return names;
+    }
+
+    private static boolean[] allowed(String[] names, Set<String> values) {
+        if (values == null) {
+            return null;
+        }
+        boolean[] allowed = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            allowed[i] = values.contains(names[i]);
+        }
+        return allowed;
+    }
+
+    /**
+     * 第一个不小于 target 的key的位置
+     */
+    private static int lowerBound(String[] sorted, String target) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].compareTo(target) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 按 column 排序的编号数组中，第一个值不小于 target 的位置
+     */
+    private static int lowerBound(int[] order, long[] column, long target) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (column[order[middle]] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int[] sortedBy(long[] column) {
+        int[] rows = new int[column.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        return sortRows(rows, column);
+    }
+
+    /**
+     * 按列值对编号做稳定排序（归并），值相同的保持原顺序
+     */
+    private static int[] sortRows(int[] rows, long[] column) {
+        int[] source = rows;
+        int[] target = new int[rows.length];
+        for (int width = 1; width < source.length; width <<= 1) {
+            for (int low = 0; low < source.length; low += width << 1) {
+                int middle = Math.min(low + width, source.length);
+                int high = Math.min(low + (width << 1), source.length);
+                int left = low;
+                int right = middle;
+                int out = low;
+                while (left < middle && right < high) {
+                    target[out++] = column[source[right]] < column[source[left]] ? source[right++] : source[left++];
+                }
+                while (left < middle) {
+                    target[out++] = source[left++];
+                }
+                while (right < high) {
+                    target[out++] = source[right++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+}
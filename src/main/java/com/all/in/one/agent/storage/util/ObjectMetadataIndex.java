@@ -0,0 +1,520 @@
+package com.all.in.one.agent.storage.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * 单个 bucket 的对象元数据索引
+ *
+ * 条目按key排序保存在内存中（ConcurrentSkipListMap），读取无锁；
+ * 磁盘上保存一份快照和一份追加写的变更日志，启动时加载快照并重放日志：
+ * - snapshot.bin：完整的条目列表及其代数（generation）和爬取时间
+ * - journal-{generation}.bin：快照之后的增量变更，只重放与快照代数相同的日志
+ *
+ * 重建（完整爬取）期间的增量变更同时记录下来，重建完成后覆盖到新数据上再替换，
+ * 替换时写出新快照、代数加一并开始新的日志，旧日志随之删除
+ *
+ * 内存中另外维护文件夹用量汇总树（加载和重建时从条目构建，每次变更同步更新），
+ * 文件夹统计不需要遍历条目
+ */
+@Slf4j
+public final class ObjectMetadataIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x4D494458; // "MIDX"
+    private static final int VERSION = 1;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_REMOVE_PREFIX = 3;
+
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    /**
+     * 对象元数据（lastModified 为毫秒）
+     */
+    public record Entry(long size, long lastModified, String etag, String storageClass) {
+    }
+
+    private final Path dir;
+    private final String bucket;
+
+    private volatile ConcurrentSkipListMap<String, Entry> entries = new ConcurrentSkipListMap<>();
+    private volatile long crawledAt;
+    private long generation;
+    private DataOutputStream journal;
+    private int journalRecords;
+
+    /**
+     * key的子串搜索索引，构建后随变更同步更新，未构建时为null
+     */
+    private volatile KeyTrigramIndex trigrams;
+
+    /**
+     * 列式快照，按需构建，构建后的变更不会写入（通过 changeCount 判断是否过时）
+     */
+    private volatile ObjectColumnStore columns;
+
+    /**
+     * 条目每次变更后递增
+     */
+    private volatile long changeCount;
+
+    /**
+     * 每个文件夹的文件数和总大小
+     */
+    private volatile FolderRollupTree rollup = new FolderRollupTree();
+
+    /**
+     * 重建期间的增量变更，未在重建时为null
+     */
+    private List<Change> changesDuringRebuild;
+
+    private ObjectMetadataIndex(Path dir, String bucket) {
+        this.dir = dir;
+        this.bucket = bucket;
+    }
+
+    /**
+     * 打开索引目录（不存在时创建空索引）
+     */
+    public static ObjectMetadataIndex open(Path dir, String bucket) throws IOException {
+        Files.createDirectories(dir);
+        ObjectMetadataIndex index = new ObjectMetadataIndex(dir, bucket);
+        index.load();
+        return index;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    /**
+     * 索引目录（同步状态等附属文件也保存在这里）
+     */
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * 索引的新鲜度基准（毫秒）：最近一次完整爬取的开始时间，或增量同步覆盖全部分区的时间，
+     * 0表示从未完成爬取或已过期
+     */
+    public long getCrawledAt() {
+        return crawledAt;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public synchronized int getJournalRecords() {
+        return journalRecords;
+    }
+
+    /**
+     * key的子串搜索索引，未构建时返回null
+     */
+    public KeyTrigramIndex trigrams() {
+        return trigrams;
+    }
+
+    /**
+     * 条目变更计数，每次变更后递增
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * 最近构建的列式快照，未构建时返回null；快照的变更计数与 getChangeCount 不同时说明此后有变更
+     */
+    public ObjectColumnStore columns() {
+        return columns;
+    }
+
+    /**
+     * 按当前条目重建列式快照（已是最新时忽略）；构建期间变更会等待
+     */
+    public synchronized ObjectColumnStore buildColumns() {
+        ObjectColumnStore current = columns;
+        if (current != null && current.getChangeCount() == changeCount) {
+            return current;
+        }
+        long start = System.currentTimeMillis();
+        current = ObjectColumnStore.build(entries, changeCount);
+        columns = current;
+        log.info("列式快照已构建 - bucket: {}, 文件数: {}, 耗时: {}ms",
+                bucket, current.size(), System.currentTimeMillis() - start);
+        return current;
+    }
+
+    /**
+     * 构建key的子串搜索索引（已构建时忽略）；构建期间变更会等待
+     */
+    public synchronized void buildTrigrams() {
+        if (trigrams != null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        trigrams = KeyTrigramIndex.build(entries.keySet());
+        log.info("key搜索索引已构建 - bucket: {}, key数: {}, 耗时: {}ms",
+                bucket, entries.size(), System.currentTimeMillis() - start);
+    }
+
+    public Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * 文件夹（空字符串或以 '/' 结尾）下递归的文件数和总大小
+     */
+    public FolderRollupTree.Totals folderTotals(String folder) {
+        return rollup.get(folder);
+    }
+
+    /**
+     * 前缀下的所有条目（按key排序的只读视图）
+     */
+    public NavigableMap<String, Entry> range(String prefix) {
+        ConcurrentSkipListMap<String, Entry> current = entries;
+        if (prefix == null || prefix.isEmpty()) {
+            return Collections.unmodifiableNavigableMap(current);
+        }
+        return Collections.unmodifiableNavigableMap(current.subMap(prefix, true, successor(prefix), false));
+    }
+
+    public void put(String key, Entry entry) throws IOException {
+        apply(new Change(OP_PUT, key, entry));
+    }
+
+    public void remove(String key) throws IOException {
+        apply(new Change(OP_REMOVE, key, null));
+    }
+
+    /**
+     * 删除前缀下的所有条目（文件夹删除/重命名）
+     */
+    public void removePrefix(String prefix) throws IOException {
+        apply(new Change(OP_REMOVE_PREFIX, prefix, null));
+    }
+
+    /**
+     * 开始重建：此后的增量变更会在 finishRebuild 时覆盖到新数据上
+     */
+    public synchronized void beginRebuild() {
+        changesDuringRebuild = new ArrayList<>();
+    }
+
+    /**
+     * 重建失败或取消
+     */
+    public synchronized void abortRebuild() {
+        changesDuringRebuild = null;
+    }
+
+    /**
+     * 用重建结果替换当前数据，并写出新快照
+     *
+     * @param rebuilt   爬取得到的全部条目
+     * @param startedAt 爬取开始时间（毫秒），作为索引的新鲜度基准
+     */
+    public synchronized void finishRebuild(ConcurrentSkipListMap<String, Entry> rebuilt, long startedAt) throws IOException {
+        if (changesDuringRebuild != null) {
+            for (Change change : changesDuringRebuild) {
+                change.applyTo(rebuilt);
+            }
+        }
+        changesDuringRebuild = null;
+        rollup = FolderRollupTree.build(rebuilt);
+        entries = rebuilt;
+        changeCount++;
+        crawledAt = startedAt;
+        if (trigrams != null) {
+            trigrams = KeyTrigramIndex.build(rebuilt.keySet());
+        }
+        compact();
+    }
+
+    public synchronized boolean isRebuilding() {
+        return changesDuringRebuild != null;
+    }
+
+    /**
+     * 增量同步已覆盖全部分区：把新鲜度基准推进到 syncedAt
+     *
+     * 只推进有效的索引，已过期（crawledAt 为0）的索引仍需完整爬取；
+     * 新值不写入快照，重启后由同步状态文件恢复
+     */
+    public synchronized void markSynced(long syncedAt) {
+        if (crawledAt > 0 && syncedAt > crawledAt) {
+            crawledAt = syncedAt;
+        }
+    }
+
+    /**
+     * 标记为过期（增量更新失败，无法确认索引与S3一致），等待下一次完整爬取
+     */
+    public synchronized void markStale() throws IOException {
+        crawledAt = 0;
+        compact();
+    }
+
+    /**
+     * 写出快照并开始新的变更日志
+     */
+    public synchronized void compact() throws IOException {
+        long nextGeneration = generation + 1;
+        Path temp = dir.resolve(SNAPSHOT_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(bucket);
+            out.writeLong(nextGeneration);
+            out.writeLong(crawledAt);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                out.writeUTF(item.getKey());
+                writeEntry(out, item.getValue());
+            }
+        }
+        Files.move(temp, dir.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        closeJournal();
+        Files.deleteIfExists(journalFile(generation));
+        generation = nextGeneration;
+        journalRecords = 0;
+        log.debug("元数据索引快照已写出 - bucket: {}, 条目: {}, 代数: {}", bucket, entries.size(), generation);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            closeJournal();
+        } catch (IOException e) {
+            log.warn("关闭元数据索引日志失败 - bucket: {}", bucket, e);
+        }
+    }
+
+    private synchronized void apply(Change change) throws IOException {
+        KeyTrigramIndex currentTrigrams = trigrams;
+        if (currentTrigrams != null) {
+            switch (change.op()) {
+                case OP_PUT -> currentTrigrams.add(change.key());
+                case OP_REMOVE -> currentTrigrams.remove(change.key());
+                default -> range(change.key()).keySet().forEach(currentTrigrams::remove);
+            }
+        }
+        updateRollup(change);
+        change.applyTo(entries);
+        changeCount++;
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(change);
+        }
+        DataOutputStream out = journal();
+        out.writeByte(change.op());
+        out.writeUTF(change.key());
+        if (change.op() == OP_PUT) {
+            writeEntry(out, change.entry());
+        }
+        out.flush();
+        journalRecords++;
+    }
+
+    /**
+     * 变更写入条目之前，按旧值更新汇总树
+     */
+    private void updateRollup(Change change) {
+        String key = change.key();
+        switch (change.op()) {
+            case OP_PUT -> {
+                Entry previous = entries.get(key);
+                if (previous == null) {
+                    rollup.add(key, change.entry().size());
+                } else {
+                    rollup.resize(key, previous.size(), change.entry().size());
+                }
+            }
+            case OP_REMOVE -> {
+                Entry previous = entries.get(key);
+                if (previous != null) {
+                    rollup.remove(key, previous.size());
+                }
+            }
+            default -> {
+                if (key.isEmpty() || key.endsWith("/")) {
+                    rollup.removeFolder(key);
+                } else {
+                    range(key).forEach((removed, entry) -> rollup.remove(removed, entry.size()));
+                }
+            }
+        }
+    }
+
+    private DataOutputStream journal() throws IOException {
+        if (journal == null) {
+            OutputStream stream = Files.newOutputStream(journalFile(generation),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            journal = new DataOutputStream(new BufferedOutputStream(stream));
+        }
+        return journal;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private Path journalFile(long journalGeneration) {
+        return dir.resolve("journal-" + journalGeneration + ".bin");
+    }
+
+    /**
+     * 加载快照并重放同代数的日志；其他代数的日志是替换过程中残留的，直接删除
+     */
+    private void load() throws IOException {
+        ConcurrentSkipListMap<String, Entry> loaded = new ConcurrentSkipListMap<>();
+        Path snapshot = dir.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("元数据索引快照格式不兼容: " + snapshot);
+                }
+                in.readUTF();
+                generation = in.readLong();
+                crawledAt = in.readLong();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    loaded.put(key, readEntry(in));
+                }
+            }
+        }
+
+        Path currentJournal = journalFile(generation);
+        boolean hasJournal = Files.exists(currentJournal);
+        if (hasJournal) {
+            journalRecords = replay(currentJournal, loaded);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith("journal-") && !file.equals(currentJournal)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        entries = loaded;
+        rollup = FolderRollupTree.build(loaded);
+        log.info("元数据索引已加载 - bucket: {}, 条目: {}, 日志记录: {}", bucket, loaded.size(), journalRecords);
+
+        // 日志末尾可能有不完整的记录（包括只有一条不完整记录的日志），合并为新快照后再追加，
+        // 否则新记录会接在不完整的记录之后，下次重放时无法读出
+        if (hasJournal) {
+            compact();
+        }
+    }
+
+    /**
+     * 重放变更日志，末尾不完整的记录（写入时进程退出）被忽略
+     */
+    private int replay(Path file, ConcurrentSkipListMap<String, Entry> target) throws IOException {
+        int count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                Change change;
+                try {
+                    change = readChange(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (change == null) {
+                    break;
+                }
+                change.applyTo(target);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Change readChange(DataInputStream in) throws IOException {
+        int op = in.read();
+        if (op < 0) {
+            return null;
+        }
+        String key = in.readUTF();
+        Entry entry = op == OP_PUT ? readEntry(in) : null;
+        return new Change((byte) op, key, entry);
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+        out.writeLong(entry.size());
+        out.writeLong(entry.lastModified());
+        out.writeUTF(entry.etag() != null ? entry.etag() : "");
+        out.writeUTF(entry.storageClass() != null ? entry.storageClass() : "");
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        String etag = in.readUTF();
+        String storageClass = in.readUTF();
+        return new Entry(size, lastModified, etag.isEmpty() ? null : etag, storageClass.isEmpty() ? null : storageClass);
+    }
+
+    /**
+     * 大于所有以 prefix 开头的字符串的最小字符串
+     */
+    public static String successor(String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            // 全部为最大字符，没有上界
+            return prefix + Character.MAX_VALUE;
+        }
+        return prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+    }
+
+    /**
+     * 一条增量变更
+     */
+    private record Change(byte op, String key, Entry entry) {
+        void applyTo(ConcurrentSkipListMap<String, Entry> target) {
+            switch (op) {
+                case OP_PUT -> target.put(key, entry);
+                case OP_REMOVE -> target.remove(key);
+                case OP_REMOVE_PREFIX -> {
+                    if (key.isEmpty()) {
+                        target.clear();
+                    } else {
+                        target.subMap(key, true, successor(key), false).clear();
+                    }
+                }
+                default -> throw new IllegalStateException("未知的日志操作: " + op);
+            }
+        }
+    }
+}
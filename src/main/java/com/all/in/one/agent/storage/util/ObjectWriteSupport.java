@@ -0,0 +1,82 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.event.ObjectChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * 各上传方式（普通、流式、批量、断点续传）共用的写操作步骤：
+ * 确保存储桶存在、生成默认的对象key、写入后发布变更事件
+ */
+@Slf4j
+@Component
+public class ObjectWriteSupport {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ObjectWriteSupport(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 检查存储桶是否存在，如果不存在则创建
+     */
+    public void ensureBucket(S3Client s3Client, String bucketName) {
+        try {
+            s3Client.headBucket(HeadBucketRequest.builder().bucket(bucketName).build());
+        } catch (NoSuchBucketException e) {
+            // 存储桶不存在，创建它
+            s3Client.createBucket(CreateBucketRequest.builder().bucket(bucketName).build());
+            log.info("创建存储桶: {}", bucketName);
+        }
+    }
+
+    /**
+     * ensureBucket 的异步版本
+     */
+    public CompletableFuture<Void> ensureBucketAsync(S3AsyncClient asyncClient, String bucketName) {
+        return asyncClient.headBucket(HeadBucketRequest.builder().bucket(bucketName).build())
+                .handle((response, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    Throwable cause = error;
+                    while (cause instanceof CompletionException && cause.getCause() != null) {
+                        cause = cause.getCause();
+                    }
+                    if (cause instanceof NoSuchBucketException) {
+                        return asyncClient.createBucket(CreateBucketRequest.builder().bucket(bucketName).build())
+                                .thenAccept(created -> log.info("创建存储桶: {}", bucketName));
+                    }
+                    return CompletableFuture.<Void>failedFuture(cause);
+                })
+                .thenCompose(next -> next);
+    }
+
+    /**
+     * 未指定对象key时按文件名生成：{文件名}_{时间戳}.{扩展名}
+     */
+    public String generateObjectKey(String originalFilename) {
+        String extension = FilenameUtils.getExtension(originalFilename);
+        String baseName = FilenameUtils.getBaseName(originalFilename);
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        return baseName + "_" + timestamp + "." + extension;
+    }
+
+    /**
+     * 写操作完成后发布变更事件（文件夹推断、列表/统计缓存按前缀失效）
+     */
+    public void onObjectChanged(String backendName, String bucketName, String objectKey) {
+        eventPublisher.publishEvent(new ObjectChangedEvent(backendName, bucketName, objectKey));
+    }
+}
@@ -0,0 +1,78 @@
+package com.all.in.one.agent.storage.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按路径段（'/'分隔）组织的前缀树
+ *
+ * 用于列表结果中文件夹去重：插入和查询的代价只与路径长度有关，
+ * 与已收集的文件夹数量无关。末尾的 '/' 不参与比较，
+ * 即 "a/b" 与 "a/b/" 视为同一个路径
+ *
+ * 非线程安全，每次列表构建单独创建
+ */
+public class PrefixTrie {
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * 插入路径
+     *
+     * @return 路径此前不存在时返回true
+     */
+    public boolean add(String path) {
+        Node node = root;
+        int start = 0;
+        int length = trimmedLength(path);
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            node = node.children.computeIfAbsent(path.substring(start, end), segment -> new Node());
+            start = end + 1;
+        }
+        if (node.terminal) {
+            return false;
+        }
+        node.terminal = true;
+        size++;
+        return true;
+    }
+
+    /**
+     * 路径是否已存在
+     */
+    public boolean contains(String path) {
+        Node node = root;
+        int start = 0;
+        int length = trimmedLength(path);
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0 || end > length) {
+                end = length;
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return node.terminal;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int trimmedLength(String path) {
+        return path.endsWith("/") ? path.length() - 1 : path.length();
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>(4);
+        private boolean terminal;
+    }
+}
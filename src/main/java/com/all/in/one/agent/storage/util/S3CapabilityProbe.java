@@ -0,0 +1,158 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * S3列表能力探测
+ *
+ * 不同S3兼容实现对 ListObjectsV2 和 delimiter 的支持不一致
+ * （例如某些实现的V2接口不返回CommonPrefixes），
+ * 每个后端（按配置指纹）首次列表时探测一次并缓存结果：
+ * 1. V2接口是否可用
+ * 2. V2/V1 是否正确处理 delimiter
+ *
+ * 桶为空等无法判断的情况下按"支持"处理，并在一段时间后重新探测
+ */
+@Slf4j
+@Component
+public class S3CapabilityProbe {
+
+    /**
+     * 不确定的探测结果的有效期（毫秒）
+     */
+    private static final long INCONCLUSIVE_TTL_MILLIS = 5 * 60 * 1000L;
+
+    private static final int PROBE_MAX_KEYS = 100;
+
+    private final Map<String, ListCapabilities> capabilities = new ConcurrentHashMap<>();
+
+    /**
+     * 获取后端的列表能力（首次调用时探测）
+     */
+    public ListCapabilities capabilities(StorageConfigProperties.Backend backend, S3Client s3Client, String bucket) {
+        String fingerprint = S3ClientRegistry.fingerprint(backend);
+        ListCapabilities cached = capabilities.get(fingerprint);
+        if (cached != null && !cached.isExpired()) {
+            return cached;
+        }
+        return capabilities.compute(fingerprint, (key, current) -> {
+            if (current != null && !current.isExpired()) {
+                return current;
+            }
+            return probe(s3Client, bucket, backend.getEndpoint());
+        });
+    }
+
+    /**
+     * 获取已缓存的探测结果（未探测时返回null）
+     */
+    public ListCapabilities cached(StorageConfigProperties.Backend backend) {
+        return capabilities.get(S3ClientRegistry.fingerprint(backend));
+    }
+
+    private ListCapabilities probe(S3Client s3Client, String bucket, String endpoint) {
+        // 1. V1 + delimiter，作为参照
+        ListObjectsResponse v1 = s3Client.listObjects(b -> b.bucket(bucket).delimiter("/").maxKeys(PROBE_MAX_KEYS));
+        Boolean v1Delimiter = delimiterHonored(v1.commonPrefixes().size(), v1.contents());
+
+        // 2. V2 + delimiter
+        boolean v2Supported;
+        Boolean v2Delimiter = null;
+        try {
+            ListObjectsV2Response v2 = s3Client.listObjectsV2(b -> b.bucket(bucket).delimiter("/").maxKeys(PROBE_MAX_KEYS));
+            v2Supported = true;
+            v2Delimiter = delimiterHonored(v2.commonPrefixes().size(), v2.contents());
+            // V1返回了文件夹而V2没有，说明V2不支持CommonPrefixes
+            if (!v1.commonPrefixes().isEmpty() && v2.commonPrefixes().isEmpty()) {
+                v2Delimiter = false;
+            }
+        } catch (S3Exception e) {
+            if (e.statusCode() >= 500 && e.statusCode() != 501) {
+                throw e;
+            }
+            log.warn("后端不支持ListObjectsV2，使用V1接口 - endpoint: {}, status: {}", endpoint, e.statusCode());
+            v2Supported = false;
+        }
+
+        boolean conclusive = v1Delimiter != null && (!v2Supported || v2Delimiter != null);
+        ListCapabilities result = new ListCapabilities(
+                v2Supported,
+                v2Supported && !Boolean.FALSE.equals(v2Delimiter),
+                !Boolean.FALSE.equals(v1Delimiter),
+                conclusive ? Long.MAX_VALUE : System.currentTimeMillis() + INCONCLUSIVE_TTL_MILLIS);
+
+        log.info("S3列表能力探测完成 - endpoint: {}, bucket: {}, v2: {}, v2Delimiter: {}, v1Delimiter: {}, conclusive: {}",
+                endpoint, bucket, result.isV2Supported(), result.isV2DelimiterSupported(),
+                result.isV1DelimiterSupported(), conclusive);
+        return result;
+    }
+
+    /**
+     * 判断delimiter是否生效：有CommonPrefixes说明生效；
+     * contents中出现中间带斜杠的key说明被忽略；都没有则无法判断
+     */
+    private Boolean delimiterHonored(int commonPrefixCount, List<S3Object> contents) {
+        if (commonPrefixCount > 0) {
+            return true;
+        }
+        for (S3Object object : contents) {
+            int slash = object.key().indexOf('/');
+            if (slash >= 0 && slash < object.key().length() - 1) {
+                return false;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 列表能力
+     */
+    @Getter
+    public static final class ListCapabilities {
+        private final boolean v2Supported;
+        private final boolean v2DelimiterSupported;
+        private final boolean v1DelimiterSupported;
+        private final long expiresAt;
+
+        ListCapabilities(boolean v2Supported, boolean v2DelimiterSupported, boolean v1DelimiterSupported, long expiresAt) {
+            this.v2Supported = v2Supported;
+            this.v2DelimiterSupported = v2DelimiterSupported;
+            this.v1DelimiterSupported = v1DelimiterSupported;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * 指定是否使用delimiter时应选用V2接口
+         */
+        public boolean useV2(boolean withDelimiter) {
+            if (!v2Supported) {
+                return false;
+            }
+            // V2不支持delimiter而V1支持时，分层列表回退到V1
+            return !withDelimiter || v2DelimiterSupported || !v1DelimiterSupported;
+        }
+
+        /**
+         * 所选接口是否会返回CommonPrefixes
+         */
+        public boolean delimiterSupported(boolean v2) {
+            return v2 ? v2DelimiterSupported : v1DelimiterSupported;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * S3客户端注册表
+ *
+ * 每个后端按配置指纹缓存一个长生命周期的 S3Client、S3Presigner 和 S3AsyncClient：
+ * 1. 复用HTTP连接池，避免每个请求重新握手和创建凭证
+ * 2. 配置变更时原子替换，旧客户端延迟关闭，保证进行中的请求能够完成
+ * 3. 应用关闭时统一释放连接池
+ *
+ * 注意：从注册表获取的客户端是共享的，调用方不能关闭它们
+ */
+@Slf4j
+@Component
+public class S3ClientRegistry {
+
+    /**
+     * 被替换的客户端延迟关闭时间（秒）
+     */
+    private static final long RETIRE_DELAY_SECONDS = 60;
+
+    private final S3ClientUtil s3ClientUtil;
+    private final Map<String, ClientHolder> holders = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retireExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "s3-client-retire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public S3ClientRegistry(S3ClientUtil s3ClientUtil) {
+        this.s3ClientUtil = s3ClientUtil;
+    }
+
+    /**
+     * 获取后端对应的共享S3客户端
+     */
+    public S3Client getClient(String backendKey, StorageConfigProperties.Backend backend) {
+        return getHolder(backendKey, backend).client;
+    }
+
+    /**
+     * 获取后端对应的共享S3Presigner
+     */
+    public S3Presigner getPresigner(String backendKey, StorageConfigProperties.Backend backend) {
+        return getHolder(backendKey, backend).presigner;
+    }
+
+    /**
+     * 获取后端对应的共享异步S3客户端（首次使用时创建）
+     */
+    public S3AsyncClient getAsyncClient(String backendKey, StorageConfigProperties.Backend backend) {
+        return getHolder(backendKey, backend).asyncClient();
+    }
+
+    /**
+     * 使用新配置立即替换后端客户端（配置更新时调用）
+     */
+    public void refresh(String backendKey, StorageConfigProperties.Backend backend) {
+        replace(backendKey, backend);
+    }
+
+    /**
+     * 移除后端客户端（配置清除时调用）
+     */
+    public void invalidate(String backendKey) {
+        retire(backendKey, holders.remove(backendKey));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retireExecutor.shutdownNow();
+        holders.forEach((key, holder) -> holder.close());
+        holders.clear();
+        log.info("S3客户端注册表已关闭");
+    }
+
+    private ClientHolder getHolder(String backendKey, StorageConfigProperties.Backend backend) {
+        ClientHolder holder = holders.get(backendKey);
+        if (holder != null && holder.fingerprint.equals(fingerprint(backend))) {
+            return holder;
+        }
+        return replace(backendKey, backend);
+    }
+
+    private ClientHolder replace(String backendKey, StorageConfigProperties.Backend backend) {
+        String fingerprint = fingerprint(backend);
+        ClientHolder[] replaced = new ClientHolder[1];
+        ClientHolder holder = holders.compute(backendKey, (key, current) -> {
+            if (current != null && current.fingerprint.equals(fingerprint)) {
+                return current;
+            }
+            replaced[0] = current;
+            return createHolder(key, fingerprint, backend);
+        });
+        retire(backendKey, replaced[0]);
+        return holder;
+    }
+
+    private ClientHolder createHolder(String backendKey, String fingerprint, StorageConfigProperties.Backend backend) {
+        log.info("创建S3客户端 - backend: {}, endpoint: {}", backendKey, backend.getEndpoint());
+        return new ClientHolder(fingerprint,
+                s3ClientUtil.createS3Client(backendKey, backend),
+                s3ClientUtil.createS3Presigner(backend),
+                () -> s3ClientUtil.createS3AsyncClient(backendKey, backend));
+    }
+
+    private void retire(String backendKey, ClientHolder holder) {
+        if (holder == null) {
+            return;
+        }
+        log.info("S3客户端配置已变更，{}秒后关闭旧客户端 - backend: {}", RETIRE_DELAY_SECONDS, backendKey);
+        try {
+            retireExecutor.schedule(holder::close, RETIRE_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            holder.close();
+        }
+    }
+
+    /**
+     * 计算后端配置指纹（密钥只参与摘要，不会出现在日志中）
+     */
+    static String fingerprint(StorageConfigProperties.Backend backend) {
+        String raw = String.join("\u0000",
+                String.valueOf(backend.getEndpoint()),
+                String.valueOf(backend.getAccessKeyId()),
+                String.valueOf(backend.getAccessKeySecret()),
+                String.valueOf(backend.getRegion()),
+                String.valueOf(backend.getTransport()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 一组共享的客户端
+     */
+    private static final class ClientHolder {
+        private final String fingerprint;
+        private final S3Client client;
+        private final S3Presigner presigner;
+        private final Supplier<S3AsyncClient> asyncClientFactory;
+        private volatile S3AsyncClient asyncClient;
+        private volatile boolean closed;
+
+        private ClientHolder(String fingerprint, S3Client client, S3Presigner presigner,
+                             Supplier<S3AsyncClient> asyncClientFactory) {
+            this.fingerprint = fingerprint;
+            this.client = client;
+            this.presigner = presigner;
+            this.asyncClientFactory = asyncClientFactory;
+        }
+
+        private S3AsyncClient asyncClient() {
+            S3AsyncClient current = asyncClient;
+            if (current == null) {
+                synchronized (this) {
+                    current = asyncClient;
+                    if (current == null) {
+                        if (closed) {
+                            throw new IllegalStateException("S3客户端已关闭");
+                        }
+                        current = asyncClientFactory.get();
+                        asyncClient = current;
+                    }
+                }
+            }
+            return current;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            if (asyncClient != null) {
+                try {
+                    asyncClient.close();
+                } catch (Exception e) {
+                    log.warn("关闭异步S3客户端失败", e);
+                }
+            }
+            try {
+                client.close();
+            } catch (Exception e) {
+                log.warn("关闭S3客户端失败", e);
+            }
+            try {
+                presigner.close();
+            } catch (Exception e) {
+                log.warn("关闭S3Presigner失败", e);
+            }
+        }
+    }
+}
@@ -4,82 +4,174 @@ import com.all.in.one.agent.storage.config.StorageConfigProperties;
 import org.springframework.stereotype.Component;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
+import java.time.Duration;
 
 /**
  * S3客户端工具类
+ *
+ * 根据 Backend.transport 配置HTTP实现、连接池和超时，
+ * 并挂载连接池指标发布器（见 S3PoolMetrics）
  */
 @Component
 public class S3ClientUtil {
 
-    /**
-     * 根据Backend配置创建S3客户端
-     */
-    public S3Client createS3Client(StorageConfigProperties.Backend backend) {
-        return createS3Client(backend.getEndpoint(), backend.getAccessKeyId(),
-                backend.getAccessKeySecret(), backend.getRegion());
-    }
+    private final S3PoolMetrics poolMetrics;
 
-    /**
-     * 根据Backend配置创建S3Presigner
-     */
-    public S3Presigner createS3Presigner(StorageConfigProperties.Backend backend) {
-        return createS3Presigner(backend.getEndpoint(), backend.getAccessKeyId(),
-                backend.getAccessKeySecret(), backend.getRegion());
+    public S3ClientUtil(S3PoolMetrics poolMetrics) {
+        this.poolMetrics = poolMetrics;
     }
 
     /**
-     * 创建S3客户端
+     * 根据Backend配置创建S3客户端
      */
-    private S3Client createS3Client(String endpoint, String accessKeyId, String accessKeySecret, String region) {
-        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, accessKeySecret);
-        
+    public S3Client createS3Client(String backendKey, StorageConfigProperties.Backend backend) {
+        StorageConfigProperties.Transport transport = backend.getTransport();
+
         // 创建S3Client构建器
         var builder = S3Client.builder()
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .credentialsProvider(credentials(backend))
+                .httpClient(createHttpClient(transport))
+                .overrideConfiguration(overrideConfiguration(backendKey, "sync", transport))
                 .serviceConfiguration(S3Configuration.builder()
                         .pathStyleAccessEnabled(true)
                         .chunkedEncodingEnabled(false)  // 禁用分块编码，兼容某些S3实现
                         .build());
-        
+
         // 如果提供了端点，使用自定义端点
-        if (endpoint != null && !endpoint.trim().isEmpty()) {
-            builder = builder.endpointOverride(URI.create(endpoint));
+        if (hasText(backend.getEndpoint())) {
+            builder = builder.endpointOverride(URI.create(backend.getEndpoint()));
         }
 
         // 如果提供了区域，设置区域
-        if (region != null && !region.trim().isEmpty()) {
-            builder = builder.region(Region.of(region));
+        if (hasText(backend.getRegion())) {
+            builder = builder.region(Region.of(backend.getRegion()));
         }
 
         return builder.build();
     }
 
     /**
-     * 创建S3Presigner
+     * 根据Backend配置创建异步S3客户端（Netty非阻塞传输）
      */
-    private S3Presigner createS3Presigner(String endpoint, String accessKeyId, String accessKeySecret, String region) {
-        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, accessKeySecret);
+    public S3AsyncClient createS3AsyncClient(String backendKey, StorageConfigProperties.Backend backend) {
+        StorageConfigProperties.Transport transport = backend.getTransport();
+
+        var httpClientBuilder = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(transport.getMaxConnections())
+                .maxPendingConnectionAcquires(transport.getMaxPendingConnectionAcquires())
+                .connectionTimeout(Duration.ofMillis(transport.getConnectionTimeoutMillis()))
+                .readTimeout(Duration.ofMillis(transport.getSocketTimeoutMillis()))
+                .writeTimeout(Duration.ofMillis(transport.getSocketTimeoutMillis()))
+                .connectionAcquisitionTimeout(Duration.ofMillis(transport.getConnectionAcquisitionTimeoutMillis()))
+                .connectionMaxIdleTime(Duration.ofMillis(transport.getConnectionMaxIdleMillis()))
+                .useIdleConnectionReaper(transport.isUseIdleConnectionReaper());
+        if (transport.getConnectionTtlMillis() > 0) {
+            httpClientBuilder.connectionTimeToLive(Duration.ofMillis(transport.getConnectionTtlMillis()));
+        }
+
+        // 创建S3AsyncClient构建器，使用Netty非阻塞HTTP客户端
+        var builder = S3AsyncClient.builder()
+                .credentialsProvider(credentials(backend))
+                .httpClientBuilder(httpClientBuilder)
+                .overrideConfiguration(overrideConfiguration(backendKey, "async", transport))
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(true)
+                        .chunkedEncodingEnabled(false)  // 禁用分块编码，兼容某些S3实现
+                        .build());
+
+        // 如果提供了端点，使用自定义端点
+        if (hasText(backend.getEndpoint())) {
+            builder = builder.endpointOverride(URI.create(backend.getEndpoint()));
+        }
+
+        // 如果提供了区域，设置区域
+        if (hasText(backend.getRegion())) {
+            builder = builder.region(Region.of(backend.getRegion()));
+        }
+
+        return builder.build();
+    }
 
+    /**
+     * 根据Backend配置创建S3Presigner
+     */
+    public S3Presigner createS3Presigner(StorageConfigProperties.Backend backend) {
         // 创建S3Presigner构建器
         var builder = S3Presigner.builder()
-                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials));
+                .credentialsProvider(credentials(backend));
 
         // 如果提供了端点，使用自定义端点
-        if (endpoint != null && !endpoint.trim().isEmpty()) {
-            builder = builder.endpointOverride(URI.create(endpoint));
+        if (hasText(backend.getEndpoint())) {
+            builder = builder.endpointOverride(URI.create(backend.getEndpoint()));
         }
-        
+
         // 如果提供了区域，设置区域
-        if (region != null && !region.trim().isEmpty()) {
-            builder = builder.region(Region.of(region));
+        if (hasText(backend.getRegion())) {
+            builder = builder.region(Region.of(backend.getRegion()));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * 创建同步HTTP客户端
+     */
+    private SdkHttpClient createHttpClient(StorageConfigProperties.Transport transport) {
+        if ("url-connection".equalsIgnoreCase(transport.getHttpClient())) {
+            // JDK实现没有连接池，只有超时配置
+            return UrlConnectionHttpClient.builder()
+                    .connectionTimeout(Duration.ofMillis(transport.getConnectionTimeoutMillis()))
+                    .socketTimeout(Duration.ofMillis(transport.getSocketTimeoutMillis()))
+                    .build();
+        }
+
+        var builder = ApacheHttpClient.builder()
+                .maxConnections(transport.getMaxConnections())
+                .connectionTimeout(Duration.ofMillis(transport.getConnectionTimeoutMillis()))
+                .socketTimeout(Duration.ofMillis(transport.getSocketTimeoutMillis()))
+                .connectionAcquisitionTimeout(Duration.ofMillis(transport.getConnectionAcquisitionTimeoutMillis()))
+                .connectionMaxIdleTime(Duration.ofMillis(transport.getConnectionMaxIdleMillis()))
+                .useIdleConnectionReaper(transport.isUseIdleConnectionReaper());
+        if (transport.getConnectionTtlMillis() > 0) {
+            builder.connectionTimeToLive(Duration.ofMillis(transport.getConnectionTtlMillis()));
         }
-        
         return builder.build();
     }
+
+    /**
+     * API调用超时与连接池指标
+     */
+    private ClientOverrideConfiguration overrideConfiguration(String backendKey, String clientType,
+                                                              StorageConfigProperties.Transport transport) {
+        var builder = ClientOverrideConfiguration.builder()
+                .addMetricPublisher(poolMetrics.publisher(backendKey, clientType));
+        if (transport.getApiCallTimeoutMillis() > 0) {
+            builder.apiCallTimeout(Duration.ofMillis(transport.getApiCallTimeoutMillis()));
+        }
+        if (transport.getApiCallAttemptTimeoutMillis() > 0) {
+            builder.apiCallAttemptTimeout(Duration.ofMillis(transport.getApiCallAttemptTimeoutMillis()));
+        }
+        return builder.build();
+    }
+
+    private StaticCredentialsProvider credentials(StorageConfigProperties.Backend backend) {
+        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(backend.getAccessKeyId(), backend.getAccessKeySecret());
+        return StaticCredentialsProvider.create(awsCredentials);
+    }
+
+    private boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
 }
@@ -0,0 +1,347 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * S3 Inventory 清单读取
+ *
+ * 清单位置为 s3://bucket/.../manifest.json，或 inventory.localDir 下的本地 manifest.json
+ * （localDir 相当于清单目标bucket的根目录，数据文件按清单中的key相对于它定位）。
+ * 数据文件在独立线程池中并行解析，逐行回调；目前只支持CSV格式（可为gzip压缩），
+ * ORC/Parquet 需要额外的列式格式依赖，遇到时直接拒绝
+ */
+@Slf4j
+@Component
+public class S3InventoryReader {
+
+    private static final String S3_SCHEME = "s3://";
+    private static final String FORMAT_CSV = "CSV";
+
+    private final S3ClientRegistry clientRegistry;
+    private final ObjectMapper objectMapper;
+    private final StorageConfigProperties.IndexInventory properties;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 清单内容
+     *
+     * @param sourceBucket 被清点的bucket
+     * @param bucket       清单所在的bucket，本地清单为null
+     * @param localRoot    本地清单的根目录，S3清单为null
+     * @param manifestDir  manifest.json 所在的目录（S3为key前缀）
+     * @param columns      数据文件的列名（fileSchema）
+     * @param files        数据文件的key
+     * @param createdAt    清单生成时间（毫秒）
+     */
+    public record Manifest(String sourceBucket, String bucket, Path localRoot, String manifestDir,
+                           List<String> columns, List<String> files, long createdAt) {
+    }
+
+    public S3InventoryReader(S3ClientRegistry clientRegistry, ObjectMapper objectMapper,
+                             StorageConfigProperties configProperties) {
+        this.clientRegistry = clientRegistry;
+        this.objectMapper = objectMapper;
+        this.properties = configProperties.getMetadataIndex().getInventory();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        int threads = Math.max(1, properties.getThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "inventory-reader-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 读取并校验 manifest.json
+     *
+     * @throws StorageException 位置不允许、格式不支持或缺少Key列
+     */
+    public Manifest readManifest(String backendKey, StorageConfigProperties.Backend backend, String location) {
+        if (location == null || location.isBlank()) {
+            throw new StorageException("清单位置不能为空");
+        }
+        JsonNode root;
+        String bucket = null;
+        Path localRoot = null;
+        String manifestDir;
+        try {
+            if (location.startsWith(S3_SCHEME)) {
+                String path = location.substring(S3_SCHEME.length());
+                int slash = path.indexOf('/');
+                if (slash <= 0 || slash == path.length() - 1) {
+                    throw new StorageException("无效的清单位置: " + location);
+                }
+                bucket = path.substring(0, slash);
+                String key = path.substring(slash + 1);
+                manifestDir = key.contains("/") ? key.substring(0, key.lastIndexOf('/') + 1) : "";
+                ResponseBytes<GetObjectResponse> bytes = clientRegistry.getClient(backendKey, backend)
+                        .getObjectAsBytes(GetObjectRequest.builder().bucket(bucket).key(key).build());
+                root = objectMapper.readTree(bytes.asByteArray());
+            } else {
+                localRoot = localRoot();
+                Path manifestFile = resolveLocal(localRoot, Paths.get(location).isAbsolute()
+                        ? Paths.get(location) : localRoot.resolve(location));
+                manifestDir = manifestFile.getParent().toString();
+                root = objectMapper.readTree(manifestFile.toFile());
+            }
+        } catch (IOException e) {
+            throw new StorageException("读取清单失败: " + e.getMessage());
+        }
+
+        String fileFormat = root.path("fileFormat").asText("");
+        if (!FORMAT_CSV.equalsIgnoreCase(fileFormat)) {
+            throw new StorageException("暂不支持 " + fileFormat + " 格式的清单，请在 S3 Inventory 中选择 CSV 格式");
+        }
+        List<String> columns = new ArrayList<>();
+        for (String column : root.path("fileSchema").asText("").split(",")) {
+            columns.add(column.trim());
+        }
+        if (!columns.contains("Key")) {
+            throw new StorageException("清单缺少Key列: " + root.path("fileSchema").asText(""));
+        }
+        List<String> files = new ArrayList<>();
+        for (JsonNode file : root.path("files")) {
+            files.add(file.path("key").asText());
+        }
+        if (files.isEmpty()) {
+            throw new StorageException("清单中没有数据文件");
+        }
+
+        return new Manifest(root.path("sourceBucket").asText(null), bucket, localRoot, manifestDir,
+                columns, files, root.path("creationTimestamp").asLong(0L));
+    }
+
+    /**
+     * 并行读取全部数据文件，每个对象回调一次（回调在多个线程上执行，需线程安全）
+     *
+     * 多版本清单只取最新版本，删除标记被跳过；任一文件失败时其余文件尽快停止
+     *
+     * @return 读取的对象数
+     */
+    public long read(String backendKey, StorageConfigProperties.Backend backend, Manifest manifest,
+                     BiConsumer<String, ObjectMetadataIndex.Entry> consumer) throws IOException {
+        Columns columns = new Columns(manifest.columns());
+        AtomicLong rows = new AtomicLong();
+        AtomicBoolean cancelled = new AtomicBoolean();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (String file : manifest.files()) {
+            futures.add(CompletableFuture.runAsync(() -> {
+                if (cancelled.get()) {
+                    return;
+                }
+                try (InputStream in = open(backendKey, backend, manifest, file)) {
+                    long count = readCsv(in, columns, consumer, cancelled);
+                    rows.addAndGet(count);
+                    log.debug("清单数据文件读取完成 - file: {}, 对象数: {}", file, count);
+                } catch (IOException e) {
+                    cancelled.set(true);
+                    throw new UncheckedIOException("读取清单数据文件失败 " + file + ": " + e.getMessage(), e);
+                } catch (RuntimeException e) {
+                    cancelled.set(true);
+                    throw e;
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            cancelled.set(true);
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) {
+                throw new IOException(io.getMessage(), io.getCause());
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+        return rows.get();
+    }
+
+    private InputStream open(String backendKey, StorageConfigProperties.Backend backend, Manifest manifest,
+                             String file) throws IOException {
+        InputStream in;
+        if (manifest.localRoot() != null) {
+            // 优先按清单中的key定位；只复制了单个清单配置目录时，数据文件在清单目录的上一级 data 下
+            Path path = manifest.localRoot().resolve(file).normalize();
+            if (!Files.exists(path)) {
+                Path manifestDir = Paths.get(manifest.manifestDir());
+                Path parent = manifestDir.getParent() != null ? manifestDir.getParent() : manifestDir;
+                path = parent.resolve("data").resolve(Paths.get(file).getFileName()).normalize();
+            }
+            in = Files.newInputStream(resolveLocal(manifest.localRoot(), path));
+        } else {
+            in = clientRegistry.getClient(backendKey, backend).getObject(GetObjectRequest.builder()
+                    .bucket(manifest.bucket())
+                    .key(file)
+                    .build());
+        }
+        return file.endsWith(".gz") ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+
+    private long readCsv(InputStream in, Columns columns, BiConsumer<String, ObjectMetadataIndex.Entry> consumer,
+                         AtomicBoolean cancelled) throws IOException {
+        long count = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        List<String> fields = new ArrayList<>(columns.count);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if ((count & 0xFFF) == 0 && cancelled.get()) {
+                break;
+            }
+            splitCsv(line, fields);
+            if (fields.size() <= columns.key) {
+                throw new IOException("清单数据行列数不足: " + line);
+            }
+            if ("true".equalsIgnoreCase(field(fields, columns.deleteMarker))
+                    || "false".equalsIgnoreCase(field(fields, columns.latest))) {
+                continue;
+            }
+
+            String key = URLDecoder.decode(fields.get(columns.key), StandardCharsets.UTF_8);
+            String size = field(fields, columns.objectSize);
+            String lastModified = field(fields, columns.lastModified);
+            String etag = field(fields, columns.etag);
+            String storageClass = field(fields, columns.storageClass);
+            try {
+                consumer.accept(key, new ObjectMetadataIndex.Entry(
+                        size.isEmpty() ? 0L : Long.parseLong(size),
+                        lastModified.isEmpty() ? 0L : Instant.parse(lastModified).toEpochMilli(),
+                        // 与 ListObjects 返回的 ETag 保持一致（带引号），增量同步比较时不会误判为修改
+                        etag.isEmpty() ? null : etag.startsWith("\"") ? etag : "\"" + etag + "\"",
+                        storageClass.isEmpty() ? null : storageClass));
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IOException("无法解析清单数据行: " + line);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index >= 0 && index < fields.size() ? fields.get(index) : "";
+    }
+
+    /**
+     * 拆分一行CSV（字段可带双引号，引号内的 "" 表示一个引号）
+     */
+    private static void splitCsv(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+
+    private Path localRoot() {
+        String dir = properties.getLocalDir();
+        if (dir == null || dir.isEmpty()) {
+            throw new StorageException("未配置本地清单目录（storage.metadata-index.inventory.local-dir），只能从 s3:// 读取清单");
+        }
+        return Paths.get(dir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 本地路径必须位于清单目录之内
+     */
+    private static Path resolveLocal(Path localRoot, Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        if (!normalized.startsWith(localRoot)) {
+            throw new StorageException("清单路径不在允许的目录内: " + path);
+        }
+        return normalized;
+    }
+
+    /**
+     * fileSchema 中各列的位置，清单未包含的列为-1
+     */
+    private static final class Columns {
+        private final int count;
+        private final int key;
+        private final int objectSize;
+        private final int lastModified;
+        private final int etag;
+        private final int storageClass;
+        private final int latest;
+        private final int deleteMarker;
+
+        private Columns(List<String> names) {
+            this.count = names.size();
+            this.key = names.indexOf("Key");
+            this.objectSize = names.indexOf("Size");
+            this.lastModified = names.indexOf("LastModifiedDate");
+            this.etag = names.indexOf("ETag");
+            this.storageClass = names.indexOf("StorageClass");
+            this.latest = names.indexOf("IsLatest");
+            this.deleteMarker = names.indexOf("IsDeleteMarker");
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 分片上传
+ *
+ * 调用方线程按顺序从输入流读取分片到缓冲区，交给共享的有界线程池并发上传；
+ * 每个上传最多持有 concurrency 个缓冲区，缓冲区全部在上传时读取等待（背压），
+ * 内存占用为 partSize * concurrency，与文件大小无关。
+ *
+ * 失败的分片单独重试（间隔递增），超过重试次数后停止读取、等待进行中的分片结束，
+ * 然后中止分片上传，S3上不会留下未完成的分片
+ */
+@Slf4j
+@Component
+public class S3MultipartUploader {
+
+    /**
+     * S3要求的最小分片（最后一片除外）
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    private static final int MAX_PARTS = 10000;
+
+    /**
+     * 单个缓冲区上限（数组长度限制）
+     */
+    private static final long MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final S3ClientRegistry clientRegistry;
+    private final ThreadPoolExecutor executor;
+
+    public S3MultipartUploader(S3ClientRegistry clientRegistry, StorageConfigProperties configProperties) {
+        this.clientRegistry = clientRegistry;
+
+        int threads = Math.max(1, configProperties.getUpload().getMultipartThreads());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "s3-multipart-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 是否会对该大小的文件使用分片上传（大小未知时总是使用）
+     */
+    public boolean isMultipart(StorageConfigProperties.Backend backend, long size) {
+        StorageConfigProperties.MultipartUpload properties = backend.getMultipart();
+        return properties != null && properties.isEnabled() && (size < 0 || size >= properties.getThreshold());
+    }
+
+    /**
+     * 上传可重复打开的内容（如 MultipartFile）
+     *
+     * 单次 putObject 时SDK可能先完整读取一遍内容计算签名（HTTP端点），失败重试时也要重新读取，
+     * 一次性的输入流此时会发出空内容，因此未达到阈值的文件每次重新打开；分片上传只打开一次
+     */
+    public UploadResult upload(String backendKey, StorageConfigProperties.Backend backend, UploadRequest request,
+                               ContentStreamProvider source) throws IOException {
+        if (request.getSize() >= 0 && !isMultipart(backend, request.getSize())) {
+            long start = System.currentTimeMillis();
+            String contentType = request.getContentType() != null ? request.getContentType() : "application/octet-stream";
+            PutObjectResponse response = clientRegistry.getClient(backendKey, backend).putObject(putRequest(request),
+                    RequestBody.fromContentProvider(source, request.getSize(), contentType));
+            return UploadResult.builder()
+                    .etag(response.eTag())
+                    .size(request.getSize())
+                    .parts(1)
+                    .multipart(false)
+                    .millis(System.currentTimeMillis() - start)
+                    .build();
+        }
+        try (InputStream inputStream = source.newStream()) {
+            return upload(backendKey, backend, request, inputStream);
+        }
+    }
+
+    /**
+     * 上传输入流（不关闭输入流）
+     *
+     * 达到阈值或大小未知时分片上传，否则单次 putObject；
+     * 大小未知且内容不足一个分片时也使用单次 putObject。
+     * 输入流不可重复读取，单次 putObject 前先把内容读入内存（SDK在HTTP端点上签名时会先读一遍内容，
+     * 直接交给SDK会发出空内容），能重新打开内容时使用 ContentStreamProvider 版本
+     */
+    public UploadResult upload(String backendKey, StorageConfigProperties.Backend backend, UploadRequest request,
+                               InputStream inputStream) throws IOException {
+        S3Client s3Client = clientRegistry.getClient(backendKey, backend);
+        long start = System.currentTimeMillis();
+
+        if (!isMultipart(backend, request.getSize())) {
+            if (request.getSize() < 0) {
+                throw new IllegalArgumentException("未知大小的上传需要启用分片上传");
+            }
+            if (request.getSize() > MAX_BUFFER_SIZE) {
+                throw new IllegalArgumentException("文件过大，需要启用分片上传: " + request.getSize());
+            }
+            byte[] content = inputStream.readNBytes((int) request.getSize());
+            if (content.length != request.getSize()) {
+                throw new IOException("读取的数据长度与文件大小不符: " + content.length + " / " + request.getSize());
+            }
+            PutObjectResponse response = s3Client.putObject(putRequest(request), RequestBody.fromBytes(content));
+            return UploadResult.builder()
+                    .etag(response.eTag())
+                    .size(request.getSize())
+                    .parts(1)
+                    .multipart(false)
+                    .millis(System.currentTimeMillis() - start)
+                    .build();
+        }
+
+        StorageConfigProperties.MultipartUpload properties = backend.getMultipart();
+        int partSize = partSize(properties, request.getSize());
+        int concurrency = Math.max(1, properties.getConcurrency());
+
+        // 先读取第一片：大小未知且不足一片时无需分片
+        byte[] first = new byte[partSize];
+        int firstLength = inputStream.readNBytes(first, 0, partSize);
+        if (firstLength < partSize && request.getSize() < 0) {
+            PutObjectResponse response = s3Client.putObject(putRequest(request),
+                    RequestBody.fromBytes(Arrays.copyOf(first, firstLength)));
+            return UploadResult.builder()
+                    .etag(response.eTag())
+                    .size(firstLength)
+                    .parts(1)
+                    .multipart(false)
+                    .millis(System.currentTimeMillis() - start)
+                    .build();
+        }
+
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(request.getBucket())
+                .key(request.getKey())
+                .contentType(request.getContentType())
+                .build()).uploadId();
+
+        Upload upload = new Upload(s3Client, request, uploadId, properties.getMaxRetries(), concurrency);
+        long total = 0;
+        try {
+            byte[] buffer = upload.adopt(first);
+            int length = firstLength;
+            int partNumber = 1;
+            while (true) {
+                if (partNumber > MAX_PARTS) {
+                    throw new IOException("分片数超过" + MAX_PARTS + "，请增大 partSize");
+                }
+                total += length;
+                upload.submit(partNumber, buffer, length);
+                if (length < partSize) {
+                    break;
+                }
+                buffer = upload.acquire(partSize);
+                length = inputStream.readNBytes(buffer, 0, partSize);
+                if (length == 0) {
+                    upload.release(buffer);
+                    break;
+                }
+                partNumber++;
+            }
+            if (request.getSize() >= 0 && total != request.getSize()) {
+                throw new IOException("读取的数据长度与文件大小不符: " + total + " / " + request.getSize());
+            }
+
+            List<CompletedPart> parts = upload.await();
+            CompleteMultipartUploadResponse response = s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(request.getBucket())
+                    .key(request.getKey())
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+
+            long millis = System.currentTimeMillis() - start;
+            log.info("分片上传完成 - bucket: {}, key: {}, 大小: {}, 分片: {} x {}, 并发: {}, 重试: {}, 耗时: {}ms ({} MB/s)",
+                    request.getBucket(), request.getKey(), total, parts.size(), partSize, concurrency,
+                    upload.retries.get(), millis, millis > 0 ? total * 1000 / millis / (1024 * 1024) : 0);
+            return UploadResult.builder()
+                    .etag(response.eTag())
+                    .size(total)
+                    .parts(parts.size())
+                    .multipart(true)
+                    .millis(millis)
+                    .build();
+        } catch (Exception e) {
+            upload.cancel();
+            abort(s3Client, request, uploadId);
+            if (e instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw e instanceof RuntimeException runtimeException ? runtimeException
+                    : new RuntimeException("分片上传失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 创建分片上传，返回 uploadId（供断点续传等自行管理分片的调用方使用）
+     */
+    public String createUpload(String backendKey, StorageConfigProperties.Backend backend, UploadRequest request) {
+        return clientRegistry.getClient(backendKey, backend).createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(request.getBucket())
+                .key(request.getKey())
+                .contentType(request.getContentType())
+                .build()).uploadId();
+    }
+
+    /**
+     * 上传一个分片，失败按 backends.*.multipart.max-retries 重试
+     */
+    public CompletedPart uploadPart(String backendKey, StorageConfigProperties.Backend backend, UploadRequest request,
+                                    String uploadId, int partNumber, byte[] buffer, int length) throws IOException {
+        try {
+            return uploadPart(clientRegistry.getClient(backendKey, backend), request, uploadId, partNumber, buffer, length,
+                    Math.max(0, backend.getMultipart().getMaxRetries()), () -> false, new AtomicInteger());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("分片上传被中断", e);
+        }
+    }
+
+    /**
+     * 完成分片上传，返回对象的ETag
+     */
+    public String completeUpload(String backendKey, StorageConfigProperties.Backend backend, UploadRequest request,
+                                 String uploadId, List<CompletedPart> parts) {
+        List<CompletedPart> sorted = new ArrayList<>(parts);
+        sorted.sort(Comparator.comparing(CompletedPart::partNumber));
+        return clientRegistry.getClient(backendKey, backend).completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(request.getBucket())
+                .key(request.getKey())
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(sorted).build())
+                .build()).eTag();
+    }
+
+    /**
+     * 中止分片上传（失败只记录日志）
+     */
+    public void abortUpload(String backendKey, StorageConfigProperties.Backend backend, UploadRequest request,
+                            String uploadId) {
+        abort(clientRegistry.getClient(backendKey, backend), request, uploadId);
+    }
+
+    /**
+     * 单次上传内存中的内容，返回对象的ETag
+     */
+    public String putObject(String backendKey, StorageConfigProperties.Backend backend, UploadRequest request,
+                            byte[] buffer, int length) {
+        return clientRegistry.getClient(backendKey, backend).putObject(putRequest(request),
+                RequestBody.fromBytes(Arrays.copyOf(buffer, length))).eTag();
+    }
+
+    /**
+     * 上传一个分片，失败时间隔递增重试；cancelled 为 true 时不再重试
+     */
+    private CompletedPart uploadPart(S3Client s3Client, UploadRequest request, String uploadId, int partNumber,
+                                     byte[] buffer, int length, int maxRetries, BooleanSupplier cancelled,
+                                     AtomicInteger retries) throws InterruptedException {
+        UploadPartRequest partRequest = UploadPartRequest.builder()
+                .bucket(request.getBucket())
+                .key(request.getKey())
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength((long) length)
+                .build();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                String etag = s3Client.uploadPart(partRequest, RequestBody.fromContentProvider(
+                        () -> new ByteArrayInputStream(buffer, 0, length), length, "application/octet-stream")).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(etag).build();
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries || cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+                log.warn("分片上传失败，{}ms后重试 - key: {}, 分片: {}, 第{}次: {}",
+                        RETRY_BACKOFF_MILLIS << attempt, request.getKey(), partNumber, attempt + 1, e.getMessage());
+                Thread.sleep(RETRY_BACKOFF_MILLIS << attempt);
+            }
+        }
+    }
+
+    /**
+     * 该后端上传指定大小的文件时使用的分片大小
+     */
+    public int partSize(StorageConfigProperties.Backend backend, long size) {
+        return partSize(backend.getMultipart(), size);
+    }
+
+    /**
+     * 生效的分片大小：不小于5MB，已知大小时保证不超过 MAX_PARTS 个分片
+     */
+    private int partSize(StorageConfigProperties.MultipartUpload properties, long size) {
+        long partSize = Math.max(properties.getPartSize(), MIN_PART_SIZE);
+        if (size > 0) {
+            partSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        }
+        if (partSize > MAX_BUFFER_SIZE) {
+            throw new IllegalArgumentException("文件过大，无法分片上传: " + size);
+        }
+        return (int) partSize;
+    }
+
+    private PutObjectRequest putRequest(UploadRequest request) {
+        return PutObjectRequest.builder()
+                .bucket(request.getBucket())
+                .key(request.getKey())
+                .contentType(request.getContentType())
+                .build();
+    }
+
+    private void abort(S3Client s3Client, UploadRequest request, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(request.getBucket())
+                    .key(request.getKey())
+                    .uploadId(uploadId)
+                    .build());
+            log.warn("分片上传已中止 - bucket: {}, key: {}, uploadId: {}", request.getBucket(), request.getKey(), uploadId);
+        } catch (Exception e) {
+            // 未中止的分片由bucket的生命周期规则清理
+            log.error("中止分片上传失败 - bucket: {}, key: {}, uploadId: {}",
+                    request.getBucket(), request.getKey(), uploadId, e);
+        }
+    }
+
+    /**
+     * 上传请求
+     */
+    @Data
+    @Builder
+    public static class UploadRequest {
+        private String bucket;
+        private String key;
+        private String contentType;
+        /**
+         * 文件大小（字节），-1表示未知（读取到输入流结束）
+         */
+        @Builder.Default
+        private long size = -1;
+    }
+
+    /**
+     * 上传结果
+     */
+    @Data
+    @Builder
+    public static class UploadResult {
+        private String etag;
+        private long size;
+        private int parts;
+        private boolean multipart;
+        private long millis;
+    }
+
+    /**
+     * 一次分片上传的状态：缓冲区池、进行中的分片和第一个失败
+     */
+    private final class Upload {
+        private final S3Client s3Client;
+        private final UploadRequest request;
+        private final String uploadId;
+        private final int maxRetries;
+        private final int maxBuffers;
+
+        private final BlockingQueue<byte[]> freeBuffers;
+        private final List<Future<CompletedPart>> futures = new ArrayList<>();
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+        private final AtomicInteger retries = new AtomicInteger();
+        private int allocated;
+
+        Upload(S3Client s3Client, UploadRequest request, String uploadId, int maxRetries, int maxBuffers) {
+            this.s3Client = s3Client;
+            this.request = request;
+            this.uploadId = uploadId;
+            this.maxRetries = Math.max(0, maxRetries);
+            this.maxBuffers = maxBuffers;
+            this.freeBuffers = new ArrayBlockingQueue<>(maxBuffers);
+        }
+
+        /**
+         * 取一个空闲缓冲区，全部在使用时等待分片上传完成；已有分片失败时抛出
+         */
+        byte[] acquire(int partSize) throws Exception {
+            while (true) {
+                throwIfFailed();
+                byte[] buffer = freeBuffers.poll();
+                if (buffer == null && allocated < maxBuffers) {
+                    allocated++;
+                    return new byte[partSize];
+                }
+                if (buffer == null) {
+                    buffer = freeBuffers.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+        }
+
+        /**
+         * 把已读取了第一片的缓冲区计入缓冲区池
+         */
+        byte[] adopt(byte[] buffer) {
+            allocated++;
+            return buffer;
+        }
+
+        void release(byte[] buffer) {
+            freeBuffers.offer(buffer);
+        }
+
+        void submit(int partNumber, byte[] buffer, int length) {
+            futures.add(executor.submit(() -> {
+                try {
+                    // 已有分片失败或上传已取消：排队中的分片直接放弃
+                    throwIfFailed();
+                    return uploadPart(partNumber, buffer, length);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    release(buffer);
+                }
+            }));
+        }
+
+        private CompletedPart uploadPart(int partNumber, byte[] buffer, int length) throws Exception {
+            return S3MultipartUploader.this.uploadPart(s3Client, request, uploadId, partNumber, buffer, length,
+                    maxRetries, () -> failure.get() != null, retries);
+        }
+
+        /**
+         * 等待所有分片完成，返回按分片号排序的结果
+         */
+        List<CompletedPart> await() throws Exception {
+            List<CompletedPart> parts = new ArrayList<>(futures.size());
+            for (Future<CompletedPart> future : futures) {
+                try {
+                    parts.add(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    throw cause instanceof Exception exception ? exception : new RuntimeException(cause);
+                }
+            }
+            parts.sort(Comparator.comparing(CompletedPart::partNumber));
+            return parts;
+        }
+
+        /**
+         * 让未开始的分片放弃并等待所有分片结束（之后才能中止上传）
+         *
+         * 不使用 Future.cancel：被取消的 Future 在任务仍在执行时就会返回，中止请求可能早于进行中的分片
+         */
+        void cancel() {
+            failure.compareAndSet(null, new IOException("上传已取消"));
+            for (Future<CompletedPart> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception ignored) {
+                    // 已记录为失败
+                }
+            }
+        }
+
+        private void throwIfFailed() throws Exception {
+            Exception e = failure.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+}
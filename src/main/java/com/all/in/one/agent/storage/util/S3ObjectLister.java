@@ -0,0 +1,222 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 统一的对象列表入口
+ *
+ * 根据 S3CapabilityProbe 的探测结果选择接口：
+ * - 优先使用 ListObjectsV2（continuationToken 分页，首页支持 startAfter）
+ * - V2不可用或不返回CommonPrefixes时回退到 V1（marker 分页）
+ *
+ * 分页token对调用方是不透明的：V2为continuationToken，V1为marker
+ */
+@Slf4j
+@Component
+public class S3ObjectLister {
+
+    private final S3ClientRegistry clientRegistry;
+    private final S3CapabilityProbe capabilityProbe;
+
+    public S3ObjectLister(S3ClientRegistry clientRegistry, S3CapabilityProbe capabilityProbe) {
+        this.clientRegistry = clientRegistry;
+        this.capabilityProbe = capabilityProbe;
+    }
+
+    /**
+     * 列出一页对象
+     */
+    public ListPage list(String backendKey, StorageConfigProperties.Backend backend, ListRequest request) {
+        S3Client s3Client = clientRegistry.getClient(backendKey, backend);
+        S3CapabilityProbe.ListCapabilities capabilities = capabilities(backend, s3Client, request.getBucket());
+
+        if (capabilities.useV2(hasDelimiter(request))) {
+            return fromV2(s3Client.listObjectsV2(toV2Request(request)), capabilities);
+        }
+        return fromV1(s3Client.listObjects(toV1Request(request)), capabilities);
+    }
+
+    /**
+     * 列出一页对象（异步）
+     */
+    public CompletableFuture<ListPage> listAsync(String backendKey, StorageConfigProperties.Backend backend, ListRequest request) {
+        // 能力探测结果按后端缓存，只有首次调用会同步探测
+        S3CapabilityProbe.ListCapabilities capabilities = capabilities(backend,
+                clientRegistry.getClient(backendKey, backend), request.getBucket());
+        S3AsyncClient asyncClient = clientRegistry.getAsyncClient(backendKey, backend);
+
+        if (capabilities.useV2(hasDelimiter(request))) {
+            return asyncClient.listObjectsV2(toV2Request(request))
+                    .thenApply(response -> fromV2(response, capabilities));
+        }
+        return asyncClient.listObjects(toV1Request(request))
+                .thenApply(response -> fromV1(response, capabilities));
+    }
+
+    /**
+     * 递归遍历前缀下的所有对象（不使用delimiter），逐页回调
+     */
+    public void walk(String backendKey, StorageConfigProperties.Backend backend, String bucket, String prefix,
+                     Consumer<ListPage> pageConsumer) {
+        String token = null;
+        ListPage page;
+        do {
+            page = list(backendKey, backend, ListRequest.builder()
+                    .bucket(bucket)
+                    .prefix(prefix)
+                    .continuationToken(token)
+                    .build());
+            pageConsumer.accept(page);
+            token = page.getNextToken();
+        } while (page.isTruncated() && token != null);
+    }
+
+    private S3CapabilityProbe.ListCapabilities capabilities(StorageConfigProperties.Backend backend,
+                                                            S3Client s3Client, String bucket) {
+        return capabilityProbe.capabilities(backend, s3Client, bucket);
+    }
+
+    private boolean hasDelimiter(ListRequest request) {
+        return request.getDelimiter() != null && !request.getDelimiter().isEmpty();
+    }
+
+    private ListObjectsV2Request toV2Request(ListRequest request) {
+        ListObjectsV2Request.Builder builder = ListObjectsV2Request.builder().bucket(request.getBucket());
+        if (request.getPrefix() != null && !request.getPrefix().isEmpty()) {
+            builder.prefix(request.getPrefix());
+        }
+        if (hasDelimiter(request)) {
+            builder.delimiter(request.getDelimiter());
+        }
+        if (request.getMaxKeys() != null) {
+            builder.maxKeys(request.getMaxKeys());
+        }
+        if (request.getContinuationToken() != null && !request.getContinuationToken().isEmpty()) {
+            builder.continuationToken(request.getContinuationToken());
+        } else if (request.getStartAfter() != null && !request.getStartAfter().isEmpty()) {
+            builder.startAfter(request.getStartAfter());
+        }
+        return builder.build();
+    }
+
+    private ListObjectsRequest toV1Request(ListRequest request) {
+        ListObjectsRequest.Builder builder = ListObjectsRequest.builder().bucket(request.getBucket());
+        if (request.getPrefix() != null && !request.getPrefix().isEmpty()) {
+            builder.prefix(request.getPrefix());
+        }
+        if (hasDelimiter(request)) {
+            builder.delimiter(request.getDelimiter());
+        }
+        if (request.getMaxKeys() != null) {
+            builder.maxKeys(request.getMaxKeys());
+        }
+        // V1使用marker代替continuationToken/startAfter
+        if (request.getContinuationToken() != null && !request.getContinuationToken().isEmpty()) {
+            builder.marker(request.getContinuationToken());
+        } else if (request.getStartAfter() != null && !request.getStartAfter().isEmpty()) {
+            builder.marker(request.getStartAfter());
+        }
+        return builder.build();
+    }
+
+    private ListPage fromV2(ListObjectsV2Response response, S3CapabilityProbe.ListCapabilities capabilities) {
+        return ListPage.builder()
+                .contents(response.contents())
+                .commonPrefixes(prefixes(response.commonPrefixes()))
+                .truncated(Boolean.TRUE.equals(response.isTruncated()))
+                .nextToken(response.nextContinuationToken())
+                .v2(true)
+                .delimiterSupported(capabilities.delimiterSupported(true))
+                .build();
+    }
+
+    private ListPage fromV1(ListObjectsResponse response, S3CapabilityProbe.ListCapabilities capabilities) {
+        boolean truncated = Boolean.TRUE.equals(response.isTruncated());
+        List<String> commonPrefixes = prefixes(response.commonPrefixes());
+        String nextToken = response.nextMarker();
+        // 没有delimiter时S3不返回NextMarker，使用本页最后一个key
+        if (truncated && (nextToken == null || nextToken.isEmpty())) {
+            nextToken = lastKey(response.contents(), commonPrefixes);
+        }
+        return ListPage.builder()
+                .contents(response.contents())
+                .commonPrefixes(commonPrefixes)
+                .truncated(truncated)
+                .nextToken(nextToken)
+                .v2(false)
+                .delimiterSupported(capabilities.delimiterSupported(false))
+                .build();
+    }
+
+    private List<String> prefixes(List<CommonPrefix> commonPrefixes) {
+        return commonPrefixes.stream().map(CommonPrefix::prefix).collect(Collectors.toList());
+    }
+
+    private String lastKey(List<S3Object> contents, List<String> commonPrefixes) {
+        String last = contents.isEmpty() ? null : contents.get(contents.size() - 1).key();
+        if (!commonPrefixes.isEmpty()) {
+            String lastPrefix = commonPrefixes.get(commonPrefixes.size() - 1);
+            if (last == null || lastPrefix.compareTo(last) > 0) {
+                last = lastPrefix;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 列表请求
+     */
+    @Data
+    @Builder
+    public static class ListRequest {
+        private String bucket;
+        private String prefix;
+        private String delimiter;
+        private Integer maxKeys;
+        /**
+         * 上一页返回的 nextToken
+         */
+        private String continuationToken;
+        /**
+         * 从指定key之后开始列出（仅在没有continuationToken时生效）
+         */
+        private String startAfter;
+    }
+
+    /**
+     * 一页列表结果（V1/V2统一）
+     */
+    @Data
+    @Builder
+    public static class ListPage {
+        private List<S3Object> contents;
+        private List<String> commonPrefixes;
+        private boolean truncated;
+        private String nextToken;
+        /**
+         * 是否使用了V2接口
+         */
+        private boolean v2;
+        /**
+         * 所用接口是否返回CommonPrefixes
+         */
+        private boolean delimiterSupported;
+    }
+}
@@ -0,0 +1,265 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 按key区间并行遍历前缀
+ *
+ * 先用一次带delimiter的列表探测前缀结构，得到一组有序的边界 b1 &lt; b2 &lt; ... &lt; bn，
+ * 把keyspace划分为 (-∞, b1]、(b1, b2]、...、(bn, +∞) 等区间：
+ * - 有子目录时以子目录前缀为边界
+ * - 扁平目录（或子目录之后还有更多数据）按探测到的最后一个key之后的字符区间采样边界
+ *
+ * 每个区间用 startAfter 起始、超过上界即停止，在共享的有界线程池中并发列出；
+ * 每个区间最多缓冲 BUFFERED_PAGES 页，调用方线程按区间顺序消费，
+ * 因此回调仍按key顺序、单线程执行，现有的遍历回调无需考虑并发
+ */
+@Slf4j
+@Component
+public class S3ParallelLister {
+
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * 每个区间最多缓冲的页数（背压）
+     */
+    private static final int BUFFERED_PAGES = 4;
+
+    /**
+     * 采样边界使用的字符（按字节序排列）
+     */
+    private static final String BOUNDARY_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    private static final Object END = new Object();
+
+    private final S3ObjectLister objectLister;
+    private final StorageConfigProperties.ParallelListing properties;
+    private final ExecutorService executor;
+
+    public S3ParallelLister(S3ObjectLister objectLister, StorageConfigProperties configProperties) {
+        this.objectLister = objectLister;
+        this.properties = configProperties.getParallelListing();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()), r -> {
+            Thread thread = new Thread(r, "s3-parallel-list-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 遍历前缀下的所有对象（不使用delimiter），按key顺序在调用方线程逐页回调
+     */
+    public void walk(String backendKey, StorageConfigProperties.Backend backend, String bucket, String prefix,
+                     Consumer<S3ObjectLister.ListPage> pageConsumer) {
+        if (!properties.isEnabled() || properties.getMaxPartitions() < 2) {
+            objectLister.walk(backendKey, backend, bucket, prefix, pageConsumer);
+            return;
+        }
+
+        String actualPrefix = prefix != null ? prefix : "";
+        S3ObjectLister.ListPage probe = objectLister.list(backendKey, backend, S3ObjectLister.ListRequest.builder()
+                .bucket(bucket)
+                .prefix(actualPrefix)
+                .delimiter("/")
+                .maxKeys(PAGE_SIZE)
+                .build());
+
+        // 只有一页且没有子目录：探测结果就是全部对象
+        if (!probe.isTruncated() && probe.getCommonPrefixes().isEmpty()) {
+            pageConsumer.accept(probe);
+            return;
+        }
+
+        List<String> boundaries = planBoundaries(actualPrefix, probe);
+        if (boundaries.isEmpty()) {
+            objectLister.walk(backendKey, backend, bucket, actualPrefix, pageConsumer);
+            return;
+        }
+
+        log.info("并行遍历 - bucket: {}, prefix: '{}', 分区数: {}", bucket, actualPrefix, boundaries.size() + 1);
+        walkPartitions(backendKey, backend, bucket, actualPrefix, boundaries, pageConsumer);
+    }
+
+    /**
+     * 根据探测页计算区间边界（有序、去重，最多 maxPartitions - 1 个）
+     */
+    private List<String> planBoundaries(String prefix, S3ObjectLister.ListPage probe) {
+        TreeSet<String> candidates = new TreeSet<>(probe.getCommonPrefixes());
+
+        // 探测页之后还有数据：在最后一个已知key之后按字符采样边界
+        if (probe.isTruncated()) {
+            String last = lastKey(probe);
+            if (last != null && last.startsWith(prefix)) {
+                for (int position = prefix.length(); position < last.length(); position++) {
+                    String head = last.substring(0, position);
+                    char current = last.charAt(position);
+                    for (int i = 0; i < BOUNDARY_ALPHABET.length(); i++) {
+                        char c = BOUNDARY_ALPHABET.charAt(i);
+                        if (c > current) {
+                            candidates.add(head + c);
+                        }
+                    }
+                    // 越深的位置区间越窄，足够细时停止
+                    if (candidates.size() >= properties.getMaxPartitions() * 8) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        // 均匀选取
+        List<String> all = new ArrayList<>(candidates);
+        int limit = properties.getMaxPartitions() - 1;
+        if (all.size() <= limit) {
+            return all;
+        }
+        List<String> selected = new ArrayList<>(limit);
+        for (int i = 1; i <= limit; i++) {
+            selected.add(all.get((int) ((long) i * all.size() / (limit + 1))));
+        }
+        return selected;
+    }
+
+    private String lastKey(S3ObjectLister.ListPage page) {
+        String last = page.getContents().isEmpty() ? null : page.getContents().get(page.getContents().size() - 1).key();
+        if (!page.getCommonPrefixes().isEmpty()) {
+            String lastPrefix = page.getCommonPrefixes().get(page.getCommonPrefixes().size() - 1);
+            if (last == null || lastPrefix.compareTo(last) > 0) {
+                last = lastPrefix;
+            }
+        }
+        return last;
+    }
+
+    private void walkPartitions(String backendKey, StorageConfigProperties.Backend backend, String bucket, String prefix,
+                                List<String> boundaries, Consumer<S3ObjectLister.ListPage> pageConsumer) {
+        int partitionCount = boundaries.size() + 1;
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<BlockingQueue<Object>> buffers = new ArrayList<>(partitionCount);
+        List<Future<?>> futures = new ArrayList<>(partitionCount);
+
+        // 按区间顺序提交：线程池先进先出，保证正在消费的区间总是已经开始执行
+        for (int i = 0; i < partitionCount; i++) {
+            String lower = i == 0 ? null : boundaries.get(i - 1);
+            String upper = i < boundaries.size() ? boundaries.get(i) : null;
+            BlockingQueue<Object> buffer = new ArrayBlockingQueue<>(BUFFERED_PAGES);
+            buffers.add(buffer);
+            futures.add(executor.submit(() -> {
+                Object last = END;
+                try {
+                    walkRange(backendKey, backend, bucket, prefix, lower, upper, buffer, cancelled);
+                } catch (Throwable e) {
+                    last = e;
+                }
+                offer(buffer, last, cancelled);
+            }));
+        }
+
+        try {
+            for (BlockingQueue<Object> buffer : buffers) {
+                while (true) {
+                    Object item = buffer.take();
+                    if (item == END) {
+                        break;
+                    }
+                    if (item instanceof Throwable error) {
+                        throw error instanceof RuntimeException runtimeException
+                                ? runtimeException
+                                : new RuntimeException("并行遍历失败: " + error.getMessage(), error);
+                    }
+                    pageConsumer.accept((S3ObjectLister.ListPage) item);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("并行遍历被中断", e);
+        } finally {
+            cancelled.set(true);
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * 列出 (lower, upper] 区间内的对象
+     */
+    private void walkRange(String backendKey, StorageConfigProperties.Backend backend, String bucket, String prefix,
+                           String lower, String upper, BlockingQueue<Object> buffer, AtomicBoolean cancelled) {
+        S3ObjectLister.ListRequest request = S3ObjectLister.ListRequest.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .maxKeys(PAGE_SIZE)
+                .startAfter(lower)
+                .build();
+
+        while (!cancelled.get()) {
+            S3ObjectLister.ListPage page = objectLister.list(backendKey, backend, request);
+
+            boolean reachedUpper = false;
+            if (upper != null) {
+                List<S3Object> contents = page.getContents();
+                int end = contents.size();
+                while (end > 0 && contents.get(end - 1).key().compareTo(upper) > 0) {
+                    end--;
+                }
+                if (end < contents.size()) {
+                    reachedUpper = true;
+                    page = S3ObjectLister.ListPage.builder()
+                            .contents(contents.subList(0, end))
+                            .commonPrefixes(page.getCommonPrefixes())
+                            .truncated(false)
+                            .v2(page.isV2())
+                            .delimiterSupported(page.isDelimiterSupported())
+                            .build();
+                }
+            }
+
+            if (!page.getContents().isEmpty() && !offer(buffer, page, cancelled)) {
+                return;
+            }
+            if (reachedUpper || !page.isTruncated() || page.getNextToken() == null) {
+                return;
+            }
+            request.setContinuationToken(page.getNextToken());
+        }
+    }
+
+    /**
+     * 放入缓冲区，缓冲区满时等待；遍历取消后放弃
+     */
+    private boolean offer(BlockingQueue<Object> buffer, Object item, AtomicBoolean cancelled) {
+        try {
+            while (!cancelled.get()) {
+                if (buffer.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+package com.all.in.one.agent.storage.util;
+
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * S3连接池实时指标
+ *
+ * 通过SDK的 MetricPublisher 收集每次调用上报的连接池状态，
+ * 按 后端:客户端类型 记录最近一次的 已租用/等待/可用/最大 连接数，
+ * 用于按实际负载调整 Backend.transport 中的连接池大小
+ */
+@Component
+public class S3PoolMetrics {
+
+    private final Map<String, PoolGauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * 为指定后端的某个客户端创建指标发布器
+     */
+    public MetricPublisher publisher(String backendKey, String clientType) {
+        return new PoolMetricPublisher(backendKey + ":" + clientType);
+    }
+
+    /**
+     * 获取所有连接池的当前快照
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        gauges.forEach((name, gauge) -> result.put(name, gauge.toMap()));
+        return result;
+    }
+
+    /**
+     * 单个连接池的指标
+     */
+    private static final class PoolGauge {
+        private volatile int leased;
+        private volatile int pending;
+        private volatile int available;
+        private volatile int max;
+        private final AtomicLong samples = new AtomicLong();
+        private volatile long updatedAt;
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("leased", leased);
+            map.put("pending", pending);
+            map.put("available", available);
+            map.put("max", max);
+            map.put("samples", samples.get());
+            map.put("updatedAt", updatedAt);
+            return map;
+        }
+    }
+
+    private final class PoolMetricPublisher implements MetricPublisher {
+        private final String name;
+        private final PoolGauge gauge = new PoolGauge();
+
+        private PoolMetricPublisher(String name) {
+            this.name = name;
+            // 客户端被替换时，新客户端的指标覆盖旧客户端
+            gauges.put(name, gauge);
+        }
+
+        @Override
+        public void publish(MetricCollection metricCollection) {
+            if (record(gauge, metricCollection)) {
+                gauge.samples.incrementAndGet();
+                gauge.updatedAt = System.currentTimeMillis();
+            }
+        }
+
+        /**
+         * 递归查找HTTP客户端上报的连接池指标（位于 ApiCallAttempt/HttpClient 子集合中）
+         */
+        private boolean record(PoolGauge gauge, MetricCollection collection) {
+            boolean found = false;
+            Integer leased = last(collection, HttpMetric.LEASED_CONCURRENCY);
+            if (leased != null) {
+                gauge.leased = leased;
+                found = true;
+            }
+            Integer pending = last(collection, HttpMetric.PENDING_CONCURRENCY_ACQUIRES);
+            if (pending != null) {
+                gauge.pending = pending;
+                found = true;
+            }
+            Integer available = last(collection, HttpMetric.AVAILABLE_CONCURRENCY);
+            if (available != null) {
+                gauge.available = available;
+                found = true;
+            }
+            Integer max = last(collection, HttpMetric.MAX_CONCURRENCY);
+            if (max != null) {
+                gauge.max = max;
+                found = true;
+            }
+            for (MetricCollection child : collection.children()) {
+                found |= record(gauge, child);
+            }
+            return found;
+        }
+
+        private Integer last(MetricCollection collection, SdkMetric<Integer> metric) {
+            List<Integer> values = collection.metricValues(metric);
+            return values.isEmpty() ? null : values.get(values.size() - 1);
+        }
+
+        @Override
+        public void close() {
+            gauges.remove(name, gauge);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.all.in.one.agent.storage.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 超过大小上限时报错的输入流（流式上传时文件大小事先未知）
+ */
+public class SizeLimitInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long count;
+
+    public SizeLimitInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            checkSize(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            checkSize(n);
+        }
+        return n;
+    }
+
+    private void checkSize(int n) throws IOException {
+        count += n;
+        if (count > maxSize) {
+            throw new IOException("文件过大，超过上限 " + maxSize + " 字节");
+        }
+    }
+}
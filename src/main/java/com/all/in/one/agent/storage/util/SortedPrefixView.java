@@ -0,0 +1,266 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.dto.FileItem;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * 单个前缀下全部条目的排序视图
+ *
+ * 一次性装载目录下的所有文件夹和文件，名称存为字典数组，
+ * 大小和修改时间存为 long[]（毫秒），避免每个条目一个对象。
+ * 各排序方式的下标排列在首次使用时计算并保留，带过滤条件时按 (排序字段, 过滤条件) 计算一次匹配结果并保留，
+ * 之后每次取页只需 O(页大小)
+ *
+ * 顺序约定：文件夹始终在前（按名称），文件按指定字段排序，相同时按名称
+ */
+public final class SortedPrefixView {
+
+    /**
+     * 排序字段
+     */
+    public enum SortField {
+        NAME, SIZE, LAST_MODIFIED;
+
+        /**
+         * 解析请求参数（name|size|lastModified）
+         */
+        public static SortField parse(String value) {
+            if (value == null || value.isEmpty() || "name".equalsIgnoreCase(value)) {
+                return NAME;
+            }
+            if ("size".equalsIgnoreCase(value)) {
+                return SIZE;
+            }
+            if ("lastModified".equalsIgnoreCase(value)) {
+                return LAST_MODIFIED;
+            }
+            throw new IllegalArgumentException("不支持的排序字段: " + value);
+        }
+    }
+
+    private final String prefix;
+    private final long generation;
+    private final String[] folderNames;
+    private final String[] fileNames;
+    private final long[] sizes;
+    private final long[] lastModified;
+
+    private volatile int[] byName;
+    private volatile int[] bySize;
+    private volatile int[] byLastModified;
+
+    /**
+     * 过滤结果，键为 排序字段:过滤条件，只保留最近使用的若干个
+     */
+    private final Map<String, Selection> filtered = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Selection> eldest) {
+            return size() > MAX_FILTERS;
+        }
+    };
+
+    /**
+     * @param folderNames  子文件夹名称（相对prefix，不含末尾斜杠）
+     * @param fileNames    文件名称（相对prefix）
+     * @param sizes        文件大小，与 fileNames 一一对应
+     * @param lastModified 文件修改时间（毫秒），与 fileNames 一一对应
+     */
+    public SortedPrefixView(String prefix, long generation, String[] folderNames,
+                            String[] fileNames, long[] sizes, long[] lastModified) {
+        this.prefix = prefix;
+        this.generation = generation;
+        this.folderNames = folderNames.clone();
+        Arrays.sort(this.folderNames, NAME_ORDER);
+        this.fileNames = fileNames;
+        this.sizes = sizes;
+        this.lastModified = lastModified;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * 视图版本，重新装载后变化，用于识别过期游标
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int size() {
+        return folderNames.length + fileNames.length;
+    }
+
+    /**
+     * 从指定位置开始取一页
+     *
+     * @param filter   名称过滤（忽略大小写的包含匹配），为空表示不过滤
+     * @param position 起始位置（上一页返回的 nextPosition，即在过滤后序列中的位置）
+     * @return 当前页，nextPosition 为 -1 表示没有更多
+     */
+    public Page page(SortField field, boolean descending, String filter, int position, int pageSize) {
+        Selection selection = filter != null && !filter.isEmpty()
+                ? select(field, filter)
+                : new Selection(null, folderNames.length, fileOrder(field));
+        int folderCount = selection.folderCount();
+        int[] files = selection.files();
+        int total = folderCount + files.length;
+        List<FileItem> items = new ArrayList<>(Math.min(pageSize, total));
+
+        int cursor = Math.max(0, position);
+        for (; cursor < total && items.size() < pageSize; cursor++) {
+            if (cursor < folderCount) {
+                // 文件夹只有按名称倒序时才反转
+                int rank = descending && field == SortField.NAME ? folderCount - 1 - cursor : cursor;
+                int index = selection.folders() != null ? selection.folders()[rank] : rank;
+                items.add(FileItem.folder(prefix + folderNames[index] + "/", null));
+            } else {
+                int rank = cursor - folderCount;
+                int index = files[descending ? files.length - 1 - rank : rank];
+                items.add(FileItem.builder()
+                        .name(fileNames[index])
+                        .key(prefix + fileNames[index])
+                        .type("file")
+                        .size(sizes[index])
+                        .lastModified(Instant.ofEpochMilli(lastModified[index]))
+                        .build());
+            }
+        }
+
+        return new Page(items, cursor < total ? cursor : -1);
+    }
+
+    /**
+     * 过滤后的文件夹下标和按排序字段升序排列的文件下标，首次使用某个过滤条件时计算
+     */
+    private Selection select(SortField field, String filter) {
+        String key = field.name() + ":" + filter;
+        synchronized (filtered) {
+            Selection selection = filtered.get(key);
+            if (selection != null) {
+                return selection;
+            }
+        }
+
+        int[] folders = new int[folderNames.length];
+        int folderCount = 0;
+        for (int i = 0; i < folderNames.length; i++) {
+            if (containsIgnoreCase(folderNames[i], filter)) {
+                folders[folderCount++] = i;
+            }
+        }
+        int[] order = fileOrder(field);
+        int[] files = new int[order.length];
+        int fileCount = 0;
+        for (int index : order) {
+            if (containsIgnoreCase(fileNames[index], filter)) {
+                files[fileCount++] = index;
+            }
+        }
+        Selection selection = new Selection(Arrays.copyOf(folders, folderCount), folderCount,
+                Arrays.copyOf(files, fileCount));
+        synchronized (filtered) {
+            filtered.put(key, selection);
+        }
+        return selection;
+    }
+
+    /**
+     * 文件的下标排列（升序），首次使用时计算
+     *
+     * 按名称排序后，再以稳定排序按大小/修改时间排列，相同值保持名称顺序
+     */
+    private int[] fileOrder(SortField field) {
+        switch (field) {
+            case SIZE:
+                if (bySize == null) {
+                    int[] order = fileOrder(SortField.NAME).clone();
+                    sortIndexes(order, (left, right) -> Long.compare(sizes[left], sizes[right]));
+                    bySize = order;
+                }
+                return bySize;
+            case LAST_MODIFIED:
+                if (byLastModified == null) {
+                    int[] order = fileOrder(SortField.NAME).clone();
+                    sortIndexes(order, (left, right) -> Long.compare(lastModified[left], lastModified[right]));
+                    byLastModified = order;
+                }
+                return byLastModified;
+            default:
+                if (byName == null) {
+                    int[] order = new int[fileNames.length];
+                    for (int i = 0; i < order.length; i++) {
+                        order[i] = i;
+                    }
+                    sortIndexes(order, (left, right) -> NAME_ORDER.compare(fileNames[left], fileNames[right]));
+                    byName = order;
+                }
+                return byName;
+        }
+    }
+
+    /**
+     * 对下标数组做稳定排序（自底向上归并），不装箱
+     */
+    static void sortIndexes(int[] indexes, IntBinaryOperator comparator) {
+        int length = indexes.length;
+        int[] source = indexes;
+        int[] target = new int[length];
+        for (int width = 1; width < length; width *= 2) {
+            for (int low = 0; low < length; low += 2 * width) {
+                int middle = Math.min(low + width, length);
+                int high = Math.min(low + 2 * width, length);
+                int left = low;
+                int right = middle;
+                for (int k = low; k < high; k++) {
+                    if (left < middle && (right >= high || comparator.applyAsInt(source[left], source[right]) <= 0)) {
+                        target[k] = source[left++];
+                    } else {
+                        target[k] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != indexes) {
+            System.arraycopy(source, 0, indexes, 0, length);
+        }
+    }
+
+    private static boolean containsIgnoreCase(String value, String part) {
+        int max = value.length() - part.length();
+        for (int i = 0; i <= max; i++) {
+            if (value.regionMatches(true, i, part, 0, part.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final int MAX_FILTERS = 8;
+
+    private static final Comparator<String> NAME_ORDER =
+            String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    /**
+     * 一页结果
+     */
+    public record Page(List<FileItem> items, int nextPosition) {
+    }
+
+    /**
+     * 参与分页的条目：folders 为 null 时表示全部文件夹
+     */
+    private record Selection(int[] folders, int folderCount, int[] files) {
+    }
+}
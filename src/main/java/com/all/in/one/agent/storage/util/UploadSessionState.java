@@ -0,0 +1,235 @@
+package com.all.in.one.agent.storage.util;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 断点续传会话的持久化状态
+ *
+ * 每个会话在会话目录下有两个文件：
+ * <ul>
+ *     <li>{id}.session：目标对象、分片大小、S3 uploadId 和已上传分片的ETag</li>
+ *     <li>{id}.pending：已收到但不足一个分片、尚未上传到S3的数据</li>
+ * </ul>
+ * 两个文件都先写临时文件再原子替换；先写 pending 再写 session，
+ * 因此重启后 session 中记录的未上传长度总能在 pending 文件中找到。
+ * 服务端已收到的字节数 = 已上传分片数 * 分片大小 + 未上传长度。
+ *
+ * 非线程安全，由调用方按会话加锁
+ */
+@Slf4j
+public final class UploadSessionState {
+
+    private static final int MAGIC = 0x55504C53; // "UPLS"
+    private static final int VERSION = 1;
+
+    public static final String SESSION_SUFFIX = ".session";
+    private static final String PENDING_SUFFIX = ".pending";
+
+    private final Path dir;
+    @Getter
+    private final String id;
+    @Getter
+    private final String backendKey;
+    @Getter
+    private final String bucket;
+    @Getter
+    private final String key;
+    @Getter
+    private final String fileName;
+    @Getter
+    private final String contentType;
+    @Getter
+    private final long fileSize;
+    @Getter
+    private final int partSize;
+    @Getter
+    private final long createdAt;
+
+    /**
+     * S3 分片上传ID，第一个分片上传前为 null
+     */
+    @Getter
+    private String uploadId;
+    @Getter
+    private long updatedAt;
+    @Getter
+    private int pendingLength;
+
+    /**
+     * 已上传分片的ETag，第 i 个元素为分片号 i+1
+     */
+    private final List<String> etags = new ArrayList<>();
+
+    public UploadSessionState(Path dir, String id, String backendKey, String bucket, String key, String fileName,
+                              String contentType, long fileSize, int partSize, long createdAt) {
+        this.dir = dir;
+        this.id = id;
+        this.backendKey = backendKey;
+        this.bucket = bucket;
+        this.key = key;
+        this.fileName = fileName;
+        this.contentType = contentType;
+        this.fileSize = fileSize;
+        this.partSize = partSize;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    /**
+     * 从会话文件加载，格式不兼容或已损坏时返回 null
+     */
+    public static UploadSessionState load(Path sessionFile) {
+        String name = sessionFile.getFileName().toString();
+        String id = name.substring(0, name.length() - SESSION_SUFFIX.length());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(sessionFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn("上传会话文件格式不兼容 - {}", sessionFile);
+                return null;
+            }
+            UploadSessionState state = new UploadSessionState(sessionFile.getParent(), id, in.readUTF(), in.readUTF(),
+                    in.readUTF(), in.readUTF(), readNullable(in), in.readLong(), in.readInt(), in.readLong());
+            state.uploadId = readNullable(in);
+            state.updatedAt = in.readLong();
+            state.pendingLength = in.readInt();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                state.etags.add(in.readUTF());
+            }
+            // pending 文件先于会话文件写入，正常情况下不会比记录的短
+            long pendingFileSize = Files.exists(state.pendingFile()) ? Files.size(state.pendingFile()) : 0;
+            if (pendingFileSize < state.pendingLength) {
+                log.warn("上传会话未上传数据不完整，偏移量回退 - id: {}, 记录: {}, 实际: {}",
+                        id, state.pendingLength, pendingFileSize);
+                state.pendingLength = (int) pendingFileSize;
+            }
+            return state;
+        } catch (IOException e) {
+            log.warn("读取上传会话失败 - {}", sessionFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * 服务端已收到的字节数
+     */
+    public long getOffset() {
+        return (long) etags.size() * partSize + pendingLength;
+    }
+
+    public int getPartCount() {
+        return etags.size();
+    }
+
+    public List<String> getEtags() {
+        return Collections.unmodifiableList(etags);
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public void addPart(String etag) {
+        etags.add(etag);
+    }
+
+    public void touch(long now) {
+        this.updatedAt = now;
+    }
+
+    /**
+     * 读取未上传数据到缓冲区开头，返回长度
+     */
+    public int readPending(byte[] buffer) throws IOException {
+        if (pendingLength == 0) {
+            return 0;
+        }
+        try (InputStream in = Files.newInputStream(pendingFile())) {
+            return in.readNBytes(buffer, 0, pendingLength);
+        }
+    }
+
+    /**
+     * 替换未上传数据（调用 save 后生效）
+     */
+    public void writePending(byte[] buffer, int length) throws IOException {
+        if (length == 0) {
+            Files.deleteIfExists(pendingFile());
+        } else {
+            Path temp = dir.resolve(id + PENDING_SUFFIX + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(buffer, 0, length);
+            }
+            Files.move(temp, pendingFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        this.pendingLength = length;
+    }
+
+    /**
+     * 写出会话文件
+     */
+    public void save() throws IOException {
+        Path temp = dir.resolve(id + SESSION_SUFFIX + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(backendKey);
+            out.writeUTF(bucket);
+            out.writeUTF(key);
+            out.writeUTF(fileName);
+            writeNullable(out, contentType);
+            out.writeLong(fileSize);
+            out.writeInt(partSize);
+            out.writeLong(createdAt);
+            writeNullable(out, uploadId);
+            out.writeLong(updatedAt);
+            out.writeInt(pendingLength);
+            out.writeInt(etags.size());
+            for (String etag : etags) {
+                out.writeUTF(etag);
+            }
+        }
+        Files.move(temp, dir.resolve(id + SESSION_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 删除会话的全部文件
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(dir.resolve(id + SESSION_SUFFIX));
+            Files.deleteIfExists(pendingFile());
+        } catch (IOException e) {
+            log.warn("删除上传会话文件失败 - id: {}", id, e);
+        }
+    }
+
+    private Path pendingFile() {
+        return dir.resolve(id + PENDING_SUFFIX);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileItem;
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.service.MetadataIndexService;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import com.all.in.one.agent.storage.util.S3ParallelLister;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FileListingServiceImplTest {
+
+    private final StorageConfigProperties properties = new StorageConfigProperties();
+    private final MetadataIndexService metadataIndexService = mock(MetadataIndexService.class);
+
+    /**
+     * 每次加载所在的线程名
+     */
+    private final List<String> loadThreads = new CopyOnWriteArrayList<>();
+
+    private FileListingServiceImpl service;
+
+    private FileListingServiceImpl newService() {
+        StorageService storageService = mock(StorageService.class);
+        when(storageService.getBackend(anyString())).thenReturn(new StorageConfigProperties.Backend());
+        when(metadataIndexService.listFiles(anyString(), any(), anyString(), anyString(), anyString(), anyInt()))
+                .thenAnswer(invocation -> {
+                    loadThreads.add(Thread.currentThread().getName());
+                    List<FileItem> items = new ArrayList<>();
+                    items.add(FileItem.folder(invocation.getArgument(3) + "sub/", null));
+                    return Optional.of(FileListResponse.builder()
+                            .items(items)
+                            .isTruncated(false)
+                            .totalCount(items.size())
+                            .fromCache(false)
+                            .build());
+                });
+        service = new FileListingServiceImpl(storageService, mock(S3ObjectLister.class), mock(S3ParallelLister.class),
+                new CaffeineCacheManager(), properties, metadataIndexService);
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void missesLoadOnTheCallingThread() {
+        FileListingServiceImpl listing = newService();
+
+        FileListResponse first = listing.listFiles("default", "bk", "docs/", null, 100);
+        assertThat(first.getFromCache()).isFalse();
+        assertThat(loadThreads).containsExactly(Thread.currentThread().getName());
+
+        FileListResponse second = listing.listFiles("default", "bk", "docs/", null, 100);
+        assertThat(second.getFromCache()).isTrue();
+        assertThat(second.getEtag()).isEqualTo(first.getEtag());
+        assertThat(loadThreads).hasSize(1);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        FileListingServiceImpl listing = newService();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<FileListResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(callers.submit(() -> {
+                    start.await();
+                    return listing.listFiles("default", "bk", "docs/", null, 100);
+                }));
+            }
+            start.countDown();
+            for (Future<FileListResponse> response : responses) {
+                assertThat(response.get(10, TimeUnit.SECONDS).getItems()).hasSize(1);
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertThat(loadThreads).hasSize(1);
+    }
+
+    @Test
+    void staleEntriesRefreshOnTheRefreshExecutor() throws Exception {
+        properties.getCache().setListRefreshAfter(1);
+        FileListingServiceImpl listing = newService();
+        listing.listFiles("default", "bk", "docs/", null, 100);
+
+        Thread.sleep(1100);
+        // 旧数据立即返回，刷新在后台线程池中进行
+        assertThat(listing.listFiles("default", "bk", "docs/", null, 100).getFromCache()).isTrue();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loadThreads.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(loadThreads).hasSize(2);
+        assertThat(loadThreads.get(1)).startsWith("file-list-refresh-");
+    }
+
+    @Test
+    void prefetchLoadsRunOnThePrefetchExecutor() throws Exception {
+        FileListingServiceImpl listing = newService();
+        ListingPrefetchServiceImpl prefetch = new ListingPrefetchServiceImpl(listing, properties);
+        try {
+            FileListResponse page = listing.listFiles("default", "bk", "docs/", null, 100);
+            page.setIsTruncated(true);
+            page.setNextContinuationToken("next");
+            prefetch.afterPageServed("default", "bk", "docs/", 100, page);
+
+            // 下一页 + 子文件夹首页
+            long deadline = System.currentTimeMillis() + 5000;
+            while (loadThreads.size() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(loadThreads).hasSize(3);
+            assertThat(loadThreads.subList(1, 3)).allMatch(name -> name.startsWith("file-list-prefetch-"));
+        } finally {
+            prefetch.shutdown();
+        }
+
+        // 预读结果已在缓存中
+        assertThat(listing.listFiles("default", "bk", "docs/", "next", 100).getFromCache()).isTrue();
+        assertThat(listing.listFiles("default", "bk", "docs/sub/", null, 100).getFromCache()).isTrue();
+    }
+}
@@ -0,0 +1,161 @@
+package com.all.in.one.agent.storage.service.impl;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.dto.FileItem;
+import com.all.in.one.agent.storage.dto.FileListResponse;
+import com.all.in.one.agent.storage.event.ObjectChangedEvent;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.all.in.one.agent.storage.service.StorageService;
+import com.all.in.one.agent.storage.util.S3ObjectLister;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SortedListingServiceImplTest {
+
+    private final StorageConfigProperties properties = new StorageConfigProperties();
+
+    /**
+     * 目录 docs/ 下当前的文件名
+     */
+    private final List<String> files = new CopyOnWriteArrayList<>();
+
+    /**
+     * 每次列出所在的线程名
+     */
+    private final List<String> listThreads = new CopyOnWriteArrayList<>();
+
+    private SortedListingServiceImpl service;
+
+    private SortedListingServiceImpl newService() {
+        StorageService storageService = mock(StorageService.class);
+        when(storageService.getBackend(anyString())).thenReturn(new StorageConfigProperties.Backend());
+        S3ObjectLister lister = mock(S3ObjectLister.class);
+        when(lister.list(anyString(), any(), any(S3ObjectLister.ListRequest.class))).thenAnswer(invocation -> {
+            listThreads.add(Thread.currentThread().getName());
+            List<S3Object> contents = new ArrayList<>();
+            for (String file : files) {
+                contents.add(S3Object.builder().key("docs/" + file).size((long) file.length())
+                        .lastModified(Instant.ofEpochMilli(1000)).build());
+            }
+            return S3ObjectLister.ListPage.builder()
+                    .contents(contents)
+                    .commonPrefixes(List.of("docs/sub/"))
+                    .truncated(false)
+                    .build();
+        });
+        service = new SortedListingServiceImpl(storageService, lister, properties);
+        return service;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    private FileListResponse list(SortedListingServiceImpl listing, String cursor) {
+        return listing.list("default", "bk", "docs/", "size", "asc", null, cursor, 2);
+    }
+
+    private static List<String> names(FileListResponse response) {
+        return response.getItems().stream().map(FileItem::getName).toList();
+    }
+
+    @Test
+    void cursorsSurviveARebuildOfUnchangedContent() {
+        files.addAll(List.of("a", "bb", "ccc"));
+        SortedListingServiceImpl listing = newService();
+
+        FileListResponse first = list(listing, null);
+        assertThat(names(first)).containsExactly("sub", "a");
+
+        // 视图失效后重新装载，内容未变，游标仍然有效
+        listing.onObjectChanged(new ObjectChangedEvent("default", "bk", "docs/a"));
+        FileListResponse second = list(listing, first.getNextContinuationToken());
+        assertThat(names(second)).containsExactly("bb", "ccc");
+        assertThat(second.getIsTruncated()).isFalse();
+        assertThat(listThreads).hasSize(2);
+
+        // 内容变化后旧游标失效
+        files.add("dddd");
+        listing.onObjectChanged(new ObjectChangedEvent("default", "bk", "docs/dddd"));
+        assertThatThrownBy(() -> list(listing, first.getNextContinuationToken()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("目录内容已更新");
+    }
+
+    @Test
+    void theLargestAllowedFolderStaysCached() {
+        properties.getSortedListing().setMaxEntries(10);
+        properties.getSortedListing().setMaxCachedEntries(5);
+        for (int i = 0; i < 9; i++) {
+            files.add("f" + i);
+        }
+        SortedListingServiceImpl listing = newService();
+
+        FileListResponse first = list(listing, null);
+        FileListResponse second = list(listing, first.getNextContinuationToken());
+        assertThat(names(second)).containsExactly("f1", "f2");
+        assertThat(listThreads).hasSize(1);
+    }
+
+    @Test
+    void foldersAboveTheCapAreRejected() {
+        properties.getSortedListing().setMaxEntries(10);
+        for (int i = 0; i < 10; i++) {
+            files.add("f" + i);
+        }
+        SortedListingServiceImpl listing = newService();
+
+        assertThatThrownBy(() -> list(listing, null))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("目录条目数超过 10");
+        // 失败的装载不缓存
+        files.remove("f9");
+        assertThat(names(list(listing, null))).containsExactly("sub", "f0");
+    }
+
+    @Test
+    void concurrentRequestsShareOneBuildOnTheBuildExecutor() throws Exception {
+        files.addAll(List.of("a", "bb"));
+        SortedListingServiceImpl listing = newService();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<FileListResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(callers.submit(() -> {
+                    start.await();
+                    return list(listing, null);
+                }));
+            }
+            start.countDown();
+            for (Future<FileListResponse> response : responses) {
+                assertThat(names(response.get(10, TimeUnit.SECONDS))).containsExactly("sub", "a");
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+        assertThat(listThreads).hasSize(1);
+        assertThat(listThreads.get(0)).startsWith("sorted-listing-");
+    }
+}
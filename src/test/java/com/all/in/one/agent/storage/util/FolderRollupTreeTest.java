@@ -0,0 +1,115 @@
+package com.all.in.one.agent.storage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FolderRollupTreeTest {
+
+    private static ObjectMetadataIndex.Entry entry(long size) {
+        return new ObjectMetadataIndex.Entry(size, 0L, "etag", "STANDARD");
+    }
+
+    private static FolderRollupTree.Totals totals(long fileCount, long totalBytes) {
+        return new FolderRollupTree.Totals(fileCount, totalBytes);
+    }
+
+    @Test
+    void buildRollsUpFilesIntoEveryAncestorAndSkipsFolderMarkers() {
+        Map<String, ObjectMetadataIndex.Entry> entries = new TreeMap<>();
+        entries.put("top.txt", entry(1));
+        entries.put("a/", entry(0));
+        entries.put("a/one.txt", entry(10));
+        entries.put("a/b/two.txt", entry(20));
+        entries.put("a/b/c/three.txt", entry(30));
+        entries.put("a/empty/", entry(0));
+
+        FolderRollupTree tree = FolderRollupTree.build(entries);
+
+        assertThat(tree.get("")).isEqualTo(totals(4, 61));
+        assertThat(tree.get("a/")).isEqualTo(totals(3, 60));
+        assertThat(tree.get("a/b/")).isEqualTo(totals(2, 50));
+        assertThat(tree.get("a/b/c/")).isEqualTo(totals(1, 30));
+        assertThat(tree.get("a/empty/")).isEqualTo(totals(0, 0));
+        assertThat(tree.get("missing/")).isEqualTo(totals(0, 0));
+    }
+
+    @Test
+    void followsAddsResizesAndRemoves() {
+        FolderRollupTree tree = new FolderRollupTree();
+        tree.add("a/b/one.txt", 10);
+        tree.add("a/b/two.txt", 20);
+        tree.add("a/c/three.txt", 5);
+        tree.add("a/marker/", 0);
+
+        tree.resize("a/b/one.txt", 10, 15);
+        assertThat(tree.get("a/")).isEqualTo(totals(3, 40));
+        assertThat(tree.get("a/b/")).isEqualTo(totals(2, 35));
+
+        tree.remove("a/b/one.txt", 15);
+        tree.remove("a/b/two.txt", 20);
+        assertThat(tree.get("a/b/")).isEqualTo(totals(0, 0));
+        assertThat(tree.get("a/")).isEqualTo(totals(1, 5));
+
+        tree.remove("a/marker/", 0);
+        assertThat(tree.get("")).isEqualTo(totals(1, 5));
+    }
+
+    @Test
+    void removeFolderSubtractsTheSubtreeFromAncestors() {
+        FolderRollupTree tree = new FolderRollupTree();
+        tree.add("x/keep.txt", 1);
+        tree.add("x/drop/one.txt", 10);
+        tree.add("x/drop/deeper/two.txt", 20);
+
+        tree.removeFolder("x/drop/");
+        assertThat(tree.get("x/drop/")).isEqualTo(totals(0, 0));
+        assertThat(tree.get("x/drop/deeper/")).isEqualTo(totals(0, 0));
+        assertThat(tree.get("x/")).isEqualTo(totals(1, 1));
+        assertThat(tree.get("")).isEqualTo(totals(1, 1));
+
+        tree.removeFolder("");
+        assertThat(tree.get("")).isEqualTo(totals(0, 0));
+        assertThat(tree.get("x/")).isEqualTo(totals(0, 0));
+    }
+
+    @Test
+    void matchesRecountAfterRandomChanges() {
+        Random random = new Random(3);
+        TreeMap<String, Long> live = new TreeMap<>();
+        FolderRollupTree tree = new FolderRollupTree();
+        String[] folders = {"", "a/", "a/b/", "a/b/c/", "d/", "d/e/"};
+
+        for (int i = 0; i < 5000; i++) {
+            String key = folders[random.nextInt(folders.length)] + "f" + random.nextInt(200);
+            long size = random.nextInt(1000);
+            Long old = live.get(key);
+            if (old == null) {
+                tree.add(key, size);
+                live.put(key, size);
+            } else if (random.nextBoolean()) {
+                tree.resize(key, old, size);
+                live.put(key, size);
+            } else {
+                tree.remove(key, old);
+                live.remove(key);
+            }
+        }
+
+        for (String folder : folders) {
+            long count = 0;
+            long bytes = 0;
+            for (Map.Entry<String, Long> item : live.entrySet()) {
+                if (item.getKey().startsWith(folder)) {
+                    count++;
+                    bytes += item.getValue();
+                }
+            }
+            assertThat(tree.get(folder)).as(folder).isEqualTo(totals(count, bytes));
+        }
+    }
+}
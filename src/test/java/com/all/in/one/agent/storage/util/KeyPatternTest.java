@@ -0,0 +1,133 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.exception.StorageException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyPatternTest {
+
+    private static final int STEPS = 1_000_000;
+
+    private static List<String> prefixes(KeyPattern pattern) {
+        return pattern.branches().stream().map(KeyPattern.Branch::prefix).toList();
+    }
+
+    /**
+     * 模拟各分支分别列出自己前缀下的key后输出的结果
+     */
+    private static List<String> emitted(KeyPattern pattern, List<String> keys) {
+        List<String> result = new ArrayList<>();
+        for (KeyPattern.Branch branch : pattern.branches()) {
+            for (String key : keys) {
+                if (key.startsWith(branch.prefix()) && pattern.matchesFirst(branch, key)) {
+                    result.add(key);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void globMatchesWholeKey() {
+        KeyPattern pattern = KeyPattern.glob("logs/*.log", 64, STEPS);
+
+        assertThat(pattern.matches("logs/app.log")).isTrue();
+        assertThat(pattern.matches("logs/2026/app.log")).isFalse();
+        assertThat(pattern.matches("logs/app.log.1")).isFalse();
+        assertThat(prefixes(pattern)).containsExactly("logs/");
+
+        KeyPattern recursive = KeyPattern.glob("logs/**/a?.[!0-9]xt", 64, STEPS);
+        assertThat(recursive.matches("logs/ab.txt")).isTrue();
+        assertThat(recursive.matches("logs/x/y/ab.txt")).isTrue();
+        assertThat(recursive.matches("logs/x/ab.1xt")).isFalse();
+        assertThat(recursive.matches("logs/a/.txt")).isFalse();
+
+        KeyPattern escaped = KeyPattern.glob("a\\*b*", 64, STEPS);
+        assertThat(escaped.matches("a*bc")).isTrue();
+        assertThat(escaped.matches("axbc")).isFalse();
+        assertThat(prefixes(escaped)).containsExactly("a*b");
+    }
+
+    @Test
+    void globSplitsSegmentsAndExpandsBraces() {
+        KeyPattern pattern = KeyPattern.glob("img/{2025,2026}/*/cat.{jpg,png}", 64, STEPS);
+
+        assertThat(prefixes(pattern)).containsExactly("img/2025/", "img/2025/", "img/2026/", "img/2026/");
+        KeyPattern.Branch branch = pattern.branches().get(0);
+        assertThat(branch.segments()).extracting(KeyPattern.Segment::lead)
+                .containsExactly("img", "2025", "", "cat.jpg");
+        assertThat(branch.segments().get(2).isLiteral()).isFalse();
+        assertThat(pattern.matches(branch.segments().get(2), "any")).isTrue();
+        assertThat(pattern.matches(branch.segments().get(2), "a/b")).isFalse();
+        assertThat(pattern.matches("img/2026/x/cat.png")).isTrue();
+
+        // 超过分支上限时不展开，按公共前缀整体列出
+        KeyPattern unexpanded = KeyPattern.glob("img/{a,b,c}/{d,e,f}", 4, STEPS);
+        assertThat(unexpanded.branches()).hasSize(1);
+        assertThat(unexpanded.branches().get(0).segments()).isNull();
+        assertThat(unexpanded.matches("img/b/f")).isTrue();
+    }
+
+    @Test
+    void overlappingGlobBranchesEmitEachKeyOnce() {
+        List<String> keys = List.of("a", "abc", "ab/c", "b");
+        KeyPattern pattern = KeyPattern.glob("{a*,ab*}", 64, STEPS);
+
+        assertThat(emitted(pattern, keys)).containsExactly("a", "abc");
+
+        KeyPattern reversed = KeyPattern.glob("{ab*,a*,*c}", 64, STEPS);
+        assertThat(emitted(reversed, keys)).containsExactlyInAnyOrder("a", "abc");
+    }
+
+    @Test
+    void subtreeBranchesAreDroppedUnderAMatchAllBranch() {
+        KeyPattern pattern = KeyPattern.glob("{logs/2026/**,logs/**,logs/*.txt,other/*}", 64, STEPS);
+
+        assertThat(prefixes(pattern)).containsExactly("logs/", "other/");
+        assertThat(emitted(pattern, List.of("logs/a.txt", "logs/2026/01/b.log", "other/c")))
+                .containsExactly("logs/a.txt", "logs/2026/01/b.log", "other/c");
+    }
+
+    @Test
+    void regexBranchesDropCoveredPrefixes() {
+        KeyPattern pattern = KeyPattern.regex("^logs/2026/.*\\.gz$|^logs/|^img/(cat|dog)", STEPS);
+
+        assertThat(prefixes(pattern)).containsExactly("logs/", "img/");
+        assertThat(pattern.matches("img/cat.jpg")).isTrue();
+        assertThat(pattern.matches("x/img/cat.jpg")).isFalse();
+        assertThat(KeyPattern.regex("cat|^img/", STEPS).branches()).extracting(KeyPattern.Branch::prefix)
+                .containsExactly("");
+        assertThat(KeyPattern.regex("^ab?c", STEPS).branches().get(0).prefix()).isEqualTo("a");
+    }
+
+    @Test
+    void backtrackingPatternStopsAtTheStepLimit() {
+        String key = "a".repeat(45) + "!";
+        KeyPattern regex = KeyPattern.regex("^(.*a){12}$", STEPS);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> regex.matches(key))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("匹配模式过于复杂");
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(2000);
+
+        assertThatThrownBy(() -> KeyPattern.regex("^(\\w+)*\\1$", STEPS).matches("a".repeat(25) + "!"))
+                .isInstanceOf(StorageException.class);
+
+        assertThat(KeyPattern.regex("^(.*a){12}$", STEPS).matches("a".repeat(45))).isTrue();
+        assertThat(KeyPattern.regex("^(.*a){3}$", 0).matches("a".repeat(10) + "!")).isFalse();
+    }
+
+    @Test
+    void rejectsInvalidPatterns() {
+        assertThatThrownBy(() -> KeyPattern.glob("", 64, STEPS)).isInstanceOf(StorageException.class);
+        assertThatThrownBy(() -> KeyPattern.glob("a{b,c", 64, STEPS)).hasMessageContaining("'}'");
+        assertThatThrownBy(() -> KeyPattern.glob("a[bc", 64, STEPS)).hasMessageContaining("']'");
+        assertThatThrownBy(() -> KeyPattern.regex("(a", STEPS)).hasMessageContaining("无效的匹配模式");
+    }
+}
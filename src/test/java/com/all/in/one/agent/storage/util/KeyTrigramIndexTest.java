@@ -0,0 +1,120 @@
+package com.all.in.one.agent.storage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyTrigramIndexTest {
+
+    private static final List<String> KEYS = List.of(
+            "a", "ab", "docs/Readme.MD", "docs/readme.txt", "img/2026/cat.JPG", "img/2026/dog.jpg",
+            "img/old/cat.png", "logs/app.log", "xy");
+
+    @Test
+    void findsCaseInsensitiveSubstringsInKeyOrder() {
+        KeyTrigramIndex index = KeyTrigramIndex.build(new TreeSet<>(KEYS));
+
+        KeyTrigramIndex.Hits hits = index.search("CAT", key -> true, 10, 100);
+        assertThat(hits.keys()).containsExactly("img/2026/cat.JPG", "img/old/cat.png");
+        assertThat(hits.totalFound()).isEqualTo(2);
+        assertThat(hits.capped()).isFalse();
+
+        assertThat(index.search(".jpg", key -> key.startsWith("img/2026/"), 10, 100).keys())
+                .containsExactly("img/2026/cat.JPG", "img/2026/dog.jpg");
+        assertThat(index.search("readme.", key -> true, 10, 100).keys())
+                .containsExactly("docs/Readme.MD", "docs/readme.txt");
+        assertThat(index.search("missing", key -> true, 10, 100).keys()).isEmpty();
+        assertThatThrownBy(() -> index.search("", key -> true, 10, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shortKeywordsIncludeKeysShorterThanAGram() {
+        KeyTrigramIndex index = KeyTrigramIndex.build(new TreeSet<>(KEYS));
+
+        assertThat(index.search("A", key -> true, 20, 100).keys())
+                .containsExactly("a", "ab", "docs/Readme.MD", "docs/readme.txt", "img/2026/cat.JPG",
+                        "img/old/cat.png", "logs/app.log");
+        assertThat(index.search("xy", key -> true, 20, 100).keys()).containsExactly("xy");
+        assertThat(index.search("md", key -> true, 20, 100).keys()).containsExactly("docs/Readme.MD");
+    }
+
+    @Test
+    void stopsAtLimitAndCountLimit() {
+        KeyTrigramIndex index = KeyTrigramIndex.build(new TreeSet<>(KEYS));
+
+        KeyTrigramIndex.Hits hits = index.search("g", key -> true, 2, 3);
+        assertThat(hits.keys()).containsExactly("img/2026/cat.JPG", "img/2026/dog.jpg");
+        assertThat(hits.totalFound()).isEqualTo(3);
+        assertThat(hits.capped()).isTrue();
+    }
+
+    @Test
+    void followsAddsAndRemoves() {
+        KeyTrigramIndex index = KeyTrigramIndex.build(new TreeSet<>(KEYS));
+        index.add("new/cat.gif");
+        index.remove("img/old/cat.png");
+        index.remove("img/old/cat.png");
+
+        assertThat(index.search("cat", key -> true, 10, 100).keys())
+                .containsExactly("img/2026/cat.JPG", "new/cat.gif");
+        assertThat(index.size()).isEqualTo(KEYS.size());
+    }
+
+    @Test
+    void matchesBruteForceOnRandomKeys() {
+        Random random = new Random(7);
+        String alphabet = "abcAB/.-";
+        Set<String> unique = new LinkedHashSet<>();
+        while (unique.size() < 3000) {
+            StringBuilder key = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                key.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            unique.add(key.toString());
+        }
+        List<String> keys = new ArrayList<>(unique);
+        KeyTrigramIndex index = KeyTrigramIndex.build(new TreeSet<>(keys.subList(0, 2000)));
+        keys.subList(2000, keys.size()).forEach(index::add);
+        keys.subList(0, 1500).forEach(index::remove);
+        TreeSet<String> live = new TreeSet<>(keys.subList(1500, keys.size()));
+
+        for (String keyword : List.of("a", "B", "ab", "/.", "abc", "a/b", "cab.", "-a-")) {
+            String needle = KeyTrigramIndex.fold(keyword);
+            List<String> expected = live.stream()
+                    .filter(key -> KeyTrigramIndex.fold(key).contains(needle))
+                    .toList();
+
+            KeyTrigramIndex.Hits hits = index.search(keyword, key -> true, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            assertThat(hits.keys()).as(keyword).containsExactlyElementsOf(expected);
+            assertThat(hits.totalFound()).as(keyword).isEqualTo(expected.size());
+        }
+    }
+
+    @Test
+    void commonKeywordOnLargeIndexStopsEarly() {
+        TreeSet<String> keys = new TreeSet<>();
+        for (int i = 0; i < 200_000; i++) {
+            keys.add("photos/" + (i % 1000) + "/img_" + i + ".jpg");
+        }
+        KeyTrigramIndex index = KeyTrigramIndex.build(keys);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            KeyTrigramIndex.Hits hits = index.search(".jpg", key -> true, 50, 10000);
+            assertThat(hits.keys()).hasSize(50);
+            assertThat(hits.capped()).isTrue();
+        }
+        long perSearchMillis = (System.nanoTime() - start) / 100 / 1_000_000;
+        assertThat(perSearchMillis).isLessThan(50);
+    }
+}
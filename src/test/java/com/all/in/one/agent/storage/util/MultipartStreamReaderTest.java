@@ -0,0 +1,194 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.exception.StorageException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MultipartStreamReaderTest {
+
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxk";
+
+    /**
+     * 每次最多返回 chunk 个字节的输入流，让分隔符落在两次 fill() 之间
+     */
+    private static InputStream trickle(byte[] body, int chunk) {
+        return new FilterInputStream(new ByteArrayInputStream(body)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] filePart(String filename, byte[] content) {
+        return concat(bytes("--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                        + "Content-Type: application/octet-stream\r\n\r\n"),
+                content, bytes("\r\n"));
+    }
+
+    private static byte[] fieldPart(String name, String value) {
+        return bytes("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n");
+    }
+
+    private static byte[] end() {
+        return bytes("--" + BOUNDARY + "--\r\n");
+    }
+
+    private static List<byte[]> readAll(MultipartStreamReader reader) throws IOException {
+        List<byte[]> contents = new ArrayList<>();
+        MultipartStreamReader.Part part;
+        while ((part = reader.next()) != null) {
+            contents.add(part.getInputStream().readAllBytes());
+        }
+        return contents;
+    }
+
+    @Test
+    void parsesFieldsAndFilesAndSkipsThePreamble() throws IOException {
+        byte[] body = concat(bytes("This is a preamble\r\nwith lines\r\n"),
+                fieldPart("bucketName", "photos"),
+                filePart("a.txt", bytes("hello")),
+                bytes("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"b.bin\"\r\n\r\n"),
+                bytes("second\r\n"),
+                end(),
+                bytes("epilogue is ignored"));
+
+        MultipartStreamReader reader = new MultipartStreamReader(new ByteArrayInputStream(body), BOUNDARY, 1024);
+
+        MultipartStreamReader.Part field = reader.next();
+        assertThat(field.isFile()).isFalse();
+        assertThat(field.getName()).isEqualTo("bucketName");
+        assertThat(field.readString(100)).isEqualTo("photos");
+
+        MultipartStreamReader.Part file = reader.next();
+        assertThat(file.isFile()).isTrue();
+        assertThat(file.getFilename()).isEqualTo("a.txt");
+        assertThat(file.getContentType()).isEqualTo("application/octet-stream");
+        assertThat(file.getInputStream().readAllBytes()).isEqualTo(bytes("hello"));
+
+        // 未读的内容在下一次 next() 时跳过
+        assertThat(reader.next().getFilename()).isEqualTo("b.bin");
+        assertThat(reader.next()).isNull();
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void keepsBoundaryLookAlikesInsideTheBody() throws IOException {
+        byte[] content = bytes("a\r--" + BOUNDARY + "\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "X\r\n"
+                + "\r\n-" + BOUNDARY + "\r\r\n\r\n");
+        byte[] body = concat(filePart("x.bin", content), end());
+
+        for (int chunk = 1; chunk <= 64; chunk++) {
+            MultipartStreamReader reader = new MultipartStreamReader(trickle(body, chunk), BOUNDARY, 1);
+            assertThat(readAll(reader)).as("chunk %d", chunk).containsExactly(content);
+        }
+    }
+
+    @Test
+    void findsDelimitersSplitAcrossReadsInRandomBodies() throws IOException {
+        Random random = new Random(5);
+        byte[] alphabet = bytes("\r\n-" + BOUNDARY.substring(0, 8) + "ab");
+        for (int round = 0; round < 300; round++) {
+            List<byte[]> expected = new ArrayList<>();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            int parts = 1 + random.nextInt(4);
+            for (int p = 0; p < parts; p++) {
+                byte[] content = new byte[random.nextInt(200)];
+                for (int i = 0; i < content.length; i++) {
+                    content[i] = alphabet[random.nextInt(alphabet.length)];
+                }
+                expected.add(content);
+                body.writeBytes(filePart("f" + p, content));
+            }
+            body.writeBytes(end());
+
+            MultipartStreamReader reader = new MultipartStreamReader(
+                    trickle(body.toByteArray(), 1 + random.nextInt(40)), BOUNDARY, 1 + random.nextInt(300));
+            assertThat(readAll(reader)).as("round %d", round).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void decodesExtendedFilenames() throws IOException {
+        byte[] body = concat(bytes("--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"file\"; filename=\"fallback.txt\"; "
+                        + "filename*=UTF-8''%E6%96%87%E4%BB%B6+1.txt\r\n\r\n"),
+                bytes("x\r\n"),
+                filePart("quoted \\\"name\\\".txt", bytes("y")),
+                end());
+
+        MultipartStreamReader reader = new MultipartStreamReader(new ByteArrayInputStream(body), BOUNDARY, 1024);
+        assertThat(reader.next().getFilename()).isEqualTo("文件+1.txt");
+        assertThat(reader.next().getFilename()).isEqualTo("quoted \"name\".txt");
+    }
+
+    @Test
+    void returnsEmptyFileParts() throws IOException {
+        byte[] body = concat(filePart("", new byte[0]), filePart("empty.txt", new byte[0]), end());
+
+        MultipartStreamReader reader = new MultipartStreamReader(trickle(body, 3), BOUNDARY, 1);
+
+        MultipartStreamReader.Part unselected = reader.next();
+        assertThat(unselected.isFile()).isTrue();
+        assertThat(unselected.getFilename()).isEmpty();
+        assertThat(unselected.getInputStream().read()).isEqualTo(-1);
+
+        MultipartStreamReader.Part empty = reader.next();
+        assertThat(empty.getFilename()).isEqualTo("empty.txt");
+        assertThat(empty.getInputStream().readAllBytes()).isEmpty();
+        assertThat(reader.next()).isNull();
+    }
+
+    @Test
+    void failsOnTruncatedBodies() throws IOException {
+        byte[] complete = concat(filePart("a.bin", bytes("0123456789")), end());
+
+        for (int length : new int[]{0, 10, 60, complete.length - end().length - 5, complete.length - 4}) {
+            byte[] truncated = Arrays.copyOf(complete, length);
+            assertThatThrownBy(() -> readAll(new MultipartStreamReader(new ByteArrayInputStream(truncated), BOUNDARY, 1)))
+                    .as("length %d", length)
+                    .isInstanceOf(IOException.class)
+                    .hasMessageContaining("请求体不完整");
+        }
+    }
+
+    @Test
+    void parsesTheBoundaryFromTheContentType() {
+        assertThat(MultipartStreamReader.boundary("multipart/form-data; boundary=" + BOUNDARY)).isEqualTo(BOUNDARY);
+        assertThat(MultipartStreamReader.boundary("Multipart/Form-Data; charset=utf-8; boundary=\"a b\"")).isEqualTo("a b");
+        assertThatThrownBy(() -> MultipartStreamReader.boundary("application/json"))
+                .isInstanceOf(StorageException.class);
+        assertThatThrownBy(() -> MultipartStreamReader.boundary("multipart/form-data"))
+                .isInstanceOf(StorageException.class);
+        assertThatThrownBy(() -> MultipartStreamReader.boundary("multipart/form-data; boundary=" + "x".repeat(71)))
+                .isInstanceOf(StorageException.class);
+    }
+}
@@ -0,0 +1,166 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.dto.ObjectRangeQuery;
+import com.all.in.one.agent.storage.exception.StorageException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ObjectColumnStoreTest {
+
+    private static ObjectColumnStore.Filter filter(String prefix, Long minSize, Long maxSize,
+                                                   Long modifiedFrom, Long modifiedTo,
+                                                   Set<String> storageClasses, Set<String> extensions) {
+        return new ObjectColumnStore.Filter(prefix, minSize, maxSize, modifiedFrom, modifiedTo, storageClasses, extensions);
+    }
+
+    private static List<String> keys(ObjectColumnStore store, ObjectColumnStore.Result result) {
+        List<String> keys = new ArrayList<>();
+        for (int row : result.rows()) {
+            keys.add(store.key(row));
+        }
+        return keys;
+    }
+
+    private static TreeMap<String, ObjectMetadataIndex.Entry> sample() {
+        TreeMap<String, ObjectMetadataIndex.Entry> entries = new TreeMap<>();
+        entries.put("docs/", new ObjectMetadataIndex.Entry(0, 0, null, null));
+        entries.put("docs/a.PDF", new ObjectMetadataIndex.Entry(300, 3000, "e1", "standard"));
+        entries.put("docs/b.txt", new ObjectMetadataIndex.Entry(100, 1000, "e2", null));
+        entries.put("docs/c", new ObjectMetadataIndex.Entry(100, 500, "e3", "GLACIER"));
+        entries.put("img/d.jpg", new ObjectMetadataIndex.Entry(500, 1000, "e4", "STANDARD_IA"));
+        entries.put("img/e.v1/f", new ObjectMetadataIndex.Entry(50, 4000, "e5", "GLACIER"));
+        return entries;
+    }
+
+    @Test
+    void skipsFolderMarkersAndNormalizesColumns() {
+        ObjectColumnStore store = ObjectColumnStore.build(sample(), 7);
+
+        assertThat(store.size()).isEqualTo(5);
+        assertThat(store.getChangeCount()).isEqualTo(7);
+        assertThat(store.key(0)).isEqualTo("docs/a.PDF");
+        assertThat(store.entry(0)).isEqualTo(new ObjectMetadataIndex.Entry(300, 3000, "e1", "STANDARD"));
+        assertThat(store.entry(1).storageClass()).isEqualTo("STANDARD");
+
+        assertThat(ObjectColumnStore.extension("docs/a.PDF")).isEqualTo("pdf");
+        assertThat(ObjectColumnStore.extension("img/e.v1/f")).isEmpty();
+        assertThat(ObjectColumnStore.extension("docs/trailing.")).isEmpty();
+    }
+
+    @Test
+    void filtersOnEveryColumnAndReportsTotals() {
+        ObjectColumnStore store = ObjectColumnStore.build(sample(), 0);
+
+        ObjectColumnStore.Result all = store.query(filter(null, null, null, null, null, null, null),
+                ObjectColumnStore.SortField.KEY, false, 2);
+        assertThat(keys(store, all)).containsExactly("docs/a.PDF", "docs/b.txt");
+        assertThat(all.matched()).isEqualTo(5);
+        assertThat(all.totalBytes()).isEqualTo(1050);
+
+        assertThat(keys(store, store.query(filter("docs/", 100L, 100L, null, null, null, null),
+                ObjectColumnStore.SortField.KEY, false, 10))).containsExactly("docs/b.txt", "docs/c");
+        assertThat(keys(store, store.query(filter(null, null, null, 1000L, 3000L, null, null),
+                ObjectColumnStore.SortField.KEY, false, 10))).containsExactly("docs/b.txt", "img/d.jpg");
+        assertThat(keys(store, store.query(filter(null, null, null, null, null, Set.of("GLACIER"), null),
+                ObjectColumnStore.SortField.KEY, false, 10))).containsExactly("docs/c", "img/e.v1/f");
+        assertThat(keys(store, store.query(filter(null, null, null, null, null, null, Set.of("pdf", "")),
+                ObjectColumnStore.SortField.KEY, false, 10))).containsExactly("docs/a.PDF", "docs/c", "img/e.v1/f");
+        assertThat(store.query(filter("zzz", null, null, null, null, null, null),
+                ObjectColumnStore.SortField.KEY, false, 10).matched()).isZero();
+    }
+
+    @Test
+    void sortsWithKeyOrderAsTieBreaker() {
+        ObjectColumnStore store = ObjectColumnStore.build(sample(), 0);
+
+        assertThat(keys(store, store.query(filter(null, null, null, null, null, null, null),
+                ObjectColumnStore.SortField.SIZE, false, 10)))
+                .containsExactly("img/e.v1/f", "docs/b.txt", "docs/c", "docs/a.PDF", "img/d.jpg");
+        // 按修改时间区间驱动遍历时，按大小排序的并列项仍按key排列
+        assertThat(keys(store, store.query(filter(null, null, null, 500L, 2001L, null, null),
+                ObjectColumnStore.SortField.SIZE, false, 10)))
+                .containsExactly("docs/b.txt", "docs/c", "img/d.jpg");
+        assertThat(keys(store, store.query(filter(null, null, null, null, null, null, null),
+                ObjectColumnStore.SortField.LAST_MODIFIED, true, 3)))
+                .containsExactly("img/e.v1/f", "docs/a.PDF", "img/d.jpg");
+    }
+
+    @Test
+    void buildsFilterFromQuery() {
+        ObjectRangeQuery query = ObjectRangeQuery.builder()
+                .prefix("")
+                .modifiedAfter(Instant.ofEpochMilli(1000))
+                .storageClasses(List.of(" glacier ", ""))
+                .extensions(List.of(".JPG", "txt"))
+                .build();
+
+        ObjectColumnStore.Filter filter = ObjectColumnStore.Filter.of(query);
+        assertThat(filter.prefix()).isNull();
+        assertThat(filter.modifiedFrom()).isEqualTo(1000L);
+        assertThat(filter.storageClasses()).containsExactly("GLACIER");
+        assertThat(filter.extensions()).containsExactlyInAnyOrder("jpg", "txt");
+
+        assertThat(ObjectColumnStore.SortField.of(null)).isEqualTo(ObjectColumnStore.SortField.KEY);
+        assertThat(ObjectColumnStore.SortField.of("LastModified")).isEqualTo(ObjectColumnStore.SortField.LAST_MODIFIED);
+        assertThatThrownBy(() -> ObjectColumnStore.SortField.of("etag")).isInstanceOf(StorageException.class);
+    }
+
+    @Test
+    void matchesBruteForceOnRandomEntries() {
+        Random random = new Random(11);
+        String[] classes = {"STANDARD", "GLACIER", "STANDARD_IA"};
+        String[] extensions = {"jpg", "txt", "log", ""};
+        TreeMap<String, ObjectMetadataIndex.Entry> entries = new TreeMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String extension = extensions[random.nextInt(extensions.length)];
+            String key = "d" + random.nextInt(5) + "/f" + i + (extension.isEmpty() ? "" : "." + extension);
+            entries.put(key, new ObjectMetadataIndex.Entry(random.nextInt(100), random.nextInt(50), "e" + i,
+                    classes[random.nextInt(classes.length)]));
+        }
+        ObjectColumnStore store = ObjectColumnStore.build(entries, 0);
+
+        for (int round = 0; round < 200; round++) {
+            long minSize = random.nextInt(100);
+            long from = random.nextInt(50);
+            ObjectColumnStore.Filter filter = filter(
+                    random.nextBoolean() ? "d" + random.nextInt(5) + "/" : null,
+                    random.nextBoolean() ? minSize : null,
+                    random.nextBoolean() ? minSize + random.nextInt(30) : null,
+                    random.nextBoolean() ? from : null,
+                    random.nextBoolean() ? from + random.nextInt(10) : null,
+                    random.nextBoolean() ? Set.of(classes[random.nextInt(classes.length)]) : null,
+                    random.nextBoolean() ? Set.of(extensions[random.nextInt(extensions.length)]) : null);
+            ObjectColumnStore.SortField sort = ObjectColumnStore.SortField.values()[random.nextInt(3)];
+            boolean descending = random.nextBoolean();
+
+            Comparator<Map.Entry<String, ObjectMetadataIndex.Entry>> order = switch (sort) {
+                case KEY -> Map.Entry.comparingByKey();
+                case SIZE -> Comparator.<Map.Entry<String, ObjectMetadataIndex.Entry>>comparingLong(e -> e.getValue().size())
+                        .thenComparing(Map.Entry.comparingByKey());
+                case LAST_MODIFIED -> Comparator.<Map.Entry<String, ObjectMetadataIndex.Entry>>comparingLong(
+                        e -> e.getValue().lastModified()).thenComparing(Map.Entry.comparingByKey());
+            };
+            List<Map.Entry<String, ObjectMetadataIndex.Entry>> expected = entries.entrySet().stream()
+                    .filter(e -> filter.matches(e.getKey(), e.getValue()))
+                    .sorted(descending ? order.reversed() : order)
+                    .toList();
+
+            ObjectColumnStore.Result result = store.query(filter, sort, descending, 20);
+            assertThat(keys(store, result)).as(filter + " " + sort)
+                    .containsExactlyElementsOf(expected.stream().limit(20).map(Map.Entry::getKey).toList());
+            assertThat(result.matched()).isEqualTo(expected.size());
+            assertThat(result.totalBytes()).isEqualTo(expected.stream().mapToLong(e -> e.getValue().size()).sum());
+        }
+    }
+}
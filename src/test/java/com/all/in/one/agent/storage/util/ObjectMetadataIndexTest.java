@@ -0,0 +1,209 @@
+package com.all.in.one.agent.storage.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectMetadataIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private static ObjectMetadataIndex.Entry entry(long size) {
+        return new ObjectMetadataIndex.Entry(size, 1000 + size, "\"e" + size + "\"", size % 2 == 0 ? "STANDARD" : null);
+    }
+
+    private static Map<String, ObjectMetadataIndex.Entry> contents(ObjectMetadataIndex index) {
+        return new TreeMap<>(index.range(""));
+    }
+
+    private List<String> journals() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith("journal-")).sorted().toList();
+        }
+    }
+
+    private Path onlyJournal() throws IOException {
+        List<String> journals = journals();
+        assertThat(journals).hasSize(1);
+        return dir.resolve(journals.get(0));
+    }
+
+    private static void truncate(Path file, int bytes) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(content, 0, content.length - bytes);
+        }
+    }
+
+    /**
+     * 汇总树与按条目重新构建的结果一致
+     */
+    private static void assertRollupMatches(ObjectMetadataIndex index, String... folders) {
+        FolderRollupTree expected = FolderRollupTree.build(index.range(""));
+        for (String folder : folders) {
+            assertThat(index.folderTotals(folder)).as(folder).isEqualTo(expected.get(folder));
+        }
+    }
+
+    @Test
+    void changesSurviveReopening() throws IOException {
+        try (ObjectMetadataIndex index = ObjectMetadataIndex.open(dir, "bk")) {
+            index.put("docs/a.txt", entry(10));
+            index.put("docs/b.txt", entry(20));
+            index.put("docs/b.txt", entry(25));
+            index.put("logs/2026/1.log", entry(3));
+            index.put("logs/2026/2.log", entry(4));
+            index.put("top.bin", entry(7));
+            index.remove("docs/a.txt");
+            index.removePrefix("logs/");
+            index.put("logs/new.log", entry(5));
+            assertThat(index.getJournalRecords()).isEqualTo(9);
+        }
+
+        try (ObjectMetadataIndex reopened = ObjectMetadataIndex.open(dir, "bk")) {
+            assertThat(contents(reopened)).containsExactly(
+                    Map.entry("docs/b.txt", entry(25)),
+                    Map.entry("logs/new.log", entry(5)),
+                    Map.entry("top.bin", entry(7)));
+            assertThat(reopened.folderTotals("")).isEqualTo(new FolderRollupTree.Totals(3, 37));
+            assertThat(reopened.folderTotals("logs/")).isEqualTo(new FolderRollupTree.Totals(1, 5));
+            assertThat(reopened.folderTotals("logs/2026/")).isEqualTo(new FolderRollupTree.Totals(0, 0));
+            assertRollupMatches(reopened, "", "docs/", "logs/");
+            // 重放后合并为新快照
+            assertThat(reopened.getJournalRecords()).isZero();
+        }
+    }
+
+    @Test
+    void replayStopsAtATruncatedRecord() throws IOException {
+        try (ObjectMetadataIndex index = ObjectMetadataIndex.open(dir, "bk")) {
+            index.put("a", entry(1));
+            index.put("b", entry(2));
+            index.put("c", entry(3));
+        }
+        // 最后一条记录写到一半时进程退出
+        truncate(onlyJournal(), 5);
+
+        try (ObjectMetadataIndex reopened = ObjectMetadataIndex.open(dir, "bk")) {
+            assertThat(contents(reopened)).containsOnlyKeys("a", "b");
+            reopened.put("d", entry(4));
+        }
+        try (ObjectMetadataIndex reopened = ObjectMetadataIndex.open(dir, "bk")) {
+            assertThat(contents(reopened)).containsOnlyKeys("a", "b", "d");
+            assertRollupMatches(reopened, "");
+        }
+    }
+
+    @Test
+    void writesAfterATruncatedFirstRecordAreKept() throws IOException {
+        try (ObjectMetadataIndex index = ObjectMetadataIndex.open(dir, "bk")) {
+            index.put("a", entry(1));
+            index.compact();
+            index.put("b", entry(2));
+        }
+        // 快照之后的第一条记录不完整，日志中没有可重放的记录
+        truncate(onlyJournal(), 3);
+
+        try (ObjectMetadataIndex reopened = ObjectMetadataIndex.open(dir, "bk")) {
+            assertThat(contents(reopened)).containsOnlyKeys("a");
+            reopened.put("c", entry(3));
+            reopened.remove("a");
+        }
+        try (ObjectMetadataIndex reopened = ObjectMetadataIndex.open(dir, "bk")) {
+            assertThat(contents(reopened)).containsOnlyKeys("c");
+        }
+    }
+
+    @Test
+    void ignoresJournalsLeftFromAnOlderGeneration() throws IOException {
+        Path stale = dir.resolve("stale-journal");
+        String staleName;
+        try (ObjectMetadataIndex index = ObjectMetadataIndex.open(dir, "bk")) {
+            index.put("a", entry(1));
+            index.put("b", entry(2));
+            staleName = onlyJournal().getFileName().toString();
+            Files.copy(onlyJournal(), stale);
+
+            index.compact();
+            index.remove("a");
+            index.remove("b");
+            index.put("c", entry(3));
+        }
+        // 快照已替换但旧日志尚未删除时进程退出
+        Files.move(stale, dir.resolve(staleName));
+        assertThat(journals()).hasSize(2);
+
+        try (ObjectMetadataIndex reopened = ObjectMetadataIndex.open(dir, "bk")) {
+            assertThat(contents(reopened)).containsOnlyKeys("c");
+            assertRollupMatches(reopened, "");
+        }
+        assertThat(journals()).doesNotContain(staleName);
+    }
+
+    @Test
+    void changesDuringARebuildAreAppliedOnTopOfIt() throws IOException {
+        try (ObjectMetadataIndex index = ObjectMetadataIndex.open(dir, "bk")) {
+            index.put("old/x", entry(1));
+
+            index.beginRebuild();
+            assertThat(index.isRebuilding()).isTrue();
+            // 爬取进行中的写操作
+            index.put("docs/new.txt", entry(8));
+            index.remove("docs/a.txt");
+            index.removePrefix("tmp/");
+            index.put("docs/b.txt", entry(30));
+
+            ConcurrentSkipListMap<String, ObjectMetadataIndex.Entry> crawled = new ConcurrentSkipListMap<>();
+            crawled.put("docs/a.txt", entry(10));
+            crawled.put("docs/b.txt", entry(20));
+            crawled.put("tmp/1", entry(1));
+            crawled.put("tmp/2/3", entry(2));
+            crawled.put("z", entry(5));
+            index.finishRebuild(crawled, 5000L);
+
+            assertThat(index.isRebuilding()).isFalse();
+            assertThat(index.getCrawledAt()).isEqualTo(5000L);
+            assertThat(index.getJournalRecords()).isZero();
+            assertThat(contents(index)).containsExactly(
+                    Map.entry("docs/b.txt", entry(30)),
+                    Map.entry("docs/new.txt", entry(8)),
+                    Map.entry("z", entry(5)));
+            assertRollupMatches(index, "", "docs/", "tmp/", "old/");
+
+            // 重建完成后不再记录
+            index.put("after", entry(2));
+        }
+
+        try (ObjectMetadataIndex reopened = ObjectMetadataIndex.open(dir, "bk")) {
+            assertThat(contents(reopened)).containsOnlyKeys("after", "docs/b.txt", "docs/new.txt", "z");
+            assertThat(reopened.getCrawledAt()).isEqualTo(5000L);
+        }
+    }
+
+    @Test
+    void abortedRebuildsStopRecordingChanges() throws IOException {
+        try (ObjectMetadataIndex index = ObjectMetadataIndex.open(dir, "bk")) {
+            index.beginRebuild();
+            index.put("during", entry(1));
+            index.abortRebuild();
+            index.put("after", entry(2));
+
+            ConcurrentSkipListMap<String, ObjectMetadataIndex.Entry> crawled = new ConcurrentSkipListMap<>();
+            crawled.put("crawled", entry(3));
+            index.finishRebuild(crawled, 1L);
+            assertThat(contents(index)).containsOnlyKeys("crawled");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import com.all.in.one.agent.storage.exception.StorageException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class S3InventoryReaderTest {
+
+    private static final String SCHEMA = "Bucket, Key, VersionId, IsLatest, IsDeleteMarker, Size, LastModifiedDate, ETag, StorageClass";
+
+    @TempDir
+    Path tempDir;
+
+    private Path localDir;
+    private S3InventoryReader reader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        localDir = Files.createDirectories(tempDir.resolve("inventory"));
+        StorageConfigProperties properties = new StorageConfigProperties();
+        properties.getMetadataIndex().getInventory().setLocalDir(localDir.toString());
+        properties.getMetadataIndex().getInventory().setThreads(2);
+        reader = new S3InventoryReader(null, new ObjectMapper(), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reader.shutdown();
+    }
+
+    @Test
+    void readsLocalManifestWithGzipCsv() throws IOException {
+        writeManifest("src-bucket/config/2026-10-01T00-00Z/manifest.json", "CSV", SCHEMA,
+                "src-bucket/config/data/part-1.csv.gz", "src-bucket/config/data/part-2.csv");
+        writeGzip("src-bucket/config/data/part-1.csv.gz", String.join("\n",
+                "\"src-bucket\",\"photos/my%20cat%2B1.jpg\",\"v2\",\"true\",\"false\",\"1024\",\"2026-09-30T10:00:00.000Z\",\"d41d8cd98f00b204e9800998ecf8427e\",\"STANDARD\"",
+                "\"src-bucket\",\"photos/my%20cat%2B1.jpg\",\"v1\",\"false\",\"false\",\"512\",\"2026-09-01T10:00:00.000Z\",\"0cc175b9c0f1b6a831c399e269772661\",\"STANDARD\"",
+                "\"src-bucket\",\"deleted.txt\",\"v3\",\"true\",\"true\",\"\",\"2026-09-30T11:00:00.000Z\",\"\",\"\"",
+                "",
+                "\"src-bucket\",\"%E6%96%87%E6%A1%A3/a%2Cb.txt\",\"v4\",\"true\",\"false\",\"7\",\"2026-09-30T12:00:00.000Z\",\"\"\"92eb5ffee6ae2fec3ad71c777531578f\"\"\",\"GLACIER\"",
+                ""));
+        write("src-bucket/config/data/part-2.csv",
+                "\"src-bucket\",\"plain.txt\",\"v5\",\"true\",\"false\",\"3\",\"2026-09-30T13:00:00.000Z\",\"abc-2\",\"STANDARD_IA\"\n");
+
+        S3InventoryReader.Manifest manifest = reader.readManifest("default", null,
+                "src-bucket/config/2026-10-01T00-00Z/manifest.json");
+        assertThat(manifest.sourceBucket()).isEqualTo("src-bucket");
+        assertThat(manifest.columns()).contains("Key", "IsLatest", "IsDeleteMarker");
+        assertThat(manifest.files()).hasSize(2);
+        assertThat(manifest.createdAt()).isEqualTo(1759276800000L);
+
+        Map<String, ObjectMetadataIndex.Entry> entries = new ConcurrentHashMap<>();
+        long rows = reader.read("default", null, manifest, entries::put);
+
+        assertThat(rows).isEqualTo(3);
+        assertThat(entries).containsOnlyKeys("photos/my cat+1.jpg", "文档/a,b.txt", "plain.txt");
+
+        ObjectMetadataIndex.Entry latest = entries.get("photos/my cat+1.jpg");
+        assertThat(latest.size()).isEqualTo(1024);
+        assertThat(latest.lastModified()).isEqualTo(Instant.parse("2026-09-30T10:00:00Z").toEpochMilli());
+        assertThat(latest.etag()).isEqualTo("\"d41d8cd98f00b204e9800998ecf8427e\"");
+        assertThat(latest.storageClass()).isEqualTo("STANDARD");
+
+        assertThat(entries.get("文档/a,b.txt").etag()).isEqualTo("\"92eb5ffee6ae2fec3ad71c777531578f\"");
+        assertThat(entries.get("文档/a,b.txt").storageClass()).isEqualTo("GLACIER");
+        assertThat(entries.get("plain.txt").etag()).isEqualTo("\"abc-2\"");
+    }
+
+    @Test
+    void findsDataFilesNextToACopiedConfigDirectory() throws IOException {
+        // 只复制了清单配置目录：数据文件位于清单目录上一级的 data 下
+        writeManifest("copy/2026-10-01T00-00Z/manifest.json", "CSV", "Bucket, Key, Size",
+                "src-bucket/config/data/part-1.csv.gz");
+        writeGzip("copy/data/part-1.csv.gz", "\"src-bucket\",\"a.txt\",\"1\"\n");
+
+        S3InventoryReader.Manifest manifest = reader.readManifest("default", null,
+                localDir.resolve("copy/2026-10-01T00-00Z/manifest.json").toString());
+        Map<String, ObjectMetadataIndex.Entry> entries = new ConcurrentHashMap<>();
+
+        assertThat(reader.read("default", null, manifest, entries::put)).isEqualTo(1);
+        assertThat(entries.get("a.txt").size()).isEqualTo(1);
+        assertThat(entries.get("a.txt").etag()).isNull();
+    }
+
+    @Test
+    void rejectsDataFilesOutsideLocalDir() throws IOException {
+        Files.write(tempDir.resolve("secret.csv"), "\"b\",\"leaked\",\"1\"\n".getBytes(StandardCharsets.UTF_8));
+        writeManifest("inv/manifest.json", "CSV", "Bucket, Key, Size", "../secret.csv");
+
+        S3InventoryReader.Manifest manifest = reader.readManifest("default", null, "inv/manifest.json");
+        Map<String, ObjectMetadataIndex.Entry> entries = new ConcurrentHashMap<>();
+
+        assertThatThrownBy(() -> reader.read("default", null, manifest, entries::put))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("清单路径不在允许的目录内");
+        assertThat(entries).isEmpty();
+    }
+
+    @Test
+    void rejectsManifestOutsideLocalDir() throws IOException {
+        Files.write(tempDir.resolve("manifest.json"), "{}".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> reader.readManifest("default", null, "../manifest.json"))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("清单路径不在允许的目录内");
+        assertThatThrownBy(() -> reader.readManifest("default", null, tempDir.resolve("manifest.json").toString()))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("清单路径不在允许的目录内");
+    }
+
+    @Test
+    void rejectsUnsupportedManifests() throws IOException {
+        writeManifest("orc/manifest.json", "ORC", SCHEMA, "data/part-1.orc");
+        writeManifest("nokey/manifest.json", "CSV", "Bucket, Size", "data/part-1.csv");
+        writeManifest("empty/manifest.json", "CSV", SCHEMA);
+
+        assertThatThrownBy(() -> reader.readManifest("default", null, "orc/manifest.json"))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("ORC");
+        assertThatThrownBy(() -> reader.readManifest("default", null, "nokey/manifest.json"))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("Key");
+        assertThatThrownBy(() -> reader.readManifest("default", null, "empty/manifest.json"))
+                .isInstanceOf(StorageException.class)
+                .hasMessageContaining("没有数据文件");
+    }
+
+    @Test
+    void failsOnMalformedRows() throws IOException {
+        writeManifest("bad/manifest.json", "CSV", "Bucket, Key, Size", "bad/data.csv");
+        write("bad/data.csv", "\"b\",\"a.txt\",\"not-a-number\"\n");
+
+        S3InventoryReader.Manifest manifest = reader.readManifest("default", null, "bad/manifest.json");
+
+        assertThatThrownBy(() -> reader.read("default", null, manifest, (key, entry) -> {
+        })).isInstanceOf(IOException.class).hasMessageContaining("无法解析清单数据行");
+    }
+
+    private void writeManifest(String path, String format, String schema, String... files) throws IOException {
+        StringBuilder json = new StringBuilder()
+                .append("{\"sourceBucket\":\"src-bucket\",\"destinationBucket\":\"arn:aws:s3:::inventory\",")
+                .append("\"fileFormat\":\"").append(format).append("\",")
+                .append("\"fileSchema\":\"").append(schema).append("\",")
+                .append("\"creationTimestamp\":\"1759276800000\",\"files\":[");
+        for (int i = 0; i < files.length; i++) {
+            json.append(i > 0 ? "," : "").append("{\"key\":\"").append(files[i]).append("\",\"size\":1}");
+        }
+        write(path, json.append("]}").toString());
+    }
+
+    private void write(String path, String content) throws IOException {
+        Path file = localDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeGzip(String path, String content) throws IOException {
+        Path file = localDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
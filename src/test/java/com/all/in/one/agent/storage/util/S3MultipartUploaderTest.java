@@ -0,0 +1,220 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.config.StorageConfigProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class S3MultipartUploaderTest {
+
+    private static final int PART = 5 * 1024 * 1024;
+
+    private S3Client s3Client;
+    private StorageConfigProperties.Backend backend;
+    private S3MultipartUploader uploader;
+
+    /**
+     * 各分片号已发出的上传次数
+     */
+    private final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+    /**
+     * 进行中的分片上传数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        s3Client = mock(S3Client.class);
+        S3ClientRegistry registry = mock(S3ClientRegistry.class);
+        when(registry.getClient(anyString(), any())).thenReturn(s3Client);
+
+        backend = new StorageConfigProperties.Backend();
+        backend.getMultipart().setThreshold(PART);
+        backend.getMultipart().setPartSize(PART);
+        backend.getMultipart().setConcurrency(2);
+        backend.getMultipart().setMaxRetries(2);
+
+        StorageConfigProperties properties = new StorageConfigProperties();
+        properties.getUpload().setMultipartThreads(4);
+        uploader = new S3MultipartUploader(registry, properties);
+
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("\"done-3\"").build());
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"single\"").build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        uploader.shutdown();
+    }
+
+    private static S3MultipartUploader.UploadRequest request(long size) {
+        return S3MultipartUploader.UploadRequest.builder().bucket("bk").key("big.bin").size(size).build();
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+
+    private static byte[] read(RequestBody body) throws IOException {
+        try (InputStream stream = body.contentStreamProvider().newStream()) {
+            return stream.readAllBytes();
+        }
+    }
+
+    /**
+     * 分片上传：指定的分片前 failures 次失败
+     */
+    private void partsFail(int partNumber, int failures) {
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest partRequest = invocation.getArgument(0);
+            RequestBody body = invocation.getArgument(1);
+            inFlight.incrementAndGet();
+            try {
+                int attempt = attempts.computeIfAbsent(partRequest.partNumber(), n -> new AtomicInteger()).incrementAndGet();
+                assertThat(read(body)).hasSize(partRequest.contentLength().intValue());
+                if (partRequest.partNumber() == partNumber && attempt <= failures) {
+                    throw SdkClientException.create("connection reset");
+                }
+                return UploadPartResponse.builder().eTag("\"part-" + partRequest.partNumber() + "\"").build();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    @Test
+    void retriesAFailedPartAndCompletesInOrder() throws IOException {
+        partsFail(2, 2);
+        byte[] data = content(2 * PART + 1234);
+
+        S3MultipartUploader.UploadResult result = uploader.upload("default", backend, request(data.length),
+                new ByteArrayInputStream(data));
+
+        assertThat(result.isMultipart()).isTrue();
+        assertThat(result.getParts()).isEqualTo(3);
+        assertThat(result.getSize()).isEqualTo(data.length);
+        assertThat(result.getEtag()).isEqualTo("\"done-3\"");
+        assertThat(attempts.get(1).get()).isEqualTo(1);
+        assertThat(attempts.get(2).get()).isEqualTo(3);
+        assertThat(attempts.get(3).get()).isEqualTo(1);
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().multipartUpload().parts()).extracting(CompletedPart::partNumber)
+                .containsExactly(1, 2, 3);
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void abortsAfterInFlightPartsFinishWhenRetriesAreExhausted() {
+        partsFail(1, Integer.MAX_VALUE);
+        AtomicInteger inFlightAtAbort = new AtomicInteger(-1);
+        when(s3Client.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenAnswer(invocation -> {
+            inFlightAtAbort.set(inFlight.get());
+            return null;
+        });
+        byte[] data = content(4 * PART);
+
+        assertThatThrownBy(() -> uploader.upload("default", backend, request(data.length), new ByteArrayInputStream(data)))
+                .isInstanceOf(SdkClientException.class)
+                .hasMessageContaining("connection reset");
+
+        assertThat(attempts.get(1).get()).isEqualTo(3);
+        // 中止请求在所有分片请求结束之后发出
+        assertThat(inFlightAtAbort.get()).isZero();
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3Client).abortMultipartUpload(abort.capture());
+        assertThat(abort.getValue().uploadId()).isEqualTo("upload-1");
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void abortsWhenTheStreamIsShorterThanTheDeclaredSize() {
+        partsFail(0, 0);
+        byte[] data = content(PART + 10);
+
+        assertThatThrownBy(() -> uploader.upload("default", backend, request(data.length + 1),
+                new ByteArrayInputStream(data)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("读取的数据长度与文件大小不符");
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void smallStreamsAreBufferedForASinglePut() throws IOException {
+        byte[] data = content(1000);
+
+        S3MultipartUploader.UploadResult result = uploader.upload("default", backend, request(data.length),
+                new ByteArrayInputStream(data));
+
+        assertThat(result.isMultipart()).isFalse();
+        assertThat(result.getEtag()).isEqualTo("\"single\"");
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(any(PutObjectRequest.class), body.capture());
+        // 内容可重复读取：签名时读一遍后上传时仍是完整内容
+        assertThat(read(body.getValue())).isEqualTo(data);
+        assertThat(read(body.getValue())).isEqualTo(data);
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+
+        assertThatThrownBy(() -> uploader.upload("default", backend, request(data.length + 1),
+                new ByteArrayInputStream(data)))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void unknownSizeBelowOnePartUsesASinglePut() throws IOException {
+        byte[] data = content(PART - 1);
+
+        S3MultipartUploader.UploadResult result = uploader.upload("default", backend, request(-1),
+                new ByteArrayInputStream(data));
+
+        assertThat(result.isMultipart()).isFalse();
+        assertThat(result.getSize()).isEqualTo(data.length);
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client, times(1)).putObject(any(PutObjectRequest.class), body.capture());
+        assertThat(Arrays.equals(read(body.getValue()), data)).isTrue();
+    }
+}
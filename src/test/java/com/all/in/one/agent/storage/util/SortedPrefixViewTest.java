@@ -0,0 +1,82 @@
+package com.all.in.one.agent.storage.util;
+
+import com.all.in.one.agent.storage.dto.FileItem;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedPrefixViewTest {
+
+    private static SortedPrefixView view() {
+        return new SortedPrefixView("dir/", 1,
+                new String[]{"beta", "Alpha", "gamma"},
+                new String[]{"c.txt", "a.jpg", "B.jpg", "d.txt", "e.jpg"},
+                new long[]{30, 10, 30, 5, 10},
+                new long[]{3000, 1000, 2000, 4000, 1000});
+    }
+
+    private static List<String> names(SortedPrefixView view, SortedPrefixView.SortField field, boolean descending,
+                                      String filter, int pageSize) {
+        List<String> names = new ArrayList<>();
+        int position = 0;
+        while (position >= 0) {
+            SortedPrefixView.Page page = view.page(field, descending, filter, position, pageSize);
+            assertThat(page.items().size()).isLessThanOrEqualTo(pageSize);
+            page.items().stream().map(FileItem::getName).forEach(names::add);
+            position = page.nextPosition();
+        }
+        return names;
+    }
+
+    @Test
+    void sortsFoldersFirstThenFilesWithNameAsTieBreaker() {
+        SortedPrefixView view = view();
+
+        assertThat(names(view, SortedPrefixView.SortField.NAME, false, null, 2))
+                .containsExactly("Alpha", "beta", "gamma", "a.jpg", "B.jpg", "c.txt", "d.txt", "e.jpg");
+        assertThat(names(view, SortedPrefixView.SortField.NAME, true, null, 3))
+                .containsExactly("gamma", "beta", "Alpha", "e.jpg", "d.txt", "c.txt", "B.jpg", "a.jpg");
+        assertThat(names(view, SortedPrefixView.SortField.SIZE, false, null, 10))
+                .containsExactly("Alpha", "beta", "gamma", "d.txt", "a.jpg", "e.jpg", "B.jpg", "c.txt");
+        assertThat(names(view, SortedPrefixView.SortField.LAST_MODIFIED, true, null, 10))
+                .containsExactly("Alpha", "beta", "gamma", "d.txt", "c.txt", "B.jpg", "e.jpg", "a.jpg");
+    }
+
+    @Test
+    void filteredPagesAreFullAndPositionsCountMatchesOnly() {
+        SortedPrefixView view = view();
+
+        SortedPrefixView.Page first = view.page(SortedPrefixView.SortField.SIZE, false, "JPG", 0, 2);
+        assertThat(first.items()).extracting(FileItem::getName).containsExactly("a.jpg", "e.jpg");
+        assertThat(first.nextPosition()).isEqualTo(2);
+
+        SortedPrefixView.Page second = view.page(SortedPrefixView.SortField.SIZE, false, "JPG", 2, 2);
+        assertThat(second.items()).extracting(FileItem::getName).containsExactly("B.jpg");
+        assertThat(second.nextPosition()).isEqualTo(-1);
+
+        assertThat(names(view, SortedPrefixView.SortField.NAME, true, "a", 1))
+                .containsExactly("gamma", "beta", "Alpha", "a.jpg");
+        assertThat(view.page(SortedPrefixView.SortField.NAME, false, "nothing", 0, 10).items()).isEmpty();
+        assertThat(view.page(SortedPrefixView.SortField.NAME, false, "nothing", 0, 10).nextPosition()).isEqualTo(-1);
+    }
+
+    @Test
+    void sortIndexesIsStable() {
+        Random random = new Random(42);
+        long[] keys = random.longs(10_000, 0, 50).toArray();
+        int[] indexes = IntStream.range(0, keys.length).toArray();
+
+        SortedPrefixView.sortIndexes(indexes, (left, right) -> Long.compare(keys[left], keys[right]));
+
+        List<Integer> expected = IntStream.range(0, keys.length).boxed()
+                .sorted((left, right) -> Long.compare(keys[left], keys[right]))
+                .collect(Collectors.toList());
+        assertThat(indexes).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+    }
+}
@@ -0,0 +1,137 @@
+package com.all.in.one.agent.storage.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadSessionStateTest {
+
+    private static final String ID = "0123456789abcdef0123456789abcdef";
+
+    @TempDir
+    Path dir;
+
+    private UploadSessionState newState() {
+        return new UploadSessionState(dir, ID, "default", "bk", "docs/文件.bin", "文件.bin", null, 20, 8, 1000L);
+    }
+
+    private Path sessionFile() {
+        return dir.resolve(ID + UploadSessionState.SESSION_SUFFIX);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void roundTripsAllFields() throws IOException {
+        UploadSessionState state = newState();
+        state.save();
+
+        UploadSessionState fresh = UploadSessionState.load(sessionFile());
+        assertThat(fresh.getUploadId()).isNull();
+        assertThat(fresh.getContentType()).isNull();
+        assertThat(fresh.getOffset()).isZero();
+
+        state.setUploadId("upload-1");
+        state.addPart("\"etag-1\"");
+        state.addPart("\"etag-2\"");
+        state.writePending(bytes("abc"), 3);
+        state.touch(2000L);
+        state.save();
+
+        UploadSessionState loaded = UploadSessionState.load(sessionFile());
+        assertThat(loaded.getId()).isEqualTo(ID);
+        assertThat(loaded.getBackendKey()).isEqualTo("default");
+        assertThat(loaded.getBucket()).isEqualTo("bk");
+        assertThat(loaded.getKey()).isEqualTo("docs/文件.bin");
+        assertThat(loaded.getFileName()).isEqualTo("文件.bin");
+        assertThat(loaded.getFileSize()).isEqualTo(20);
+        assertThat(loaded.getPartSize()).isEqualTo(8);
+        assertThat(loaded.getCreatedAt()).isEqualTo(1000L);
+        assertThat(loaded.getUpdatedAt()).isEqualTo(2000L);
+        assertThat(loaded.getUploadId()).isEqualTo("upload-1");
+        assertThat(loaded.getEtags()).containsExactly("\"etag-1\"", "\"etag-2\"");
+        assertThat(loaded.getOffset()).isEqualTo(19);
+
+        byte[] buffer = new byte[8];
+        assertThat(loaded.readPending(buffer)).isEqualTo(3);
+        assertThat(Arrays.copyOf(buffer, 3)).isEqualTo(bytes("abc"));
+    }
+
+    @Test
+    void pendingWrittenWithoutSaveKeepsTheRecordedOffset() throws IOException {
+        UploadSessionState state = newState();
+        state.writePending(bytes("abc"), 3);
+        state.save();
+        // 写入了更多未上传数据，但会话文件保存前进程退出
+        state.writePending(bytes("abcdef"), 6);
+
+        UploadSessionState loaded = UploadSessionState.load(sessionFile());
+        assertThat(loaded.getOffset()).isEqualTo(3);
+        byte[] buffer = new byte[8];
+        assertThat(loaded.readPending(buffer)).isEqualTo(3);
+        assertThat(Arrays.copyOf(buffer, 3)).isEqualTo(bytes("abc"));
+    }
+
+    @Test
+    void missingOrShortPendingDataRollsTheOffsetBack() throws IOException {
+        UploadSessionState state = newState();
+        state.addPart("\"etag-1\"");
+        state.writePending(bytes("abcde"), 5);
+        state.save();
+
+        Files.write(dir.resolve(ID + ".pending"), bytes("ab"));
+        UploadSessionState shortened = UploadSessionState.load(sessionFile());
+        assertThat(shortened.getPendingLength()).isEqualTo(2);
+        assertThat(shortened.getOffset()).isEqualTo(10);
+
+        // 分片上传后删除了未上传数据，但会话文件保存前进程退出：从分片边界重新发送
+        Files.delete(dir.resolve(ID + ".pending"));
+        UploadSessionState missing = UploadSessionState.load(sessionFile());
+        assertThat(missing.getPendingLength()).isZero();
+        assertThat(missing.getOffset()).isEqualTo(8);
+        assertThat(missing.readPending(new byte[8])).isZero();
+    }
+
+    @Test
+    void rejectsIncompatibleOrTruncatedFiles() throws IOException {
+        Path foreign = dir.resolve("aaaa" + UploadSessionState.SESSION_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(foreign))) {
+            out.writeInt(0x12345678);
+            out.writeInt(1);
+        }
+        assertThat(UploadSessionState.load(foreign)).isNull();
+
+        UploadSessionState state = newState();
+        state.addPart("\"etag-1\"");
+        state.save();
+        byte[] complete = Files.readAllBytes(sessionFile());
+        try (OutputStream out = Files.newOutputStream(sessionFile())) {
+            out.write(complete, 0, complete.length - 3);
+        }
+        assertThat(UploadSessionState.load(sessionFile())).isNull();
+    }
+
+    @Test
+    void deleteRemovesSessionAndPendingFiles() throws IOException {
+        UploadSessionState state = newState();
+        state.writePending(bytes("abc"), 3);
+        state.save();
+
+        state.delete();
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+}